@@ -0,0 +1,111 @@
+package com.example.oidcclient;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * ベンチマークの実行エントリポイント（java -jar target/benchmarks.jar）。
+ * gc プロファイラを常に有効にし、スループットと合わせて 1 操作あたりの割り当て量（gc.alloc.rate.norm）を出力する。
+ * <pre>
+ *   --save-baseline FILE     結果をベースラインとして保存する
+ *   --baseline FILE          ベースラインと比較し、劣化があれば終了コード 1 で終わる
+ *   --threshold 0.10         許容する劣化の割合（スループットの低下・割り当て量の増加）
+ *   それ以外の引数           実行するベンチマークの正規表現（省略時は全件）
+ * </pre>
+ */
+public final class BenchmarkMain {
+
+    private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Path saveBaseline = null;
+        Path baseline = null;
+        double threshold = 0.10;
+        List<String> includes = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--save-baseline" -> saveBaseline = Path.of(args[++i]);
+                case "--baseline" -> baseline = Path.of(args[++i]);
+                case "--threshold" -> threshold = Double.parseDouble(args[++i]);
+                default -> includes.add(args[i]);
+            }
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().addProfiler(GCProfiler.class);
+        if (includes.isEmpty()) {
+            options.include("com\\.example\\.oidcclient\\..*Benchmark");
+        }
+        includes.forEach(options::include);
+        Collection<RunResult> results = new Runner(options.build()).run();
+
+        Properties scores = toProperties(results);
+        if (saveBaseline != null) {
+            try (Writer w = Files.newBufferedWriter(saveBaseline, StandardCharsets.UTF_8)) {
+                scores.store(w, "spring-boot-oidc-benchmarks baseline");
+            }
+            System.out.println("baseline saved: " + saveBaseline);
+        }
+        if (baseline != null && !compare(baseline, scores, threshold)) {
+            System.exit(1);
+        }
+    }
+
+    // ベンチマーク名 -> スコア（ops/ms）と割り当て量（B/op）
+    private static Properties toProperties(Collection<RunResult> results) {
+        Properties p = new Properties();
+        for (RunResult r : results) {
+            String name = r.getParams().getBenchmark();
+            p.setProperty(name + ".score", Double.toString(r.getPrimaryResult().getScore()));
+            Result<?> alloc = r.getSecondaryResults().get(ALLOC_NORM);
+            if (alloc != null) {
+                p.setProperty(name + ".alloc", Double.toString(alloc.getScore()));
+            }
+        }
+        return p;
+    }
+
+    private static boolean compare(Path baselineFile, Properties current, double threshold) throws IOException {
+        Properties base = new Properties();
+        try (Reader r = Files.newBufferedReader(baselineFile, StandardCharsets.UTF_8)) {
+            base.load(r);
+        }
+        boolean ok = true;
+        System.out.println();
+        System.out.printf("%-90s %14s %14s %8s%n", "metric", "baseline", "current", "change");
+        for (String key : new TreeSet<>(current.stringPropertyNames())) {
+            String before = base.getProperty(key);
+            if (before == null) {
+                continue;
+            }
+            double b = Double.parseDouble(before);
+            double c = Double.parseDouble(current.getProperty(key));
+            double change = b == 0 ? 0 : (c - b) / b;
+            // score は低下、alloc は増加が劣化（割り当て 0 の場合は 1 バイトでも増えたら劣化）
+            boolean regressed = key.endsWith(".score") ? change < -threshold
+                    : (b == 0 ? c >= 1.0 : change > threshold);
+            System.out.printf("%-90s %14.2f %14.2f %+7.1f%%%s%n", key, b, c, change * 100, regressed ? "  REGRESSION" : "");
+            ok &= !regressed;
+        }
+        return ok;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.oidcclient;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Authorization Request URI と token リクエスト本文の組み立て。
+ * パラメータは /authorize と /token_request で実際に送るものと同じ構成にしている。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestBuilderBenchmark {
+
+    private static final String AUTHORIZATION_ENDPOINT = "http://localhost:8080/realms/myrealm/protocol/openid-connect/auth";
+
+    private Map<String, String> authorizationParams;
+    private Map<String, String> tokenForm;
+    private String plainValue;
+    private String escapedValue;
+
+    @Setup
+    public void setUp() {
+        authorizationParams = new LinkedHashMap<>();
+        authorizationParams.put("response_type", "code");
+        authorizationParams.put("client_id", "my-client");
+        authorizationParams.put("redirect_uri", "http://localhost:8081/callback");
+        authorizationParams.put("scope", "openid profile email");
+        authorizationParams.put("state", "f3kq9Jd0x8Qm2LrV7tYwZ1nB5cH4sE6a");
+        authorizationParams.put("nonce", "Uo2mP8vK4xR7tQ1wE9yI3oL6aS0dF5gH");
+        authorizationParams.put("code_challenge", "E9Melhoa2OwvFrEMTJguCHaoeK1t8URWbuGJSstw-cM");
+        authorizationParams.put("code_challenge_method", "S256");
+
+        tokenForm = new LinkedHashMap<>();
+        tokenForm.put("grant_type", "authorization_code");
+        tokenForm.put("code", "a6b1c2d3-e4f5-4a6b-8c7d-9e0f1a2b3c4d.5e6f7a8b-9c0d-4e1f-a2b3-c4d5e6f7a8b9.0c1d2e3f-4a5b-4c6d-8e7f-9a0b1c2d3e4f");
+        tokenForm.put("redirect_uri", "http://localhost:8081/callback");
+        tokenForm.put("client_id", "my-client");
+        tokenForm.put("client_secret", "s3cr3t/+=value");
+        tokenForm.put("code_verifier", "dBjftJeZ4CVP-mB92K27uhbUJU1p1r_wW1gFWFOEjXk");
+
+        plainValue = "f3kq9Jd0x8Qm2LrV7tYwZ1nB5cH4sE6a";
+        escapedValue = "http://localhost:8081/callback?from=bench&x=a b";
+    }
+
+    @Benchmark
+    public String buildAuthorizationRequestUri() {
+        return OidcClientApplication.buildAuthorizationRequestUri(AUTHORIZATION_ENDPOINT, authorizationParams);
+    }
+
+    @Benchmark
+    public String encodeTokenForm() {
+        return OidcClientApplication.encodeForm(tokenForm);
+    }
+
+    // エスケープ不要な値（state / nonce / code_verifier など大半のパラメータ）
+    @Benchmark
+    public String urlEncodePlain() {
+        return OidcClientApplication.urlEncode(plainValue);
+    }
+
+    @Benchmark
+    public String urlEncodeEscaped() {
+        return OidcClientApplication.urlEncode(escapedValue);
+    }
+}
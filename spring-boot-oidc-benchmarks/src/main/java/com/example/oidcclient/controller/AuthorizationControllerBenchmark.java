@@ -0,0 +1,60 @@
+package com.example.oidcclient.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PKCE 値の生成と additional_params の解析（/authorization_flow と /authorize の処理のうち CPU を使う部分）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthorizationControllerBenchmark {
+
+    private String codeVerifier;
+    private String additionalParams;
+
+    @Setup
+    public void setUp() {
+        codeVerifier = AuthorizationController.generateCodeVerifier(64);
+        additionalParams = "prompt=login\r\n"
+                + "max_age=300\n"
+                + "\n"
+                + "ui_locales=ja en\n"
+                + "  acr_values = urn:mace:incommon:iap:silver  \n"
+                + "login_hint=user@example.com\n"
+                + "ignored-line-without-equals\n";
+    }
+
+    @Benchmark
+    public String generateS256CodeChallenge() {
+        return AuthorizationController.generateS256CodeChallenge(codeVerifier);
+    }
+
+    @Benchmark
+    public String generateCodeVerifier() {
+        return AuthorizationController.generateCodeVerifier(64);
+    }
+
+    @Benchmark
+    public Map<String, String> parseAdditionalParams() {
+        Map<String, String> params = new LinkedHashMap<>();
+        AuthorizationController.parseAdditionalParams(additionalParams, params);
+        return params;
+    }
+}
@@ -1,17 +1,18 @@
 package com.example.oidcclient;
 
+import com.example.oidcclient.metrics.TokenCallObserver;
+import com.example.oidcclient.util.AuthorizationUrlTemplate;
+import com.example.oidcclient.util.QueryEncoder;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
-import java.io.UnsupportedEncodingException;
 import java.net.URI;
-import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,6 +22,13 @@ public class OidcClientApplication {
 
     private static final Logger logger = LoggerFactory.getLogger(OidcClientApplication.class);
 
+    // token エンドポイント呼び出しで共有する HttpClient とリクエストタイムアウト。
+    // Spring 管理下では TokenEndpointClient が起動時にプール済みクライアントを設定する。
+    private static volatile HttpClient tokenHttpClient;
+    private static volatile Duration tokenRequestTimeout;
+    // token エンドポイント呼び出しの結果通知先（メトリクス用、未設定なら何もしない）
+    private static volatile TokenCallObserver tokenCallObserver;
+
     public static void main(String[] args) throws Exception {
         SpringApplication.run(OidcClientApplication.class, args);
 
@@ -32,10 +40,8 @@ public class OidcClientApplication {
      * パラメータは OIDC 3.1.2.1 に準拠したキーを渡してください（例: response_type, client_id, redirect_uri, scope, state, nonce）。
      */
     public static String buildAuthorizationRequestUri(String authorizationEndpoint, Map<String, String> params) {
-        String query = params.entrySet().stream()
-                .map(e -> urlEncode(e.getKey()) + "=" + urlEncode(e.getValue()))
-                .collect(Collectors.joining("&"));
-        return authorizationEndpoint + (authorizationEndpoint.contains("?") ? "&" : "?") + query;
+        // endpoint と先頭の response_type / client_id / redirect_uri / scope はクライアント設定ごとに組み立て済みのものを使う
+        return AuthorizationUrlTemplate.of(authorizationEndpoint, params).expand(params);
     }
 
     /**
@@ -44,33 +50,117 @@ public class OidcClientApplication {
      * 例の formParams: grant_type=authorization_code, code, redirect_uri, client_id, client_secret
      */
     public static String requestToken(String tokenEndpoint, Map<String, String> formParams) throws Exception {
-        String form = formParams.entrySet().stream()
-                .map(e -> urlEncode(e.getKey()) + "=" + urlEncode(e.getValue()))
-                .collect(Collectors.joining("&"));
+        return requestToken(tokenHttpClient(), tokenEndpoint, formParams);
+    }
+
+    /**
+     * 指定した HttpClient（テナントごとのクライアント等）で requestToken を行う。
+     */
+    public static String requestToken(HttpClient client, String tokenEndpoint, Map<String, String> formParams) throws Exception {
+        long start = System.nanoTime();
+        HttpResponse<String> response;
+        try {
+            response = client.send(buildTokenRequest(tokenEndpoint, formParams), HttpResponse.BodyHandlers.ofString());
+        } catch (Exception e) {
+            observe(tokenEndpoint, formParams, null, e, start);
+            throw e;
+        }
+        observe(tokenEndpoint, formParams, response, null, start);
+
+        // ここでは単純にレスポンスボディを返す。必要であればステータスやヘッダも返すように変更してください。
+        return response.body();
+    }
+
+    /**
+     * requestToken の非同期版。HttpClient.sendAsync を使い、呼び出し元スレッドをブロックせずにレスポンス文字列を返す。
+     */
+    public static CompletableFuture<String> requestTokenAsync(String tokenEndpoint, Map<String, String> formParams) {
+        return requestTokenAsync(tokenHttpClient(), tokenEndpoint, formParams);
+    }
+
+    /**
+     * 指定した HttpClient で requestTokenAsync を行う。
+     */
+    public static CompletableFuture<String> requestTokenAsync(HttpClient client, String tokenEndpoint,
+                                                              Map<String, String> formParams) {
+        long start = System.nanoTime();
+        return client.sendAsync(buildTokenRequest(tokenEndpoint, formParams), HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> observe(tokenEndpoint, formParams, response, error, start))
+                .thenApply(HttpResponse::body);
+    }
+
+    private static HttpRequest buildTokenRequest(String tokenEndpoint, Map<String, String> formParams) {
+        String form = encodeForm(formParams);
 
-        logger.debug("Requesting token from: " + tokenEndpoint);
-        formParams.forEach((k, v) -> logger.debug("Param: " + k + " = " + v));
+        // 値には code / refresh_token / client_secret が含まれるため、ログにはパラメータ名だけを出す
+        if (logger.isDebugEnabled()) {
+            logger.debug("Requesting token from: {} (params: {})", tokenEndpoint, formParams.keySet());
+        }
 
-        HttpRequest request = HttpRequest.newBuilder()
+        HttpRequest.Builder request = HttpRequest.newBuilder()
                 .uri(URI.create(tokenEndpoint))
                 .header("Content-Type", "application/x-www-form-urlencoded")
-                .POST(HttpRequest.BodyPublishers.ofString(form))
-                .build();
+                .POST(HttpRequest.BodyPublishers.ofString(form));
+        Duration timeout = tokenRequestTimeout;
+        if (timeout != null) request.timeout(timeout);
+        return request.build();
+    }
 
-        HttpClient client = HttpClient.newHttpClient();
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    /**
+     * requestToken で使う HttpClient とリクエストタイムアウトを設定する。
+     * 呼び出しごとに HttpClient を生成せず、プール済みのコネクションを再利用させるためのもの。
+     */
+    public static void useTokenHttpClient(HttpClient client, Duration requestTimeout) {
+        tokenHttpClient = client;
+        tokenRequestTimeout = requestTimeout;
+    }
 
-        // ここでは単純にレスポンスボディを返す。必要であればステータスやヘッダも返すように変更してください。
-        return response.body();
+    /**
+     * token エンドポイント呼び出しの結果（ステータス・所要時間）の通知先を設定する。
+     */
+    public static void useTokenCallObserver(TokenCallObserver observer) {
+        tokenCallObserver = observer;
     }
 
-    private static String urlEncode(String s) {
+    // 通知先の例外は token request の結果に影響させない
+    private static void observe(String tokenEndpoint, Map<String, String> formParams, HttpResponse<String> response,
+                                Throwable error, long startNanos) {
+        TokenCallObserver observer = tokenCallObserver;
+        if (observer == null) return;
+        long elapsed = System.nanoTime() - startNanos;
         try {
-            return URLEncoder.encode(s == null ? "" : s, StandardCharsets.UTF_8.name());
-        } catch (UnsupportedEncodingException e) {
-            // UTF-8 は存在する前提なのでここには来ない
-            throw new RuntimeException(e);
+            if (response != null) {
+                observer.onResponse(tokenEndpoint, formParams, response.statusCode(), response.body(), elapsed);
+            } else {
+                observer.onFailure(tokenEndpoint, formParams, error, elapsed);
+            }
+        } catch (RuntimeException e) {
+            logger.debug("token call observer failed: {}", e.toString());
+        }
+    }
+
+    // 未設定（Spring 外からの利用など）の場合は既定設定のクライアントを 1 度だけ生成して共有する
+    private static HttpClient tokenHttpClient() {
+        HttpClient client = tokenHttpClient;
+        if (client == null) {
+            synchronized (OidcClientApplication.class) {
+                client = tokenHttpClient;
+                if (client == null) {
+                    client = HttpClient.newHttpClient();
+                    tokenHttpClient = client;
+                }
+            }
         }
+        return client;
+    }
+
+    // application/x-www-form-urlencoded の本文を組み立てる
+    static String encodeForm(Map<String, String> formParams) {
+        return QueryEncoder.encodeForm(formParams);
+    }
+
+    static String urlEncode(String s) {
+        return QueryEncoder.encode(s);
     }
 
     // ...existing code...
@@ -0,0 +1,67 @@
+package com.example.oidcclient.aspect;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * pointcut に一致したメソッドの開始ログと実行時間を記録する。
+ * <ul>
+ *   <li>メソッドごとの名前・Logger は MethodStats に 1 回だけ作ってキャッシュする（呼び出しごとの getLogger をしない）</li>
+ *   <li>実行時間は sample-rate の割合の呼び出しだけ計測する（1.0 で全件）</li>
+ *   <li>開始ログは対象クラスの Logger が TRACE の場合のみ出力する（パッケージの DEBUG ログには混ぜない）</li>
+ * </ul>
+ */
+public class MethodInstrumentationInterceptor implements MethodInterceptor {
+
+    private final ConcurrentHashMap<Method, MethodStats> stats = new ConcurrentHashMap<>();
+    private final boolean sampleAll;
+    private final double sampleRate;
+
+    public MethodInstrumentationInterceptor(double sampleRate) {
+        this.sampleRate = Math.max(0.0, Math.min(1.0, sampleRate));
+        this.sampleAll = this.sampleRate >= 1.0;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        MethodStats s = statsOf(invocation.getMethod());
+        s.countCall();
+        if (s.logger().isTraceEnabled()) {
+            s.logger().trace("start method: {}.{}", s.logger().getName(), s.methodName());
+        }
+        if (!sampleAll && (sampleRate <= 0.0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return invocation.proceed();
+        }
+        long start = System.nanoTime();
+        try {
+            return invocation.proceed();
+        } finally {
+            s.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 計測済みメソッドの一覧（呼び出し回数の多い順）。
+     */
+    public List<MethodStats> snapshot() {
+        List<MethodStats> list = new ArrayList<>(stats.values());
+        list.sort(Comparator.comparingLong(MethodStats::calls).reversed());
+        return list;
+    }
+
+    private MethodStats statsOf(Method method) {
+        MethodStats s = stats.get(method);
+        if (s == null) {
+            s = stats.computeIfAbsent(method,
+                    m -> new MethodStats(m.getDeclaringClass().getName(), m.getName()));
+        }
+        return s;
+    }
+}
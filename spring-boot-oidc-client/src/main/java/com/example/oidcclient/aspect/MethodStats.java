@@ -0,0 +1,115 @@
+package com.example.oidcclient.aspect;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 計測対象メソッドごとのメタデータ（名前・Logger）と実行時間のヒストグラム。
+ * 最初の呼び出し時に 1 回だけ作り、以降の呼び出しでは加算のみ行う。
+ * ヒストグラムはナノ秒の 2 のべき乗ごとのバケット（上限 2^40 ns ≒ 18 分）。
+ */
+public final class MethodStats {
+
+    static final int BUCKETS = 41;
+
+    private final String name;
+    private final String methodName;
+    private final Logger logger;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+    MethodStats(String declaringTypeName, String methodName) {
+        this.name = simpleName(declaringTypeName) + "." + methodName;
+        this.methodName = methodName;
+        this.logger = LoggerFactory.getLogger(declaringTypeName);
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    String methodName() {
+        return methodName;
+    }
+
+    Logger logger() {
+        return logger;
+    }
+
+    void countCall() {
+        calls.increment();
+    }
+
+    void record(long nanos) {
+        sampled.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        buckets[bucketOf(nanos)].increment();
+    }
+
+    public long calls() {
+        return calls.sum();
+    }
+
+    public long sampledCount() {
+        return sampled.sum();
+    }
+
+    public long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long maxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * 計測済みの呼び出しのうち割合 q（0〜1）が収まる実行時間の上限（ナノ秒、バケット境界の概算）。
+     */
+    public long percentileNanos(double q) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    // nanos が収まる最小の 2^i のバケット
+    static int bucketOf(long nanos) {
+        if (nanos <= 1) {
+            return 0;
+        }
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos - 1));
+    }
+
+    static long upperBound(int bucket) {
+        return 1L << bucket;
+    }
+
+    private static String simpleName(String typeName) {
+        int idx = typeName.lastIndexOf('.');
+        return idx >= 0 ? typeName.substring(idx + 1) : typeName;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.oidcclient.client;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 応答時間に応じて同時実行数の上限を増減させるリミッター（AIMD）。
+ * <ul>
+ *   <li>応答時間が基準（直近の最小応答時間）の latency-tolerance 倍以内で、上限の半分以上を使っていれば上限を少しずつ増やす（1 周で約 +1）</li>
+ *   <li>基準より遅い応答・タイムアウト・upstream のエラーでは上限を backoff-ratio 倍に減らす（連続で減らしすぎないよう 1 応答時間に 1 回まで）</li>
+ *   <li>上限に達している場合 tryAcquire は待たずに false を返す</li>
+ * </ul>
+ * 上限は [min-limit, max-limit] の範囲に収める。max-limit がエンドポイントあたりのバルクヘッド（専有できる同時実行数）になる。
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+    // 最小応答時間を取り直す間隔（サンプル数）。遅い状態が続いた場合に基準を追従させる
+    static final int RTT_WINDOW = 250;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    // 以下は this で保護
+    private double estimatedLimit;
+    private long windowMinRtt = Long.MAX_VALUE;
+    private long previousMinRtt = Long.MAX_VALUE;
+    private int windowSamples;
+    private long lastDecreaseAt;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double latencyTolerance,
+                                      double backoffRatio) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.latencyTolerance = Math.max(1.0, latencyTolerance);
+        this.backoffRatio = Math.min(0.99, Math.max(0.1, backoffRatio));
+        this.estimatedLimit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+    }
+
+    /**
+     * 上限未満なら実行数を 1 増やして true を返す。true の場合は必ず onSuccess / onDropped / onIgnored のいずれかを呼ぶ。
+     */
+    public boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * 正常に応答した（rttNanos は応答までの時間）。
+     */
+    public void onSuccess(long rttNanos) {
+        int inFlightAtCompletion = inFlight.getAndDecrement();
+        synchronized (this) {
+            long baseline = sampleRtt(rttNanos);
+            if (rttNanos > baseline * latencyTolerance) {
+                decrease(rttNanos);
+            } else if (inFlightAtCompletion * 2 >= limit) {
+                estimatedLimit = Math.min(maxLimit, estimatedLimit + 1.0 / estimatedLimit);
+                limit = (int) estimatedLimit;
+            }
+        }
+    }
+
+    /**
+     * タイムアウト・接続エラー・upstream の 5xx など、過負荷を示す失敗。
+     */
+    public void onDropped(long rttNanos) {
+        inFlight.decrementAndGet();
+        synchronized (this) {
+            decrease(rttNanos);
+        }
+    }
+
+    /**
+     * 上限の調整に使わない完了（キャンセル・呼び出し前の失敗など）。
+     */
+    public void onIgnored() {
+        inFlight.decrementAndGet();
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    // 直近 2 区間の最小応答時間を基準にする
+    private long sampleRtt(long rttNanos) {
+        if (rttNanos < windowMinRtt) {
+            windowMinRtt = rttNanos;
+        }
+        if (++windowSamples >= RTT_WINDOW) {
+            previousMinRtt = windowMinRtt;
+            windowMinRtt = Long.MAX_VALUE;
+            windowSamples = 0;
+        }
+        return Math.min(windowMinRtt, previousMinRtt);
+    }
+
+    private void decrease(long rttNanos) {
+        long now = System.nanoTime();
+        if (lastDecreaseAt != 0 && now - lastDecreaseAt < rttNanos) {
+            return;
+        }
+        lastDecreaseAt = now;
+        estimatedLimit = Math.max(minLimit, estimatedLimit * backoffRatio);
+        limit = (int) estimatedLimit;
+    }
+}
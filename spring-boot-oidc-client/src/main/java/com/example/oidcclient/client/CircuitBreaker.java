@@ -0,0 +1,160 @@
+package com.example.oidcclient.client;
+
+import java.util.Arrays;
+
+/**
+ * 直近 window 件の結果からエラー率・タイムアウト率を求めて開閉するサーキットブレーカー。
+ * <ul>
+ *   <li>CLOSED: 全件通す。min-calls 件以上たまった時点でエラー率かタイムアウト率がしきい値以上なら OPEN</li>
+ *   <li>OPEN: open-duration の間は全件拒否する。経過後の最初の呼び出しで HALF_OPEN</li>
+ *   <li>HALF_OPEN: half-open-calls 件だけ試しに通し、全件成功なら CLOSED、1 件でも失敗すれば再び OPEN</li>
+ * </ul>
+ * 状態遷移は Listener に通知する（メトリクス用）。
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    public enum Outcome { SUCCESS, FAILURE, TIMEOUT }
+
+    public interface Listener {
+        void onStateChange(State from, State to);
+    }
+
+    private final int minCalls;
+    private final double failureRateThreshold;
+    private final double timeoutRateThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+    private final Listener listener;
+
+    // 以下は this で保護
+    private final Outcome[] window;
+    private int next;
+    private int count;
+    private int failures;
+    private int timeouts;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    private volatile State state = State.CLOSED;
+
+    public CircuitBreaker(int windowSize, int minCalls, double failureRateThreshold, double timeoutRateThreshold,
+                          long openDurationNanos, int halfOpenCalls, Listener listener) {
+        this.window = new Outcome[Math.max(1, windowSize)];
+        this.minCalls = Math.max(1, Math.min(minCalls, window.length));
+        this.failureRateThreshold = failureRateThreshold;
+        this.timeoutRateThreshold = timeoutRateThreshold;
+        this.openDurationNanos = openDurationNanos;
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.listener = listener;
+    }
+
+    /**
+     * 呼び出してよければ true。true の場合は必ず record か release を呼ぶ。
+     */
+    public boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        synchronized (this) {
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openedAt < openDurationNanos) {
+                    return false;
+                }
+                halfOpenPermits = halfOpenCalls;
+                halfOpenSuccesses = 0;
+                transition(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (halfOpenPermits == 0) {
+                    return false;
+                }
+                halfOpenPermits--;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * tryAcquire の後、結果を記録せずに枠を返す（後段で実行しなかった場合）。
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN && halfOpenPermits < halfOpenCalls) {
+            halfOpenPermits++;
+        }
+    }
+
+    public synchronized void record(Outcome outcome) {
+        if (state == State.HALF_OPEN) {
+            if (outcome != Outcome.SUCCESS) {
+                open();
+            } else if (++halfOpenSuccesses >= halfOpenCalls) {
+                reset();
+                transition(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // OPEN になる前に開始した呼び出しの結果
+            return;
+        }
+        Outcome evicted = window[next];
+        if (evicted != null) {
+            count--;
+            if (evicted == Outcome.FAILURE) failures--;
+            if (evicted == Outcome.TIMEOUT) timeouts--;
+        }
+        window[next] = outcome;
+        next = (next + 1) % window.length;
+        count++;
+        if (outcome == Outcome.FAILURE) failures++;
+        if (outcome == Outcome.TIMEOUT) timeouts++;
+
+        if (count >= minCalls
+                && ((double) (failures + timeouts) / count >= failureRateThreshold
+                || (double) timeouts / count >= timeoutRateThreshold)) {
+            open();
+        }
+    }
+
+    public State state() {
+        return state;
+    }
+
+    /**
+     * OPEN の場合、試行を再開するまでの残り時間（ミリ秒）。それ以外は 0。
+     */
+    public synchronized long retryAfterMillis() {
+        if (state != State.OPEN) {
+            return 0L;
+        }
+        return Math.max(0L, (openDurationNanos - (System.nanoTime() - openedAt)) / 1_000_000L);
+    }
+
+    private void open() {
+        openedAt = System.nanoTime();
+        reset();
+        transition(State.OPEN);
+    }
+
+    private void reset() {
+        Arrays.fill(window, null);
+        next = 0;
+        count = 0;
+        failures = 0;
+        timeouts = 0;
+    }
+
+    private void transition(State to) {
+        State from = state;
+        if (from == to) {
+            return;
+        }
+        state = to;
+        if (listener != null) {
+            listener.onStateChange(from, to);
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.example.oidcclient.client;
+
+import com.nimbusds.jose.util.JSONObjectUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * client_credentials グラントで取得したアクセストークンのキャッシュ。
+ * キーは (token エンドポイント, client_id, scope) に client_secret のハッシュを加えたもの
+ * （シークレットが異なる呼び出し元へ他者のトークンを返さないため）。
+ * <ul>
+ *   <li>読み取りは ConcurrentHashMap の get のみでロックを取らない</li>
+ *   <li>有効期間の refresh-ratio を過ぎたら（jitter で分散させて）バックグラウンドで先行更新する</li>
+ *   <li>同じキーの更新・初回取得は常に 1 本だけ実行する</li>
+ * </ul>
+ */
+@Component
+public class ClientCredentialsTokenCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClientCredentialsTokenCache.class);
+
+    private final boolean enabled;
+    private final double refreshRatio;
+    private final double jitterRatio;
+    private final int maxEntries;
+
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Key, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor refresher;
+
+    public ClientCredentialsTokenCache(
+            @Value("${keycloak.token.client-credentials-cache.enabled:true}") boolean enabled,
+            @Value("${keycloak.token.client-credentials-cache.refresh-ratio:0.8}") double refreshRatio,
+            @Value("${keycloak.token.client-credentials-cache.jitter:0.05}") double jitterRatio,
+            @Value("${keycloak.token.client-credentials-cache.max-entries:1000}") int maxEntries,
+            @Value("${keycloak.token.client-credentials-cache.refresh-threads:2}") int refreshThreads) {
+        this.enabled = enabled;
+        this.refreshRatio = refreshRatio;
+        this.jitterRatio = jitterRatio;
+        this.maxEntries = maxEntries;
+        int threads = Math.max(1, refreshThreads);
+        this.refresher = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(maxEntries), r -> {
+                    Thread t = new Thread(r, "cc-token-refresh");
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.refresher.allowCoreThreadTimeOut(true);
+    }
+
+    record Key(String tokenEndpoint, String clientId, String scope, String credentialHash) {
+    }
+
+    // レスポンスはパース済みで保持し、返却時に expires_in を残り秒数へ書き換える
+    private static class Entry {
+        final Map<String, Object> response;
+        final long expiresAt;
+        final long refreshAt;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(Map<String, Object> response, long expiresAt, long refreshAt) {
+            this.response = response;
+            this.expiresAt = expiresAt;
+            this.refreshAt = refreshAt;
+        }
+
+        String render(long now) {
+            Map<String, Object> copy = new LinkedHashMap<>(response);
+            copy.put("expires_in", Math.max(0L, (expiresAt - now) / 1000L));
+            return JSONObjectUtils.toJSONString(copy);
+        }
+    }
+
+    /**
+     * キャッシュ対象（client_credentials グラント）かどうか。
+     */
+    public boolean isCacheable(Map<String, String> form) {
+        return enabled && "client_credentials".equals(form.get("grant_type")) && form.get("client_id") != null;
+    }
+
+    /**
+     * 有効なトークンがあればそれを返し、無ければ loader で取得してキャッシュする。
+     */
+    public String get(String tokenEndpoint, Map<String, String> form, Callable<String> loader) throws Exception {
+        Key key = keyOf(tokenEndpoint, form);
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(key);
+        if (entry != null && now < entry.expiresAt) {
+            if (now >= entry.refreshAt && entry.refreshing.compareAndSet(false, true)) {
+                refreshInBackground(key, entry, loader);
+            }
+            return entry.render(now);
+        }
+        return loadOnce(key, loader).render(System.currentTimeMillis());
+    }
+
+    /**
+     * 有効なトークンがあれば返す（無ければ null）。非同期経路で先にキャッシュを確認するためのもの。
+     * 先行更新の時刻を過ぎていても期限までは保持中のトークンを返し、更新は 1 本だけ refresh で行う。
+     */
+    public String getIfPresent(String tokenEndpoint, Map<String, String> form,
+                               Supplier<CompletableFuture<String>> refresh) {
+        Key key = keyOf(tokenEndpoint, form);
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(key);
+        if (entry == null || now >= entry.expiresAt) {
+            return null;
+        }
+        if (now >= entry.refreshAt && entry.refreshing.compareAndSet(false, true)) {
+            CompletableFuture<String> call;
+            try {
+                call = refresh.get();
+            } catch (RuntimeException e) {
+                call = CompletableFuture.failedFuture(e);
+            }
+            call.whenComplete((body, error) -> onRefreshed(key, entry, error == null ? body : null, error));
+        }
+        return entry.render(now);
+    }
+
+    /**
+     * get の非同期版。有効なトークンがあればそれを返し、無ければ loader で取得してキャッシュする。
+     * 同じキーの取得中に来た呼び出しは、同期版と同じく実行中の取得の結果を待つ（loader は 1 本だけ）。
+     */
+    public CompletableFuture<String> getAsync(String tokenEndpoint, Map<String, String> form,
+                                              Supplier<CompletableFuture<String>> loader) {
+        String cached = getIfPresent(tokenEndpoint, form, loader);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        Key key = keyOf(tokenEndpoint, form);
+        CompletableFuture<Entry> mine = new CompletableFuture<>();
+        CompletableFuture<Entry> running = loading.putIfAbsent(key, mine);
+        if (running == null) {
+            running = mine;
+            CompletableFuture<String> call;
+            try {
+                call = loader.get();
+            } catch (RuntimeException e) {
+                call = CompletableFuture.failedFuture(e);
+            }
+            call.whenComplete((body, error) -> {
+                try {
+                    if (error != null) {
+                        mine.completeExceptionally(error);
+                        return;
+                    }
+                    Entry entry = toEntry(body);
+                    if (entry == null) {
+                        // エラーレスポンス等はキャッシュせず、待っていた呼び出し元にもそのまま返す
+                        mine.complete(new PassThroughEntry(body));
+                        return;
+                    }
+                    store(key, entry);
+                    mine.complete(entry);
+                } finally {
+                    loading.remove(key, mine);
+                }
+            });
+        }
+        return running.thenApply(entry -> entry.render(System.currentTimeMillis()));
+    }
+
+    /**
+     * 取得済みのレスポンスをキャッシュに入れる（成功レスポンスのみ）。
+     */
+    public void put(String tokenEndpoint, Map<String, String> form, String body) {
+        Entry entry = toEntry(body);
+        if (entry != null) store(keyOf(tokenEndpoint, form), entry);
+    }
+
+    private Entry loadOnce(Key key, Callable<String> loader) throws Exception {
+        CompletableFuture<Entry> mine = new CompletableFuture<>();
+        CompletableFuture<Entry> running = loading.putIfAbsent(key, mine);
+        if (running != null) {
+            try {
+                return running.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception ex) throw ex;
+                throw e;
+            }
+        }
+        try {
+            String body = loader.call();
+            Entry entry = toEntry(body);
+            if (entry == null) {
+                // エラーレスポンス等はキャッシュせず、そのまま返す
+                Entry passThrough = new PassThroughEntry(body);
+                mine.complete(passThrough);
+                return passThrough;
+            }
+            store(key, entry);
+            mine.complete(entry);
+            return entry;
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, mine);
+        }
+    }
+
+    private void refreshInBackground(Key key, Entry current, Callable<String> loader) {
+        Runnable task = () -> {
+            String body = null;
+            Exception error = null;
+            try {
+                body = loader.call();
+            } catch (Exception e) {
+                error = e;
+            }
+            onRefreshed(key, current, body, error);
+        };
+        try {
+            refresher.execute(task);
+        } catch (RejectedExecutionException e) {
+            // キューが一杯・停止後は今回の先行更新を諦め、次の呼び出しで再度試せるようにする
+            logger.debug("background refresh of client_credentials token rejected: client_id={}", key.clientId());
+            current.refreshing.set(false);
+        }
+    }
+
+    // 先行更新の結果を反映する。失敗した場合は次の呼び出しで再度更新を試みられるようにする
+    private void onRefreshed(Key key, Entry current, String body, Throwable error) {
+        Entry entry = toEntry(body);
+        if (entry != null) {
+            store(key, entry);
+            logger.debug("client_credentials token refreshed ahead of expiry: client_id={}", key.clientId());
+            return;
+        }
+        if (error != null) {
+            logger.warn("background refresh of client_credentials token failed: client_id={}: {}", key.clientId(), error.toString());
+        }
+        current.refreshing.set(false);
+    }
+
+    private void store(Key key, Entry entry) {
+        if (entries.size() >= maxEntries && !entries.containsKey(key)) {
+            long now = System.currentTimeMillis();
+            entries.entrySet().removeIf(e -> e.getValue().expiresAt <= now);
+            if (entries.size() >= maxEntries) return;
+        }
+        entries.put(key, entry);
+    }
+
+    private Entry toEntry(String body) {
+        if (body == null) return null;
+        Map<String, Object> response;
+        try {
+            response = JSONObjectUtils.parse(body);
+        } catch (ParseException e) {
+            return null;
+        }
+        if (response.containsKey("error") || !(response.get("access_token") instanceof String)) return null;
+        if (!(response.get("expires_in") instanceof Number expiresIn) || expiresIn.longValue() <= 0) return null;
+
+        long now = System.currentTimeMillis();
+        long ttl = expiresIn.longValue() * 1000L;
+        long jitter = (long) (ttl * jitterRatio * ThreadLocalRandom.current().nextDouble());
+        long refreshAt = now + (long) (ttl * refreshRatio) - jitter;
+        return new Entry(response, now + ttl, refreshAt);
+    }
+
+    private static Key keyOf(String tokenEndpoint, Map<String, String> form) {
+        String scope = form.get("scope");
+        return new Key(tokenEndpoint, form.get("client_id"), scope == null ? "" : scope.trim(),
+                credentialHash(form.get("client_secret")));
+    }
+
+    private static String credentialHash(String secret) {
+        if (secret == null) return "";
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // キャッシュしないレスポンスを呼び出し元へそのまま返すための Entry
+    private static final class PassThroughEntry extends Entry {
+        final String body;
+
+        PassThroughEntry(String body) {
+            super(Map.of(), 0L, 0L);
+            this.body = body;
+        }
+
+        @Override
+        String render(long now) {
+            return body;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+}
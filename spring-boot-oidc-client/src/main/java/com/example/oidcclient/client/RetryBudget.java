@@ -0,0 +1,43 @@
+package com.example.oidcclient.client;
+
+/**
+ * 再送の予算（トークンバケット）。
+ * 最初の試行ごとに ratio だけトークンを貯め、再送・ヘッジは 1 件ごとに 1 トークン使う。
+ * upstream が落ちて全件が失敗する間も、再送で増える負荷は呼び出し数の ratio 倍（と貯めておいた max-tokens 分）までになる。
+ */
+public final class RetryBudget {
+
+    private final double ratio;
+    private final double maxTokens;
+
+    // this で保護
+    private double tokens;
+
+    public RetryBudget(double ratio, int maxTokens) {
+        this.ratio = Math.max(0.0, ratio);
+        this.maxTokens = Math.max(1, maxTokens);
+        this.tokens = this.maxTokens;
+    }
+
+    /**
+     * 最初の試行を記録する。
+     */
+    public synchronized void deposit() {
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    /**
+     * 再送してよければトークンを 1 つ使って true を返す。
+     */
+    public synchronized boolean tryWithdraw() {
+        if (tokens < 1.0) {
+            return false;
+        }
+        tokens -= 1.0;
+        return true;
+    }
+
+    public synchronized double available() {
+        return tokens;
+    }
+}
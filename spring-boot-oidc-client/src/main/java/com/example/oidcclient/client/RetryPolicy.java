@@ -0,0 +1,333 @@
+package com.example.oidcclient.client;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 冪等な upstream 呼び出し（client_credentials / refresh_token グラント、discovery・JWKS の取得）の再送とヘッジ。
+ * <ul>
+ *   <li>接続エラー（リセット・接続タイムアウトなど）と、呼び出し元が一時的な失敗と判定した結果（502/503 など）だけを再送する。
+ *       読み取りタイムアウトは再送しない（待ち時間が倍になるだけのため。遅い応答はヘッジで扱う）</li>
+ *   <li>再送までの待ちは full jitter（0 〜 min(max-delay, base-delay * 2^(n-1)) の乱数）</li>
+ *   <li>再送・ヘッジは RetryBudget の範囲でのみ行い、障害中に負荷を増幅させない</li>
+ *   <li>ヘッジ（既定は無効）: 最初の試行が直近の p95 応答時間を超えたら 2 本目を送り、先に成功した方を使う</li>
+ * </ul>
+ * authorization_code は 1 回しか使えないため、isIdempotent は false を返し再送・ヘッジの対象にしない。
+ */
+@Component
+public class RetryPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryPolicy.class);
+
+    private static final Set<String> IDEMPOTENT_GRANTS = Set.of("client_credentials", "refresh_token");
+
+    /**
+     * 再送・ヘッジの通知先（メトリクス用）。
+     */
+    public interface Listener {
+        void onRetry();
+
+        void onHedge();
+
+        void onBudgetExhausted();
+    }
+
+    private final boolean enabled;
+    private final int maxAttempts;
+    private final long baseDelayNanos;
+    private final long maxDelayNanos;
+    private final RetryBudget budget;
+    private final boolean hedgeEnabled;
+    private final int hedgeMinSamples;
+    private final long hedgeMinDelayNanos;
+    private final LatencyWindow latency = new LatencyWindow(256, 0.95);
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    private volatile Listener listener;
+
+    public RetryPolicy(
+            @Value("${keycloak.retry.enabled:true}") boolean enabled,
+            @Value("${keycloak.retry.max-attempts:3}") int maxAttempts,
+            @Value("${keycloak.retry.base-delay:50ms}") Duration baseDelay,
+            @Value("${keycloak.retry.max-delay:1s}") Duration maxDelay,
+            @Value("${keycloak.retry.budget.ratio:0.2}") double budgetRatio,
+            @Value("${keycloak.retry.budget.max-tokens:20}") int budgetMaxTokens,
+            @Value("${keycloak.retry.hedge.enabled:false}") boolean hedgeEnabled,
+            @Value("${keycloak.retry.hedge.min-samples:50}") int hedgeMinSamples,
+            @Value("${keycloak.retry.hedge.min-delay:20ms}") Duration hedgeMinDelay) {
+        this.enabled = enabled;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayNanos = Math.max(0L, baseDelay.toNanos());
+        this.maxDelayNanos = Math.max(this.baseDelayNanos, maxDelay.toNanos());
+        this.budget = new RetryBudget(budgetRatio, budgetMaxTokens);
+        this.hedgeEnabled = enabled && hedgeEnabled;
+        this.hedgeMinSamples = Math.max(1, hedgeMinSamples);
+        this.hedgeMinDelayNanos = Math.max(0L, hedgeMinDelay.toNanos());
+        this.scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "oidc-retry");
+            t.setDaemon(true);
+            return t;
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * 再送してよいグラントか（client_credentials / refresh_token）。
+     */
+    public boolean isIdempotent(Map<String, String> form) {
+        return enabled && form != null && IDEMPOTENT_GRANTS.contains(form.get("grant_type"));
+    }
+
+    public boolean hedgingEnabled() {
+        return hedgeEnabled;
+    }
+
+    public void useListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * call を実行し、再送対象の例外・結果であれば予算の範囲で max-attempts 回まで再送する。
+     * 再送しきれなかった場合は最後の結果を返す（例外なら投げる）。
+     */
+    public <T> T execute(Callable<T> call, Predicate<? super T> retryableResult) throws Exception {
+        budget.deposit();
+        for (int attempt = 1; ; attempt++) {
+            T value;
+            try {
+                value = call.call();
+            } catch (Exception e) {
+                if (!shouldRetry(attempt, null, e, retryableResult)) {
+                    throw e;
+                }
+                TimeUnit.NANOSECONDS.sleep(backoffNanos(attempt));
+                continue;
+            }
+            if (!shouldRetry(attempt, value, null, retryableResult)) {
+                return value;
+            }
+            TimeUnit.NANOSECONDS.sleep(backoffNanos(attempt));
+        }
+    }
+
+    /**
+     * execute の非同期版。再送までの待ちは呼び出し元スレッドを使わずにスケジューラで行う。
+     * hedge が true の場合は各試行をヘッジする。
+     */
+    public <T> CompletableFuture<T> executeAsync(Supplier<CompletableFuture<T>> call,
+                                                 Predicate<? super T> retryableResult, boolean hedge) {
+        budget.deposit();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attemptAsync(call, retryableResult, hedge && hedgeEnabled, 1, result);
+        return result;
+    }
+
+    private <T> void attemptAsync(Supplier<CompletableFuture<T>> call, Predicate<? super T> retryableResult,
+                                  boolean hedge, int attempt, CompletableFuture<T> result) {
+        CompletableFuture<T> future = hedge ? hedged(call, retryableResult) : invoke(call);
+        future.whenComplete((value, error) -> {
+            if (shouldRetry(attempt, value, error, retryableResult)) {
+                try {
+                    scheduler.schedule(() -> attemptAsync(call, retryableResult, hedge, attempt + 1, result),
+                            backoffNanos(attempt), TimeUnit.NANOSECONDS);
+                    return;
+                } catch (RuntimeException e) {
+                    // シャットダウン中は再送しない
+                    logger.debug("retry not scheduled: {}", e.toString());
+                }
+            }
+            if (error != null) {
+                result.completeExceptionally(unwrap(error));
+            } else {
+                result.complete(value);
+            }
+        });
+    }
+
+    // 最初の試行がヘッジの待ち時間を超えたら 2 本目を送り、先に成功した方で完了する（両方失敗なら後の失敗で完了）。
+    // 例外にならなくても再送対象の結果（502/503・server_error など）は成功とみなさず、もう一方の完了を待つ
+    private <T> CompletableFuture<T> hedged(Supplier<CompletableFuture<T>> call, Predicate<? super T> retryableResult) {
+        long start = System.nanoTime();
+        CompletableFuture<T> primary = invoke(call);
+        primary.whenComplete((value, error) -> {
+            if (error == null) {
+                latency.record(System.nanoTime() - start);
+            }
+        });
+        long delay = hedgeDelayNanos();
+        if (delay < 0) {
+            return primary;
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        ScheduledFuture<?> timer = scheduler.schedule(() -> {
+            if (primary.isDone() || !budget.tryWithdraw()) {
+                return;
+            }
+            outstanding.incrementAndGet();
+            Listener l = listener;
+            if (l != null) {
+                l.onHedge();
+            }
+            logger.debug("hedging upstream call after {} ms", TimeUnit.NANOSECONDS.toMillis(delay));
+            invoke(call).whenComplete((value, error) -> settle(result, outstanding, value, error, retryableResult));
+        }, delay, TimeUnit.NANOSECONDS);
+        primary.whenComplete((value, error) -> {
+            timer.cancel(false);
+            settle(result, outstanding, value, error, retryableResult);
+        });
+        return result;
+    }
+
+    private static <T> void settle(CompletableFuture<T> result, AtomicInteger outstanding, T value, Throwable error,
+                                   Predicate<? super T> retryableResult) {
+        if (error == null && !retryableResult.test(value)) {
+            result.complete(value);
+        } else if (outstanding.decrementAndGet() == 0) {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        }
+    }
+
+    private static <T> CompletableFuture<T> invoke(Supplier<CompletableFuture<T>> call) {
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private <T> boolean shouldRetry(int attempt, T value, Throwable error, Predicate<? super T> retryableResult) {
+        if (!enabled || attempt >= maxAttempts) {
+            return false;
+        }
+        boolean retryable = error != null ? isRetryable(error) : retryableResult.test(value);
+        if (!retryable) {
+            return false;
+        }
+        Listener l = listener;
+        if (!budget.tryWithdraw()) {
+            logger.debug("retry budget exhausted; giving up after attempt {}", attempt);
+            if (l != null) {
+                l.onBudgetExhausted();
+            }
+            return false;
+        }
+        logger.debug("retrying upstream call (attempt {} failed: {})", attempt,
+                error != null ? unwrap(error).toString() : "transient error response");
+        if (l != null) {
+            l.onRetry();
+        }
+        return true;
+    }
+
+    /**
+     * 再送してよい例外か。接続エラーは再送し、読み取りタイムアウトと upstream に届いていない拒否
+     * （TokenEndpointUnavailableException など）は再送しない。
+     */
+    static boolean isRetryable(Throwable error) {
+        Throwable t = unwrap(error);
+        if (t instanceof HttpConnectTimeoutException) {
+            return true;
+        }
+        if (t instanceof HttpTimeoutException) {
+            return false;
+        }
+        return t instanceof IOException;
+    }
+
+    long backoffNanos(int attempt) {
+        long cap = baseDelayNanos << Math.min(attempt - 1, 20);
+        if (cap <= 0 || cap > maxDelayNanos) {
+            cap = maxDelayNanos;
+        }
+        return cap == 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    // サンプルが min-samples 未満の間はヘッジしない（-1）
+    long hedgeDelayNanos() {
+        long p95 = latency.percentile(hedgeMinSamples);
+        return p95 < 0 ? -1 : Math.max(hedgeMinDelayNanos, p95);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable t = error;
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 直近 size 件の応答時間から百分位を求める。計算は 16 件ごとにまとめて行う。
+     */
+    static final class LatencyWindow {
+
+        private static final int RECOMPUTE_EVERY = 16;
+
+        private final long[] samples;
+        private final double quantile;
+        private int next;
+        private int count;
+        private int sinceRecompute;
+        private long cached = -1;
+
+        LatencyWindow(int size, double quantile) {
+            this.samples = new long[size];
+            this.quantile = quantile;
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            if (count < samples.length) {
+                count++;
+            }
+            sinceRecompute++;
+        }
+
+        synchronized long percentile(int minSamples) {
+            if (count < minSamples) {
+                return -1;
+            }
+            if (cached < 0 || sinceRecompute >= RECOMPUTE_EVERY) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                cached = sorted[Math.min(count - 1, (int) Math.ceil(quantile * count) - 1)];
+                sinceRecompute = 0;
+            }
+            return cached;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.oidcclient.client;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.net.http.HttpClient;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 複数の token リクエスト（refresh_token・token-exchange 等）を 1 バッチとして並行に実行する。
+ * 各リクエストは TokenEndpointClient の非同期経路（共有 HttpClient の HTTP/2 多重化、エンドポイントごとの
+ * 保護機構と再送）を通し、1 バッチあたりの同時実行数は max-concurrency までとする。
+ * 結果は完了した順に Listener へ渡す（呼び出しは専用スレッドで行い、HttpClient のスレッドを書き込みで塞がない）。
+ */
+@Component
+public class TokenBatchExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenBatchExecutor.class);
+
+    private final TokenEndpointClient tokenEndpointClient;
+    private final int maxConcurrency;
+    private final ThreadPoolExecutor callbacks;
+
+    /**
+     * バッチ内の 1 件。httpClient はテナントの HttpClient（null なら共有のクライアント）。
+     */
+    public record Item(int index, String id, String tokenEndpoint, Map<String, String> form, HttpClient httpClient) {
+
+        public Item(int index, String id, String tokenEndpoint, Map<String, String> form) {
+            this(index, id, tokenEndpoint, form, null);
+        }
+    }
+
+    /**
+     * 1 件の結果を受け取る。body は token エンドポイントの応答（失敗時は null で error が入る）。
+     * 例外を投げた場合（書き込み先が切断された等）、まだ開始していない項目は実行しない。
+     */
+    public interface Listener {
+        void onResult(Item item, String body, Throwable error) throws Exception;
+    }
+
+    public TokenBatchExecutor(
+            TokenEndpointClient tokenEndpointClient,
+            @Value("${app.token-batch.max-concurrency:16}") int maxConcurrency,
+            @Value("${app.token-batch.callback-threads:4}") int callbackThreads,
+            @Value("${app.token-batch.callback-queue:1000}") int callbackQueue) {
+        this.tokenEndpointClient = tokenEndpointClient;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        int threads = Math.max(1, callbackThreads);
+        // キューが溢れた場合は結果を返した側（HttpClient のスレッド）で書き込む。
+        // 捨てると残数が減らずバッチが完了しないため、書き込みが遅い間はその分だけ受信を遅らせる
+        this.callbacks = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, callbackQueue)), r -> {
+                    Thread t = new Thread(r, "token-batch-callback");
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.callbacks.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * items を実行する。返した Future は全件の結果を渡し終えると完了する。
+     * Future を cancel すると、まだ開始していない項目は実行しない（実行中のものは結果を捨てる）。
+     */
+    public CompletableFuture<Void> execute(List<Item> items, Listener listener) {
+        Batch batch = new Batch(items, listener);
+        if (items.isEmpty()) {
+            batch.done.complete(null);
+        } else {
+            batch.drain();
+        }
+        return batch.done;
+    }
+
+    // 1 バッチの実行状態。drain は同時に 1 スレッドだけがループを回し、他は wip を増やして再実行を依頼する
+    private final class Batch {
+        final List<Item> items;
+        final Listener listener;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger remaining;
+        final AtomicInteger wip = new AtomicInteger();
+
+        Batch(List<Item> items, Listener listener) {
+            this.items = items;
+            this.listener = listener;
+            this.remaining = new AtomicInteger(items.size());
+        }
+
+        void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (!done.isDone() && active.get() < maxConcurrency && next.get() < items.size()) {
+                    active.incrementAndGet();
+                    start(items.get(next.getAndIncrement()));
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+
+        void start(Item item) {
+            CompletableFuture<String> call;
+            try {
+                call = tokenEndpointClient.requestTokenAsync(item.httpClient(), item.tokenEndpoint(), item.form());
+            } catch (RuntimeException e) {
+                call = CompletableFuture.failedFuture(e);
+            }
+            call.whenCompleteAsync((body, error) -> {
+                try {
+                    if (!done.isDone()) {
+                        listener.onResult(item, body, unwrap(error));
+                    }
+                } catch (Exception e) {
+                    logger.debug("token batch aborted by listener: {}", e.toString());
+                    done.cancel(false);
+                } finally {
+                    active.decrementAndGet();
+                    if (remaining.decrementAndGet() == 0) {
+                        done.complete(null);
+                    }
+                    drain();
+                }
+            }, callbacks);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        callbacks.shutdownNow();
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.oidcclient.client;
+
+import com.example.oidcclient.OidcClientApplication;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * token エンドポイント呼び出し用のクライアント。
+ * プール済みの HttpClient（KeycloakHttpClientConfig）を OidcClientApplication.requestToken に設定し
+ * （テナント経由の呼び出しはテナントの HttpClient を使う）、
+ * 同時に Keycloak へ流すリクエスト数を max-connections で制限する。
+ * 重複した認可コード交換は TokenRequestCoalescer で 1 回の呼び出しにまとめ、
+ * client_credentials グラントは ClientCredentialsTokenCache のトークンを再利用する。
+ * upstream の呼び出しはエンドポイントごとの TokenEndpointGuard（同時実行数の上限・サーキットブレーカー）を通し、
+ * Keycloak が遅い・落ちている間は待たせずに TokenEndpointUnavailableException で失敗させる。
+ * client_credentials / refresh_token グラントは一時的な失敗（接続リセット・502/503 など）を RetryPolicy で再送する
+ * （ヘッジを有効にした場合は遅い呼び出しに 2 本目を送る）。authorization_code は再送しない。
+ */
+@Component
+public class TokenEndpointClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenEndpointClient.class);
+
+    static final String CONNECTION_LIMIT = "connection_limit";
+
+    // max-connections の空きが無くて拒否した場合の Retry-After
+    private static final long CONNECTION_LIMIT_RETRY_AFTER_MILLIS = 1_000L;
+
+    private final HttpClient httpClient;
+    private final Duration readTimeout;
+    private final Semaphore permits;
+    private final TokenRequestCoalescer coalescer;
+    private final ClientCredentialsTokenCache clientCredentialsCache;
+    private final TokenEndpointGuards guards;
+    private final RetryPolicy retryPolicy;
+
+    public TokenEndpointClient(
+            HttpClient keycloakHttpClient,
+            TokenRequestCoalescer coalescer,
+            ClientCredentialsTokenCache clientCredentialsCache,
+            TokenEndpointGuards guards,
+            RetryPolicy retryPolicy,
+            @Value("${keycloak.http.read-timeout:10s}") Duration readTimeout,
+            @Value("${keycloak.http.max-connections:64}") int maxConnections) {
+        this.httpClient = keycloakHttpClient;
+        this.readTimeout = readTimeout;
+        this.coalescer = coalescer;
+        this.clientCredentialsCache = clientCredentialsCache;
+        this.guards = guards;
+        this.retryPolicy = retryPolicy;
+        this.permits = new Semaphore(maxConnections > 0 ? maxConnections : Integer.MAX_VALUE, true);
+        OidcClientApplication.useTokenHttpClient(keycloakHttpClient, readTimeout);
+    }
+
+    /**
+     * token エンドポイントへ form を POST し、レスポンスボディを返す。
+     * 同時実行数が上限に達している場合は read-timeout まで空きを待ち、待ちきれなければ
+     * TokenEndpointUnavailableException（connection_limit）を投げる。
+     */
+    public String requestToken(String tokenEndpoint, Map<String, String> formParams) throws Exception {
+        return requestToken(null, tokenEndpoint, formParams);
+    }
+
+    /**
+     * client（テナントの HttpClient 等、null なら共有のクライアント）で requestToken を行う。
+     */
+    public String requestToken(HttpClient client, String tokenEndpoint, Map<String, String> formParams) throws Exception {
+        if (clientCredentialsCache.isCacheable(formParams)) {
+            return clientCredentialsCache.get(tokenEndpoint, formParams, () -> send(client, tokenEndpoint, formParams));
+        }
+        return coalescer.execute(TokenRequestCoalescer.Key.of(formParams), () -> send(client, tokenEndpoint, formParams));
+    }
+
+    /**
+     * requestToken の非同期版。呼び出し元スレッドは待たせず、空きが無ければ即座に失敗した Future を返す。
+     * permit はレスポンス受信（または失敗）時に返却する。
+     */
+    public CompletableFuture<String> requestTokenAsync(String tokenEndpoint, Map<String, String> formParams) {
+        return requestTokenAsync(null, tokenEndpoint, formParams);
+    }
+
+    /**
+     * client（null なら共有のクライアント）で requestTokenAsync を行う。
+     */
+    public CompletableFuture<String> requestTokenAsync(HttpClient client, String tokenEndpoint, Map<String, String> formParams) {
+        if (clientCredentialsCache.isCacheable(formParams)) {
+            return clientCredentialsCache.getAsync(tokenEndpoint, formParams, () -> sendAsync(client, tokenEndpoint, formParams));
+        }
+        return coalescer.executeAsync(TokenRequestCoalescer.Key.of(formParams), () -> sendAsync(client, tokenEndpoint, formParams));
+    }
+
+    private String send(HttpClient client, String tokenEndpoint, Map<String, String> formParams) throws Exception {
+        if (!retryPolicy.isIdempotent(formParams)) {
+            return sendOnce(client, tokenEndpoint, formParams);
+        }
+        if (retryPolicy.hedgingEnabled()) {
+            // ヘッジは 2 本の呼び出しを競わせるため、同期経路でも非同期の呼び出しの完了を待つ
+            try {
+                return sendAsync(client, tokenEndpoint, formParams).get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+        return retryPolicy.execute(() -> sendOnce(client, tokenEndpoint, formParams), TokenEndpointClient::isTransientFailure);
+    }
+
+    private String sendOnce(HttpClient client, String tokenEndpoint, Map<String, String> formParams) throws Exception {
+        return sendWithPermit(tokenEndpoint, () -> client != null
+                ? OidcClientApplication.requestToken(client, tokenEndpoint, formParams)
+                : OidcClientApplication.requestToken(tokenEndpoint, formParams));
+    }
+
+    /**
+     * token エンドポイント以外の Keycloak のエンドポイント（introspection 等）へ組み立て済みのリクエストを送り、
+     * レスポンスボディを返す。token の呼び出しと同じ接続数の上限・保護機構を通すが、再送はせずリクエストの内容もログに出さない。
+     */
+    public String send(HttpRequest request) throws Exception {
+        return sendWithPermit(request.uri().toString(),
+                () -> httpClient.send(request, HttpResponse.BodyHandlers.ofString()).body());
+    }
+
+    // permit は保護機構より先に取る（空き待ちの時間を RTT に含めず、ローカルの上限到達を upstream の失敗として数えない）
+    private String sendWithPermit(String endpoint, Callable<String> call) throws Exception {
+        if (!permits.tryAcquire(readTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            throw connectionLimitReached(endpoint);
+        }
+        try {
+            if (guards.enabled()) {
+                return guards.guard(endpoint).call(call);
+            }
+            return call.call();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private CompletableFuture<String> sendAsync(HttpClient client, String tokenEndpoint, Map<String, String> formParams) {
+        if (!retryPolicy.isIdempotent(formParams)) {
+            return sendAsyncOnce(client, tokenEndpoint, formParams);
+        }
+        return retryPolicy.executeAsync(() -> sendAsyncOnce(client, tokenEndpoint, formParams),
+                TokenEndpointClient::isTransientFailure, true);
+    }
+
+    private CompletableFuture<String> sendAsyncOnce(HttpClient client, String tokenEndpoint, Map<String, String> formParams) {
+        if (!permits.tryAcquire()) {
+            return CompletableFuture.failedFuture(connectionLimitReached(tokenEndpoint));
+        }
+        Supplier<CompletableFuture<String>> call = client != null
+                ? () -> OidcClientApplication.requestTokenAsync(client, tokenEndpoint, formParams)
+                : () -> OidcClientApplication.requestTokenAsync(tokenEndpoint, formParams);
+        CompletableFuture<String> future;
+        try {
+            future = guards.enabled()
+                    ? guards.guard(tokenEndpoint).callAsync(call)
+                    : call.get();
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        return future.whenComplete((body, ex) -> permits.release());
+    }
+
+    private static TokenEndpointUnavailableException connectionLimitReached(String tokenEndpoint) {
+        logger.warn("token endpoint connection limit reached: {}", tokenEndpoint);
+        return new TokenEndpointUnavailableException(tokenEndpoint, CONNECTION_LIMIT, CONNECTION_LIMIT_RETRY_AFTER_MILLIS);
+    }
+
+    // upstream の一時的な失敗を示すレスポンス（ゲートウェイのエラーページ、server_error / temporarily_unavailable）
+    static boolean isTransientFailure(String body) {
+        return TokenEndpointGuard.classify(body) == CircuitBreaker.Outcome.FAILURE;
+    }
+}
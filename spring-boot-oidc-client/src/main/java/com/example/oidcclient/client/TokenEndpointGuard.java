@@ -0,0 +1,154 @@
+package com.example.oidcclient.client;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * 1 つの token エンドポイントに対する保護（AdaptiveConcurrencyLimiter と CircuitBreaker の組み合わせ）。
+ * 上限到達・OPEN の場合は upstream を呼ばずに TokenEndpointUnavailableException で即座に失敗させる。
+ * <p>
+ * 結果の判定:
+ * <ul>
+ *   <li>HttpTimeoutException は TIMEOUT、その他の IOException は FAILURE</li>
+ *   <li>TokenEndpointUnavailableException（ローカルの上限到達による拒否）は upstream を呼んでいないので判定に使わない</li>
+ *   <li>JSON でないレスポンス（ゲートウェイのエラーページ等）、server_error / temporarily_unavailable は FAILURE</li>
+ *   <li>invalid_grant などクライアント側のエラーは upstream は正常なので SUCCESS</li>
+ * </ul>
+ */
+public final class TokenEndpointGuard {
+
+    static final String CONCURRENCY_LIMIT = "concurrency_limit";
+    static final String CIRCUIT_OPEN = "circuit_open";
+
+    // 上限到達で拒否した場合の Retry-After
+    private static final long LIMIT_RETRY_AFTER_MILLIS = 1_000L;
+
+    private final String endpoint;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final CircuitBreaker breaker;
+    private final ShedListener shedListener;
+
+    interface ShedListener {
+        void onShed(TokenEndpointGuard guard, String reason);
+    }
+
+    TokenEndpointGuard(String endpoint, AdaptiveConcurrencyLimiter limiter, CircuitBreaker breaker,
+                       ShedListener shedListener) {
+        this.endpoint = endpoint;
+        this.limiter = limiter;
+        this.breaker = breaker;
+        this.shedListener = shedListener;
+    }
+
+    public String endpoint() {
+        return endpoint;
+    }
+
+    public AdaptiveConcurrencyLimiter limiter() {
+        return limiter;
+    }
+
+    public CircuitBreaker breaker() {
+        return breaker;
+    }
+
+    public String call(Callable<String> call) throws Exception {
+        acquire();
+        long start = System.nanoTime();
+        String body;
+        try {
+            body = call.call();
+        } catch (Exception e) {
+            complete(classify(e), start);
+            throw e;
+        }
+        complete(classify(body), start);
+        return body;
+    }
+
+    public CompletableFuture<String> callAsync(Supplier<CompletableFuture<String>> call) {
+        try {
+            acquire();
+        } catch (TokenEndpointUnavailableException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        long start = System.nanoTime();
+        CompletableFuture<String> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            complete(null, start);
+            throw e;
+        }
+        return future.whenComplete((body, ex) -> complete(ex == null ? classify(body) : classify(ex), start));
+    }
+
+    private void acquire() {
+        if (!breaker.tryAcquire()) {
+            shed(CIRCUIT_OPEN, Math.max(1L, breaker.retryAfterMillis()));
+        }
+        if (!limiter.tryAcquire()) {
+            breaker.release();
+            shed(CONCURRENCY_LIMIT, LIMIT_RETRY_AFTER_MILLIS);
+        }
+    }
+
+    private void shed(String reason, long retryAfterMillis) {
+        if (shedListener != null) {
+            shedListener.onShed(this, reason);
+        }
+        throw new TokenEndpointUnavailableException(endpoint, reason, retryAfterMillis);
+    }
+
+    // outcome が null の場合は上限・ブレーカーの判定に使わない
+    private void complete(CircuitBreaker.Outcome outcome, long start) {
+        long rtt = System.nanoTime() - start;
+        if (outcome == null) {
+            limiter.onIgnored();
+            breaker.release();
+            return;
+        }
+        if (outcome == CircuitBreaker.Outcome.SUCCESS) {
+            limiter.onSuccess(rtt);
+        } else {
+            limiter.onDropped(rtt);
+        }
+        breaker.record(outcome);
+    }
+
+    static CircuitBreaker.Outcome classify(String body) {
+        if (body == null || body.isBlank()) {
+            return CircuitBreaker.Outcome.FAILURE;
+        }
+        int i = 0;
+        while (i < body.length() && Character.isWhitespace(body.charAt(i))) i++;
+        if (body.charAt(i) != '{') {
+            return CircuitBreaker.Outcome.FAILURE;
+        }
+        if (body.contains("\"error\"")
+                && (body.contains("\"server_error\"") || body.contains("\"temporarily_unavailable\""))) {
+            return CircuitBreaker.Outcome.FAILURE;
+        }
+        return CircuitBreaker.Outcome.SUCCESS;
+    }
+
+    static CircuitBreaker.Outcome classify(Throwable error) {
+        Throwable t = error;
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        if (t instanceof HttpTimeoutException) {
+            return CircuitBreaker.Outcome.TIMEOUT;
+        }
+        if (t instanceof IOException) {
+            return CircuitBreaker.Outcome.FAILURE;
+        }
+        // URI の不正・割り込みなど upstream の状態と関係ないもの
+        return null;
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.oidcclient.client;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * token エンドポイントごとの TokenEndpointGuard（バルクヘッド）を保持する。
+ * token_endpoint はリクエストで上書きできるため、遅い・落ちているエンドポイントが他のエンドポイント宛ての呼び出しを
+ * 巻き込まないよう、同時実行数の上限とサーキットブレーカーをエンドポイント単位で持つ。
+ * エンドポイントの数は max-endpoints までとし、超えた分は 1 つの共有ガード（"other"）で扱う。
+ */
+@Component
+public class TokenEndpointGuards {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenEndpointGuards.class);
+
+    public static final String OVERFLOW = "other";
+
+    /**
+     * ガードの作成・状態遷移・拒否の通知先（メトリクス用）。
+     */
+    public interface Listener {
+        void onGuardCreated(TokenEndpointGuard guard);
+
+        void onStateChange(TokenEndpointGuard guard, CircuitBreaker.State from, CircuitBreaker.State to);
+
+        void onShed(TokenEndpointGuard guard, String reason);
+    }
+
+    private final boolean enabled;
+    private final int maxEndpoints;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+    private final int windowSize;
+    private final int minCalls;
+    private final double failureRate;
+    private final double timeoutRate;
+    private final Duration openDuration;
+    private final int halfOpenCalls;
+
+    private final ConcurrentHashMap<String, TokenEndpointGuard> guards = new ConcurrentHashMap<>();
+    private volatile Listener listener;
+
+    public TokenEndpointGuards(
+            @Value("${keycloak.token.guard.enabled:true}") boolean enabled,
+            @Value("${keycloak.token.guard.max-endpoints:32}") int maxEndpoints,
+            @Value("${keycloak.token.guard.limit.initial:16}") int initialLimit,
+            @Value("${keycloak.token.guard.limit.min:2}") int minLimit,
+            @Value("${keycloak.token.guard.limit.max:64}") int maxLimit,
+            @Value("${keycloak.token.guard.limit.latency-tolerance:2.0}") double latencyTolerance,
+            @Value("${keycloak.token.guard.limit.backoff-ratio:0.9}") double backoffRatio,
+            @Value("${keycloak.token.guard.circuit.window:50}") int windowSize,
+            @Value("${keycloak.token.guard.circuit.min-calls:20}") int minCalls,
+            @Value("${keycloak.token.guard.circuit.failure-rate:0.5}") double failureRate,
+            @Value("${keycloak.token.guard.circuit.timeout-rate:0.2}") double timeoutRate,
+            @Value("${keycloak.token.guard.circuit.open-duration:10s}") Duration openDuration,
+            @Value("${keycloak.token.guard.circuit.half-open-calls:5}") int halfOpenCalls) {
+        this.enabled = enabled;
+        this.maxEndpoints = Math.max(1, maxEndpoints);
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+        this.backoffRatio = backoffRatio;
+        this.windowSize = windowSize;
+        this.minCalls = minCalls;
+        this.failureRate = failureRate;
+        this.timeoutRate = timeoutRate;
+        this.openDuration = openDuration;
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * tokenEndpoint 用のガードを返す（初回は作成する）。
+     */
+    public TokenEndpointGuard guard(String tokenEndpoint) {
+        TokenEndpointGuard guard = guards.get(tokenEndpoint);
+        if (guard != null) {
+            return guard;
+        }
+        String key = guards.size() < maxEndpoints ? tokenEndpoint : OVERFLOW;
+        return guards.computeIfAbsent(key, this::create);
+    }
+
+    /**
+     * 通知先を設定し、作成済みのガードを通知する。
+     */
+    public void useListener(Listener listener) {
+        this.listener = listener;
+        if (listener != null) {
+            guards.values().forEach(listener::onGuardCreated);
+        }
+    }
+
+    public List<TokenEndpointGuard> guards() {
+        return new ArrayList<>(guards.values());
+    }
+
+    private TokenEndpointGuard create(String endpoint) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                initialLimit, minLimit, maxLimit, latencyTolerance, backoffRatio);
+        // ブレーカーの通知にガード自身を渡すため、作成後に参照を設定する
+        TokenEndpointGuard[] self = new TokenEndpointGuard[1];
+        CircuitBreaker breaker = new CircuitBreaker(windowSize, minCalls, failureRate, timeoutRate,
+                openDuration.toNanos(), halfOpenCalls, (from, to) -> onStateChange(self[0], from, to));
+        TokenEndpointGuard guard = new TokenEndpointGuard(endpoint, limiter, breaker, this::onShed);
+        self[0] = guard;
+        Listener l = listener;
+        if (l != null) {
+            l.onGuardCreated(guard);
+        }
+        return guard;
+    }
+
+    private void onStateChange(TokenEndpointGuard guard, CircuitBreaker.State from, CircuitBreaker.State to) {
+        if (to == CircuitBreaker.State.OPEN) {
+            logger.warn("token endpoint circuit opened ({} -> {}): {}", from, to, guard.endpoint());
+        } else {
+            logger.info("token endpoint circuit {} -> {}: {}", from, to, guard.endpoint());
+        }
+        Listener l = listener;
+        if (l != null) {
+            l.onStateChange(guard, from, to);
+        }
+    }
+
+    private void onShed(TokenEndpointGuard guard, String reason) {
+        logger.debug("token endpoint request shed ({}): {}", reason, guard.endpoint());
+        Listener l = listener;
+        if (l != null) {
+            l.onShed(guard, reason);
+        }
+    }
+}
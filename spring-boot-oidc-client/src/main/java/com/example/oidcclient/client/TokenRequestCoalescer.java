@@ -0,0 +1,246 @@
+package com.example.oidcclient.client;
+
+import com.example.oidcclient.token.TokenEndpointResponse;
+import com.example.oidcclient.token.TokenResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 同一の認可コード交換をまとめて 1 回の upstream 呼び出しにする。
+ * 同時に届いた重複リクエストは先行リクエストの結果を待って共有し、
+ * 成功した場合は完了後しばらく（memo-ttl）結果を保持してリロード等による再送にも同じ結果を返す。
+ * 認可コードは 1 回しか使えないため、2 回目以降を Keycloak に送っても invalid_grant になるだけである。
+ * エラー（invalid_grant 等）は保持せず、次のリクエストは upstream へ送る。
+ * <p>
+ * キーは (client_id, code, redirect_uri) と client_secret。重複送信・リロードでは発行済みフローが消費済みのため
+ * code_verifier を付けずに届くので、code_verifier はキーに含めない。
+ * ただし先行リクエストと異なる code_verifier を送ってきたリクエストには結果を共有せず、別に upstream へ送って Keycloak に拒否させる。
+ */
+@Component
+public class TokenRequestCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRequestCoalescer.class);
+
+    private final boolean enabled;
+    private final long memoTtlNanos;
+    private final int memoMaxEntries;
+    private final Duration followerTimeout;
+
+    private final ConcurrentHashMap<Key, Leader> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Key, Memo> memo = new ConcurrentHashMap<>();
+
+    public TokenRequestCoalescer(
+            @Value("${keycloak.token.coalesce.enabled:true}") boolean enabled,
+            @Value("${keycloak.token.coalesce.memo-ttl:5s}") Duration memoTtl,
+            @Value("${keycloak.token.coalesce.memo-max-entries:10000}") int memoMaxEntries,
+            @Value("${keycloak.http.read-timeout:10s}") Duration followerTimeout) {
+        this.enabled = enabled;
+        this.memoTtlNanos = memoTtl.toNanos();
+        this.memoMaxEntries = memoMaxEntries;
+        this.followerTimeout = followerTimeout;
+    }
+
+    /**
+     * 認可コード交換をまとめる際のキー。grantDigest は code・redirect_uri・client_secret の SHA-256、
+     * verifierDigest は code_verifier の SHA-256（無ければ null）で、秘密の値はキーにそのまま残さない。
+     * 同一視するのは clientId と grantDigest だけで、verifierDigest は結果を共有してよいかの確認に使う。
+     */
+    public record Key(String clientId, String grantDigest, String verifierDigest) {
+
+        /**
+         * token request の form からキーを作る。authorization_code グラント以外（またはコード無し）は null を返す。
+         */
+        public static Key of(Map<String, String> form) {
+            String code = form.get("code");
+            if (!"authorization_code".equals(form.get("grant_type")) || code == null || code.isBlank()) {
+                return null;
+            }
+            String verifier = form.get("code_verifier");
+            return new Key(form.get("client_id"),
+                    digest(code, form.get("redirect_uri"), form.get("client_secret")),
+                    verifier == null || verifier.isBlank() ? null : digest(verifier));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && Objects.equals(clientId, k.clientId) && grantDigest.equals(k.grantDigest);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(clientId, grantDigest);
+        }
+
+        // 先行リクエストの結果を受け取ってよいか（code_verifier を送っていない、または同じ値）
+        boolean mayShare(String leaderVerifierDigest) {
+            return verifierDigest == null || verifierDigest.equals(leaderVerifierDigest);
+        }
+
+        // 「長さ:値」を連結してハッシュする（区切り文字を含む値でも衝突しない）
+        private static String digest(String... values) {
+            StringBuilder sb = new StringBuilder();
+            for (String value : values) {
+                String v = value == null ? "" : value;
+                sb.append(v.length()).append(':').append(v);
+            }
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+                return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    // 実行中の呼び出しと、それを始めたリクエストの code_verifier
+    private record Leader(CompletableFuture<String> future, String verifierDigest) {
+    }
+
+    private record Memo(String body, long expiresAt, String verifierDigest) {
+    }
+
+    /**
+     * key が同じ呼び出しを 1 回にまとめて実行する（同期版）。
+     * key が null の場合やこの機能が無効な場合は call をそのまま実行する。
+     */
+    public String execute(Key key, Callable<String> call) throws Exception {
+        if (!enabled || key == null) {
+            return call.call();
+        }
+        Memo memoized = lookupMemo(key);
+        if (memoized != null) {
+            if (!key.mayShare(memoized.verifierDigest())) {
+                // 別の code_verifier は結果を共有も保持もせず、そのまま送って Keycloak に拒否させる
+                return call.call();
+            }
+            logger.debug("token request served from memo: client_id={}", key.clientId());
+            return memoized.body();
+        }
+
+        Leader mine = new Leader(new CompletableFuture<>(), key.verifierDigest());
+        Leader leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            if (!key.mayShare(leader.verifierDigest())) {
+                return call.call();
+            }
+            logger.debug("joining in-flight token request: client_id={}", key.clientId());
+            return await(leader.future());
+        }
+        try {
+            String body = call.call();
+            remember(key, body);
+            mine.future().complete(body);
+            return body;
+        } catch (Exception e) {
+            mine.future().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * execute の非同期版。先行リクエストの Future を共有する（呼び出し元ごとにコピーを返す）。
+     */
+    public CompletableFuture<String> executeAsync(Key key, Supplier<CompletableFuture<String>> call) {
+        if (!enabled || key == null) {
+            return call.get();
+        }
+        Memo memoized = lookupMemo(key);
+        if (memoized != null) {
+            return key.mayShare(memoized.verifierDigest()) ? CompletableFuture.completedFuture(memoized.body()) : call.get();
+        }
+
+        Leader mine = new Leader(new CompletableFuture<>(), key.verifierDigest());
+        Leader leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            return key.mayShare(leader.verifierDigest()) ? leader.future().copy() : call.get();
+        }
+        CompletableFuture<String> upstream;
+        try {
+            upstream = call.get();
+        } catch (RuntimeException e) {
+            inFlight.remove(key, mine);
+            mine.future().completeExceptionally(e);
+            throw e;
+        }
+        upstream.whenComplete((body, ex) -> {
+            if (ex == null) {
+                remember(key, body);
+                mine.future().complete(body);
+            } else {
+                mine.future().completeExceptionally(ex);
+            }
+            inFlight.remove(key, mine);
+        });
+        return mine.future().copy();
+    }
+
+    // 現在の in-flight 件数（監視用）
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private String await(CompletableFuture<String> leader) throws Exception {
+        try {
+            return leader.get(followerTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception ex) throw ex;
+            throw e;
+        } catch (TimeoutException e) {
+            throw new HttpTimeoutException("timed out waiting for an in-flight token request");
+        }
+    }
+
+    private Memo lookupMemo(Key key) {
+        Memo m = memo.get(key);
+        if (m == null) return null;
+        if (System.nanoTime() - m.expiresAt() >= 0) {
+            memo.remove(key, m);
+            return null;
+        }
+        return m;
+    }
+
+    // 成功レスポンスのみ保持する（invalid_grant 等のエラーを memo-ttl の間返し続けない）
+    private void remember(Key key, String body) {
+        if (memoTtlNanos <= 0 || !isSuccess(body)) return;
+        long now = System.nanoTime();
+        if (memo.size() >= memoMaxEntries) {
+            // 上限に達したら期限切れを掃除し、それでも空かなければ保持しない
+            memo.entrySet().removeIf(e -> now - e.getValue().expiresAt() >= 0);
+            if (memo.size() >= memoMaxEntries) return;
+        }
+        memo.put(key, new Memo(body, now + memoTtlNanos, key.verifierDigest()));
+    }
+
+    private static boolean isSuccess(String body) {
+        if (body == null) return false;
+        try {
+            return TokenEndpointResponse.parse(body) instanceof TokenResponse tokens && tokens.hasAccessToken();
+        } catch (ParseException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.oidcclient.config;
+
+import com.example.oidcclient.flow.JdbcFlowStateStore;
+import com.example.oidcclient.flow.PendingAuthorizationStore;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 認可フローの保持先（FlowStateStore）を app.flow-state.store.type で切り替える設定。
+ * jdbc の場合の DataSource はこのストア専用に作成し、Bean としては公開しない
+ * （アプリ全体の DataSource 自動設定には影響させない）。
+ */
+@Configuration
+public class FlowStateStoreConfig {
+
+    // 発行したフローの有効期間（Keycloak でのログインにかかる時間より長くする）
+    @Value("${app.flow-state.ttl:10m}")
+    private Duration ttl;
+
+    @Bean
+    @ConditionalOnProperty(name = "app.flow-state.store.type", havingValue = "memory", matchIfMissing = true)
+    public PendingAuthorizationStore pendingAuthorizationStore(
+            @Value("${app.flow-state.store.capacity:100000}") int capacity,
+            @Value("${app.flow-state.store.max-per-requester:32}") int maxPerRequester,
+            @Value("${app.flow-state.store.tick:1s}") Duration tick,
+            @Value("${app.flow-state.store.wheel-size:1024}") int wheelSize) {
+        return new PendingAuthorizationStore(capacity, maxPerRequester, ttl, tick, wheelSize);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.flow-state.store.type", havingValue = "jdbc")
+    public JdbcFlowStateStore jdbcFlowStateStore(
+            @Value("${app.flow-state.jdbc.url}") String url,
+            @Value("${app.flow-state.jdbc.username:}") String username,
+            @Value("${app.flow-state.jdbc.password:}") String password,
+            @Value("${app.flow-state.jdbc.pool-size:8}") int poolSize,
+            @Value("${app.flow-state.jdbc.batch-size:64}") int batchSize,
+            @Value("${app.flow-state.jdbc.flush-interval:20ms}") Duration flushInterval,
+            @Value("${app.flow-state.jdbc.sweep-interval:30s}") Duration sweepInterval,
+            @Value("${app.flow-state.jdbc.near-cache-size:10000}") int nearCacheSize,
+            @Value("${app.flow-state.jdbc.max-pending-writes:10000}") int maxPendingWrites,
+            @Value("${app.flow-state.jdbc.initialize-schema:true}") boolean initializeSchema) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("flow-state");
+        config.setJdbcUrl(url);
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setMaximumPoolSize(Math.max(1, poolSize));
+        if (url.startsWith("jdbc:mysql:")) {
+            // サーバ側プリペアドステートメントをコネクションごとにキャッシュし、バッチ INSERT は複数行 INSERT にまとめる
+            config.addDataSourceProperty("useServerPrepStmts", "true");
+            config.addDataSourceProperty("cachePrepStmts", "true");
+            config.addDataSourceProperty("prepStmtCacheSize", "32");
+            config.addDataSourceProperty("rewriteBatchedStatements", "true");
+        }
+        return new JdbcFlowStateStore(new HikariDataSource(config), ttl, batchSize, flushInterval, sweepInterval,
+                nearCacheSize, maxPendingWrites, initializeSchema);
+    }
+}
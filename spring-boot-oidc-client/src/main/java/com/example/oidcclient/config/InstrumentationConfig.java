@@ -0,0 +1,89 @@
+package com.example.oidcclient.config;
+
+import com.example.oidcclient.aspect.MethodInstrumentationInterceptor;
+import com.example.oidcclient.aspect.MethodStats;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.aspectj.AspectJExpressionPointcut;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * メソッド単位の計測（開始ログ・実行時間ヒストグラム）を有効にする設定（app.instrumentation.enabled=true の場合のみ）。
+ * 無効時は Advisor を登録しないため、プロキシも作られず実行時のコストはない。
+ * 対象は include / exclude の AspectJ 式で絞り込む（パッケージ全体をプロキシしない）。
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.instrumentation.enabled", havingValue = "true")
+public class InstrumentationConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(InstrumentationConfig.class);
+
+    // 計測自体は対象にしない
+    private static final String ALWAYS_EXCLUDED = "within(com.example.oidcclient.aspect..*) || within(com.example.oidcclient.config..*)";
+
+    private ScheduledExecutorService reporter;
+
+    @Bean
+    public MethodInstrumentationInterceptor methodInstrumentationInterceptor(
+            @Value("${app.instrumentation.sample-rate:1.0}") double sampleRate) {
+        return new MethodInstrumentationInterceptor(sampleRate);
+    }
+
+    @Bean
+    public Advisor methodInstrumentationAdvisor(
+            MethodInstrumentationInterceptor interceptor,
+            @Value("${app.instrumentation.include:execution(* com.example.oidcclient.controller..*(..))}") String include,
+            @Value("${app.instrumentation.exclude:}") String exclude,
+            @Value("${app.instrumentation.report-interval:0s}") Duration reportInterval) {
+        AspectJExpressionPointcut pointcut = new AspectJExpressionPointcut();
+        String expression = "(" + include + ") && !(" + ALWAYS_EXCLUDED + ")";
+        if (exclude != null && !exclude.isBlank()) {
+            expression += " && !(" + exclude + ")";
+        }
+        pointcut.setExpression(expression);
+        logger.info("method instrumentation enabled: {}", expression);
+
+        if (!reportInterval.isZero() && !reportInterval.isNegative()) {
+            reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "method-instrumentation-report");
+                t.setDaemon(true);
+                return t;
+            });
+            reporter.scheduleAtFixedRate(() -> report(interceptor), reportInterval.toMillis(),
+                    reportInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        return new DefaultPointcutAdvisor(pointcut, interceptor);
+    }
+
+    // メソッドごとの呼び出し回数と実行時間の分布を INFO で出力する
+    private static void report(MethodInstrumentationInterceptor interceptor) {
+        for (MethodStats s : interceptor.snapshot()) {
+            if (s.sampledCount() == 0) {
+                continue;
+            }
+            logger.info("{}: calls={}, sampled={}, mean={}us, p50<={}us, p99<={}us, max={}us",
+                    s.name(), s.calls(), s.sampledCount(),
+                    s.totalNanos() / s.sampledCount() / 1000,
+                    s.percentileNanos(0.50) / 1000, s.percentileNanos(0.99) / 1000, s.maxNanos() / 1000);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.oidcclient.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import jakarta.annotation.PreDestroy;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keycloak（token エンドポイント等）へ接続する HttpClient を 1 つだけ生成して共有する設定。
+ * リクエストごとに HttpClient を作るとコネクション/TLS ハンドシェイクを毎回やり直すため、
+ * プール済みのクライアントを Bean として再利用する。
+ */
+@Configuration
+public class KeycloakHttpClientConfig {
+
+    // 接続タイムアウト（TCP/TLS 確立まで）
+    @Value("${keycloak.http.connect-timeout:5s}")
+    private Duration connectTimeout;
+
+    // プールに保持するコネクション数の上限（0 は無制限）
+    @Value("${keycloak.http.max-connections:64}")
+    private int maxConnections;
+
+    // アイドルコネクションを保持する時間
+    @Value("${keycloak.http.keep-alive:30s}")
+    private Duration keepAlive;
+
+    // HttpClient のコールバック処理に使うスレッド数
+    @Value("${keycloak.http.executor-threads:8}")
+    private int executorThreads;
+
+    // HTTP/2 を優先（非対応の相手には HTTP/1.1 へフォールバックする）
+    @Value("${keycloak.http.version:HTTP_2}")
+    private HttpClient.Version httpVersion;
+
+    private ExecutorService executor;
+
+    @Bean
+    public HttpClient keycloakHttpClient() {
+        // JDK HttpClient のプール設定はシステムプロパティでしか指定できず、
+        // 最初の HttpClient 生成時に読まれるため、ここで（未指定の場合のみ）設定する
+        setPropertyIfAbsent("jdk.httpclient.connectionPoolSize", String.valueOf(Math.max(0, maxConnections)));
+        setPropertyIfAbsent("jdk.httpclient.keepalive.timeout", String.valueOf(keepAlive.toSeconds()));
+
+        executor = newBoundedExecutor(Math.max(1, executorThreads), "keycloak-http-");
+        return HttpClient.newBuilder()
+                .version(httpVersion)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(executor)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * スレッド数とキュー長の両方に上限を持つ executor。溢れた場合は呼び出し元スレッドで実行する。
+     */
+    public static ExecutorService newBoundedExecutor(int threads, String threadNamePrefix) {
+        AtomicInteger seq = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread t = new Thread(r, threadNamePrefix + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(threads * 256), factory, new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static void setPropertyIfAbsent(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+}
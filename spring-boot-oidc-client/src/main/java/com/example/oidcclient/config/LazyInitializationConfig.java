@@ -0,0 +1,30 @@
+package com.example.oidcclient.config;
+
+import com.example.oidcclient.client.TokenEndpointClient;
+import com.example.oidcclient.discovery.OidcDiscoveryService;
+import com.example.oidcclient.jwt.JwksCache;
+import com.example.oidcclient.pkce.PkceGenerator;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+
+/**
+ * spring.main.lazy-initialization=true（fast-start プロファイル）でも、最初のログインで必ず使う Bean は起動時に作る。
+ * discovery の取得・JWKS・token エンドポイントの接続準備を最初のリクエストに持ち越さないため。
+ * lazy-initialization が無効の場合は何も変わらない。
+ */
+@Configuration
+public class LazyInitializationConfig {
+
+    @Bean
+    static LazyInitializationExcludeFilter loginPathEagerBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(
+                HttpClient.class,
+                OidcDiscoveryService.class,
+                JwksCache.class,
+                TokenEndpointClient.class,
+                PkceGenerator.class);
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.oidcclient.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * コントローラの @Timed（oidc.flow.step）を有効にする設定。
+ * プロキシされるのは @Timed を付けたメソッドを持つ Bean だけ。
+ * app.metrics.timed-aspect.enabled=false では登録しない（起動時に全 Bean の pointcut 判定をしない。
+ * コントローラの応答時間は http.server.requests で取れる）。
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.metrics.timed-aspect.enabled", havingValue = "true", matchIfMissing = true)
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+}
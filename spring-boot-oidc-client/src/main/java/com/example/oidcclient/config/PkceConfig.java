@@ -0,0 +1,20 @@
+package com.example.oidcclient.config;
+
+import com.example.oidcclient.pkce.PkceGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * core モジュールの PkceGenerator を pkce.* の設定で Bean として登録する。
+ */
+@Configuration
+public class PkceConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public PkceGenerator pkceGenerator(
+            @Value("${pkce.code-verifier.size:64}") int verifierLength,
+            @Value("${pkce.pool.size:0}") int poolSize) {
+        return new PkceGenerator(verifierLength, poolSize);
+    }
+}
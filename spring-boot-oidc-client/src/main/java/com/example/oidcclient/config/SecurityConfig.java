@@ -1,10 +1,16 @@
 package com.example.oidcclient.config;
 
+import com.example.oidcclient.introspection.BearerTokenIntrospectionFilter;
+import com.example.oidcclient.introspection.TokenIntrospector;
+import com.example.oidcclient.logout.RevocationList;
+import com.example.oidcclient.logout.SessionRevocationFilter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
 
 @Configuration
 public class SecurityConfig {
@@ -25,11 +31,26 @@ public class SecurityConfig {
     @Value("${app.path.token-request:/token_request}")
     private String tokenRequestPath;
 
+    @Value("${app.path.token-request-async:/token_request_async}")
+    private String tokenRequestAsyncPath;
+
     @Value("${app.path.token:/token}")
     private String tokenPath;
 
+    @Value("${app.path.backchannel-logout:/backchannel_logout}")
+    private String backchannelLogoutPath;
+
+    // back-channel logout で失効したセッションをリクエストごとに確認する
+    @Value("${app.backchannel-logout.enabled:true}")
+    private boolean backchannelLogoutEnabled;
+
+    // リソースサーバモード（認証が必要なパスを Bearer トークンの introspection で保護する）
+    @Value("${app.resource-server.enabled:false}")
+    private boolean resourceServerEnabled;
+
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, TokenIntrospector introspector,
+                                                   RevocationList revocationList) throws Exception {
         // ここで許可するパスをプロパティから組み立て
         String[] permit = new String[] {
                 rootPath,
@@ -37,7 +58,12 @@ public class SecurityConfig {
                 authorizePath,
                 callbackPath,
                 tokenRequestPath,
+                tokenRequestAsyncPath,
                 tokenPath,
+                // app.path.token-batch は permit に入れない（任意の refresh_token / client_credentials をまとめて送れるため認証が必要）
+                backchannelLogoutPath,
+                // ヘルスチェックのみ公開（/actuator/prometheus 等は認証が必要）
+                "/actuator/health",
                 "/css/**",
                 "/js/**",
                 "/favicon.ico"
@@ -48,8 +74,18 @@ public class SecurityConfig {
                 .requestMatchers(permit).permitAll()
                 .anyRequest().authenticated()
             )
+            // /actuator/prometheus のスクレイプや /token_batch 用（spring.security.user.* のユーザ）
+            .httpBasic(Customizer.withDefaults())
             .csrf(csrf -> csrf.disable()); // 開発用
 
+        if (resourceServerEnabled) {
+            http.addFilterBefore(new BearerTokenIntrospectionFilter(introspector), AuthorizationFilter.class);
+        }
+        if (backchannelLogoutEnabled) {
+            // introspection の後に置き、Bearer トークンのセッションも確認できるようにする
+            http.addFilterBefore(new SessionRevocationFilter(revocationList, resourceServerEnabled), AuthorizationFilter.class);
+        }
+
         return http.build();
     }
 }
\ No newline at end of file
@@ -1,20 +1,32 @@
 package com.example.oidcclient.controller;
 
 import com.example.oidcclient.OidcClientApplication;
-import org.springframework.beans.factory.annotation.Value;
+import com.example.oidcclient.discovery.OidcDiscoveryService;
+import com.example.oidcclient.flow.FlowBindingCookie;
+import com.example.oidcclient.flow.PendingAuthorization;
+import com.example.oidcclient.flow.FlowStateStore;
+import com.example.oidcclient.flow.SealedFlowCookie;
+import com.example.oidcclient.metrics.OidcMetrics;
+import com.example.oidcclient.pkce.PkceGenerator;
+import com.example.oidcclient.pkce.PkceMaterial;
+import com.example.oidcclient.tenant.Tenant;
+import com.example.oidcclient.tenant.TenantRegistry;
+import com.example.oidcclient.util.AdditionalParams;
+import com.example.oidcclient.util.AuthorizationUrlTemplate;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.view.RedirectView;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.util.Base64;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,44 +36,72 @@ public class AuthorizationController {
 
     private static final Logger logger = LoggerFactory.getLogger(AuthorizationController.class);
 
-    // pkce code verifier size をプロパティから注入（デフォルト 64）
-    @Value("${pkce.code-verifier.size:64}")
-    private int pkceCodeVerifierSize;
+    // Keycloak のエンドポイントは discovery ドキュメントから取得
+    private final OidcDiscoveryService discoveryService;
 
-    // Keycloak のホストとコンテキストを properties から注入
-    @Value("${keycloak.host:http://localhost:8080}")
-    private String keycloakHost;
+    // PKCE 値の生成（code_verifier の長さは pkce.code-verifier.size、既定 64）
+    private final PkceGenerator pkceGenerator;
 
-    @Value("${keycloak.context-path:/realms/myrealm/protocol/openid-connect}")
-    private String keycloakContextPath;
+    // app.flow-state.mode=cookie の場合はセッションの代わりに暗号化 Cookie にフロー情報を保持
+    private final SealedFlowCookie sealedFlowCookie;
 
-    // showForm: PKCE 値（code_verifier, state, nonce）を生成してセッション保存、Thymeleaf に渡す
+    // session モードで発行したフロー（state -> code_verifier, nonce）の保持先（memory / jdbc）
+    private final FlowStateStore flowStateStore;
+
+    // session モードのフローを開始したブラウザに紐付ける Cookie
+    private final FlowBindingCookie flowBindingCookie;
+
+    private final OidcMetrics metrics;
+
+    // /t/{realm}/... やホスト名で振り分けられた場合は、そのテナントのエンドポイントを使う
+    private final TenantRegistry tenantRegistry;
+
+    public AuthorizationController(OidcDiscoveryService discoveryService, PkceGenerator pkceGenerator,
+                                   SealedFlowCookie sealedFlowCookie, FlowStateStore flowStateStore,
+                                   FlowBindingCookie flowBindingCookie, OidcMetrics metrics, TenantRegistry tenantRegistry) {
+        this.discoveryService = discoveryService;
+        this.pkceGenerator = pkceGenerator;
+        this.sealedFlowCookie = sealedFlowCookie;
+        this.flowStateStore = flowStateStore;
+        this.flowBindingCookie = flowBindingCookie;
+        this.metrics = metrics;
+        this.tenantRegistry = tenantRegistry;
+    }
+
+    // showForm: PKCE 値（code_verifier, state, nonce）を生成して保存（ストアまたは Cookie）、Thymeleaf に渡す
     @GetMapping("${app.path.authorization-flow:/authorization_flow}")
+    @Timed(value = "oidc.flow.step", extraTags = {"step", "show_form"}, histogram = true)
     public String showForm(
             @RequestParam(name = "redirect_uri", required = false) String redirectUri,
             @RequestParam(name = "client_id", required = false) String clientId,
             HttpServletRequest request,
+            HttpServletResponse response,
             Model model) {
-        // PKCE code_verifier をプロパティで指定された長さで生成（規定値: pkce.code-verifier.size）
-        String codeVerifier = generateCodeVerifier(pkceCodeVerifierSize);
-        String state = java.util.UUID.randomUUID().toString();
-        String nonce = java.util.UUID.randomUUID().toString();
-
-        // S256 code_challenge を生成
-        String codeChallenge = generateS256CodeChallenge(codeVerifier);
+        // PKCE code_verifier（pkce.code-verifier.size の長さ）と S256 code_challenge、state、nonce を取得
+        // （プール有効時は事前生成済みの組を取り出すだけ）
+        PkceMaterial pkce = metrics.recordPkce(pkceGenerator::next);
+        String codeVerifier = pkce.codeVerifier();
+        String state = pkce.state();
+        String nonce = pkce.nonce();
+        String codeChallenge = pkce.codeChallenge();
         String codeChallengeMethod = "S256";
 
-        logger.debug("[PKCE]code_verifier: " + codeVerifier);
-        logger.debug("[PKCE]code_challenge: " + codeChallenge);
-        logger.debug("state: " + state);
-        logger.debug("nonce: " + nonce);
+        // 値はフローの乗っ取りに使えるため、ログには名前だけを出す
+        logger.debug("[PKCE]issued code_verifier, code_challenge ({}), state, nonce", codeChallengeMethod);
 
-        // セッションに保存（state に紐付け）
-        String sessionKey = "code_verifier:" + state;
-        request.getSession(true).setAttribute(sessionKey, codeVerifier);
-        request.getSession(true).setAttribute("code_verifier", codeVerifier);
-        request.getSession(true).setAttribute("state", state);
-        request.getSession(true).setAttribute("nonce", nonce);
+        if (sealedFlowCookie.enabled()) {
+            // 暗号化 Cookie に保存（セッションは作らない）
+            sealedFlowCookie.write(response, new PendingAuthorization(state, codeVerifier, nonce, codeChallengeMethod,
+                    System.currentTimeMillis()));
+        } else {
+            // state をキーに、このブラウザの binding と一緒に保存（TTL・件数上限付き）。
+            // 上限（全体・ブラウザごと）に達している場合は新しいフローを受け付けない
+            PendingAuthorization pending = new PendingAuthorization(state, codeVerifier, nonce, codeChallengeMethod,
+                    System.currentTimeMillis(), flowBindingCookie.bind(request, response));
+            if (!flowStateStore.put(pending, pending.binding())) {
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "too many pending authorizations");
+            }
+        }
 
         // Thymeleaf に渡す
         model.addAttribute("code_verifier", codeVerifier);
@@ -72,11 +112,17 @@ public class AuthorizationController {
         // redirect_uri と client_id をテンプレート初期値として渡す（リクエストで渡されていればそれを優先）
         model.addAttribute("redirect_uri", redirectUri != null ? redirectUri : "");
         model.addAttribute("client_id", clientId != null ? clientId : "");
+        // テナント経由の場合は authorization_endpoint の初期値をそのテナントのものにする（組み立て済みの値なので待たない）
+        Tenant tenant = tenantRegistry.resolve(request);
+        if (tenant != null) {
+            model.addAttribute("authorization_endpoint", tenant.endpoints().authorizationEndpoint());
+        }
 
         return "authorization_flow";
     }
 
     @PostMapping("${app.path.authorize:/authorize}")
+    @Timed(value = "oidc.flow.step", extraTags = {"step", "authorize"}, histogram = true)
     public RedirectView authorize(
             @RequestParam(name = "authorization_endpoint", required = false) String authorizationEndpoint,
             @RequestParam(name = "response_type", required = false) String responseType,
@@ -91,8 +137,11 @@ public class AuthorizationController {
             HttpServletRequest request
     ) {
         String endpoint;
-        if (authorizationEndpoint == null || authorizationEndpoint.isBlank()) {
-            endpoint = keycloakHost + keycloakContextPath + "/auth";
+        // リクエストで指定された endpoint はテンプレートのキャッシュに入れない
+        boolean requestedEndpoint = authorizationEndpoint != null && !authorizationEndpoint.isBlank();
+        if (!requestedEndpoint) {
+            Tenant tenant = tenantRegistry.resolve(request);
+            endpoint = (tenant != null ? tenant.metadata() : discoveryService.current()).authorizationEndpoint();
         } else {
             endpoint = authorizationEndpoint;
         }
@@ -110,63 +159,44 @@ public class AuthorizationController {
         String method = (codeChallengeMethod != null && !codeChallengeMethod.isBlank()) ? codeChallengeMethod : "";
         if (method.isEmpty()) {
             codeChallenge = null;
+            // 発行済みフローも PKCE なしに置き換える（別ノードで token request を受けても code_verifier を送らない）
+            if (!sealedFlowCookie.enabled() && state != null && !state.isBlank()) {
+                // 置き換えなので件数上限は数え直さない
+                flowStateStore.replace(state, flowBindingCookie.binding(request),
+                        issued -> new PendingAuthorization(issued.state(), issued.codeVerifier(), issued.nonce(),
+                                null, issued.issuedAt(), issued.binding()));
+            }
         }
         // PKCE: クライアントが送る code_challenge と method をそのまま渡す（生成しない）
         if (codeChallenge != null && !codeChallenge.isBlank()) {
             params.put("code_challenge", codeChallenge);
             params.put("code_challenge_method", method);
-            request.getSession(true).setAttribute("code_challenge_method", method);
-        }
-        
-        if (additionalParams != null && !additionalParams.isBlank()) {
-            String[] lines = additionalParams.split("\\r?\\n");
-            for (String line : lines) {
-                String l = line.trim();
-                if (l.isEmpty()) continue;
-                int idx = l.indexOf('=');
-                if (idx > 0) {
-                    String k = l.substring(0, idx).trim();
-                    String v = l.substring(idx + 1).trim();
-                    if (!k.isEmpty()) params.put(k, v);
-                }
+            // Cookie モードでは code_challenge_method は Cookie 側に記録済み
+            if (!sealedFlowCookie.enabled()) {
+                request.getSession(true).setAttribute("code_challenge_method", method);
             }
         }
+        
+        parseAdditionalParams(additionalParams, params);
 
-        String authUrl = OidcClientApplication.buildAuthorizationRequestUri(endpoint, params);
+        String authUrl = requestedEndpoint
+                ? AuthorizationUrlTemplate.uncached(endpoint, params).expand(params)
+                : OidcClientApplication.buildAuthorizationRequestUri(endpoint, params);
         logger.debug("Redirecting to Authorization Endpoint: " + authUrl);
         return new RedirectView(authUrl);
     }
 
+    // additional_params（1 行に key=value）を params に追加する
+    static void parseAdditionalParams(String additionalParams, Map<String, String> params) {
+        AdditionalParams.parseInto(additionalParams, params);
+    }
+
     public static String generateS256CodeChallenge(String codeVerifier) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] digest = md.digest(codeVerifier.getBytes(StandardCharsets.US_ASCII));
-            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to generate PKCE code_challenge", e);
-        }
+        return PkceGenerator.s256Challenge(codeVerifier);
     }
 
     // 指定サイズのcode_verifierを生成。size<43 の場合は WARN を出し DEFAULT_SIZE を使用。
-    private String generateCodeVerifier(int size) {
-        final int MIN = 43;
-        final int MAX = 128;
-        final int DEFAULT_SIZE = 64;
-        int actualSize = size;
-        if (size < MIN) {
-            logger.warn("Requested code_verifier size {} is below minimum {}; using {} instead", size, MIN, DEFAULT_SIZE);
-            actualSize = DEFAULT_SIZE;
-        } else if (size > MAX) {
-            logger.warn("Requested code_verifier size {} is above maximum {}; using {} instead", size, MAX, MAX);
-            actualSize = MAX;
-        }
-
-        final String PKCE_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-._~";
-        java.security.SecureRandom sr = new java.security.SecureRandom();
-        StringBuilder sb = new StringBuilder(actualSize);
-        for (int i = 0; i < actualSize; i++) {
-            sb.append(PKCE_CHARS.charAt(sr.nextInt(PKCE_CHARS.length())));
-        }
-        return sb.toString();
+    static String generateCodeVerifier(int size) {
+        return PkceGenerator.codeVerifier(PkceGenerator.clampVerifierLength(size));
     }
-}
\ No newline at end of file
+}
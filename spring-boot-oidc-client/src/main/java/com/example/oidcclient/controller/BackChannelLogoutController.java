@@ -0,0 +1,61 @@
+package com.example.oidcclient.controller;
+
+import com.example.oidcclient.jwt.IdTokenValidationException;
+import com.example.oidcclient.logout.LogoutTokenValidator;
+import com.example.oidcclient.logout.RevocationList;
+import com.nimbusds.jose.util.JSONObjectUtils;
+import com.nimbusds.jwt.JWTClaimsSet;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * OIDC back-channel logout エンドポイント。Keycloak から logout_token を受け取り、
+ * 検証できれば sid（無ければ sub）を RevocationList に記録する。該当するセッションは次のリクエストで
+ * SessionRevocationFilter により破棄される（ここではセッションを探さない）。
+ */
+@RestController
+public class BackChannelLogoutController {
+
+    private static final Logger logger = LoggerFactory.getLogger(BackChannelLogoutController.class);
+
+    private final LogoutTokenValidator validator;
+    private final RevocationList revocationList;
+
+    public BackChannelLogoutController(LogoutTokenValidator validator, RevocationList revocationList) {
+        this.validator = validator;
+        this.revocationList = revocationList;
+    }
+
+    @PostMapping("${app.path.backchannel-logout:/backchannel_logout}")
+    public ResponseEntity<Void> logout(@RequestParam(name = "logout_token", required = false) String logoutToken) {
+        JWTClaimsSet claims = validator.validate(logoutToken);
+        // sid があればそのセッションだけを失効させる。sub はユーザーの全セッションが対象になるため sid が無い場合だけ使う
+        String sid = claims.getClaim("sid") instanceof String s ? s : null;
+        revocationList.revoke(sid, sid == null ? claims.getSubject() : null);
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).build();
+    }
+
+    // 検証できないログアウトトークンは 400 invalid_request（仕様 2.8）
+    @ExceptionHandler(IdTokenValidationException.class)
+    public ResponseEntity<String> handleInvalidLogoutToken(IdTokenValidationException e) {
+        logger.warn("logout_token rejected: {}", e.getMessage());
+        String body = JSONObjectUtils.toJSONString(Map.of(
+                "error", "invalid_request",
+                "error_description", e.getMessage()));
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .cacheControl(CacheControl.noStore())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.oidcclient.controller;
+
+import com.example.oidcclient.client.TokenBatchExecutor;
+import com.example.oidcclient.client.TokenEndpointUnavailableException;
+import com.example.oidcclient.discovery.OidcDiscoveryService;
+import com.example.oidcclient.tenant.Tenant;
+import com.example.oidcclient.tenant.TenantRegistry;
+import com.nimbusds.jose.util.JSONArrayUtils;
+import com.nimbusds.jose.util.JSONObjectUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpTimeoutException;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 複数の token リクエストをまとめて受け付け、結果を完了した順に NDJSON（1 行 1 件）で返す。
+ * <p>
+ * リクエストは JSON 配列で、各要素は token エンドポイントへ送る form の項目（grant_type, refresh_token,
+ * subject_token, client_id など。値は文字列）に加えて、結果の対応付け用の id を持てる。
+ * 送信先はテナント（無ければ discovery）の token エンドポイントで、項目ごとの token_endpoint は無視する
+ * （任意のホストへ client_secret 等を送らせないため）。認証済みの呼び出し元のみ利用できる（HTTP Basic か、resource-server モードの Bearer。SecurityConfig）。
+ * 受け付ける grant_type は app.token-batch.grant-types のもの（authorization_code は /token_request を使う）。
+ * <p>
+ * 各行は {"index":n,"id":...,"response":{...}}（token エンドポイントの応答そのまま）か、
+ * 送信できなかった場合の {"index":n,"id":...,"error":...,"error_description":...}。
+ */
+@RestController
+public class TokenBatchController {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenBatchController.class);
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final TokenBatchExecutor executor;
+    private final OidcDiscoveryService discoveryService;
+    private final TenantRegistry tenantRegistry;
+    private final int maxItems;
+    private final Set<String> grantTypes;
+    private final long timeoutMillis;
+
+    public TokenBatchController(
+            TokenBatchExecutor executor,
+            OidcDiscoveryService discoveryService,
+            TenantRegistry tenantRegistry,
+            @Value("${app.token-batch.max-items:1000}") int maxItems,
+            @Value("${app.token-batch.grant-types:refresh_token,urn:ietf:params:oauth:grant-type:token-exchange,client_credentials}") String grantTypes,
+            @Value("${app.token-batch.timeout:60s}") Duration timeout) {
+        this.executor = executor;
+        this.discoveryService = discoveryService;
+        this.tenantRegistry = tenantRegistry;
+        this.maxItems = maxItems;
+        Set<String> accepted = new HashSet<>();
+        for (String g : grantTypes.split(",")) {
+            if (!g.isBlank()) accepted.add(g.trim());
+        }
+        this.grantTypes = Set.copyOf(accepted);
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    @PostMapping(path = "${app.path.token-batch:/token_batch}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> batch(@RequestBody String body, HttpServletRequest request) {
+        List<TokenBatchExecutor.Item> items = new ArrayList<>();
+        List<String> rejected = new ArrayList<>();
+        parse(body, request, items, rejected);
+
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(timeoutMillis);
+        // 受け付けなかった項目は先に返す（ハンドラの初期化前の送信はバッファされるだけで失敗しない）
+        for (String line : rejected) {
+            try {
+                emitter.send(line, NDJSON);
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+                return ResponseEntity.ok().contentType(NDJSON).body(emitter);
+            }
+        }
+
+        CompletableFuture<Void> run = executor.execute(items, (item, response, error) ->
+                emitter.send(resultLine(item, response, error), NDJSON));
+        // クライアントの切断・タイムアウト時は未開始の項目を実行しない
+        emitter.onTimeout(() -> run.cancel(false));
+        emitter.onError(e -> run.cancel(false));
+        run.whenComplete((v, e) -> emitter.complete());
+        return ResponseEntity.ok().contentType(NDJSON).body(emitter);
+    }
+
+    // 配列の形が不正・件数超過はバッチ全体を 400 invalid_request にする
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleInvalidBatch(IllegalArgumentException e) {
+        String body = JSONObjectUtils.toJSONString(Map.of(
+                "error", "invalid_request",
+                "error_description", e.getMessage()));
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    private void parse(String body, HttpServletRequest request, List<TokenBatchExecutor.Item> items, List<String> rejected) {
+        List<Object> array;
+        try {
+            array = JSONArrayUtils.parse(body);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("request body must be a JSON array");
+        }
+        if (array.size() > maxItems) {
+            throw new IllegalArgumentException("too many items (max " + maxItems + ")");
+        }
+        // 送信先は受け付けた項目がある場合だけテナントか discovery から解決する
+        String endpoint = null;
+        HttpClient httpClient = null;
+        for (int i = 0; i < array.size(); i++) {
+            if (!(array.get(i) instanceof Map<?, ?> element)) {
+                throw new IllegalArgumentException("item " + i + " is not a JSON object");
+            }
+            String id = null;
+            Map<String, String> form = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> e : element.entrySet()) {
+                if (!(e.getValue() instanceof String value) || value.isBlank()) continue;
+                String key = String.valueOf(e.getKey());
+                switch (key) {
+                    case "id" -> id = value;
+                    case "token_endpoint" -> {
+                        // 送信先は呼び出し元に選ばせない
+                    }
+                    default -> form.put(key, value);
+                }
+            }
+            String grantType = form.get("grant_type");
+            if (grantType == null || !grantTypes.contains(grantType)) {
+                rejected.add(errorLine(i, id, "unsupported_grant_type", "grant_type " + grantType + " is not accepted in a batch"));
+                continue;
+            }
+            if (endpoint == null) {
+                Tenant tenant = tenantRegistry.resolve(request);
+                endpoint = (tenant != null ? tenant.metadata() : discoveryService.current()).tokenEndpoint();
+                httpClient = tenant != null ? tenant.httpClient() : null;
+            }
+            items.add(new TokenBatchExecutor.Item(i, id, endpoint, form, httpClient));
+        }
+    }
+
+    private static String resultLine(TokenBatchExecutor.Item item, String response, Throwable error) {
+        if (error != null) {
+            logger.debug("token batch item {} failed: {}", item.index(), error.toString());
+            if (error instanceof TokenEndpointUnavailableException u) {
+                return errorLine(item.index(), item.id(), "temporarily_unavailable",
+                        "token endpoint is overloaded or unavailable (" + u.reason() + ")");
+            }
+            if (error instanceof HttpTimeoutException) {
+                return errorLine(item.index(), item.id(), "temporarily_unavailable", "token endpoint timed out");
+            }
+            return errorLine(item.index(), item.id(), "server_error", "token endpoint call failed");
+        }
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("index", item.index());
+        if (item.id() != null) line.put("id", item.id());
+        try {
+            line.put("response", JSONObjectUtils.parse(response));
+        } catch (ParseException e) {
+            // JSON でない応答（ゲートウェイのエラーページ等）は文字列のまま返す
+            line.put("body", response);
+        }
+        return JSONObjectUtils.toJSONString(line) + "\n";
+    }
+
+    private static String errorLine(int index, String id, String error, String description) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("index", index);
+        if (id != null) line.put("id", id);
+        line.put("error", error);
+        line.put("error_description", description);
+        return JSONObjectUtils.toJSONString(line) + "\n";
+    }
+}
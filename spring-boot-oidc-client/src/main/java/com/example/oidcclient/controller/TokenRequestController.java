@@ -1,14 +1,42 @@
 package com.example.oidcclient.controller;
 
-import com.example.oidcclient.OidcClientApplication;
+import com.example.oidcclient.client.TokenEndpointClient;
+import com.example.oidcclient.client.TokenEndpointUnavailableException;
+import com.example.oidcclient.discovery.OidcDiscoveryService;
+import com.example.oidcclient.flow.FlowBindingCookie;
+import com.example.oidcclient.flow.PendingAuthorization;
+import com.example.oidcclient.flow.FlowStateStore;
+import com.example.oidcclient.flow.SealedFlowCookie;
+import com.example.oidcclient.jwt.IdTokenValidationException;
+import com.example.oidcclient.jwt.IdTokenValidator;
+import com.example.oidcclient.jwt.LazyJwt;
+import com.example.oidcclient.logout.SessionRevocationFilter;
+import com.example.oidcclient.session.SessionTokenRefreshManager;
+import com.example.oidcclient.tenant.Tenant;
+import com.example.oidcclient.tenant.TenantRegistry;
+import com.example.oidcclient.token.TokenEndpointResponse;
+import com.example.oidcclient.token.TokenResponse;
+import com.nimbusds.jose.util.JSONObjectUtils;
+import com.nimbusds.jwt.JWTClaimsSet;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
+import java.net.http.HttpClient;
+import java.text.ParseException;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,17 +46,39 @@ public class TokenRequestController {
 
     private static final Logger logger = LoggerFactory.getLogger(TokenRequestController.class);
 
-    @Value("${keycloak.host:http://localhost:8080}")
-    private String keycloakHost;
+    // token レスポンスに id_token が含まれる場合にローカル検証するか
+    @Value("${oidc.id-token.validation.enabled:true}")
+    private boolean idTokenValidationEnabled;
 
-    @Value("${keycloak.context-path:/realms/myrealm/protocol/openid-connect}")
-    private String keycloakContextPath;
+    private final TokenEndpointClient tokenEndpointClient;
+    private final OidcDiscoveryService discoveryService;
+    private final IdTokenValidator idTokenValidator;
+    private final SessionTokenRefreshManager refreshManager;
+    private final SealedFlowCookie sealedFlowCookie;
+    private final FlowStateStore flowStateStore;
+    private final FlowBindingCookie flowBindingCookie;
+    private final TenantRegistry tenantRegistry;
+
+    public TokenRequestController(TokenEndpointClient tokenEndpointClient, OidcDiscoveryService discoveryService,
+                                  IdTokenValidator idTokenValidator, SessionTokenRefreshManager refreshManager,
+                                  SealedFlowCookie sealedFlowCookie, FlowStateStore flowStateStore,
+                                  FlowBindingCookie flowBindingCookie, TenantRegistry tenantRegistry) {
+        this.tokenEndpointClient = tokenEndpointClient;
+        this.discoveryService = discoveryService;
+        this.idTokenValidator = idTokenValidator;
+        this.refreshManager = refreshManager;
+        this.sealedFlowCookie = sealedFlowCookie;
+        this.flowStateStore = flowStateStore;
+        this.flowBindingCookie = flowBindingCookie;
+        this.tenantRegistry = tenantRegistry;
+    }
 
     /**
      * token request を行うエンドポイント。
-     * セッションから PKCE の code_verifier を取り出して form に含める（存在する場合）。
+     * showForm で発行したフロー（ストアまたは暗号化 Cookie）から PKCE の code_verifier を取り出して form に含める（存在する場合）。
      */
     @PostMapping("${app.path.token-request:/token_request}")
+    @Timed(value = "oidc.flow.step", extraTags = {"step", "token_request"}, histogram = true)
     public String requestToken(
             @RequestParam(name = "token_endpoint", required = false) String tokenEndpoint,
             @RequestParam(name = "code", required = false) String code,
@@ -38,31 +88,169 @@ public class TokenRequestController {
             @RequestParam(name = "client_secret", required = false) String clientSecret,
             @RequestParam(name = "grant_type", required = false, defaultValue = "authorization_code") String grantType,
             @RequestParam(name = "state", required = false) String state,
-            HttpSession session
+            HttpServletRequest request,
+            HttpServletResponse response
     ) throws Exception {
-        String endpoint = (tokenEndpoint == null || tokenEndpoint.isBlank()) ? buildDefaultTokenEndpoint() : tokenEndpoint;
+        TokenCall call = prepareTokenCall(tokenEndpoint, code, codeVerifierParam, redirectUri, clientId, clientSecret, grantType, state, request, response);
+
+        // プール済みクライアントで token エンドポイントに POST
+        String body = tokenEndpointClient.requestToken(call.httpClient(), call.endpoint(), call.form());
+        TokenResponse tokens = parseTokenResponse(body);
+        // ID トークンの sid / sub をセッションに記録し、back-channel logout で失効させられるようにする
+        SessionRevocationFilter.bindSession(call.session(), validateIdToken(tokens, call));
+        // リフレッシュトークンをセッションに紐付けて保持し、期限前の自動更新を予約
+        refreshManager.register(call.sessionId(), call.endpoint(), call.form(), tokens);
+        return body;
+    }
+
+    /**
+     * token request の非同期版。Keycloak の応答待ちの間はサーブレットのワーカースレッドを解放する
+     * （Spring MVC の非同期処理で CompletableFuture の完了時にレスポンスを書き込む）。
+     * セッションの参照はリクエストスレッド上で済ませてから upstream 呼び出しを開始する。
+     */
+    @PostMapping("${app.path.token-request-async:/token_request_async}")
+    @Timed(value = "oidc.flow.step", extraTags = {"step", "token_request_async"}, histogram = true)
+    public CompletableFuture<String> requestTokenAsync(
+            @RequestParam(name = "token_endpoint", required = false) String tokenEndpoint,
+            @RequestParam(name = "code", required = false) String code,
+            @RequestParam(name = "code_verifier", required = false) String codeVerifierParam,
+            @RequestParam(name = "redirect_uri", required = false) String redirectUri,
+            @RequestParam(name = "client_id", required = false) String clientId,
+            @RequestParam(name = "client_secret", required = false) String clientSecret,
+            @RequestParam(name = "grant_type", required = false, defaultValue = "authorization_code") String grantType,
+            @RequestParam(name = "state", required = false) String state,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) {
+        TokenCall call = prepareTokenCall(tokenEndpoint, code, codeVerifierParam, redirectUri, clientId, clientSecret, grantType, state, request, response);
+        return tokenEndpointClient.requestTokenAsync(call.httpClient(), call.endpoint(), call.form())
+                .thenApply(body -> {
+                    TokenResponse tokens = parseTokenResponse(body);
+                    SessionRevocationFilter.bindSession(call.session(), validateIdToken(tokens, call));
+                    refreshManager.register(call.sessionId(), call.endpoint(), call.form(), tokens);
+                    return body;
+                });
+    }
+
+    // ID トークンの検証失敗は upstream の応答不正として 502 を OAuth のエラー形式で返す
+    @ExceptionHandler(IdTokenValidationException.class)
+    public ResponseEntity<String> handleInvalidIdToken(IdTokenValidationException e) {
+        logger.warn("id_token validation failed: {}", e.getMessage());
+        String body = JSONObjectUtils.toJSONString(Map.of(
+                "error", "invalid_id_token",
+                "error_description", e.getMessage()));
+        return ResponseEntity.status(HttpStatus.BAD_GATEWAY).contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    // 受け付けない token_endpoint は 400 invalid_request にする
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleInvalidRequest(IllegalArgumentException e) {
+        String body = JSONObjectUtils.toJSONString(Map.of(
+                "error", "invalid_request",
+                "error_description", e.getMessage()));
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    // 保護機構が upstream 呼び出しを拒否した場合は OAuth の temporarily_unavailable を 503 と Retry-After で返す
+    @ExceptionHandler(TokenEndpointUnavailableException.class)
+    public ResponseEntity<String> handleTokenEndpointUnavailable(TokenEndpointUnavailableException e) {
+        String body = JSONObjectUtils.toJSONString(Map.of(
+                "error", "temporarily_unavailable",
+                "error_description", "token endpoint is overloaded or unavailable (" + e.reason() + ")"));
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1L, (e.retryAfterMillis() + 999L) / 1000L)))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    // 成功レスポンスのみ 1 度だけパースし、ID トークン検証とセッションへの保持で共有する（エラー・不正な JSON は null）
+    private static TokenResponse parseTokenResponse(String body) {
+        try {
+            return TokenEndpointResponse.parse(body) instanceof TokenResponse tokens ? tokens : null;
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    // レスポンスに id_token があれば、署名と iss/aud/exp/nonce をローカルで検証してクレームを返す（検証しない場合は null）。
+    // authorization_code の場合は発行済みフローの nonce が必須
+    private JWTClaimsSet validateIdToken(TokenResponse tokens, TokenCall call) {
+        if (!idTokenValidationEnabled || tokens == null || !tokens.hasIdToken()) {
+            return null;
+        }
+        LazyJwt idToken = tokens.idToken();
+        if (idToken == null) {
+            throw new IdTokenValidationException("id_token is not a signed JWT");
+        }
+        if (call.expectedNonce() == null && "authorization_code".equals(call.form().get("grant_type"))) {
+            // 発行したフローが見つからない（不明・使用済みの state）場合は nonce を確認できないため受け付けない
+            throw new IdTokenValidationException("no pending authorization for this state; cannot verify id_token nonce");
+        }
+        return call.validator().validate(idToken, call.form().get("client_id"), call.expectedNonce());
+    }
+
+    // token エンドポイントと送信する form を組み立てる（同期・非同期で共通）
+    private TokenCall prepareTokenCall(String tokenEndpoint, String code, String codeVerifierParam, String redirectUri,
+                                       String clientId, String clientSecret, String grantType, String state,
+                                       HttpServletRequest request, HttpServletResponse response) {
+        // discovery で得た token_endpoint を使う（テナント経由の場合はそのテナントの discovery と JWKS）。
+        // 別の token_endpoint を指定された場合は、id_token の issuer と署名鍵を確認できないため受け付けない
+        Tenant tenant = tenantRegistry.resolve(request);
+        String endpoint = (tenant != null ? tenant.metadata() : discoveryService.current()).tokenEndpoint();
+        if (tokenEndpoint != null && !tokenEndpoint.isBlank() && !tokenEndpoint.equals(endpoint)) {
+            throw new IllegalArgumentException("token_endpoint must be the provider's token endpoint (" + endpoint + ")");
+        }
+        IdTokenValidator validator = tenant != null ? tenant.idTokenValidator() : idTokenValidator;
+        HttpClient httpClient = tenant != null ? tenant.httpClient() : null;
 
         String codeVerifier = null;
-        String sessionKey = null;
+        String expectedNonce = null;
 
-        // PKCE: セッションから取り出したcode_challenge_methodがnullでなければ、
-        // セッションから code_verifier を取得
-        if (session.getAttribute("code_challenge_method") != null) {
-            // リクエストパラメータの code_verifier を優先、なければセッションから取得（state に紐付け）
+        if (sealedFlowCookie.enabled()) {
+            // Cookie モード: 暗号化 Cookie を検証・消費して code_verifier と nonce を取り出す（セッションは作らない）
+            PendingAuthorization pending = sealedFlowCookie.consume(request, response, state);
             codeVerifier = (codeVerifierParam != null && !codeVerifierParam.isBlank()) ? codeVerifierParam : null;
-            sessionKey = (state != null && !state.isBlank()) ? "code_verifier:" + state : "code_verifier";
-            if (codeVerifier == null) {
-                Object cvObj = session.getAttribute(sessionKey);
-                if (cvObj != null) {
-                    codeVerifier = cvObj.toString();
-                    // セッションから取得した場合はワンタイムにする
-                    session.removeAttribute(sessionKey);
+            if (pending != null) {
+                if (codeVerifier == null && pending.codeChallengeMethod() != null) {
+                    codeVerifier = pending.codeVerifier();
                 }
+                expectedNonce = pending.nonce();
             }
-            logger.debug("code_verifier: " + codeVerifier);
+            HttpSession existing = request.getSession(false);
+            return new TokenCall(endpoint, buildForm(grantType, code, redirectUri, clientId, clientSecret, codeVerifier),
+                    expectedNonce, existing != null ? existing.getId() : null, existing, validator, httpClient);
         }
 
+        HttpSession session = request.getSession(true);
+
+        // state に対応するフローを 1 回限りで取り出す（同じ state の同時リクエストでも取り出せるのは 1 つだけ）。
+        // フローを開始したブラウザ（binding Cookie）以外からは取り出せない
+        PendingAuthorization pending = flowStateStore.consume(state, flowBindingCookie.binding(request));
 
+        // PKCE: セッションから取り出したcode_challenge_methodがnullでなければ（別ノードで authorize した場合は
+        // 発行済みフローに code_challenge_method があれば）、ストアから code_verifier を取得
+        boolean pkce = session.getAttribute("code_challenge_method") != null
+                || (pending != null && pending.codeChallengeMethod() != null);
+        if (pkce) {
+            // リクエストパラメータの code_verifier を優先、なければ state に紐付けて保存したものを使う
+            codeVerifier = (codeVerifierParam != null && !codeVerifierParam.isBlank()) ? codeVerifierParam : null;
+            boolean fromRequest = codeVerifier != null;
+            if (codeVerifier == null && pending != null) {
+                codeVerifier = pending.codeVerifier();
+            }
+            // 値はログに出さない（どこから取ったかだけ）
+            logger.debug("[PKCE]code_verifier: {}", fromRequest ? "request" : codeVerifier != null ? "flow" : "missing");
+        }
+
+        // authorization_flow で発行した nonce（ID トークン検証用）
+        expectedNonce = pending != null ? pending.nonce() : null;
+
+        return new TokenCall(endpoint, buildForm(grantType, code, redirectUri, clientId, clientSecret, codeVerifier),
+                expectedNonce, session.getId(), session, validator, httpClient);
+    }
+
+    private static Map<String, String> buildForm(String grantType, String code, String redirectUri, String clientId,
+                                                 String clientSecret, String codeVerifier) {
         Map<String, String> form = new LinkedHashMap<>();
         if (grantType != null && !grantType.isBlank()) form.put("grant_type", grantType);
         if (code != null && !code.isBlank()) form.put("code", code);
@@ -71,19 +259,10 @@ public class TokenRequestController {
         if (clientSecret != null && !clientSecret.isBlank()) form.put("client_secret", clientSecret);
         // PKCE: セッションまたはリクエストから取り出した code_verifier を送る
         if (codeVerifier != null && !codeVerifier.isBlank()) form.put("code_verifier", codeVerifier);
-
-        // OidcClientApplication のユーティリティで token エンドポイントに POST
-        return OidcClientApplication.requestToken(endpoint, form);
+        return form;
     }
 
-    private String buildDefaultTokenEndpoint() {
-        String host = keycloakHost == null ? "" : keycloakHost.trim();
-        String ctx = keycloakContextPath == null ? "" : keycloakContextPath.trim();
-
-        if (host.endsWith("/")) host = host.substring(0, host.length() - 1);
-        if (!ctx.startsWith("/")) ctx = "/" + ctx;
-        if (ctx.endsWith("/")) ctx = ctx.substring(0, ctx.length() - 1);
-
-        return host + ctx + "/token";
+    private record TokenCall(String endpoint, Map<String, String> form, String expectedNonce, String sessionId,
+                             HttpSession session, IdTokenValidator validator, HttpClient httpClient) {
     }
-}
\ No newline at end of file
+}
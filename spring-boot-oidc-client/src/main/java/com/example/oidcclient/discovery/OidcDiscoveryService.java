@@ -0,0 +1,164 @@
+package com.example.oidcclient.discovery;
+
+import com.example.oidcclient.client.RetryPolicy;
+import com.nimbusds.jose.util.JSONObjectUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * OIDC discovery ドキュメント（.well-known/openid-configuration）をメモリにキャッシュする。
+ * <ul>
+ *   <li>起動完了時に 1 度取得し、以降は TTL を過ぎても古い値を返しつつバックグラウンドで再取得する（stale-while-revalidate）</li>
+ *   <li>取得処理は常に 1 本だけ走らせ、失敗後は failure-backoff の間は再取得しない（Keycloak 再起動時の集中を防ぐ）</li>
+ *   <li>接続エラーと 5xx は RetryPolicy の範囲で再送する</li>
+ *   <li>一度も取得できていない間は keycloak.host + keycloak.context-path から組み立てたエンドポイントを返し、取得の完了は待たない</li>
+ * </ul>
+ */
+@Component
+public class OidcDiscoveryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OidcDiscoveryService.class);
+
+    private final HttpClient httpClient;
+    private final RetryPolicy retryPolicy;
+    private final URI discoveryUri;
+    private final long ttlNanos;
+    private final long failureBackoffNanos;
+    private final Duration fetchTimeout;
+    private final OidcProviderMetadata fallback;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<OidcProviderMetadata>> inFlight = new AtomicReference<>();
+    private volatile long lastFailureAt;
+    private volatile boolean failedOnce;
+
+    private record Snapshot(OidcProviderMetadata metadata, long fetchedAt) {
+    }
+
+    public OidcDiscoveryService(
+            HttpClient keycloakHttpClient,
+            RetryPolicy retryPolicy,
+            @Value("${keycloak.host:http://localhost:8080}") String keycloakHost,
+            @Value("${keycloak.context-path:/realms/myrealm/protocol/openid-connect}") String keycloakContextPath,
+            @Value("${keycloak.discovery.url:}") String discoveryUrl,
+            @Value("${keycloak.discovery.ttl:5m}") Duration ttl,
+            @Value("${keycloak.discovery.failure-backoff:30s}") Duration failureBackoff,
+            @Value("${keycloak.discovery.fetch-timeout:5s}") Duration fetchTimeout) {
+        this.httpClient = keycloakHttpClient;
+        this.retryPolicy = retryPolicy;
+        this.ttlNanos = ttl.toNanos();
+        this.failureBackoffNanos = failureBackoff.toNanos();
+        this.fetchTimeout = fetchTimeout;
+
+        // Keycloak の issuer は {host}/realms/{realm}。context-path から /protocol/openid-connect を外して求める
+        this.fallback = OidcProviderMetadata.forKeycloak(keycloakHost, keycloakContextPath);
+        this.discoveryUri = URI.create((discoveryUrl == null || discoveryUrl.isBlank())
+                ? fallback.issuer() + "/.well-known/openid-configuration"
+                : discoveryUrl.trim());
+    }
+
+    /**
+     * 現在のメタデータを返す。ブロックはせず、TTL 切れならバックグラウンドで再取得を開始する。
+     * 一度も取得できていない間は取得を開始（取得中・failure-backoff 中なら何もしない）してフォールバックを返す。
+     */
+    public OidcProviderMetadata current() {
+        Snapshot s = snapshot.get();
+        if (s != null) {
+            if (System.nanoTime() - s.fetchedAt() >= ttlNanos) {
+                refreshAsync();
+            }
+            return s.metadata();
+        }
+        // Keycloak が落ちている間、リクエストスレッドを fetch-timeout ずつ待たせない
+        refreshAsync();
+        return fallback;
+    }
+
+    /**
+     * discovery ドキュメントを再取得する。既に取得中であればその Future を返し、新たなリクエストは送らない。
+     * 失敗時は直前のメタデータ（無ければフォールバック）で完了する。
+     */
+    public CompletableFuture<OidcProviderMetadata> refreshAsync() {
+        CompletableFuture<OidcProviderMetadata> running = inFlight.get();
+        if (running != null) {
+            return running;
+        }
+        if (inBackoff()) {
+            return CompletableFuture.completedFuture(lastKnownOrFallback());
+        }
+        CompletableFuture<OidcProviderMetadata> mine = new CompletableFuture<>();
+        if (!inFlight.compareAndSet(null, mine)) {
+            CompletableFuture<OidcProviderMetadata> other = inFlight.get();
+            return other != null ? other : CompletableFuture.completedFuture(lastKnownOrFallback());
+        }
+        fetch().whenComplete((metadata, ex) -> {
+            if (ex == null) {
+                snapshot.set(new Snapshot(metadata, System.nanoTime()));
+                failedOnce = false;
+                logger.debug("discovery document refreshed: issuer={}", metadata.issuer());
+                inFlight.set(null);
+                mine.complete(metadata);
+            } else {
+                lastFailureAt = System.nanoTime();
+                failedOnce = true;
+                logger.warn("failed to fetch discovery document from {}: {}", discoveryUri, ex.toString());
+                inFlight.set(null);
+                mine.complete(lastKnownOrFallback());
+            }
+        });
+        return mine;
+    }
+
+    // 起動完了時にウォームアップ（リクエスト処理をブロックしないよう非同期で取得）
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        refreshAsync();
+    }
+
+    private CompletableFuture<OidcProviderMetadata> fetch() {
+        HttpRequest request = HttpRequest.newBuilder(discoveryUri)
+                .timeout(fetchTimeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        try {
+            return retryPolicy.executeAsync(() -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()),
+                            response -> response.statusCode() >= 500, false)
+                    .thenApply(response -> {
+                        if (response.statusCode() != 200) {
+                            throw new IllegalStateException("unexpected status " + response.statusCode());
+                        }
+                        try {
+                            return OidcProviderMetadata.fromDocument(JSONObjectUtils.parse(response.body()));
+                        } catch (ParseException e) {
+                            throw new IllegalStateException("invalid discovery document", e);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private boolean inBackoff() {
+        return failedOnce && System.nanoTime() - lastFailureAt < failureBackoffNanos;
+    }
+
+    private OidcProviderMetadata lastKnownOrFallback() {
+        Snapshot s = snapshot.get();
+        return s != null ? s.metadata() : fallback;
+    }
+}
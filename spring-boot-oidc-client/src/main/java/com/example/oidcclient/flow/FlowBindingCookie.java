@@ -0,0 +1,104 @@
+package com.example.oidcclient.flow;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * session モードの認可フローを開始したブラウザに紐付けるための Cookie。
+ * 値はランダムな 256 bit で、ストアにはそのハッシュだけを binding として保存する
+ * （state を知っていても、同じ Cookie を持たない相手はフローを完了・消費できない）。
+ * セッションではなく Cookie にするのは、jdbc ストアで別のノードが token request を受けても照合できるようにするため。
+ */
+@Component
+public class FlowBindingCookie {
+
+    private static final int VALUE_BYTES = 32;
+    // base64url（パディングなし）で 32 バイト
+    private static final int VALUE_LENGTH = 43;
+
+    private final String cookieName;
+    private final boolean secure;
+    private final SecureRandom random = new SecureRandom();
+
+    public FlowBindingCookie(
+            @Value("${app.flow-state.binding-cookie.name:oidc_flow_binding}") String cookieName,
+            @Value("${app.flow-state.cookie.secure:false}") boolean secure) {
+        this.cookieName = cookieName;
+        this.secure = secure;
+    }
+
+    /**
+     * リクエストの Cookie に対応する binding を返す。Cookie が無い（または不正な）場合は新しく発行して Set-Cookie する。
+     * 同じブラウザで複数のフローを並行して始めても同じ値を使う。
+     */
+    public String bind(HttpServletRequest request, HttpServletResponse response) {
+        String value = read(request);
+        if (value == null) {
+            byte[] raw = new byte[VALUE_BYTES];
+            random.nextBytes(raw);
+            value = Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+            response.addHeader(HttpHeaders.SET_COOKIE, ResponseCookie.from(cookieName, value)
+                    .httpOnly(true)
+                    .secure(secure)
+                    .sameSite("Lax")
+                    .path("/")
+                    .build()
+                    .toString());
+        }
+        return hash(value);
+    }
+
+    /**
+     * リクエストの Cookie に対応する binding（Cookie が無ければ null）。
+     */
+    public String binding(HttpServletRequest request) {
+        String value = read(request);
+        return value == null ? null : hash(value);
+    }
+
+    private String read(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie c : cookies) {
+            if (cookieName.equals(c.getName()) && isWellFormed(c.getValue())) {
+                return c.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static boolean isWellFormed(String value) {
+        if (value == null || value.length() != VALUE_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (!(ch >= 'A' && ch <= 'Z' || ch >= 'a' && ch <= 'z' || ch >= '0' && ch <= '9' || ch == '-' || ch == '_')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
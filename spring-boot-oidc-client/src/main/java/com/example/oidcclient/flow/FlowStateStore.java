@@ -0,0 +1,47 @@
+package com.example.oidcclient.flow;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * 発行済みで未使用の認可フロー（state をキーにした code_verifier / nonce / code_challenge_method）の保持先。
+ * app.flow-state.store.type で実装を切り替える（memory: ノード内、jdbc: 全ノードで共有）。
+ * token request 時に必要なフロー情報はすべてここから取り出すため、jdbc を使えば
+ * どのノードで始まったフローでも別のノードで完了できる。
+ * フローは開始したブラウザ（PendingAuthorization.binding）に紐付け、別のブラウザからは取り出せない。
+ * 共有するのはフローの途中状態だけで、token request 以降の状態（HttpSession、SessionTokenRefreshManager の
+ * リフレッシュトークン）はノード内に残る（ログイン後は sticky session が必要）。
+ */
+public interface FlowStateStore {
+
+    /**
+     * フローを登録する。受け付けられない（上限に達している・同じ state が登録済み）場合は false。
+     * requester はフローを開始したブラウザ（FlowBindingCookie の binding）で、実装によってはブラウザごとの件数上限に使う。
+     * リモートアドレスはロードバランサや NAT の後ろでは全員同じになるため使わない。
+     */
+    boolean put(PendingAuthorization pending, String requester);
+
+    /**
+     * state に対応するフローを取り出して削除する。全ノードを通じて 1 回だけ成功し、無い・期限切れの場合は null。
+     * binding が登録時のものと一致しない場合も null を返し、フローは削除しない（他人の state で消費させない）。
+     */
+    PendingAuthorization consume(String state, String binding);
+
+    /**
+     * state に対応するフローを update の結果で置き換え、置き換えた後のフローを返す。無い・binding が一致しない場合は null。
+     * 件数上限は登録時のものをそのまま引き継ぐ（置き換えで数え直さない）。
+     * 既定の実装は consume してから put し直すだけなので、件数上限のある実装は上書きすること。
+     */
+    default PendingAuthorization replace(String state, String binding, UnaryOperator<PendingAuthorization> update) {
+        PendingAuthorization issued = consume(state, binding);
+        if (issued == null) {
+            return null;
+        }
+        PendingAuthorization replaced = update.apply(issued);
+        return put(replaced, replaced.binding()) ? replaced : null;
+    }
+
+    /**
+     * 保持しているフローの件数（概数）。
+     */
+    int occupancy();
+}
@@ -0,0 +1,324 @@
+package com.example.oidcclient.flow;
+
+import jakarta.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 認可フローを DB（MySQL 等）に保持し、全ノードで共有するストア（app.flow-state.store.type=jdbc）。
+ * <ul>
+ *   <li>put はメモリ上の書き込み待ちに入れるだけで、flush-interval ごと（または batch-size 到達時）に 1 本の PreparedStatement でまとめて INSERT する</li>
+ *   <li>自ノードで登録したフローは near-cache に残し、consume 時の SELECT を省く（DELETE は常に行う）</li>
+ *   <li>consume は binding を照合してから DELETE し、その更新件数で勝者を決めるため、複数ノードから同じ state を使っても成功するのは 1 回だけ</li>
+ *   <li>期限切れの行は expires_at のインデックスを使った DELETE で定期的にまとめて削除する</li>
+ * </ul>
+ * 書き込みは flush-interval だけ遅れるが、利用者が Keycloak でログインして戻るまでの時間より十分短い前提。
+ * 件数の上限は書き込み待ちの max-pending-writes のみで、呼び出し元ごとの上限は設けない（requester は使わない）。
+ * binding 列は後から追加したため、既存のテーブルには ALTER TABLE で追加すること。
+ */
+public class JdbcFlowStateStore implements FlowStateStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcFlowStateStore.class);
+
+    private static final String CREATE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS oidc_pending_authorization ("
+            + "state VARCHAR(64) NOT NULL PRIMARY KEY, "
+            + "code_verifier VARCHAR(128), "
+            + "nonce VARCHAR(128), "
+            + "code_challenge_method VARCHAR(16), "
+            + "issued_at BIGINT NOT NULL, "
+            + "binding VARCHAR(64), "
+            + "expires_at BIGINT NOT NULL)";
+    private static final String CREATE_INDEX_SQL =
+            "CREATE INDEX idx_oidc_pending_authorization_expires_at ON oidc_pending_authorization (expires_at)";
+    private static final String INSERT_SQL = "INSERT INTO oidc_pending_authorization "
+            + "(state, code_verifier, nonce, code_challenge_method, issued_at, binding, expires_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_SQL = "SELECT code_verifier, nonce, code_challenge_method, issued_at, binding "
+            + "FROM oidc_pending_authorization WHERE state = ? AND expires_at > ?";
+    private static final String DELETE_SQL = "DELETE FROM oidc_pending_authorization WHERE state = ?";
+    private static final String SWEEP_SQL = "DELETE FROM oidc_pending_authorization WHERE expires_at <= ?";
+    private static final String COUNT_SQL = "SELECT COUNT(*) FROM oidc_pending_authorization";
+
+    private final DataSource dataSource;
+    private final long ttlMillis;
+    private final int batchSize;
+    private final int nearCacheSize;
+    private final int maxPendingWrites;
+
+    // まだ DB に書いていないフロー
+    private final ConcurrentHashMap<String, PendingAuthorization> unflushed = new ConcurrentHashMap<>();
+    // INSERT 中のフロー（コミットまで consume を待たせる）
+    private final ConcurrentHashMap<String, PendingAuthorization> flushing = new ConcurrentHashMap<>();
+    // 自ノードで登録し DB へ書き込み済みのフロー
+    private final ConcurrentHashMap<String, PendingAuthorization> nearCache = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ScheduledExecutorService worker;
+    private volatile int storedCount;
+
+    public JdbcFlowStateStore(DataSource dataSource, Duration ttl, int batchSize, Duration flushInterval,
+                              Duration sweepInterval, int nearCacheSize, int maxPendingWrites, boolean initializeSchema) {
+        this.dataSource = dataSource;
+        this.ttlMillis = ttl.toMillis();
+        this.batchSize = Math.max(1, batchSize);
+        this.nearCacheSize = Math.max(0, nearCacheSize);
+        this.maxPendingWrites = Math.max(this.batchSize, maxPendingWrites);
+        if (initializeSchema) {
+            initializeSchema();
+        }
+        this.worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "flow-state-jdbc");
+            t.setDaemon(true);
+            return t;
+        });
+        worker.scheduleWithFixedDelay(this::flushQuietly, flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+        worker.scheduleWithFixedDelay(this::sweepQuietly, sweepInterval.toMillis(), sweepInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean put(PendingAuthorization pending, String requester) {
+        if (unflushed.size() >= maxPendingWrites) {
+            // DB への書き込みが追いついていない
+            logger.warn("flow state write buffer is full ({}); rejecting new flow", maxPendingWrites);
+            return false;
+        }
+        if (unflushed.putIfAbsent(pending.state(), pending) != null) {
+            return false;
+        }
+        if (unflushed.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            worker.execute(this::flushQuietly);
+        }
+        return true;
+    }
+
+    @Override
+    public PendingAuthorization consume(String state, String binding) {
+        if (state == null || state.isBlank()) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        // まだ書き込んでいなければ、書き込みを取り消すだけでよい
+        PendingAuthorization local = takeUnflushed(state, binding);
+        if (local != null) {
+            return isExpired(local, now) ? null : local;
+        }
+        if (flushing.containsKey(state)) {
+            // INSERT のコミットを待ってから DB を見る
+            flushLock.lock();
+            flushLock.unlock();
+            // 書き込みに失敗して書き込み待ちへ戻された場合
+            local = takeUnflushed(state, binding);
+            if (local != null) {
+                return isExpired(local, now) ? null : local;
+            }
+        }
+        try (Connection conn = dataSource.getConnection()) {
+            PendingAuthorization cached = nearCache.get(state);
+            PendingAuthorization found = cached != null ? cached : select(conn, state, now);
+            if (found == null) {
+                return null;
+            }
+            if (!found.isBoundTo(binding)) {
+                logger.debug("pending authorization requested from another browser; ignoring");
+                return null;
+            }
+            nearCache.remove(state);
+            try (PreparedStatement delete = conn.prepareStatement(DELETE_SQL)) {
+                delete.setString(1, state);
+                // 削除できたノードだけが使える
+                if (delete.executeUpdate() != 1) {
+                    return null;
+                }
+            }
+            return isExpired(found, now) ? null : found;
+        } catch (SQLException e) {
+            logger.warn("failed to consume flow state: {}", e.toString());
+            return null;
+        }
+    }
+
+    // 書き込み待ちから binding の一致するフローを取り除く。無い・不一致・書き込みに回された場合は null
+    private PendingAuthorization takeUnflushed(String state, String binding) {
+        PendingAuthorization local = unflushed.get(state);
+        if (local == null || !local.isBoundTo(binding)) {
+            return null;
+        }
+        return unflushed.remove(state, local) ? local : null;
+    }
+
+    @Override
+    public int occupancy() {
+        return storedCount + unflushed.size() + flushing.size();
+    }
+
+    /**
+     * 書き込み待ちのフローをまとめて INSERT する。失敗した分は次回に再試行する。
+     */
+    public void flush() throws SQLException {
+        flushLock.lock();
+        try {
+            flushRequested.set(false);
+            List<PendingAuthorization> batch = new ArrayList<>(batchSize);
+            for (Iterator<Map.Entry<String, PendingAuthorization>> it = unflushed.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, PendingAuthorization> e = it.next();
+                // 先に flushing に入れておき、consume から常にどちらかで見つかるようにする。
+                // consume と競合した場合は consume 側を優先する
+                flushing.put(e.getKey(), e.getValue());
+                if (unflushed.remove(e.getKey(), e.getValue())) {
+                    batch.add(e.getValue());
+                } else {
+                    flushing.remove(e.getKey());
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try (Connection conn = dataSource.getConnection()) {
+                insertBatch(conn, batch);
+            } catch (SQLException e) {
+                for (PendingAuthorization p : batch) {
+                    unflushed.putIfAbsent(p.state(), p);
+                }
+                throw e;
+            } finally {
+                flushing.clear();
+            }
+            for (PendingAuthorization p : batch) {
+                if (nearCache.size() < nearCacheSize) {
+                    nearCache.put(p.state(), p);
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 期限切れの行を削除し、件数を更新する。
+     */
+    public void sweep() throws SQLException {
+        long now = System.currentTimeMillis();
+        nearCache.values().removeIf(p -> isExpired(p, now));
+        unflushed.values().removeIf(p -> isExpired(p, now));
+        try (Connection conn = dataSource.getConnection()) {
+            try (PreparedStatement sweep = conn.prepareStatement(SWEEP_SQL)) {
+                sweep.setLong(1, now);
+                int removed = sweep.executeUpdate();
+                if (removed > 0) {
+                    logger.debug("swept {} expired flow states", removed);
+                }
+            }
+            try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(COUNT_SQL)) {
+                storedCount = rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    private void insertBatch(Connection conn, List<PendingAuthorization> batch) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (PreparedStatement insert = conn.prepareStatement(INSERT_SQL)) {
+            int n = 0;
+            for (PendingAuthorization p : batch) {
+                insert.setString(1, p.state());
+                insert.setString(2, p.codeVerifier());
+                insert.setString(3, p.nonce());
+                insert.setString(4, p.codeChallengeMethod());
+                insert.setLong(5, p.issuedAt());
+                insert.setString(6, p.binding());
+                insert.setLong(7, p.issuedAt() + ttlMillis);
+                insert.addBatch();
+                if (++n % batchSize == 0) {
+                    insert.executeBatch();
+                }
+            }
+            if (n % batchSize != 0) {
+                insert.executeBatch();
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static PendingAuthorization select(Connection conn, String state, long now) throws SQLException {
+        try (PreparedStatement select = conn.prepareStatement(SELECT_SQL)) {
+            select.setString(1, state);
+            select.setLong(2, now);
+            try (ResultSet rs = select.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                return new PendingAuthorization(state, rs.getString(1), rs.getString(2), rs.getString(3), rs.getLong(4),
+                        rs.getString(5));
+            }
+        }
+    }
+
+    private boolean isExpired(PendingAuthorization pending, long now) {
+        return now - pending.issuedAt() >= ttlMillis;
+    }
+
+    private void initializeSchema() {
+        try (Connection conn = dataSource.getConnection(); Statement st = conn.createStatement()) {
+            st.execute(CREATE_TABLE_SQL);
+            try {
+                st.execute(CREATE_INDEX_SQL);
+            } catch (SQLException e) {
+                // 既に存在する場合
+                logger.debug("flow state index not created: {}", e.getMessage());
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("failed to initialize flow state schema", e);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException | RuntimeException e) {
+            logger.warn("failed to write flow states: {}", e.toString());
+        }
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (SQLException | RuntimeException e) {
+            logger.warn("failed to sweep flow states: {}", e.toString());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+        flushQuietly();
+        if (dataSource instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                logger.debug("failed to close flow state data source: {}", e.toString());
+            }
+        }
+    }
+}
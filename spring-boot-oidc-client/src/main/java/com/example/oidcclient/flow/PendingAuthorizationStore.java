@@ -0,0 +1,211 @@
+package com.example.oidcclient.flow;
+
+import com.example.oidcclient.util.TimingWheel;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 発行済みで未使用の認可フロー（state をキーにした code_verifier / nonce）をノード内に保持するストア（app.flow-state.store.type=memory）。
+ * <ul>
+ *   <li>件数は capacity で上限を設け、超えた分の新規フローは受け付けない（放置されたフローでメモリが増え続けない）</li>
+ *   <li>ブラウザ（binding）ごとにも max-per-requester で上限を設け、1 つのブラウザが capacity を使い切れないようにする。
+ *       リモートアドレスは使わない（プロキシや NAT の後ろでは全員が同じ上限を共有してしまう）</li>
+ *   <li>TTL 切れのエントリは TimingWheel で tick ごとにまとめて削除する</li>
+ *   <li>consume は binding を照合してから ConcurrentHashMap の remove で取り出し、同じ state の同時リクエストでも 1 つだけが成功する</li>
+ * </ul>
+ * ロックは取らず、件数の管理は CAS、統計は LongAdder で行う。
+ */
+public class PendingAuthorizationStore implements FlowStateStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(PendingAuthorizationStore.class);
+
+    private final int capacity;
+    private final int maxPerRequester;
+    private final long ttlMillis;
+
+    private final ConcurrentHashMap<String, Held> entries;
+    // ブラウザごとの保持件数（0 件になったら削除する）
+    private final ConcurrentHashMap<String, Integer> perRequester = new ConcurrentHashMap<>();
+    private final AtomicInteger occupancy = new AtomicInteger();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder consumed = new LongAdder();
+    private final TimingWheel<String> wheel;
+    private final ScheduledExecutorService ticker;
+
+    // requester は件数を戻すために一緒に持つ
+    private record Held(PendingAuthorization pending, String requester) {
+    }
+
+    /**
+     * maxPerRequester が 0 以下の場合は呼び出し元ごとの上限を設けない。
+     */
+    public PendingAuthorizationStore(int capacity, int maxPerRequester, Duration ttl, Duration tick, int wheelSize) {
+        this.capacity = Math.max(1, capacity);
+        this.maxPerRequester = maxPerRequester;
+        this.ttlMillis = ttl.toMillis();
+        this.entries = new ConcurrentHashMap<>(Math.min(this.capacity, 1 << 16));
+        this.wheel = new TimingWheel<>(tick.toMillis(), wheelSize, System.currentTimeMillis());
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pending-auth-wheel");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::evictExpired, tick.toMillis(), tick.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean put(PendingAuthorization pending, String requester) {
+        if (!reserve()) {
+            rejected.increment();
+            logger.warn("pending authorization store is full (capacity={}); rejecting new flow", capacity);
+            return false;
+        }
+        String owner = maxPerRequester > 0 ? requester : null;
+        if (owner != null && perRequester.merge(owner, 1, Integer::sum) > maxPerRequester) {
+            releaseRequester(owner);
+            occupancy.decrementAndGet();
+            rejected.increment();
+            logger.debug("too many pending authorizations from one browser (max={}); rejecting new flow", maxPerRequester);
+            return false;
+        }
+        Held held = new Held(pending, owner);
+        if (entries.putIfAbsent(pending.state(), held) != null) {
+            release(held);
+            return false;
+        }
+        wheel.schedule(pending.state(), pending.issuedAt() + ttlMillis);
+        return true;
+    }
+
+    @Override
+    public PendingAuthorization consume(String state, String binding) {
+        if (state == null || state.isBlank()) {
+            return null;
+        }
+        Held held = entries.get(state);
+        if (held == null) {
+            return null;
+        }
+        PendingAuthorization pending = held.pending();
+        if (!pending.isBoundTo(binding)) {
+            logger.debug("pending authorization requested from another browser; ignoring");
+            return null;
+        }
+        if (!entries.remove(state, held)) {
+            return null;
+        }
+        release(held);
+        if (isExpired(pending, System.currentTimeMillis())) {
+            evicted.increment();
+            return null;
+        }
+        consumed.increment();
+        return pending;
+    }
+
+    @Override
+    public PendingAuthorization replace(String state, String binding, UnaryOperator<PendingAuthorization> update) {
+        if (state == null || state.isBlank()) {
+            return null;
+        }
+        while (true) {
+            Held held = entries.get(state);
+            if (held == null || !held.pending().isBoundTo(binding)) {
+                return null;
+            }
+            // 件数と TTL（issuedAt）は登録時のものを引き継ぐ
+            PendingAuthorization replaced = update.apply(held.pending());
+            if (entries.replace(state, held, new Held(replaced, held.requester()))) {
+                return replaced;
+            }
+        }
+    }
+
+    @Override
+    public int occupancy() {
+        return occupancy.get();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long evictedCount() {
+        return evicted.sum();
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    public long consumedCount() {
+        return consumed.sum();
+    }
+
+    // 上限を超えない場合のみ件数を 1 増やす
+    private boolean reserve() {
+        int current;
+        do {
+            current = occupancy.get();
+            if (current >= capacity) {
+                return false;
+            }
+        } while (!occupancy.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private void release(Held held) {
+        occupancy.decrementAndGet();
+        if (held.requester() != null) {
+            releaseRequester(held.requester());
+        }
+    }
+
+    private void releaseRequester(String requester) {
+        perRequester.computeIfPresent(requester, (k, n) -> n <= 1 ? null : n - 1);
+    }
+
+    private boolean isExpired(PendingAuthorization pending, long now) {
+        return now - pending.issuedAt() >= ttlMillis;
+    }
+
+    // tick ごとに期限の来た state をまとめて削除する（consume 済みのものは何もしない）
+    private void evictExpired() {
+        try {
+            long now = System.currentTimeMillis();
+            List<String> due = wheel.advance(now);
+            for (String state : due) {
+                Held held = entries.get(state);
+                if (held == null) {
+                    continue;
+                }
+                if (!isExpired(held.pending(), now)) {
+                    // tick の切り捨てで期限より少し早く取り出された場合は次の tick に回す
+                    wheel.schedule(state, held.pending().issuedAt() + ttlMillis);
+                } else if (entries.remove(state, held)) {
+                    release(held);
+                    evicted.increment();
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("pending authorization eviction failed: {}", e.toString());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.oidcclient.flow;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 認可フローの途中状態（state, code_verifier, nonce）を HttpSession ではなく暗号化 Cookie に保持する（app.flow-state.mode=cookie）。
+ * <ul>
+ *   <li>AES-256-GCM で暗号化・改ざん検知し、Cookie 名を AAD に含める</li>
+ *   <li>値はバイナリで詰めて base64url 化し、max-size を超えるものは発行も受理もしない</li>
+ *   <li>使用済みの state をノード内の小さな集合で ttl の間だけ覚え、同じ Cookie の再利用（リプレイ）を拒否する。
+ *       集合は replay.max-entries を上限とし、期限の早い順に並べたキューの先頭から期限切れを取り除く。
+ *       上限に達している間は（リプレイを見逃さないよう）新しいフローの完了を拒否する</li>
+ * </ul>
+ * 全ノードで同じ app.flow-state.cookie.secret を設定すれば、どのノードでもフローを完了できる。
+ */
+@Component
+public class SealedFlowCookie {
+
+    private static final Logger logger = LoggerFactory.getLogger(SealedFlowCookie.class);
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+
+    private final boolean enabled;
+    private final String cookieName;
+    private final Duration ttl;
+    private final int maxSize;
+    private final boolean secure;
+    private final int replayMaxEntries;
+    private final SecretKey key;
+    private final SecureRandom random = new SecureRandom();
+
+    // 使用済み state -> 失効時刻（エポックミリ秒）と、同じものを失効時刻の早い順に並べたキュー。
+    // 消費はログイン 1 回につき 1 度だけなので、両方をまとめて 1 つのロックで守る
+    private final Map<String, Long> consumed = new HashMap<>();
+    private final PriorityQueue<Used> expiry = new PriorityQueue<>(Comparator.comparingLong(Used::expiresAt));
+
+    private record Used(String state, long expiresAt) {
+    }
+
+    public SealedFlowCookie(
+            @Value("${app.flow-state.mode:session}") String mode,
+            @Value("${app.flow-state.cookie.name:oidc_flow}") String cookieName,
+            @Value("${app.flow-state.ttl:10m}") Duration ttl,
+            @Value("${app.flow-state.cookie.max-size:1024}") int maxSize,
+            @Value("${app.flow-state.cookie.secure:false}") boolean secure,
+            @Value("${app.flow-state.cookie.secret:}") String secret,
+            @Value("${app.flow-state.replay.max-entries:100000}") int replayMaxEntries) {
+        this.enabled = "cookie".equalsIgnoreCase(mode == null ? "" : mode.trim());
+        this.cookieName = cookieName;
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+        this.secure = secure;
+        this.replayMaxEntries = replayMaxEntries;
+        this.key = deriveKey(secret, enabled);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * フロー情報を封印して Set-Cookie する。
+     */
+    public void write(HttpServletResponse response, PendingAuthorization pending) {
+        String value = seal(pending);
+        if (value.length() > maxSize) {
+            throw new IllegalStateException("sealed flow cookie exceeds " + maxSize + " bytes");
+        }
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie(value, ttl).toString());
+    }
+
+    /**
+     * Cookie からフロー情報を取り出して消費する（Cookie は削除）。
+     * Cookie が無い・改ざん・期限切れ・state 不一致・使用済みの場合は null。
+     */
+    public PendingAuthorization consume(HttpServletRequest request, HttpServletResponse response, String expectedState) {
+        String value = read(request);
+        if (value == null) {
+            return null;
+        }
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie("", Duration.ZERO).toString());
+
+        PendingAuthorization pending = unseal(value);
+        if (pending == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (now - pending.issuedAt() > ttl.toMillis()) {
+            logger.debug("sealed flow cookie expired");
+            return null;
+        }
+        if (expectedState != null && !expectedState.isBlank() && !expectedState.equals(pending.state())) {
+            logger.debug("sealed flow cookie state mismatch");
+            return null;
+        }
+        if (!markConsumed(pending.state(), pending.issuedAt() + ttl.toMillis(), now)) {
+            logger.warn("sealed flow cookie replayed or replay cache full (max-entries={})", replayMaxEntries);
+            return null;
+        }
+        return pending;
+    }
+
+    String seal(PendingAuthorization pending) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(pending.issuedAt());
+            writeString(out, pending.state());
+            writeString(out, pending.codeVerifier());
+            writeString(out, pending.nonce());
+            writeString(out, pending.codeChallengeMethod());
+            out.flush();
+
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(cookieName.getBytes(StandardCharsets.US_ASCII));
+            byte[] sealed = cipher.doFinal(bytes.toByteArray());
+
+            ByteBuffer buf = ByteBuffer.allocate(IV_LENGTH + sealed.length).put(iv).put(sealed);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(buf.array());
+        } catch (IOException | GeneralSecurityException e) {
+            throw new IllegalStateException("failed to seal flow state", e);
+        }
+    }
+
+    PendingAuthorization unseal(String value) {
+        if (value.length() > maxSize) {
+            return null;
+        }
+        try {
+            byte[] raw = Base64.getUrlDecoder().decode(value);
+            if (raw.length <= IV_LENGTH) {
+                return null;
+            }
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, raw, 0, IV_LENGTH));
+            cipher.updateAAD(cookieName.getBytes(StandardCharsets.US_ASCII));
+            byte[] plain = cipher.doFinal(raw, IV_LENGTH, raw.length - IV_LENGTH);
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(plain));
+            if (in.readByte() != FORMAT_VERSION) {
+                return null;
+            }
+            long issuedAt = in.readLong();
+            return new PendingAuthorization(readString(in), readString(in), readString(in), readString(in), issuedAt);
+        } catch (IllegalArgumentException | IOException | GeneralSecurityException e) {
+            logger.debug("rejecting sealed flow cookie: {}", e.toString());
+            return null;
+        }
+    }
+
+    private synchronized boolean markConsumed(String state, long expiresAt, long now) {
+        // 期限切れは先頭から取り除く（期限の来ていないものまで走査しない）
+        for (Used head = expiry.peek(); head != null && head.expiresAt() <= now; head = expiry.peek()) {
+            expiry.poll();
+            consumed.remove(head.state(), head.expiresAt());
+        }
+        if (consumed.containsKey(state)) {
+            return false;
+        }
+        if (consumed.size() >= replayMaxEntries) {
+            // 使用済みを覚えきれない間はリプレイを見逃さないよう受け付けない
+            return false;
+        }
+        consumed.put(state, expiresAt);
+        expiry.add(new Used(state, expiresAt));
+        return true;
+    }
+
+    private String read(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie c : cookies) {
+            if (cookieName.equals(c.getName()) && c.getValue() != null && !c.getValue().isEmpty()) {
+                return c.getValue();
+            }
+        }
+        return null;
+    }
+
+    private ResponseCookie cookie(String value, Duration maxAge) {
+        return ResponseCookie.from(cookieName, value)
+                .httpOnly(true)
+                .secure(secure)
+                .sameSite("Lax")
+                .path("/")
+                .maxAge(maxAge)
+                .build();
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+        out.writeShort(b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] b = new byte[in.readUnsignedShort()];
+        in.readFully(b);
+        return b.length == 0 ? null : new String(b, StandardCharsets.UTF_8);
+    }
+
+    // secret が未指定の場合は起動ごとのランダム鍵（単一ノード向け）
+    private static SecretKey deriveKey(String secret, boolean enabled) {
+        try {
+            byte[] material;
+            if (secret == null || secret.isBlank()) {
+                material = new byte[32];
+                new SecureRandom().nextBytes(material);
+                if (enabled) {
+                    logger.warn("app.flow-state.cookie.secret is not set; using a random key (flows cannot span nodes or restarts)");
+                }
+            } else {
+                material = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+            }
+            return new SecretKeySpec(material, "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
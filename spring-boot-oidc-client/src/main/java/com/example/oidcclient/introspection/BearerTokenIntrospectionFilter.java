@@ -0,0 +1,108 @@
+package com.example.oidcclient.introspection;
+
+import com.nimbusds.jose.util.JSONObjectUtils;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Authorization: Bearer のトークンを introspection で確認し、active であればこのリクエストを認証済みにする。
+ * scope は SCOPE_ 付きの権限にする。セッションには保存しない（リクエストごとに確認し、結果はキャッシュから返る）。
+ * <ul>
+ *   <li>Bearer ヘッダが無いリクエストはそのまま通す（認可の判断は後段の AuthorizationFilter に任せる）</li>
+ *   <li>inactive なトークンは 401（WWW-Authenticate: Bearer error="invalid_token"）</li>
+ *   <li>introspection エンドポイントに問い合わせられない場合は 503（temporarily_unavailable）</li>
+ * </ul>
+ * SecurityConfig のフィルタチェーンにだけ登録する（Bean にしてサーブレットフィルタとして二重登録しない）。
+ */
+public class BearerTokenIntrospectionFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BearerTokenIntrospectionFilter.class);
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final TokenIntrospector introspector;
+
+    public BearerTokenIntrospectionFilter(TokenIntrospector introspector) {
+        this.introspector = introspector;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return bearerToken(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String token = bearerToken(request);
+        IntrospectionResult result;
+        try {
+            result = introspector.introspect(token);
+        } catch (Exception e) {
+            logger.warn("token introspection unavailable: {}", e.toString());
+            writeError(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "temporarily_unavailable",
+                    "token introspection is unavailable");
+            return;
+        }
+        if (!result.active()) {
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+            writeError(response, HttpServletResponse.SC_UNAUTHORIZED, "invalid_token", "the access token is not active");
+            return;
+        }
+
+        PreAuthenticatedAuthenticationToken authentication =
+                new PreAuthenticatedAuthenticationToken(result.principalName(), null, authorities(result.scope()));
+        authentication.setDetails(result);
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(authentication);
+        SecurityContextHolder.setContext(context);
+        chain.doFilter(request, response);
+    }
+
+    private static String bearerToken(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header == null || !header.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            return null;
+        }
+        String token = header.substring(BEARER_PREFIX.length()).trim();
+        return token.isEmpty() ? null : token;
+    }
+
+    private static List<GrantedAuthority> authorities(String scope) {
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        if (scope != null) {
+            for (String s : scope.split(" ")) {
+                if (!s.isEmpty()) authorities.add(new SimpleGrantedAuthority("SCOPE_" + s));
+            }
+        }
+        return authorities;
+    }
+
+    private static void writeError(HttpServletResponse response, int status, String error, String description)
+            throws IOException {
+        response.setStatus(status);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(JSONObjectUtils.toJSONString(Map.of(
+                "error", error,
+                "error_description", description)));
+    }
+}
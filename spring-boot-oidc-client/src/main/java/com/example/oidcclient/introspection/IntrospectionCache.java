@@ -0,0 +1,276 @@
+package com.example.oidcclient.introspection;
+
+import com.example.oidcclient.util.FrequencySketch;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * introspection 結果のキャッシュ。キーはトークンの SHA-256（トークン自体はメモリに残さない）。
+ * <ul>
+ *   <li>active な結果はトークンの exp と max-ttl の早い方まで、inactive な結果は negative-ttl の間だけ保持する</li>
+ *   <li>同じトークンの取得が同時に来た場合は 1 回だけ upstream を呼び、他は同じ結果を待つ</li>
+ *   <li>件数は max-entries までとし、W-TinyLFU（小さな LRU のウィンドウ + 頻度で入れ替えを判定する SLRU）で追い出す</li>
+ * </ul>
+ * 読み取りは ConcurrentHashMap の get のみ。追い出し順の更新はロックが空いているときだけ行い、
+ * 混雑時はアクセスの記録を捨てる（順序が多少ずれるだけで結果は変わらない）。
+ */
+@Component
+public class IntrospectionCache {
+
+    private final int maxEntries;
+    private final long maxTtlMillis;
+    private final long negativeTtlMillis;
+    private final Duration followerTimeout;
+    private final LongSupplier clock;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<IntrospectionResult>> loading = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // 以下は policyLock で保護する
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final LinkedHashSet<String> window = new LinkedHashSet<>();
+    private final LinkedHashSet<String> probation = new LinkedHashSet<>();
+    private final LinkedHashSet<String> protectedKeys = new LinkedHashSet<>();
+    private final int windowMax;
+    private final int mainMax;
+    private final int protectedMax;
+
+    private record Entry(IntrospectionResult result, long expiresAt) {
+    }
+
+    public IntrospectionCache(
+            @Value("${app.resource-server.cache.max-entries:10000}") int maxEntries,
+            @Value("${app.resource-server.cache.max-ttl:5m}") Duration maxTtl,
+            @Value("${app.resource-server.cache.negative-ttl:10s}") Duration negativeTtl,
+            @Value("${keycloak.http.read-timeout:10s}") Duration followerTimeout) {
+        this(maxEntries, maxTtl, negativeTtl, followerTimeout, System::currentTimeMillis);
+    }
+
+    IntrospectionCache(int maxEntries, Duration maxTtl, Duration negativeTtl, Duration followerTimeout,
+                       LongSupplier clock) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxTtlMillis = maxTtl.toMillis();
+        this.negativeTtlMillis = negativeTtl.toMillis();
+        this.followerTimeout = followerTimeout;
+        this.clock = clock;
+        this.sketch = new FrequencySketch(this.maxEntries);
+        // ウィンドウは全体の 1%、残りのうち 80% を protected にする
+        this.windowMax = Math.max(1, this.maxEntries / 100);
+        this.mainMax = this.maxEntries - windowMax;
+        this.protectedMax = (int) (mainMax * 0.8);
+    }
+
+    /**
+     * キャッシュ済みの結果があれば返し、無ければ loader で取得してキャッシュする。loader の例外はキャッシュしない。
+     */
+    public IntrospectionResult get(String token, Callable<IntrospectionResult> loader) throws Exception {
+        String key = keyOf(token);
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (clock.getAsLong() < entry.expiresAt()) {
+                hits.increment();
+                recordAccess(key);
+                return entry.result();
+            }
+            remove(key, entry);
+        }
+        misses.increment();
+        return loadOnce(key, loader);
+    }
+
+    /**
+     * トークンの結果を破棄する（ログアウト等で無効になったことが分かった場合）。
+     */
+    public void invalidate(String token) {
+        String key = keyOf(token);
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            remove(key, entry);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    private IntrospectionResult loadOnce(String key, Callable<IntrospectionResult> loader) throws Exception {
+        CompletableFuture<IntrospectionResult> mine = new CompletableFuture<>();
+        CompletableFuture<IntrospectionResult> running = loading.putIfAbsent(key, mine);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            IntrospectionResult result = loader.call();
+            store(key, result);
+            mine.complete(result);
+            return result;
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, mine);
+        }
+    }
+
+    private IntrospectionResult await(CompletableFuture<IntrospectionResult> leader) throws Exception {
+        try {
+            return leader.get(followerTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception ex) throw ex;
+            throw e;
+        } catch (TimeoutException e) {
+            throw new HttpTimeoutException("timed out waiting for an in-flight introspection request");
+        }
+    }
+
+    private void store(String key, IntrospectionResult result) {
+        long now = clock.getAsLong();
+        long expiresAt;
+        if (result.active()) {
+            expiresAt = now + maxTtlMillis;
+            if (result.exp() > 0) {
+                expiresAt = Math.min(expiresAt, result.exp() * 1000L);
+            }
+        } else {
+            expiresAt = now + negativeTtlMillis;
+        }
+        if (expiresAt <= now) {
+            return;
+        }
+        policyLock.lock();
+        try {
+            if (entries.put(key, new Entry(result, expiresAt)) == null) {
+                admit(key);
+            } else {
+                onAccess(key);
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    private void remove(String key, Entry entry) {
+        policyLock.lock();
+        try {
+            if (entries.remove(key, entry)) {
+                if (!window.remove(key) && !probation.remove(key)) {
+                    protectedKeys.remove(key);
+                }
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    // ヒット時の記録。ロックが取れない場合は記録を捨てる
+    private void recordAccess(String key) {
+        if (!policyLock.tryLock()) {
+            return;
+        }
+        try {
+            if (entries.containsKey(key)) {
+                onAccess(key);
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    // 新しいキーはウィンドウに入れ、あふれたものは probation の先頭と頻度を比べて残す方を決める
+    private void admit(String key) {
+        sketch.increment(key.hashCode());
+        window.add(key);
+        if (window.size() <= windowMax) {
+            return;
+        }
+        String candidate = removeFirst(window);
+        if (probation.size() + protectedKeys.size() < mainMax) {
+            probation.add(candidate);
+            return;
+        }
+        String victim = !probation.isEmpty() ? removeFirst(probation) : removeFirst(protectedKeys);
+        if (victim != null && sketch.frequency(candidate.hashCode()) > sketch.frequency(victim.hashCode())) {
+            evict(victim);
+            probation.add(candidate);
+        } else {
+            if (victim != null) {
+                // 残す側は probation の末尾に戻す
+                probation.add(victim);
+            }
+            evict(candidate);
+        }
+    }
+
+    // ウィンドウ内は末尾へ、probation は protected へ昇格（あふれた protected の先頭は probation へ戻す）
+    private void onAccess(String key) {
+        sketch.increment(key.hashCode());
+        if (window.remove(key)) {
+            window.add(key);
+        } else if (probation.remove(key)) {
+            protectedKeys.add(key);
+            if (protectedKeys.size() > protectedMax) {
+                probation.add(removeFirst(protectedKeys));
+            }
+        } else if (protectedKeys.remove(key)) {
+            protectedKeys.add(key);
+        }
+    }
+
+    private void evict(String key) {
+        entries.remove(key);
+        evictions.increment();
+    }
+
+    private static String removeFirst(LinkedHashSet<String> set) {
+        Iterator<String> it = set.iterator();
+        if (!it.hasNext()) {
+            return null;
+        }
+        String first = it.next();
+        it.remove();
+        return first;
+    }
+
+    private static String keyOf(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.oidcclient.introspection;
+
+import java.util.Map;
+
+/**
+ * introspection エンドポイント（RFC 7662）の応答のうち、認可に使う項目。
+ * sid は IdP のログインセッション（back-channel logout の照合用）、exp はエポック秒（応答に無い場合は 0）。
+ */
+public record IntrospectionResult(boolean active, String subject, String sid, String username, String clientId,
+                                  String scope, long exp) {
+
+    private static final IntrospectionResult INACTIVE = new IntrospectionResult(false, null, null, null, null, null, 0L);
+
+    public static IntrospectionResult inactive() {
+        return INACTIVE;
+    }
+
+    /**
+     * 応答の JSON オブジェクトから作る。active が true でなければ（他の項目に関わらず）inactive とする。
+     */
+    public static IntrospectionResult fromResponse(Map<String, Object> response) {
+        if (!Boolean.TRUE.equals(response.get("active"))) {
+            return INACTIVE;
+        }
+        return new IntrospectionResult(true,
+                string(response, "sub"),
+                string(response, "sid"),
+                string(response, "username"),
+                string(response, "client_id"),
+                string(response, "scope"),
+                response.get("exp") instanceof Number n ? n.longValue() : 0L);
+    }
+
+    /**
+     * 認証済みユーザとして扱う名前（username、無ければ sub、どちらも無ければ client_id）。
+     */
+    public String principalName() {
+        if (username != null) return username;
+        if (subject != null) return subject;
+        return clientId;
+    }
+
+    private static String string(Map<String, Object> response, String key) {
+        return response.get(key) instanceof String s ? s : null;
+    }
+}
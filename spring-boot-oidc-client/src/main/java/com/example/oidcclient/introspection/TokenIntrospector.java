@@ -0,0 +1,157 @@
+package com.example.oidcclient.introspection;
+
+import com.example.oidcclient.client.TokenEndpointClient;
+import com.example.oidcclient.client.TokenEndpointUnavailableException;
+import com.example.oidcclient.discovery.OidcDiscoveryService;
+import com.example.oidcclient.util.QueryEncoder;
+import com.nimbusds.jose.util.JSONObjectUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bearer トークンを Keycloak の introspection エンドポイント（RFC 7662）で確認する。
+ * 結果は IntrospectionCache に保持し、同じトークンでは TTL の間 upstream を呼ばない。
+ * エンドポイントは app.resource-server.introspection-endpoint、未指定時は discovery の introspection_endpoint。
+ * 呼び出しは TokenEndpointClient.send で token の呼び出しと同じ接続数の上限・保護機構を通し、
+ * クライアント認証は HTTP Basic（RFC 6749 2.3.1）で送る。トークンとシークレットはログに出さない。
+ */
+@Component
+public class TokenIntrospector {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenIntrospector.class);
+
+    /**
+     * introspection 呼び出し 1 回ごとの結果の通知先（メトリクス用）。
+     * outcome は active / inactive / error / timeout / rejected / io_error。
+     */
+    public interface Listener {
+        void onIntrospection(String outcome, long elapsedNanos);
+    }
+
+    private final OidcDiscoveryService discoveryService;
+    private final IntrospectionCache cache;
+    private final TokenEndpointClient client;
+    private final String introspectionEndpoint;
+    private final String clientId;
+    private final String authorization;
+    private final Duration readTimeout;
+
+    private volatile Listener listener;
+
+    public TokenIntrospector(
+            OidcDiscoveryService discoveryService,
+            IntrospectionCache cache,
+            TokenEndpointClient client,
+            @Value("${app.resource-server.introspection-endpoint:}") String introspectionEndpoint,
+            @Value("${app.resource-server.client-id:}") String clientId,
+            @Value("${app.resource-server.client-secret:}") String clientSecret,
+            @Value("${keycloak.http.read-timeout:10s}") Duration readTimeout) {
+        this.discoveryService = discoveryService;
+        this.cache = cache;
+        this.client = client;
+        this.introspectionEndpoint = introspectionEndpoint == null ? "" : introspectionEndpoint.trim();
+        this.clientId = clientId;
+        this.authorization = basicAuthorization(clientId, clientSecret);
+        this.readTimeout = readTimeout;
+    }
+
+    public void useListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * トークンの introspection 結果（キャッシュ済みであればそれ）を返す。
+     * エンドポイントに到達できない、またはエラー応答（invalid_client 等）の場合は IOException を投げる。
+     */
+    public IntrospectionResult introspect(String token) throws Exception {
+        return cache.get(token, () -> call(token));
+    }
+
+    private IntrospectionResult call(String token) throws Exception {
+        String endpoint = introspectionEndpoint.isEmpty()
+                ? discoveryService.current().introspectionEndpoint()
+                : introspectionEndpoint;
+        long start = System.nanoTime();
+        String body;
+        try {
+            body = client.send(buildRequest(endpoint, token));
+        } catch (Exception e) {
+            notify(failureOutcome(e), start);
+            throw e;
+        }
+        Map<String, Object> response;
+        try {
+            response = JSONObjectUtils.parse(body);
+        } catch (ParseException e) {
+            notify("error", start);
+            throw new IOException("invalid introspection response from " + endpoint, e);
+        }
+        if (!response.containsKey("active")) {
+            // active を含まない応答はクライアント認証エラー等。inactive としてキャッシュしない
+            notify("error", start);
+            logger.warn("introspection failed at {}: {}", endpoint, response.get("error"));
+            throw new IOException("introspection failed: " + response.get("error"));
+        }
+        IntrospectionResult result = IntrospectionResult.fromResponse(response);
+        notify(Boolean.TRUE.equals(response.get("active")) ? "active" : "inactive", start);
+        return result;
+    }
+
+    private HttpRequest buildRequest(String endpoint, String token) {
+        Map<String, String> form = new LinkedHashMap<>();
+        form.put("token", token);
+        form.put("token_type_hint", "access_token");
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create(endpoint))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .header("Accept", "application/json");
+        if (authorization != null) {
+            request.header("Authorization", authorization);
+        } else if (clientId != null && !clientId.isBlank()) {
+            // シークレットの無い（public）クライアントは client_id だけを form で送る
+            form.put("client_id", clientId);
+        }
+        if (readTimeout != null && !readTimeout.isZero()) request.timeout(readTimeout);
+        return request.POST(HttpRequest.BodyPublishers.ofString(QueryEncoder.encodeForm(form))).build();
+    }
+
+    // client_id / client_secret はそれぞれ form エンコードしてから連結する（RFC 6749 2.3.1）
+    static String basicAuthorization(String clientId, String clientSecret) {
+        if (clientId == null || clientId.isBlank() || clientSecret == null || clientSecret.isBlank()) {
+            return null;
+        }
+        String credentials = QueryEncoder.encode(clientId) + ":" + QueryEncoder.encode(clientSecret);
+        return "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String failureOutcome(Throwable error) {
+        if (error instanceof TokenEndpointUnavailableException) return "rejected";
+        if (error instanceof HttpTimeoutException) return "timeout";
+        return "io_error";
+    }
+
+    // 通知先の例外は introspection の結果に影響させない
+    private void notify(String outcome, long startNanos) {
+        Listener l = listener;
+        if (l == null) return;
+        try {
+            l.onIntrospection(outcome, System.nanoTime() - startNanos);
+        } catch (RuntimeException e) {
+            logger.debug("introspection listener failed: {}", e.toString());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.oidcclient.jwt;
+
+import com.example.oidcclient.discovery.OidcDiscoveryService;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.ParseException;
+import java.time.Duration;
+
+/**
+ * ID トークンをローカルで検証する（署名、iss、aud、exp、nonce）。
+ * 署名鍵は JwksCache の verifier を使うため、Keycloak への問い合わせはキャッシュミス時のみ。
+ */
+@Component
+public class IdTokenValidator {
+
+    private final JwksCache jwksCache;
+    private final OidcDiscoveryService discoveryService;
+    private final long clockSkewMillis;
+
+    public IdTokenValidator(
+            JwksCache jwksCache,
+            OidcDiscoveryService discoveryService,
+            @Value("${oidc.id-token.clock-skew:30s}") Duration clockSkew) {
+        this.jwksCache = jwksCache;
+        this.discoveryService = discoveryService;
+        this.clockSkewMillis = clockSkew.toMillis();
+    }
+
+    /**
+     * ID トークンを検証してクレームを返す。検証に失敗した場合は IdTokenValidationException を投げる。
+     * clientId / expectedNonce が null の場合、それぞれ aud / nonce の確認は行わない。
+     */
+    public JWTClaimsSet validate(String idToken, String clientId, String expectedNonce) {
+        LazyJwt jwt = LazyJwt.parse(idToken);
+        if (jwt == null) {
+            throw new IdTokenValidationException("id_token is not a signed JWT");
+        }
+        return validate(jwt, clientId, expectedNonce);
+    }
+
+    /**
+     * validate の LazyJwt 版（token レスポンスのボディから切り出さずに検証する）。
+     */
+    public JWTClaimsSet validate(LazyJwt idToken, String clientId, String expectedNonce) {
+        SignedJWT jwt;
+        JWTClaimsSet claims;
+        try {
+            jwt = idToken.toSignedJWT();
+            claims = idToken.claims();
+        } catch (ParseException e) {
+            throw new IdTokenValidationException("id_token is not a signed JWT", e);
+        }
+
+        IdTokenChecks.verifySignature(jwt, jwksCache.verifier(jwt.getHeader().getKeyID()));
+        IdTokenChecks.verifyClaims(claims, discoveryService.current().issuer(), clientId, expectedNonce, clockSkewMillis);
+        return claims;
+    }
+}
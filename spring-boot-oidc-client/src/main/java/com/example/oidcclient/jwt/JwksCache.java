@@ -0,0 +1,165 @@
+package com.example.oidcclient.jwt;
+
+import com.example.oidcclient.client.RetryPolicy;
+import com.example.oidcclient.discovery.OidcDiscoveryService;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.jwk.JWKSet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keycloak の JWKS（jwks_uri）を取得し、kid ごとにパース済みの公開鍵から作った JWSVerifier を保持する。
+ * 未知の kid が来た場合のみ再取得する（鍵ローテーション対応）。再取得は refresh-min-interval に 1 回までに制限し、
+ * 同時に来たリクエストは 1 回の取得（Future）を待って結果を共有する。接続エラーと 5xx は RetryPolicy の範囲で再送する。
+ * 取得はロックの外で非同期に行い、その間も既知の kid の検証は現在の鍵で続ける（待つのは未知の kid の呼び出し元だけ）。
+ */
+@Component
+public class JwksCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwksCache.class);
+
+    private final HttpClient httpClient;
+    private final OidcDiscoveryService discoveryService;
+    private final RetryPolicy retryPolicy;
+    private final long minRefreshIntervalNanos;
+    private final Duration fetchTimeout;
+    // 未知の kid の呼び出し元が取得を待つ上限（再送を含む）
+    private final long refreshWaitMillis;
+
+    // kid -> verifier。差し替えは丸ごと行い、読み取りはロック不要
+    private volatile Map<String, JWSVerifier> verifiers = Map.of();
+    // 実行中の再取得。完了時は取得後（失敗時は現在）の verifiers で完了する
+    private final AtomicReference<CompletableFuture<Map<String, JWSVerifier>>> inFlight = new AtomicReference<>();
+    // 以下は refreshLock で保護する（取得の開始判定のみで、通信中は保持しない）
+    private boolean attempted;
+    private long lastRefreshAt;
+    private final Object refreshLock = new Object();
+
+    public JwksCache(
+            HttpClient keycloakHttpClient,
+            OidcDiscoveryService discoveryService,
+            RetryPolicy retryPolicy,
+            @Value("${keycloak.jwks.refresh-min-interval:30s}") Duration minRefreshInterval,
+            @Value("${keycloak.jwks.fetch-timeout:5s}") Duration fetchTimeout) {
+        this.httpClient = keycloakHttpClient;
+        this.discoveryService = discoveryService;
+        this.retryPolicy = retryPolicy;
+        this.minRefreshIntervalNanos = minRefreshInterval.toNanos();
+        this.fetchTimeout = fetchTimeout;
+        this.refreshWaitMillis = fetchTimeout.toMillis() * 3;
+    }
+
+    /**
+     * kid に対応する verifier を返す。見つからなければ（レート制限の範囲で）JWKS を再取得し、それでも無ければ null。
+     */
+    public JWSVerifier verifier(String kid) {
+        String key = kid == null ? "" : kid;
+        JWSVerifier v = verifiers.get(key);
+        if (v != null) {
+            return v;
+        }
+        CompletableFuture<Map<String, JWSVerifier>> refresh = refreshFor(kid, key);
+        if (refresh == null) {
+            return null;
+        }
+        try {
+            return refresh.get(refreshWaitMillis, TimeUnit.MILLISECONDS).get(key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            logger.warn("JWKS refresh did not complete for kid {}: {}", kid, e.toString());
+            return null;
+        }
+    }
+
+    // 実行中の再取得があれば合流し、無ければ（最小間隔を過ぎていれば）開始する。再取得しない場合は null
+    private CompletableFuture<Map<String, JWSVerifier>> refreshFor(String kid, String key) {
+        CompletableFuture<Map<String, JWSVerifier>> running = inFlight.get();
+        if (running != null) {
+            return running;
+        }
+        CompletableFuture<Map<String, JWSVerifier>> mine;
+        synchronized (refreshLock) {
+            running = inFlight.get();
+            if (running != null) {
+                return running;
+            }
+            // 直前に他のスレッドの取得が終わっている場合がある
+            Map<String, JWSVerifier> current = verifiers;
+            if (current.containsKey(key)) {
+                return CompletableFuture.completedFuture(current);
+            }
+            long now = System.nanoTime();
+            // 取得に失敗した場合も含めて、直近に取得を試みていれば再取得しない
+            if (attempted && now - lastRefreshAt < minRefreshIntervalNanos) {
+                logger.debug("unknown kid {} but JWKS was refreshed recently; skipping refresh", kid);
+                return null;
+            }
+            attempted = true;
+            lastRefreshAt = now;
+            mine = new CompletableFuture<>();
+            inFlight.set(mine);
+        }
+        fetch().whenComplete((fetched, error) -> {
+            if (fetched != null) {
+                verifiers = fetched;
+            }
+            inFlight.set(null);
+            mine.complete(verifiers);
+        });
+        return mine;
+    }
+
+    // JWKS を非同期に取得してパースする。失敗時は null で完了する
+    private CompletableFuture<Map<String, JWSVerifier>> fetch() {
+        String jwksUri;
+        HttpRequest request;
+        try {
+            jwksUri = discoveryService.current().jwksUri();
+            request = HttpRequest.newBuilder(URI.create(jwksUri))
+                    .timeout(fetchTimeout)
+                    .header("Accept", "application/json")
+                    .GET()
+                    .build();
+        } catch (RuntimeException e) {
+            logger.warn("failed to fetch JWKS: {}", e.toString());
+            return CompletableFuture.completedFuture(null);
+        }
+        return retryPolicy.executeAsync(() -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()),
+                        r -> r.statusCode() >= 500, false)
+                .handle((response, error) -> {
+                    if (error != null) {
+                        logger.warn("failed to fetch JWKS from {}: {}", jwksUri, error.toString());
+                        return null;
+                    }
+                    if (response.statusCode() != 200) {
+                        logger.warn("failed to fetch JWKS from {}: status {}", jwksUri, response.statusCode());
+                        return null;
+                    }
+                    try {
+                        Map<String, JWSVerifier> parsed = IdTokenChecks.toVerifiers(JWKSet.parse(response.body()));
+                        logger.debug("JWKS refreshed from {}: kids={}", jwksUri, parsed.keySet());
+                        return parsed;
+                    } catch (Exception e) {
+                        logger.warn("failed to parse JWKS from {}: {}", jwksUri, e.toString());
+                        return null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.oidcclient.logout;
+
+import com.example.oidcclient.discovery.OidcDiscoveryService;
+import com.example.oidcclient.jwt.IdTokenChecks;
+import com.example.oidcclient.jwt.IdTokenValidationException;
+import com.example.oidcclient.jwt.JwksCache;
+import com.example.oidcclient.jwt.LazyJwt;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * back-channel logout のログアウトトークン（OpenID Connect Back-Channel Logout 1.0 の 2.6）を検証する。
+ * 署名と iss / aud / exp は ID トークンと同じ確認（IdTokenChecks、鍵は JwksCache）を行い、加えて
+ * iat が max-age 以内であること、events に back-channel logout のイベントがあること、sid か sub があること、
+ * nonce が無いこと（ID トークンの流用でないこと）を確認する。失敗した場合は IdTokenValidationException を投げる。
+ * aud は必ず確認するため、back-channel logout が有効で client-id が空の場合は起動時に失敗させる。
+ */
+@Component
+public class LogoutTokenValidator {
+
+    static final String BACKCHANNEL_LOGOUT_EVENT = "http://schemas.openid.net/event/backchannel-logout";
+
+    private final JwksCache jwksCache;
+    private final OidcDiscoveryService discoveryService;
+    private final String clientId;
+    private final long clockSkewMillis;
+    private final long maxAgeMillis;
+
+    public LogoutTokenValidator(
+            JwksCache jwksCache,
+            OidcDiscoveryService discoveryService,
+            @Value("${app.backchannel-logout.enabled:true}") boolean enabled,
+            @Value("${app.backchannel-logout.client-id:semi_client}") String clientId,
+            @Value("${oidc.id-token.clock-skew:30s}") Duration clockSkew,
+            @Value("${app.backchannel-logout.max-age:5m}") Duration maxAge) {
+        if (enabled && (clientId == null || clientId.isBlank())) {
+            throw new IllegalStateException(
+                    "app.backchannel-logout.client-id must be set when app.backchannel-logout.enabled=true");
+        }
+        this.jwksCache = jwksCache;
+        this.discoveryService = discoveryService;
+        this.clientId = (clientId == null || clientId.isBlank()) ? null : clientId.trim();
+        this.clockSkewMillis = clockSkew.toMillis();
+        this.maxAgeMillis = maxAge.toMillis();
+    }
+
+    /**
+     * ログアウトトークンを検証してクレームを返す。
+     */
+    public JWTClaimsSet validate(String logoutToken) {
+        LazyJwt token = logoutToken == null ? null : LazyJwt.parse(logoutToken);
+        if (token == null) {
+            throw new IdTokenValidationException("logout_token is not a signed JWT");
+        }
+        SignedJWT jwt;
+        JWTClaimsSet claims;
+        try {
+            jwt = token.toSignedJWT();
+            claims = token.claims();
+        } catch (ParseException e) {
+            throw new IdTokenValidationException("logout_token is not a signed JWT", e);
+        }
+
+        IdTokenChecks.verifySignature(jwt, jwksCache.verifier(jwt.getHeader().getKeyID()));
+        IdTokenChecks.verifyClaims(claims, discoveryService.current().issuer(), clientId, null, clockSkewMillis);
+
+        Date iat = claims.getIssueTime();
+        long now = System.currentTimeMillis();
+        if (iat == null || iat.getTime() > now + clockSkewMillis || now - iat.getTime() > maxAgeMillis + clockSkewMillis) {
+            throw new IdTokenValidationException("logout_token iat is missing or out of range");
+        }
+        if (!(claims.getClaim("events") instanceof Map<?, ?> events) || !events.containsKey(BACKCHANNEL_LOGOUT_EVENT)) {
+            throw new IdTokenValidationException("logout_token has no back-channel logout event");
+        }
+        if (claims.getClaim("sid") == null && claims.getSubject() == null) {
+            throw new IdTokenValidationException("logout_token has neither sid nor sub");
+        }
+        if (claims.getClaim("nonce") != null) {
+            throw new IdTokenValidationException("logout_token must not contain nonce");
+        }
+        return claims;
+    }
+}
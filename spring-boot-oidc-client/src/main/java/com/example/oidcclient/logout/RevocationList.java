@@ -0,0 +1,134 @@
+package com.example.oidcclient.logout;
+
+import com.example.oidcclient.util.TimeBucketedBloomFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * back-channel logout で無効になった sid / sub の一覧。
+ * <ul>
+ *   <li>まず時間バケット付きの Bloom filter で判定し、大半を占める「失効していない」リクエストはビットを見るだけで返す</li>
+ *   <li>Bloom filter が陽性の場合のみ正確な集合（値は失効時刻）で確認する（偽陽性でログアウトさせない）</li>
+ *   <li>sid は一致すれば失効、sub は失効時刻より前にログインしたセッションだけを失効とする（再ログイン後は有効）</li>
+ *   <li>retention を過ぎた記録は消える（セッションの最大寿命以上に設定する）</li>
+ * </ul>
+ * 記録されるのは署名を確認したログアウトトークンの値だけなので、件数は retention 内のログアウト数で決まる。
+ */
+@Component
+public class RevocationList {
+
+    private static final Logger logger = LoggerFactory.getLogger(RevocationList.class);
+
+    private final long retentionMillis;
+    private final long sweepIntervalMillis;
+    private final LongSupplier clock;
+    private final TimeBucketedBloomFilter sidFilter;
+    private final TimeBucketedBloomFilter subFilter;
+    private final ConcurrentHashMap<String, Long> revokedSids = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> revokedSubs = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweepAt;
+    private final LongAdder revocations = new LongAdder();
+
+    public RevocationList(
+            @Value("${app.backchannel-logout.retention:12h}") Duration retention,
+            @Value("${app.backchannel-logout.buckets:12}") int buckets,
+            @Value("${app.backchannel-logout.expected-per-bucket:10000}") int expectedPerBucket,
+            @Value("${app.backchannel-logout.false-positive-rate:0.01}") double falsePositiveRate) {
+        this(retention, buckets, expectedPerBucket, falsePositiveRate, System::currentTimeMillis);
+    }
+
+    RevocationList(Duration retention, int buckets, int expectedPerBucket, double falsePositiveRate,
+                   LongSupplier clock) {
+        int bucketCount = Math.max(1, buckets);
+        Duration bucketDuration = Duration.ofMillis(Math.max(1L, retention.toMillis() / bucketCount));
+        this.sidFilter = new TimeBucketedBloomFilter(bucketCount, bucketDuration, expectedPerBucket, falsePositiveRate);
+        this.subFilter = new TimeBucketedBloomFilter(bucketCount, bucketDuration, expectedPerBucket, falsePositiveRate);
+        // Bloom filter はバケット単位で消えるため、正確な集合も同じ期間だけ保持する
+        this.retentionMillis = sidFilter.retentionMillis();
+        this.sweepIntervalMillis = bucketDuration.toMillis();
+        this.clock = clock;
+        this.nextSweepAt = new AtomicLong(clock.getAsLong() + sweepIntervalMillis);
+    }
+
+    /**
+     * sid / sub を失効させる（どちらかは null でもよい）。
+     */
+    public void revoke(String sid, String sub) {
+        long now = clock.getAsLong();
+        // 正確な集合を先に更新する（Bloom filter が陽性になった時点で必ず見つかるように）
+        if (sid != null) {
+            revokedSids.put(sid, now);
+            sidFilter.put(sid, now);
+        }
+        if (sub != null) {
+            revokedSubs.put(sub, now);
+            subFilter.put(sub, now);
+        }
+        revocations.increment();
+        logger.info("session revoked by back-channel logout: sid={}, sub={}", sid, sub);
+        sweep(now);
+    }
+
+    /**
+     * sid が失効していれば true。
+     */
+    public boolean isSidRevoked(String sid) {
+        if (sid == null) {
+            return false;
+        }
+        long now = clock.getAsLong();
+        if (!sidFilter.mightContain(sid, now)) {
+            return false;
+        }
+        Long revokedAt = revokedSids.get(sid);
+        return revokedAt != null && now - revokedAt < retentionMillis;
+    }
+
+    /**
+     * loginAtMillis にログインしたセッション（sid / sub）が失効していれば true。
+     */
+    public boolean isSessionRevoked(String sid, String sub, long loginAtMillis) {
+        if (isSidRevoked(sid)) {
+            return true;
+        }
+        if (sub == null) {
+            return false;
+        }
+        long now = clock.getAsLong();
+        if (!subFilter.mightContain(sub, now)) {
+            return false;
+        }
+        Long revokedAt = revokedSubs.get(sub);
+        return revokedAt != null && now - revokedAt < retentionMillis && loginAtMillis <= revokedAt;
+    }
+
+    /**
+     * 保持している失効記録の数（監視用）。
+     */
+    public int size() {
+        return revokedSids.size() + revokedSubs.size();
+    }
+
+    public long revocationCount() {
+        return revocations.sum();
+    }
+
+    // retention を過ぎた記録を消す（1 バケットの期間に 1 回まで）
+    private void sweep(long now) {
+        long next = nextSweepAt.get();
+        if (now - next < 0 || !nextSweepAt.compareAndSet(next, now + sweepIntervalMillis)) {
+            return;
+        }
+        revokedSids.values().removeIf(at -> now - at >= retentionMillis);
+        revokedSubs.values().removeIf(at -> now - at >= retentionMillis);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.oidcclient.logout;
+
+import com.example.oidcclient.introspection.IntrospectionResult;
+import com.nimbusds.jwt.JWTClaimsSet;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Date;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * back-channel logout で失効したセッションをリクエストごとに RevocationList で確認する。
+ * IdP への問い合わせは行わず、セッション属性（sid / sub / ログイン時刻）を読んで Bloom filter を引くだけ。
+ * <ul>
+ *   <li>失効したセッションは破棄し（保持していたトークンと自動更新の予約も消える）、未ログインとして続行する</li>
+ *   <li>bearerTokens が true の場合、introspection で認証した Bearer トークンの sid も確認し、失効していれば 401</li>
+ * </ul>
+ * SecurityConfig のフィルタチェーンにだけ登録する（BearerTokenIntrospectionFilter の後）。
+ */
+public class SessionRevocationFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionRevocationFilter.class);
+
+    static final String SID_ATTRIBUTE = "oidc.sid";
+    static final String SUB_ATTRIBUTE = "oidc.sub";
+    static final String LOGIN_AT_ATTRIBUTE = "oidc.login-at";
+    private static final String REVOKED_TOKEN_BODY =
+            "{\"error\":\"invalid_token\",\"error_description\":\"the session of the access token has been logged out\"}";
+
+    private final RevocationList revocationList;
+    private final boolean bearerTokens;
+
+    public SessionRevocationFilter(RevocationList revocationList, boolean bearerTokens) {
+        this.revocationList = revocationList;
+        this.bearerTokens = bearerTokens;
+    }
+
+    /**
+     * 検証済みの ID トークンの sid / sub / iat をセッションに記録する（ログアウト時の照合用）。
+     */
+    public static void bindSession(HttpSession session, JWTClaimsSet idTokenClaims) {
+        if (session == null || idTokenClaims == null) {
+            return;
+        }
+        Object sid = idTokenClaims.getClaim("sid");
+        Date iat = idTokenClaims.getIssueTime();
+        session.setAttribute(SID_ATTRIBUTE, sid instanceof String s ? s : null);
+        session.setAttribute(SUB_ATTRIBUTE, idTokenClaims.getSubject());
+        session.setAttribute(LOGIN_AT_ATTRIBUTE, iat != null ? iat.getTime() : System.currentTimeMillis());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        HttpSession session = request.getSession(false);
+        if (session != null && isRevoked(session)) {
+            logger.info("invalidating session revoked by back-channel logout: {}", session.getId());
+            session.invalidate();
+            SecurityContextHolder.clearContext();
+        }
+        if (bearerTokens && request.getHeader(HttpHeaders.AUTHORIZATION) != null) {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication != null && authentication.getDetails() instanceof IntrospectionResult result
+                    && revocationList.isSidRevoked(result.sid())) {
+                SecurityContextHolder.clearContext();
+                response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+                response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                response.getWriter().write(REVOKED_TOKEN_BODY);
+                return;
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+    private boolean isRevoked(HttpSession session) {
+        Object sid = session.getAttribute(SID_ATTRIBUTE);
+        Object sub = session.getAttribute(SUB_ATTRIBUTE);
+        if (sid == null && sub == null) {
+            return false;
+        }
+        long loginAt = session.getAttribute(LOGIN_AT_ATTRIBUTE) instanceof Long l ? l : 0L;
+        return revocationList.isSessionRevoked((String) sid, (String) sub, loginAt);
+    }
+}
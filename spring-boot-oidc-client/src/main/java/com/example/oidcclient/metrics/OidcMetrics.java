@@ -0,0 +1,307 @@
+package com.example.oidcclient.metrics;
+
+import com.example.oidcclient.OidcClientApplication;
+import com.example.oidcclient.client.AdaptiveConcurrencyLimiter;
+import com.example.oidcclient.client.CircuitBreaker;
+import com.example.oidcclient.client.RetryPolicy;
+import com.example.oidcclient.client.TokenEndpointGuard;
+import com.example.oidcclient.client.TokenEndpointGuards;
+import com.example.oidcclient.flow.FlowStateStore;
+import com.example.oidcclient.flow.PendingAuthorizationStore;
+import com.example.oidcclient.introspection.TokenIntrospector;
+import com.example.oidcclient.session.SessionTokenRefreshManager;
+import com.example.oidcclient.tenant.TenantRegistry;
+import com.example.oidcclient.token.TokenEndpointResponse;
+import com.example.oidcclient.token.TokenErrorResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.text.ParseException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * OIDC フローのメトリクス（Actuator / Prometheus で公開）。
+ * <ul>
+ *   <li>oidc.token.request: token エンドポイントの応答時間（grant_type, endpoint, status, outcome）</li>
+ *   <li>oidc.token.errors: OAuth エラーコード・通信エラーの件数（grant_type, error）</li>
+ *   <li>oidc.pkce.generate: PKCE 値の取得時間</li>
+ *   <li>oidc.flow.pending / oidc.flow.evicted / oidc.flow.rejected: 未使用の認可フロー</li>
+ *   <li>oidc.session.tokens: 自動更新対象のセッション数</li>
+ *   <li>oidc.token.guard.limit / oidc.token.guard.inflight: エンドポイントごとの同時実行数の上限と実行中の数</li>
+ *   <li>oidc.token.circuit.state: サーキットブレーカーの状態（0: CLOSED, 1: HALF_OPEN, 2: OPEN）と
+ *       oidc.token.circuit.transitions: 状態遷移の回数（from, to）</li>
+ *   <li>oidc.token.shed: 上限到達・OPEN で upstream を呼ばずに拒否した件数（reason）</li>
+ *   <li>oidc.retry.attempts / oidc.retry.hedges / oidc.retry.budget.exhausted: 再送・ヘッジの件数と、予算切れで再送しなかった件数</li>
+ *   <li>oidc.tenants.active / oidc.tenants.evicted: 生成済みのテナント数と破棄した件数</li>
+ *   <li>oidc.introspection.request: introspection エンドポイントの応答時間（outcome）</li>
+ * </ul>
+ * タグの値は既知の値に丸め、endpoint は realm 単位で max-endpoint-tags 個まで（超えた分は "other"）にして
+ * カーディナリティが増えないようにする。
+ */
+@Component
+public class OidcMetrics implements TokenCallObserver, TokenEndpointGuards.Listener, RetryPolicy.Listener,
+        TokenIntrospector.Listener {
+
+    private static final Set<String> GRANT_TYPES = Set.of(
+            "authorization_code", "refresh_token", "client_credentials", "password");
+    private static final Map<String, String> URN_GRANT_TYPES = Map.of(
+            "urn:ietf:params:oauth:grant-type:token-exchange", "token_exchange",
+            "urn:ietf:params:oauth:grant-type:device_code", "device_code",
+            "urn:ietf:params:oauth:grant-type:jwt-bearer", "jwt_bearer");
+    // RFC 6749 5.2 と Keycloak が返すもの
+    private static final Set<String> OAUTH_ERRORS = Set.of(
+            "invalid_request", "invalid_client", "invalid_grant", "unauthorized_client",
+            "unsupported_grant_type", "invalid_scope", "temporarily_unavailable", "server_error",
+            "access_denied", "invalid_token", "unknown_error");
+
+    private record TimerKey(String grantType, String endpoint, String status) {
+    }
+
+    private record ErrorKey(String grantType, String error) {
+    }
+
+    private final MeterRegistry registry;
+    private final int maxEndpointTags;
+    private final Set<String> endpointTags = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<TimerKey, Timer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ErrorKey, Counter> errors = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Timer> introspectionTimers = new ConcurrentHashMap<>();
+    private final Timer pkceTimer;
+    private final Counter retries;
+    private final Counter hedges;
+    private final Counter retryBudgetExhausted;
+
+    public OidcMetrics(MeterRegistry registry, FlowStateStore flowStateStore, SessionTokenRefreshManager refreshManager,
+                       TokenEndpointGuards guards, RetryPolicy retryPolicy, TenantRegistry tenantRegistry,
+                       TokenIntrospector introspector,
+                       @Value("${app.metrics.max-endpoint-tags:20}") int maxEndpointTags) {
+        this.registry = registry;
+        this.maxEndpointTags = maxEndpointTags;
+        this.pkceTimer = Timer.builder("oidc.pkce.generate")
+                .description("Time to obtain PKCE code_verifier / code_challenge / state / nonce")
+                .register(registry);
+
+        Gauge.builder("oidc.flow.pending", flowStateStore, FlowStateStore::occupancy)
+                .description("Issued authorization flows not yet used by a token request")
+                .register(registry);
+        if (flowStateStore instanceof PendingAuthorizationStore store) {
+            Gauge.builder("oidc.flow.capacity", store, PendingAuthorizationStore::capacity).register(registry);
+            FunctionCounter.builder("oidc.flow.evicted", store, PendingAuthorizationStore::evictedCount)
+                    .description("Authorization flows dropped after the TTL").register(registry);
+            FunctionCounter.builder("oidc.flow.rejected", store, PendingAuthorizationStore::rejectedCount)
+                    .description("Authorization flows rejected because the store was full").register(registry);
+        }
+        Gauge.builder("oidc.session.tokens", refreshManager, SessionTokenRefreshManager::sessionCount)
+                .description("Sessions whose tokens are refreshed in the background")
+                .register(registry);
+        Gauge.builder("oidc.tenants.active", tenantRegistry, TenantRegistry::activeCount)
+                .description("Tenants (realms) with a loaded client and caches")
+                .register(registry);
+        FunctionCounter.builder("oidc.tenants.evicted", tenantRegistry, TenantRegistry::evictedCount)
+                .description("Tenants evicted after being idle or over max-active").register(registry);
+        this.retries = Counter.builder("oidc.retry.attempts")
+                .description("Upstream calls retried after a transient failure").register(registry);
+        this.hedges = Counter.builder("oidc.retry.hedges")
+                .description("Hedged upstream calls sent after the p95 latency").register(registry);
+        this.retryBudgetExhausted = Counter.builder("oidc.retry.budget.exhausted")
+                .description("Retries skipped because the retry budget was exhausted").register(registry);
+
+        OidcClientApplication.useTokenCallObserver(this);
+        guards.useListener(this);
+        retryPolicy.useListener(this);
+        introspector.useListener(this);
+    }
+
+    /**
+     * PKCE 値の取得時間を計測する。
+     */
+    public <T> T recordPkce(Supplier<T> supplier) {
+        return pkceTimer.record(supplier);
+    }
+
+    @Override
+    public void onResponse(String tokenEndpoint, Map<String, String> form, int status, String body, long elapsedNanos) {
+        String grantType = grantTypeTag(form);
+        timer(new TimerKey(grantType, endpointTag(tokenEndpoint), String.valueOf(status)))
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        if (status >= 400 || (body != null && body.contains("\"error\""))) {
+            errorCounter(new ErrorKey(grantType, errorTag(body))).increment();
+        }
+    }
+
+    @Override
+    public void onFailure(String tokenEndpoint, Map<String, String> form, Throwable error, long elapsedNanos) {
+        String grantType = grantTypeTag(form);
+        timer(new TimerKey(grantType, endpointTag(tokenEndpoint), "IO_ERROR")).record(elapsedNanos, TimeUnit.NANOSECONDS);
+        errorCounter(new ErrorKey(grantType, isTimeout(error) ? "timeout" : "io_error")).increment();
+    }
+
+    @Override
+    public void onGuardCreated(TokenEndpointGuard guard) {
+        String endpoint = guardTag(guard);
+        Gauge.builder("oidc.token.guard.limit", guard.limiter(), AdaptiveConcurrencyLimiter::limit)
+                .description("Adaptive concurrency limit for the token endpoint")
+                .tag("endpoint", endpoint).register(registry);
+        Gauge.builder("oidc.token.guard.inflight", guard.limiter(), AdaptiveConcurrencyLimiter::inFlight)
+                .description("Token endpoint calls in flight")
+                .tag("endpoint", endpoint).register(registry);
+        Gauge.builder("oidc.token.circuit.state", guard.breaker(), b -> circuitStateValue(b.state()))
+                .description("Circuit breaker state (0=closed, 1=half_open, 2=open)")
+                .tag("endpoint", endpoint).register(registry);
+    }
+
+    @Override
+    public void onStateChange(TokenEndpointGuard guard, CircuitBreaker.State from, CircuitBreaker.State to) {
+        Counter.builder("oidc.token.circuit.transitions")
+                .description("Circuit breaker state transitions")
+                .tag("endpoint", guardTag(guard))
+                .tag("from", from.name().toLowerCase(Locale.ROOT))
+                .tag("to", to.name().toLowerCase(Locale.ROOT))
+                .register(registry).increment();
+    }
+
+    @Override
+    public void onShed(TokenEndpointGuard guard, String reason) {
+        Counter.builder("oidc.token.shed")
+                .description("Token requests rejected without calling the token endpoint")
+                .tag("endpoint", guardTag(guard))
+                .tag("reason", reason)
+                .register(registry).increment();
+    }
+
+    @Override
+    public void onRetry() {
+        retries.increment();
+    }
+
+    @Override
+    public void onHedge() {
+        hedges.increment();
+    }
+
+    @Override
+    public void onBudgetExhausted() {
+        retryBudgetExhausted.increment();
+    }
+
+    // outcome は TokenIntrospector が決めた固定の値のみ
+    @Override
+    public void onIntrospection(String outcome, long elapsedNanos) {
+        introspectionTimers.computeIfAbsent(outcome, o -> Timer.builder("oidc.introspection.request")
+                        .description("Introspection endpoint latency as seen from this client")
+                        .tag("outcome", o)
+                        .register(registry))
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private String guardTag(TokenEndpointGuard guard) {
+        return TokenEndpointGuards.OVERFLOW.equals(guard.endpoint()) ? "other" : endpointTag(guard.endpoint());
+    }
+
+    static double circuitStateValue(CircuitBreaker.State state) {
+        return switch (state) {
+            case CLOSED -> 0;
+            case HALF_OPEN -> 1;
+            case OPEN -> 2;
+        };
+    }
+
+    private Timer timer(TimerKey key) {
+        Timer timer = timers.get(key);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(key, k -> Timer.builder("oidc.token.request")
+                    .description("Token endpoint latency as seen from this client")
+                    .tag("grant_type", k.grantType())
+                    .tag("endpoint", k.endpoint())
+                    .tag("status", k.status())
+                    .tag("outcome", outcome(k.status()))
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        return timer;
+    }
+
+    private Counter errorCounter(ErrorKey key) {
+        Counter counter = errors.get(key);
+        if (counter == null) {
+            counter = errors.computeIfAbsent(key, k -> Counter.builder("oidc.token.errors")
+                    .description("Token endpoint errors by OAuth error code")
+                    .tag("grant_type", k.grantType())
+                    .tag("error", k.error())
+                    .register(registry));
+        }
+        return counter;
+    }
+
+    static String grantTypeTag(Map<String, String> form) {
+        String grantType = form == null ? null : form.get("grant_type");
+        if (grantType == null) return "none";
+        if (GRANT_TYPES.contains(grantType)) return grantType;
+        return URN_GRANT_TYPES.getOrDefault(grantType, "other");
+    }
+
+    // scheme://host:port/realms/{realm} 単位（token_endpoint はリクエストで任意に指定できるため件数を制限する）
+    String endpointTag(String tokenEndpoint) {
+        String tag;
+        try {
+            URI uri = URI.create(tokenEndpoint);
+            String path = uri.getPath() == null ? "" : uri.getPath();
+            int realms = path.indexOf("/realms/");
+            String realm = "";
+            if (realms >= 0) {
+                int end = path.indexOf('/', realms + "/realms/".length());
+                realm = end > 0 ? path.substring(realms, end) : path.substring(realms);
+            }
+            tag = uri.getHost() + (uri.getPort() > 0 ? ":" + uri.getPort() : "") + realm;
+        } catch (IllegalArgumentException e) {
+            return "invalid";
+        }
+        if (endpointTags.contains(tag)) return tag;
+        if (endpointTags.size() >= maxEndpointTags) return "other";
+        endpointTags.add(tag);
+        return tag;
+    }
+
+    static String errorTag(String body) {
+        if (body == null || body.isEmpty()) return "empty_body";
+        try {
+            if (TokenEndpointResponse.parse(body) instanceof TokenErrorResponse error) {
+                return OAUTH_ERRORS.contains(error.error()) ? error.error() : "other";
+            }
+            return "none";
+        } catch (ParseException e) {
+            return "unparseable_body";
+        }
+    }
+
+    private static String outcome(String status) {
+        if ("IO_ERROR".equals(status)) return "IO_ERROR";
+        char c = status.charAt(0);
+        return switch (c) {
+            case '2' -> "SUCCESS";
+            case '3' -> "REDIRECTION";
+            case '4' -> "CLIENT_ERROR";
+            case '5' -> "SERVER_ERROR";
+            default -> "UNKNOWN";
+        };
+    }
+
+    private static boolean isTimeout(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof HttpTimeoutException) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.oidcclient.metrics;
+
+import java.util.Map;
+
+/**
+ * token エンドポイントへの HTTP 呼び出し 1 回ごとの結果を受け取る（OidcClientApplication.useTokenCallObserver で設定）。
+ * elapsedNanos は HTTP 送信からレスポンス受信まで（同時実行数の空き待ちは含まない）。
+ */
+public interface TokenCallObserver {
+
+    void onResponse(String tokenEndpoint, Map<String, String> form, int status, String body, long elapsedNanos);
+
+    void onFailure(String tokenEndpoint, Map<String, String> form, Throwable error, long elapsedNanos);
+}
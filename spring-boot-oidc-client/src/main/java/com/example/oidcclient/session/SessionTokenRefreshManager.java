@@ -0,0 +1,254 @@
+package com.example.oidcclient.session;
+
+import com.example.oidcclient.client.TokenEndpointClient;
+import com.example.oidcclient.token.TokenEndpointResponse;
+import com.example.oidcclient.token.TokenResponse;
+import com.example.oidcclient.util.TimingWheel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpSessionEvent;
+import jakarta.servlet.http.HttpSessionListener;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * token request で得たリフレッシュトークンをセッションごとに保持し、アクセストークンの期限切れ前に更新する。
+ * <ul>
+ *   <li>更新予定は 1 つの TimingWheel に登録し、1 本のスレッドが tick ごとに期限の来たセッションをまとめて処理する</li>
+ *   <li>Keycloak への同時更新数は max-concurrent で制限し、溢れた分は次の tick に回す（更新の集中を避ける）</li>
+ *   <li>更新予定時刻には jitter を加え、同時刻にログインしたセッションの更新を分散させる</li>
+ * </ul>
+ * セッション破棄時（HttpSessionListener）に保持しているトークンも破棄する。
+ * HttpSession と同じくノード内にだけ保持し、FlowStateStore（jdbc）では共有しない。
+ */
+@Component
+public class SessionTokenRefreshManager implements HttpSessionListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionTokenRefreshManager.class);
+
+    private final TokenEndpointClient tokenEndpointClient;
+    private final boolean enabled;
+    private final long leadTimeMillis;
+    private final long jitterMillis;
+
+    private final ConcurrentHashMap<String, SessionTokens> sessions = new ConcurrentHashMap<>();
+    private final TimingWheel<Scheduled> wheel;
+    private final Semaphore permits;
+    private final ScheduledExecutorService ticker;
+    private final ThreadPoolExecutor refresher;
+
+    // ホイールに登録する要素。generation が一致しない（再ログイン等で置き換えられた）予定は無視する
+    private record Scheduled(String sessionId, long generation) {
+    }
+
+    public SessionTokenRefreshManager(
+            TokenEndpointClient tokenEndpointClient,
+            @Value("${app.session-refresh.enabled:true}") boolean enabled,
+            @Value("${app.session-refresh.lead-time:30s}") Duration leadTime,
+            @Value("${app.session-refresh.jitter:5s}") Duration jitter,
+            @Value("${app.session-refresh.tick:1s}") Duration tick,
+            @Value("${app.session-refresh.wheel-size:512}") int wheelSize,
+            @Value("${app.session-refresh.max-concurrent:8}") int maxConcurrent) {
+        this.tokenEndpointClient = tokenEndpointClient;
+        this.enabled = enabled;
+        this.leadTimeMillis = leadTime.toMillis();
+        this.jitterMillis = jitter.toMillis();
+        this.wheel = new TimingWheel<>(tick.toMillis(), wheelSize, System.currentTimeMillis());
+
+        int concurrency = Math.max(1, maxConcurrent);
+        this.permits = new Semaphore(concurrency);
+        this.refresher = new ThreadPoolExecutor(concurrency, concurrency, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "session-token-refresh");
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.refresher.allowCoreThreadTimeOut(true);
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-token-wheel");
+            t.setDaemon(true);
+            return t;
+        });
+        if (enabled) {
+            ticker.scheduleAtFixedRate(this::onTick, tick.toMillis(), tick.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * token レスポンスを受け取り、リフレッシュトークンがあればセッションに紐付けて更新を予約する。
+     */
+    public void register(String sessionId, String tokenEndpoint, Map<String, String> form, TokenResponse response) {
+        if (!enabled || sessionId == null || response == null || !response.hasRefreshToken()) {
+            return;
+        }
+        SessionTokens tokens = SessionTokens.fromResponse(tokenEndpoint, form.get("client_id"), form.get("client_secret"),
+                response, System.currentTimeMillis());
+        if (tokens == null) {
+            return;
+        }
+        SessionTokens previous = sessions.get(sessionId);
+        tokens.generation = previous == null ? 1 : previous.generation + 1;
+        sessions.put(sessionId, tokens);
+        schedule(sessionId, tokens);
+    }
+
+    /**
+     * セッションに保持している最新のアクセストークン（無ければ null）。
+     */
+    public String accessToken(String sessionId) {
+        SessionTokens tokens = sessions.get(sessionId);
+        return tokens == null ? null : tokens.accessToken;
+    }
+
+    public int sessionCount() {
+        return sessions.size();
+    }
+
+    public void remove(String sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    @Override
+    public void sessionDestroyed(HttpSessionEvent se) {
+        remove(se.getSession().getId());
+    }
+
+    private void schedule(String sessionId, SessionTokens tokens) {
+        long jitter = jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis) : 0L;
+        long refreshAt = tokens.accessExpiresAt - leadTimeMillis - jitter;
+        wheel.schedule(new Scheduled(sessionId, tokens.generation), refreshAt);
+    }
+
+    // tick ごとに期限の来たセッションをまとめて取り出し、同時実行数の範囲で更新を投入する
+    private void onTick() {
+        try {
+            List<Scheduled> due = wheel.advance(System.currentTimeMillis());
+            int deferred = 0;
+            for (Scheduled s : due) {
+                SessionTokens tokens = sessions.get(s.sessionId());
+                if (tokens == null || tokens.generation != s.generation()) {
+                    continue;
+                }
+                if (!permits.tryAcquire()) {
+                    // 同時実行数を超えた分は次の tick に回す
+                    wheel.schedule(s, System.currentTimeMillis());
+                    deferred++;
+                    continue;
+                }
+                refresher.execute(() -> {
+                    try {
+                        refresh(s.sessionId(), tokens);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+            if (!due.isEmpty()) {
+                logger.debug("session token refresh tick: due={}, deferred={}", due.size(), deferred);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("session token refresh tick failed: {}", e.toString());
+        }
+    }
+
+    private void refresh(String sessionId, SessionTokens tokens) {
+        if (System.currentTimeMillis() >= tokens.refreshExpiresAt) {
+            sessions.remove(sessionId, tokens);
+            return;
+        }
+        Map<String, String> form = new LinkedHashMap<>();
+        form.put("grant_type", "refresh_token");
+        form.put("refresh_token", tokens.refreshToken);
+        if (tokens.clientId != null) form.put("client_id", tokens.clientId);
+        if (tokens.clientSecret != null) form.put("client_secret", tokens.clientSecret);
+        try {
+            String body = tokenEndpointClient.requestToken(tokens.tokenEndpoint, form);
+            SessionTokens renewed = SessionTokens.fromResponse(tokens.tokenEndpoint, tokens.clientId, tokens.clientSecret,
+                    parse(body), System.currentTimeMillis());
+            if (renewed == null) {
+                // invalid_grant 等（セッション失効）の場合は保持をやめる
+                logger.debug("refresh_token rejected for session; dropping tokens");
+                sessions.remove(sessionId, tokens);
+                return;
+            }
+            renewed.generation = tokens.generation + 1;
+            if (sessions.replace(sessionId, tokens, renewed)) {
+                schedule(sessionId, renewed);
+            }
+        } catch (Exception e) {
+            // 通信エラー等は少し後に再試行する
+            logger.warn("failed to refresh session tokens: {}", e.toString());
+            wheel.schedule(new Scheduled(sessionId, tokens.generation), System.currentTimeMillis() + leadTimeMillis / 2);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+        refresher.shutdownNow();
+    }
+
+    /**
+     * セッションごとに保持する最小限の情報（セッション数に比例してのみ増える固定サイズ）。
+     */
+    static final class SessionTokens {
+        final String tokenEndpoint;
+        final String clientId;
+        final String clientSecret;
+        final String accessToken;
+        final String refreshToken;
+        final long accessExpiresAt;
+        final long refreshExpiresAt;
+        volatile long generation;
+
+        private SessionTokens(String tokenEndpoint, String clientId, String clientSecret, String accessToken,
+                              String refreshToken, long accessExpiresAt, long refreshExpiresAt) {
+            this.tokenEndpoint = tokenEndpoint;
+            this.clientId = clientId;
+            this.clientSecret = clientSecret;
+            this.accessToken = accessToken;
+            this.refreshToken = refreshToken;
+            this.accessExpiresAt = accessExpiresAt;
+            this.refreshExpiresAt = refreshExpiresAt;
+        }
+
+        // 成功レスポンス（access_token, refresh_token, expires_in を含む）以外は null。
+        // トークンはボディ全体ではなく切り出した文字列だけを保持する
+        static SessionTokens fromResponse(String tokenEndpoint, String clientId, String clientSecret,
+                                          TokenResponse response, long now) {
+            if (response == null || !response.hasAccessToken() || !response.hasRefreshToken()
+                    || response.expiresIn() < 0) {
+                return null;
+            }
+            long refreshExpiresAt = response.refreshExpiresIn() > 0
+                    ? now + response.refreshExpiresIn() * 1000L
+                    : Long.MAX_VALUE;
+            return new SessionTokens(tokenEndpoint, clientId, clientSecret, response.accessToken(),
+                    response.refreshToken(), now + response.expiresIn() * 1000L, refreshExpiresAt);
+        }
+    }
+
+    private static TokenResponse parse(String body) {
+        try {
+            return TokenEndpointResponse.parse(body) instanceof TokenResponse tokens ? tokens : null;
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+}
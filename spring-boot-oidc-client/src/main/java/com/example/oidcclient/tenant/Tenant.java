@@ -0,0 +1,96 @@
+package com.example.oidcclient.tenant;
+
+import com.example.oidcclient.discovery.OidcDiscoveryService;
+import com.example.oidcclient.discovery.OidcProviderMetadata;
+import com.example.oidcclient.jwt.IdTokenValidator;
+import com.example.oidcclient.jwt.JwksCache;
+
+import java.net.http.HttpClient;
+
+/**
+ * 1 つの realm（テナント）分の接続先。
+ * エンドポイントは生成時に組み立て済みで、discovery・JWKS のキャッシュと HttpClient はテナントごとに持つ。
+ */
+public final class Tenant {
+
+    private final String realm;
+    private final OidcProviderMetadata endpoints;
+    private final HttpClient httpClient;
+    private final OidcDiscoveryService discoveryService;
+    private final JwksCache jwksCache;
+    private final IdTokenValidator idTokenValidator;
+    private volatile long lastAccessNanos;
+
+    Tenant(String realm, OidcProviderMetadata endpoints, HttpClient httpClient, OidcDiscoveryService discoveryService,
+           JwksCache jwksCache, IdTokenValidator idTokenValidator, long now) {
+        this.realm = realm;
+        this.endpoints = endpoints;
+        this.httpClient = httpClient;
+        this.discoveryService = discoveryService;
+        this.jwksCache = jwksCache;
+        this.idTokenValidator = idTokenValidator;
+        this.lastAccessNanos = now;
+    }
+
+    public String realm() {
+        return realm;
+    }
+
+    public String issuer() {
+        return endpoints.issuer();
+    }
+
+    /**
+     * {host}/realms/{realm} から組み立てたエンドポイント（discovery を待たずに使える）。
+     */
+    public OidcProviderMetadata endpoints() {
+        return endpoints;
+    }
+
+    /**
+     * discovery で取得したメタデータ（未取得の間は endpoints() と同じ値）。
+     */
+    public OidcProviderMetadata metadata() {
+        return discoveryService.current();
+    }
+
+    /**
+     * このテナントの token エンドポイント等の呼び出しに使う HttpClient（コネクションプールはテナントごと）。
+     */
+    public HttpClient httpClient() {
+        return httpClient;
+    }
+
+    public OidcDiscoveryService discoveryService() {
+        return discoveryService;
+    }
+
+    public JwksCache jwksCache() {
+        return jwksCache;
+    }
+
+    public IdTokenValidator idTokenValidator() {
+        return idTokenValidator;
+    }
+
+    long lastAccessNanos() {
+        return lastAccessNanos;
+    }
+
+    void touch(long now) {
+        // 毎回書き込むとキャッシュラインの取り合いになるため、ある程度進んだときだけ更新する
+        if (now - lastAccessNanos > 1_000_000_000L) {
+            lastAccessNanos = now;
+        }
+    }
+
+    // 実行中のリクエストは完了させ、新しいリクエストは受け付けない
+    void close() {
+        httpClient.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "Tenant[" + realm + "]";
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.oidcclient.tenant;
+
+import com.example.oidcclient.client.RetryPolicy;
+import com.example.oidcclient.config.KeycloakHttpClientConfig;
+import com.example.oidcclient.discovery.OidcDiscoveryService;
+import com.example.oidcclient.discovery.OidcProviderMetadata;
+import com.example.oidcclient.jwt.IdTokenValidator;
+import com.example.oidcclient.jwt.JwksCache;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * realm（テナント）ごとの接続先を保持するレジストリ。
+ * <ul>
+ *   <li>テナントは最初に参照されたときに生成し、エンドポイント・discovery・JWKS キャッシュ・HttpClient をテナント単位で持つ</li>
+ *   <li>ホスト名（app.tenants.hosts）またはパスの接頭辞（/t/{realm}/...）から HashMap の参照 1 回で引ける</li>
+ *   <li>受け付ける realm は app.tenants.realms と hosts に書いたものだけ（"*" を指定した場合のみパターンに一致する全 realm）</li>
+ *   <li>max-active を超えた場合は最も長く使われていないテナントを、idle-timeout 使われていないテナントは次の参照時に破棄する</li>
+ * </ul>
+ * 無効（app.tenants.enabled=false）の場合は何も生成せず、既存の単一 realm の設定がそのまま使われる。
+ */
+@Component
+public class TenantRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(TenantRegistry.class);
+
+    /**
+     * ルーティング済みのテナント（Tenant）を保持するリクエスト属性。
+     */
+    public static final String REQUEST_ATTRIBUTE = TenantRegistry.class.getName() + ".tenant";
+
+    private static final String OPENID_CONNECT_PATH = "/protocol/openid-connect";
+
+    private final boolean enabled;
+    private final String baseUrl;
+    private final String pathPrefix;
+    private final Map<String, String> hostRealms;
+    private final Set<String> allowedRealms;
+    private final boolean anyRealm;
+    private final Pattern realmPattern;
+    private final int maxActive;
+    private final long idleTimeoutNanos;
+    private final LongSupplier clock;
+
+    private final RetryPolicy retryPolicy;
+    private final Duration connectTimeout;
+    private final HttpClient.Version httpVersion;
+    private final int executorThreads;
+    private final Duration discoveryTtl;
+    private final Duration discoveryFailureBackoff;
+    private final Duration discoveryFetchTimeout;
+    private final Duration jwksRefreshMinInterval;
+    private final Duration jwksFetchTimeout;
+    private final Duration clockSkew;
+
+    private final ConcurrentHashMap<String, Tenant> tenants = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweepAt;
+    private final AtomicLong evicted = new AtomicLong();
+    private final Object executorLock = new Object();
+    private volatile ExecutorService executor;
+
+    public TenantRegistry(
+            RetryPolicy retryPolicy,
+            @Value("${app.tenants.enabled:false}") boolean enabled,
+            @Value("${app.tenants.base-url:${keycloak.host:http://localhost:8080}}") String baseUrl,
+            @Value("${app.tenants.path-prefix:/t}") String pathPrefix,
+            @Value("${app.tenants.hosts:}") String hosts,
+            @Value("${app.tenants.realms:}") String realms,
+            @Value("${app.tenants.realm-pattern:[A-Za-z0-9_-]{1,64}}") String realmPattern,
+            @Value("${app.tenants.max-active:64}") int maxActive,
+            @Value("${app.tenants.idle-timeout:15m}") Duration idleTimeout,
+            @Value("${keycloak.http.connect-timeout:5s}") Duration connectTimeout,
+            @Value("${keycloak.http.version:HTTP_2}") HttpClient.Version httpVersion,
+            @Value("${app.tenants.executor-threads:4}") int executorThreads,
+            @Value("${keycloak.discovery.ttl:5m}") Duration discoveryTtl,
+            @Value("${keycloak.discovery.failure-backoff:30s}") Duration discoveryFailureBackoff,
+            @Value("${keycloak.discovery.fetch-timeout:5s}") Duration discoveryFetchTimeout,
+            @Value("${keycloak.jwks.refresh-min-interval:30s}") Duration jwksRefreshMinInterval,
+            @Value("${keycloak.jwks.fetch-timeout:5s}") Duration jwksFetchTimeout,
+            @Value("${oidc.id-token.clock-skew:30s}") Duration clockSkew) {
+        this(retryPolicy, enabled, baseUrl, pathPrefix, hosts, realms, realmPattern, maxActive, idleTimeout,
+                connectTimeout, httpVersion, executorThreads, discoveryTtl, discoveryFailureBackoff, discoveryFetchTimeout,
+                jwksRefreshMinInterval, jwksFetchTimeout, clockSkew, System::nanoTime);
+    }
+
+    TenantRegistry(RetryPolicy retryPolicy, boolean enabled, String baseUrl, String pathPrefix, String hosts,
+                   String realms, String realmPattern, int maxActive, Duration idleTimeout, Duration connectTimeout,
+                   HttpClient.Version httpVersion, int executorThreads, Duration discoveryTtl,
+                   Duration discoveryFailureBackoff, Duration discoveryFetchTimeout, Duration jwksRefreshMinInterval,
+                   Duration jwksFetchTimeout, Duration clockSkew, LongSupplier clock) {
+        this.retryPolicy = retryPolicy;
+        this.enabled = enabled;
+        String base = baseUrl == null ? "" : baseUrl.trim();
+        this.baseUrl = base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
+        String prefix = pathPrefix == null ? "" : pathPrefix.trim();
+        if (!prefix.startsWith("/")) prefix = "/" + prefix;
+        this.pathPrefix = prefix.endsWith("/") ? prefix.substring(0, prefix.length() - 1) : prefix;
+        this.realmPattern = Pattern.compile(realmPattern);
+        this.hostRealms = parseHosts(hosts);
+        Set<String> listed = parseRealms(realms);
+        this.anyRealm = listed.contains("*");
+        Set<String> allowed = new HashSet<>(listed);
+        allowed.remove("*");
+        allowed.addAll(hostRealms.values());
+        this.allowedRealms = Set.copyOf(allowed);
+        if (enabled && !anyRealm && allowedRealms.isEmpty()) {
+            logger.warn("app.tenants.enabled=true but no realm is allowed; set app.tenants.realms or app.tenants.hosts");
+        }
+        this.maxActive = Math.max(1, maxActive);
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.connectTimeout = connectTimeout;
+        this.httpVersion = httpVersion;
+        this.executorThreads = Math.max(1, executorThreads);
+        this.discoveryTtl = discoveryTtl;
+        this.discoveryFailureBackoff = discoveryFailureBackoff;
+        this.discoveryFetchTimeout = discoveryFetchTimeout;
+        this.jwksRefreshMinInterval = jwksRefreshMinInterval;
+        this.jwksFetchTimeout = jwksFetchTimeout;
+        this.clockSkew = clockSkew;
+        this.clock = clock;
+        this.nextSweepAt = new AtomicLong(clock.getAsLong() + sweepIntervalNanos());
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * パスでのルーティングに使う接頭辞（例: /t）。
+     */
+    public String pathPrefix() {
+        return pathPrefix;
+    }
+
+    /**
+     * ホスト名に対応する realm（app.tenants.hosts に無ければ null）。
+     */
+    public String realmForHost(String host) {
+        if (!enabled || host == null || hostRealms.isEmpty()) {
+            return null;
+        }
+        return hostRealms.get(host.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * realm 名として受け付けるか（パターンに一致し、app.tenants.realms か hosts に含まれる。realms が "*" なら全て）。
+     * 任意の realm 名でテナント（HttpClient・キャッシュ）を作らせないため、既定では明示したものだけを受け付ける。
+     */
+    public boolean isValidRealm(String realm) {
+        if (realm == null || !realmPattern.matcher(realm).matches()) {
+            return false;
+        }
+        return anyRealm || allowedRealms.contains(realm);
+    }
+
+    /**
+     * realm のテナントを返す。未生成であれば生成する。受け付けない realm の場合は null。
+     */
+    public Tenant tenant(String realm) {
+        if (!enabled || !isValidRealm(realm)) {
+            return null;
+        }
+        long now = clock.getAsLong();
+        Tenant tenant = tenants.get(realm);
+        if (tenant == null) {
+            boolean[] created = new boolean[1];
+            tenant = tenants.computeIfAbsent(realm, r -> {
+                created[0] = true;
+                return create(r, now);
+            });
+            if (created[0] && tenants.size() > maxActive) {
+                evictLeastRecentlyUsed(tenant);
+            }
+        }
+        tenant.touch(now);
+        sweepIdle(now);
+        return tenant;
+    }
+
+    /**
+     * TenantRoutingFilter がリクエストに設定したテナント（ルーティングされていなければ null）。
+     */
+    public Tenant resolve(HttpServletRequest request) {
+        if (!enabled) {
+            return null;
+        }
+        return request.getAttribute(REQUEST_ATTRIBUTE) instanceof Tenant tenant ? tenant : null;
+    }
+
+    public int activeCount() {
+        return tenants.size();
+    }
+
+    public long evictedCount() {
+        return evicted.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Tenant tenant : tenants.values()) {
+            tenant.close();
+        }
+        tenants.clear();
+        ExecutorService e = executor;
+        if (e != null) {
+            e.shutdown();
+        }
+    }
+
+    private Tenant create(String realm, long now) {
+        String issuer = baseUrl + "/realms/" + realm;
+        String contextPath = "/realms/" + realm + OPENID_CONNECT_PATH;
+        OidcProviderMetadata endpoints = OidcProviderMetadata.keycloakDefaults(issuer, issuer + OPENID_CONNECT_PATH);
+        // コネクションプールはテナントごと、コールバック用のスレッドは全テナントで共有する
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(httpVersion)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(executor())
+                .build();
+        OidcDiscoveryService discovery = new OidcDiscoveryService(httpClient, retryPolicy, baseUrl, contextPath, "",
+                discoveryTtl, discoveryFailureBackoff, discoveryFetchTimeout);
+        JwksCache jwksCache = new JwksCache(httpClient, discovery, retryPolicy, jwksRefreshMinInterval, jwksFetchTimeout);
+        IdTokenValidator validator = new IdTokenValidator(jwksCache, discovery, clockSkew);
+        logger.debug("tenant created: realm={}, issuer={}", realm, issuer);
+        return new Tenant(realm, endpoints, httpClient, discovery, jwksCache, validator, now);
+    }
+
+    // 件数の上限を超えたときだけ呼ばれるので、全件を見て最も古いものを探す（max-active 件程度）
+    private void evictLeastRecentlyUsed(Tenant keep) {
+        while (tenants.size() > maxActive) {
+            Tenant oldest = null;
+            for (Tenant t : tenants.values()) {
+                if (t != keep && (oldest == null || t.lastAccessNanos() - oldest.lastAccessNanos() < 0)) {
+                    oldest = t;
+                }
+            }
+            if (oldest == null || !evict(oldest, "lru")) {
+                return;
+            }
+        }
+    }
+
+    // idle-timeout の 1/4（最短 1 秒）ごとに、その時点で参照したスレッドが 1 つだけ掃除する
+    private void sweepIdle(long now) {
+        long next = nextSweepAt.get();
+        if (now - next < 0 || !nextSweepAt.compareAndSet(next, now + sweepIntervalNanos())) {
+            return;
+        }
+        for (Tenant t : tenants.values()) {
+            if (now - t.lastAccessNanos() >= idleTimeoutNanos) {
+                evict(t, "idle");
+            }
+        }
+    }
+
+    private boolean evict(Tenant tenant, String reason) {
+        if (!tenants.remove(tenant.realm(), tenant)) {
+            return false;
+        }
+        evicted.incrementAndGet();
+        tenant.close();
+        logger.debug("tenant evicted: realm={}, reason={}", tenant.realm(), reason);
+        return true;
+    }
+
+    private long sweepIntervalNanos() {
+        return Math.max(1_000_000_000L, idleTimeoutNanos / 4);
+    }
+
+    private ExecutorService executor() {
+        ExecutorService e = executor;
+        if (e == null) {
+            synchronized (executorLock) {
+                e = executor;
+                if (e == null) {
+                    e = KeycloakHttpClientConfig.newBoundedExecutor(executorThreads, "keycloak-tenant-http-");
+                    executor = e;
+                }
+            }
+        }
+        return e;
+    }
+
+    // "host=realm,host2=realm2" 形式
+    private Map<String, String> parseHosts(String hosts) {
+        Map<String, String> map = new HashMap<>();
+        if (hosts == null || hosts.isBlank()) {
+            return Map.of();
+        }
+        for (String entry : hosts.split(",")) {
+            int idx = entry.indexOf('=');
+            if (idx <= 0) {
+                continue;
+            }
+            String host = entry.substring(0, idx).trim().toLowerCase(Locale.ROOT);
+            String realm = entry.substring(idx + 1).trim();
+            if (!realmPattern.matcher(realm).matches()) {
+                throw new IllegalArgumentException("invalid realm for host " + host + ": " + realm);
+            }
+            map.put(host, realm);
+        }
+        return Map.copyOf(map);
+    }
+
+    private static Set<String> parseRealms(String realms) {
+        if (realms == null || realms.isBlank()) {
+            return Set.of();
+        }
+        Set<String> set = new HashSet<>();
+        for (String realm : realms.split(",")) {
+            if (!realm.isBlank()) {
+                set.add(realm.trim());
+            }
+        }
+        return Set.copyOf(set);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.oidcclient.tenant;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * リクエストをテナントに振り分けるフィルタ。
+ * <ul>
+ *   <li>ホスト名が app.tenants.hosts にあれば、そのテナントをリクエスト属性に設定してそのまま処理する</li>
+ *   <li>/t/{realm}/{path} の場合は、テナントを設定して /{path} に forward する（対象は認可フローのパスのみ）</li>
+ * </ul>
+ * 無効時は何もしない。
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class TenantRoutingFilter extends OncePerRequestFilter {
+
+    private final TenantRegistry registry;
+    // forward 先として受け付けるパス（Spring Security の許可リストと同じもの）
+    private final Set<String> routedPaths;
+
+    public TenantRoutingFilter(
+            TenantRegistry registry,
+            @Value("${app.path.authorization-flow:/authorization_flow}") String authorizationFlowPath,
+            @Value("${app.path.authorize:/authorize}") String authorizePath,
+            @Value("${app.path.callback:/callback}") String callbackPath,
+            @Value("${app.path.token-request:/token_request}") String tokenRequestPath,
+            @Value("${app.path.token-request-async:/token_request_async}") String tokenRequestAsyncPath,
+            @Value("${app.path.token:/token}") String tokenPath) {
+        this.registry = registry;
+        this.routedPaths = Set.of(authorizationFlowPath, authorizePath, callbackPath, tokenRequestPath,
+                tokenRequestAsyncPath, tokenPath);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !registry.enabled();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String hostRealm = registry.realmForHost(request.getServerName());
+        if (hostRealm != null) {
+            request.setAttribute(TenantRegistry.REQUEST_ATTRIBUTE, registry.tenant(hostRealm));
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String prefix = registry.pathPrefix() + "/";
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith(prefix)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        int slash = path.indexOf('/', prefix.length());
+        String realm = slash < 0 ? path.substring(prefix.length()) : path.substring(prefix.length(), slash);
+        String target = slash < 0 ? "/" : path.substring(slash);
+        Tenant tenant = routedPaths.contains(target) ? registry.tenant(realm) : null;
+        if (tenant == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        request.setAttribute(TenantRegistry.REQUEST_ATTRIBUTE, tenant);
+        request.getRequestDispatcher(target).forward(request, response);
+    }
+}
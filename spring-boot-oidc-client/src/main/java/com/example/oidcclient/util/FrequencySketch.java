@@ -0,0 +1,91 @@
+package com.example.oidcclient.util;
+
+/**
+ * TinyLFU のアクセス頻度推定に使う 4 ビットカウンタの Count-Min Sketch。
+ * 1 要素あたり 4 つのカウンタを増やし、その最小値を頻度とする（上限 15）。
+ * 増分の合計が sampleSize に達するたびに全カウンタを半分にし、過去の人気が残り続けないようにする。
+ * スレッドセーフではない（呼び出し側のロック内で使う）。
+ */
+public final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param maximumSize 想定する要素数（カウンタ数はこれ以上の 2 のべき乗に切り上げる）
+     */
+    public FrequencySketch(int maximumSize) {
+        int size = Math.max(8, Integer.highestOneBit(Math.max(1, maximumSize - 1)) << 1);
+        this.table = new long[size];
+        this.tableMask = size - 1;
+        this.sampleSize = 10 * Math.max(1, maximumSize);
+    }
+
+    /**
+     * 要素の推定頻度（0〜15）。
+     */
+    public int frequency(int hash) {
+        int spread = spread(hash);
+        int start = (spread & 3) << 2;
+        int min = 15;
+        for (int i = 0; i < 4; i++) {
+            min = Math.min(min, counter(indexOf(spread, i), start + i));
+        }
+        return min;
+    }
+
+    /**
+     * 要素の頻度を 1 増やす（飽和したカウンタはそのまま）。
+     */
+    public void increment(int hash) {
+        int spread = spread(hash);
+        int start = (spread & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(spread, i), start + i);
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    // 1 つの long を 16 個の 4 ビットカウンタとして使う（slot は long 内のカウンタ位置 0〜15）
+    private int counter(int index, int slot) {
+        return (int) ((table[index] >>> (slot << 2)) & 0xfL);
+    }
+
+    private boolean incrementAt(int index, int slot) {
+        int offset = slot << 2;
+        long mask = 0xfL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    private int indexOf(int spread, int i) {
+        long h = (spread + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return ((int) h) & tableMask;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions = additions >>> 1;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
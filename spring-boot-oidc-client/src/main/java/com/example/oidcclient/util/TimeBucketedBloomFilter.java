@@ -0,0 +1,131 @@
+package com.example.oidcclient.util;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 時間で区切ったバケットごとの Bloom filter。要素は追加した時刻のバケットに入り、
+ * buckets x bucketDuration を過ぎるとバケットごと（クリアして再利用することで）消える。
+ * <ul>
+ *   <li>mightContain は有効なバケットのビットを見るだけで、ロックもオブジェクトの生成もしない</li>
+ *   <li>ハッシュは String.hashCode（String 内にキャッシュされる）から double hashing で k 個のビット位置を作る</li>
+ *   <li>偽陽性はあり得るため、true の場合は呼び出し側で正確な集合を確認する</li>
+ * </ul>
+ */
+public final class TimeBucketedBloomFilter {
+
+    private final int bucketCount;
+    private final long bucketMillis;
+    private final int wordsPerBucket;
+    private final int bitMask;
+    private final int hashes;
+    private final AtomicLongArray bits;
+    // バケットに現在入っている期間の番号（時刻 / bucketMillis）。未使用は -1
+    private final AtomicLongArray epochs;
+
+    /**
+     * @param buckets                    バケット数
+     * @param bucketDuration             1 バケットの期間
+     * @param expectedInsertionsPerBucket 1 バケットに入る要素数の想定
+     * @param falsePositiveRate          想定数を入れたときの偽陽性率
+     */
+    public TimeBucketedBloomFilter(int buckets, Duration bucketDuration, int expectedInsertionsPerBucket,
+                                   double falsePositiveRate) {
+        if (bucketDuration.toMillis() <= 0) throw new IllegalArgumentException("bucketDuration must be positive");
+        int n = Math.max(1, expectedInsertionsPerBucket);
+        double p = Math.min(0.5, Math.max(1e-9, falsePositiveRate));
+        // ビット数 m = -n ln p / (ln 2)^2 を 2 のべき乗に切り上げる（位置の計算をマスクで行うため）
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        int bitsPerBucket = (int) Math.min(1L << 30, Math.max(64L, Long.highestOneBit(m - 1) << 1));
+        this.bucketCount = Math.max(1, buckets);
+        this.bucketMillis = bucketDuration.toMillis();
+        this.wordsPerBucket = bitsPerBucket >>> 6;
+        this.bitMask = bitsPerBucket - 1;
+        // k = m / n * ln 2
+        this.hashes = (int) Math.max(1, Math.min(16, Math.round((double) bitsPerBucket / n * Math.log(2))));
+        this.bits = new AtomicLongArray(bucketCount * wordsPerBucket);
+        this.epochs = new AtomicLongArray(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            epochs.set(i, -1L);
+        }
+    }
+
+    /**
+     * nowMillis のバケットに key を追加する。
+     */
+    public void put(String key, long nowMillis) {
+        long epoch = nowMillis / bucketMillis;
+        int slot = (int) (epoch % bucketCount);
+        if (epochs.get(slot) != epoch) {
+            rotate(slot, epoch);
+        }
+        int h1 = key.hashCode();
+        int h2 = mix(h1);
+        int base = slot * wordsPerBucket;
+        for (int i = 0; i < hashes; i++) {
+            int bit = (h1 + i * h2) & bitMask;
+            int index = base + (bit >>> 6);
+            long mask = 1L << bit;
+            long word;
+            while (((word = bits.get(index)) & mask) == 0 && !bits.compareAndSet(index, word, word | mask)) {
+                // 他のスレッドが同じワードを更新した場合は読み直す
+            }
+        }
+    }
+
+    /**
+     * 有効なバケットのいずれかに key が（偽陽性を含めて）含まれていれば true。
+     */
+    public boolean mightContain(String key, long nowMillis) {
+        long epoch = nowMillis / bucketMillis;
+        int h1 = key.hashCode();
+        int h2 = mix(h1);
+        for (int slot = 0; slot < bucketCount; slot++) {
+            long e = epochs.get(slot);
+            if (e <= epoch - bucketCount || e > epoch) {
+                continue;
+            }
+            if (contains(slot * wordsPerBucket, h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 要素が残る期間（buckets x bucketDuration）。
+     */
+    public long retentionMillis() {
+        return bucketCount * bucketMillis;
+    }
+
+    private boolean contains(int base, int h1, int h2) {
+        for (int i = 0; i < hashes; i++) {
+            int bit = (h1 + i * h2) & bitMask;
+            if ((bits.get(base + (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 期限切れのバケットをクリアして新しい期間に割り当てる（読み取り側は期間番号で古いバケットを無視する）
+    private synchronized void rotate(int slot, long epoch) {
+        if (epochs.get(slot) >= epoch) {
+            return;
+        }
+        int base = slot * wordsPerBucket;
+        for (int i = 0; i < wordsPerBucket; i++) {
+            bits.set(base + i, 0L);
+        }
+        epochs.set(slot, epoch);
+    }
+
+    // 2 つ目のハッシュ（奇数にして全ビット位置を巡回できるようにする）
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h | 1;
+    }
+}
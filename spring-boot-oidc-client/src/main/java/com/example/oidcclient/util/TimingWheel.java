@@ -0,0 +1,94 @@
+package com.example.oidcclient.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 期限付きの要素を tick 単位のバケットに振り分けるハッシュ型タイミングホイール。
+ * 要素ごとにタイマーやスレッドを持たず、1 本のスレッドが advance を定期的に呼び出して
+ * 期限が来た要素を tick ごとにまとめて取り出す。schedule は任意のスレッドから呼び出せる。
+ * ホイール 1 周より先の期限は周回数で判定するため、要素あたりのメモリは一定。
+ */
+public final class TimingWheel<T> {
+
+    private final long tickMillis;
+    private final int mask;
+    private final ConcurrentLinkedQueue<Node<T>>[] buckets;
+    private volatile long lastTick;
+
+    private record Node<T>(T item, long deadlineTick) {
+    }
+
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0) throw new IllegalArgumentException("tickMillis must be positive");
+        // バケット数は 2 のべき乗に切り上げる（インデックス計算をマスクで行うため）
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickMillis = tickMillis;
+        this.mask = size - 1;
+        this.buckets = newBuckets(size);
+        this.lastTick = startMillis / tickMillis;
+    }
+
+    // ジェネリクスの配列は直接作れないため raw 型で作ってキャストする。
+    // 配列は外に出さず、要素も Node<T> のキューしか入れないので型は崩れない
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> ConcurrentLinkedQueue<Node<T>>[] newBuckets(int size) {
+        ConcurrentLinkedQueue<Node<T>>[] buckets = new ConcurrentLinkedQueue[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ConcurrentLinkedQueue<>();
+        }
+        return buckets;
+    }
+
+    /**
+     * deadlineMillis（エポックミリ秒）に取り出されるよう item を登録する。過去の時刻は次の tick で取り出される。
+     */
+    public void schedule(T item, long deadlineMillis) {
+        // 処理中の tick と競合しないよう、最短でも 2 tick 先のバケットに入れる
+        long tick = Math.max(deadlineMillis / tickMillis, lastTick + 2);
+        buckets[(int) (tick & mask)].add(new Node<>(item, tick));
+    }
+
+    /**
+     * nowMillis までに期限が来た要素をまとめて返す。1 本のスレッドからのみ呼び出すこと。
+     */
+    public List<T> advance(long nowMillis) {
+        long target = nowMillis / tickMillis;
+        List<T> due = new ArrayList<>();
+        // 長時間止まっていた場合でも 1 周分見れば全バケットを確認できる
+        long from = Math.max(lastTick + 1, target - mask);
+        List<Node<T>> later = new ArrayList<>();
+        for (long tick = from; tick <= target; tick++) {
+            lastTick = tick;
+            ConcurrentLinkedQueue<Node<T>> bucket = buckets[(int) (tick & mask)];
+            Node<T> node;
+            while ((node = bucket.poll()) != null) {
+                if (node.deadlineTick() <= target) {
+                    due.add(node.item());
+                } else {
+                    later.add(node);
+                }
+            }
+            // まだ周回が残っている要素は同じバケットへ戻す
+            bucket.addAll(later);
+            later.clear();
+        }
+        return due;
+    }
+
+    /**
+     * 登録済みの要素数（期限切れ・取り出し待ちを含む概数）。
+     */
+    public int size() {
+        int total = 0;
+        for (ConcurrentLinkedQueue<Node<T>> bucket : buckets) {
+            total += bucket.size();
+        }
+        return total;
+    }
+
+    public long tickMillis() {
+        return tickMillis;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.oidcclient.aspect;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MethodInstrumentationInterceptorTest {
+
+    public static class Target {
+        public String echo(String s) {
+            return s;
+        }
+    }
+
+    private static Target proxy(MethodInstrumentationInterceptor interceptor) {
+        ProxyFactory factory = new ProxyFactory(new Target());
+        factory.setProxyTargetClass(true);
+        factory.addAdvice(interceptor);
+        return (Target) factory.getProxy();
+    }
+
+    @Test
+    void recordsCallsAndDurationsPerMethod() {
+        MethodInstrumentationInterceptor interceptor = new MethodInstrumentationInterceptor(1.0);
+        Target target = proxy(interceptor);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(target.echo("x")).isEqualTo("x");
+        }
+
+        List<MethodStats> snapshot = interceptor.snapshot();
+        assertThat(snapshot).hasSize(1);
+        MethodStats stats = snapshot.get(0);
+        assertThat(stats.name()).endsWith("Target.echo");
+        assertThat(stats.calls()).isEqualTo(10);
+        assertThat(stats.sampledCount()).isEqualTo(10);
+        assertThat(stats.percentileNanos(0.99)).isGreaterThanOrEqualTo(stats.percentileNanos(0.5));
+    }
+
+    @Test
+    void zeroSampleRate_countsCallsWithoutTiming() {
+        MethodInstrumentationInterceptor interceptor = new MethodInstrumentationInterceptor(0.0);
+        Target target = proxy(interceptor);
+
+        target.echo("a");
+        target.echo("b");
+
+        MethodStats stats = interceptor.snapshot().get(0);
+        assertThat(stats.calls()).isEqualTo(2);
+        assertThat(stats.sampledCount()).isZero();
+    }
+
+    @Test
+    void bucketBoundaries_arePowersOfTwo() {
+        assertThat(MethodStats.bucketOf(1)).isZero();
+        assertThat(MethodStats.bucketOf(1024)).isEqualTo(10);
+        assertThat(MethodStats.bucketOf(1025)).isEqualTo(11);
+        assertThat(MethodStats.upperBound(MethodStats.bucketOf(5000))).isGreaterThanOrEqualTo(5000);
+    }
+}
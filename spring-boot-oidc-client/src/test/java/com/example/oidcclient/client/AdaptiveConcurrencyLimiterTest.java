@@ -0,0 +1,56 @@
+package com.example.oidcclient.client;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long FAST = 10_000_000L;
+
+    @Test
+    void rejectsImmediatelyAtTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 2.0, 0.5);
+
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isFalse();
+        limiter.onIgnored();
+        assertThat(limiter.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void growsWhileFastAndBusy_upToTheMax() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 4, 2.0, 0.5);
+        for (int i = 0; i < 200; i++) {
+            // 上限いっぱいまで使った状態で速い応答が続く
+            int acquired = 0;
+            while (limiter.tryAcquire()) {
+                acquired++;
+            }
+            for (int j = 0; j < acquired; j++) {
+                limiter.onSuccess(FAST);
+            }
+        }
+        assertThat(limiter.limit()).isEqualTo(4);
+    }
+
+    @Test
+    void shrinksOnSlowResponsesAndDrops_butNotBelowTheMin() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 2, 8, 2.0, 0.5);
+        limiter.tryAcquire();
+        limiter.onSuccess(FAST);
+
+        // 基準（10ms）の 2 倍を超える応答で減らす
+        limiter.tryAcquire();
+        limiter.onSuccess(FAST * 5);
+        assertThat(limiter.limit()).isEqualTo(4);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire();
+            limiter.onDropped(0L);
+        }
+        assertThat(limiter.limit()).isEqualTo(2);
+        assertThat(limiter.inFlight()).isZero();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.oidcclient.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CircuitBreakerTest {
+
+    private final List<String> transitions = new ArrayList<>();
+
+    private CircuitBreaker breaker(long openDurationNanos) {
+        // window=10, min-calls=4, failure-rate=0.5, timeout-rate=0.25, half-open-calls=2
+        return new CircuitBreaker(10, 4, 0.5, 0.25, openDurationNanos, 2, (from, to) -> transitions.add(from + "->" + to));
+    }
+
+    @Test
+    void staysClosedUntilMinCalls_thenOpensOnTheErrorRate() {
+        CircuitBreaker breaker = breaker(60_000_000_000L);
+        breaker.record(CircuitBreaker.Outcome.FAILURE);
+        breaker.record(CircuitBreaker.Outcome.FAILURE);
+        breaker.record(CircuitBreaker.Outcome.SUCCESS);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        breaker.record(CircuitBreaker.Outcome.SUCCESS);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+        assertThat(breaker.retryAfterMillis()).isPositive();
+        assertThat(transitions).containsExactly("CLOSED->OPEN");
+    }
+
+    @Test
+    void timeoutsHaveTheirOwnThreshold() {
+        CircuitBreaker breaker = breaker(60_000_000_000L);
+        breaker.record(CircuitBreaker.Outcome.TIMEOUT);
+        breaker.record(CircuitBreaker.Outcome.SUCCESS);
+        breaker.record(CircuitBreaker.Outcome.SUCCESS);
+        breaker.record(CircuitBreaker.Outcome.SUCCESS);
+
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void halfOpenProbes_closeOnSuccess_andReopenOnFailure() {
+        CircuitBreaker breaker = breaker(0L);
+        for (int i = 0; i < 4; i++) {
+            breaker.record(CircuitBreaker.Outcome.FAILURE);
+        }
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        // open-duration 経過後は half-open-calls 件だけ通す
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isFalse();
+        breaker.record(CircuitBreaker.Outcome.FAILURE);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.record(CircuitBreaker.Outcome.SUCCESS);
+        breaker.record(CircuitBreaker.Outcome.SUCCESS);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(transitions).containsExactly("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->OPEN",
+                "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED");
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.oidcclient.client;
+
+import com.nimbusds.jose.util.JSONObjectUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ClientCredentialsTokenCacheTest {
+
+    private static final String ENDPOINT = "http://localhost:8080/realms/myrealm/protocol/openid-connect/token";
+
+    private static Map<String, String> form(String secret) {
+        return Map.of(
+                "grant_type", "client_credentials",
+                "client_id", "service_client",
+                "client_secret", secret,
+                "scope", "api");
+    }
+
+    @Test
+    void unexpiredToken_isReusedWithoutUpstreamCall() throws Exception {
+        ClientCredentialsTokenCache cache = new ClientCredentialsTokenCache(true, 0.8, 0.05, 100, 1);
+        AtomicInteger upstreamCalls = new AtomicInteger();
+
+        String first = cache.get(ENDPOINT, form("secret"), () ->
+                "{\"access_token\":\"at-" + upstreamCalls.incrementAndGet() + "\",\"expires_in\":300}");
+        String second = cache.get(ENDPOINT, form("secret"), () ->
+                "{\"access_token\":\"at-" + upstreamCalls.incrementAndGet() + "\",\"expires_in\":300}");
+
+        assertThat(JSONObjectUtils.parse(first).get("access_token")).isEqualTo("at-1");
+        assertThat(JSONObjectUtils.parse(second).get("access_token")).isEqualTo("at-1");
+        assertThat(upstreamCalls.get()).isEqualTo(1);
+        cache.shutdown();
+    }
+
+    @Test
+    void differentSecret_doesNotShareToken() throws Exception {
+        ClientCredentialsTokenCache cache = new ClientCredentialsTokenCache(true, 0.8, 0.05, 100, 1);
+        AtomicInteger upstreamCalls = new AtomicInteger();
+
+        cache.get(ENDPOINT, form("secret"), () -> "{\"access_token\":\"at\",\"expires_in\":300}");
+        String other = cache.get(ENDPOINT, form("wrong"), () -> {
+            upstreamCalls.incrementAndGet();
+            return "{\"error\":\"unauthorized_client\"}";
+        });
+
+        assertThat(other).isEqualTo("{\"error\":\"unauthorized_client\"}");
+        assertThat(upstreamCalls.get()).isEqualTo(1);
+        cache.shutdown();
+    }
+
+    @Test
+    void errorResponses_areNotCached() throws Exception {
+        ClientCredentialsTokenCache cache = new ClientCredentialsTokenCache(true, 0.8, 0.05, 100, 1);
+        AtomicInteger upstreamCalls = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            cache.get(ENDPOINT, form("secret"), () -> {
+                upstreamCalls.incrementAndGet();
+                return "{\"error\":\"invalid_client\"}";
+            });
+        }
+
+        assertThat(upstreamCalls.get()).isEqualTo(2);
+        cache.shutdown();
+    }
+
+    @Test
+    void pastRefreshPoint_keepsServingValidTokenWhileOneRefreshRuns() throws Exception {
+        // refresh-ratio 0 で取得直後から先行更新の対象にする
+        ClientCredentialsTokenCache cache = new ClientCredentialsTokenCache(true, 0.0, 0.0, 100, 1);
+        cache.put(ENDPOINT, form("secret"), "{\"access_token\":\"at-1\",\"expires_in\":300}");
+        AtomicInteger refreshCalls = new AtomicInteger();
+        CompletableFuture<String> refresh = new CompletableFuture<>();
+
+        for (int i = 0; i < 10; i++) {
+            String cached = cache.getIfPresent(ENDPOINT, form("secret"), () -> {
+                refreshCalls.incrementAndGet();
+                return refresh;
+            });
+            assertThat(cached).isNotNull();
+            assertThat(JSONObjectUtils.parse(cached).get("access_token")).isEqualTo("at-1");
+        }
+        assertThat(refreshCalls.get()).isEqualTo(1);
+
+        refresh.complete("{\"access_token\":\"at-2\",\"expires_in\":300}");
+        String next = cache.getIfPresent(ENDPOINT, form("secret"), () -> new CompletableFuture<>());
+        assertThat(JSONObjectUtils.parse(next).get("access_token")).isEqualTo("at-2");
+        cache.shutdown();
+    }
+
+    @Test
+    void failedRefresh_allowsAnotherAttempt() throws Exception {
+        ClientCredentialsTokenCache cache = new ClientCredentialsTokenCache(true, 0.0, 0.0, 100, 1);
+        cache.put(ENDPOINT, form("secret"), "{\"access_token\":\"at-1\",\"expires_in\":300}");
+        AtomicInteger refreshCalls = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            String cached = cache.getIfPresent(ENDPOINT, form("secret"), () -> {
+                refreshCalls.incrementAndGet();
+                return CompletableFuture.failedFuture(new IOException("connection reset"));
+            });
+            assertThat(JSONObjectUtils.parse(cached).get("access_token")).isEqualTo("at-1");
+        }
+        assertThat(refreshCalls.get()).isEqualTo(2);
+        cache.shutdown();
+    }
+
+    @Test
+    void concurrentAsyncMisses_shareOneUpstreamCall() throws Exception {
+        ClientCredentialsTokenCache cache = new ClientCredentialsTokenCache(true, 0.8, 0.05, 100, 1);
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(cache.getAsync(ENDPOINT, form("secret"), () -> {
+                upstreamCalls.incrementAndGet();
+                return upstream;
+            }));
+        }
+        assertThat(upstreamCalls.get()).isEqualTo(1);
+
+        upstream.complete("{\"access_token\":\"at-1\",\"expires_in\":300}");
+        for (CompletableFuture<String> result : results) {
+            assertThat(JSONObjectUtils.parse(result.get()).get("access_token")).isEqualTo("at-1");
+        }
+        // 取得後はキャッシュから返す
+        cache.getAsync(ENDPOINT, form("secret"), () -> {
+            upstreamCalls.incrementAndGet();
+            return new CompletableFuture<>();
+        }).get();
+        assertThat(upstreamCalls.get()).isEqualTo(1);
+        cache.shutdown();
+    }
+
+    @Test
+    void rejectedBackgroundRefresh_allowsAnotherAttempt() throws Exception {
+        ClientCredentialsTokenCache cache = new ClientCredentialsTokenCache(true, 0.0, 0.0, 100, 1);
+        cache.put(ENDPOINT, form("secret"), "{\"access_token\":\"at-1\",\"expires_in\":300}");
+        // 停止後は先行更新のタスクが受け付けられない
+        cache.shutdown();
+
+        String cached = cache.get(ENDPOINT, form("secret"), () -> "{\"access_token\":\"at-2\",\"expires_in\":300}");
+        assertThat(JSONObjectUtils.parse(cached).get("access_token")).isEqualTo("at-1");
+
+        // 更新中のまま残らず、次の呼び出しで再び更新を試みる
+        AtomicInteger refreshCalls = new AtomicInteger();
+        cache.getIfPresent(ENDPOINT, form("secret"), () -> {
+            refreshCalls.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+        assertThat(refreshCalls.get()).isEqualTo(1);
+    }
+}
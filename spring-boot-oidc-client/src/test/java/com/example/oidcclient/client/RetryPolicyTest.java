@@ -0,0 +1,149 @@
+package com.example.oidcclient.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RetryPolicyTest {
+
+    private RetryPolicy policy;
+
+    private RetryPolicy policy(int budgetTokens, boolean hedge) {
+        policy = new RetryPolicy(true, 3, Duration.ofMillis(1), Duration.ofMillis(5), 0.2, budgetTokens,
+                hedge, 1, Duration.ofMillis(1));
+        return policy;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (policy != null) {
+            policy.shutdown();
+        }
+    }
+
+    @Test
+    void onlyIdempotentGrantsAreRetried() {
+        RetryPolicy policy = policy(20, false);
+
+        assertThat(policy.isIdempotent(Map.of("grant_type", "client_credentials"))).isTrue();
+        assertThat(policy.isIdempotent(Map.of("grant_type", "refresh_token"))).isTrue();
+        assertThat(policy.isIdempotent(Map.of("grant_type", "authorization_code"))).isFalse();
+        assertThat(policy.isIdempotent(Map.of("grant_type", "password"))).isFalse();
+    }
+
+    @Test
+    void connectionErrorsAreRetried_butReadTimeoutsAndShedRequestsAreNot() {
+        assertThat(RetryPolicy.isRetryable(new ConnectException("refused"))).isTrue();
+        assertThat(RetryPolicy.isRetryable(new IOException("connection reset"))).isTrue();
+        assertThat(RetryPolicy.isRetryable(new HttpTimeoutException("read timed out"))).isFalse();
+        assertThat(RetryPolicy.isRetryable(new TokenEndpointUnavailableException("t", "circuit_open", 1000L))).isFalse();
+    }
+
+    @Test
+    void transientResultsAreRetriedUpToMaxAttempts() throws Exception {
+        RetryPolicy policy = policy(20, false);
+        AtomicInteger calls = new AtomicInteger();
+
+        String body = policy.execute(() -> calls.incrementAndGet() < 3 ? "bad gateway" : "ok", "bad gateway"::equals);
+        assertThat(body).isEqualTo("ok");
+        assertThat(calls.get()).isEqualTo(3);
+
+        calls.set(0);
+        assertThat(policy.execute(() -> {
+            calls.incrementAndGet();
+            return "bad gateway";
+        }, "bad gateway"::equals)).isEqualTo("bad gateway");
+        assertThat(calls.get()).isEqualTo(3);
+    }
+
+    @Test
+    void retriesStopWhenTheBudgetIsExhausted() {
+        RetryPolicy policy = policy(1, false);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> policy.execute(() -> {
+            calls.incrementAndGet();
+            throw new IOException("connection reset");
+        }, r -> false)).isInstanceOf(IOException.class);
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void asyncCallsAreRetriedOnTheScheduler() throws Exception {
+        RetryPolicy policy = policy(20, false);
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<String> result = policy.executeAsync(() -> calls.incrementAndGet() == 1
+                ? CompletableFuture.failedFuture(new IOException("connection reset"))
+                : CompletableFuture.completedFuture("ok"), r -> false, false);
+
+        assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("ok");
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void slowCallsAreHedged() throws Exception {
+        RetryPolicy policy = policy(20, true);
+        // 応答時間のサンプルを 1 件入れてヘッジを有効にする
+        policy.executeAsync(() -> CompletableFuture.completedFuture("warm"), r -> false, true).get();
+        assertThat(policy.hedgeDelayNanos()).isPositive();
+
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<String> stuck = new CompletableFuture<>();
+        CompletableFuture<String> result = policy.executeAsync(() -> calls.incrementAndGet() == 1
+                ? stuck
+                : CompletableFuture.completedFuture("hedged"), r -> false, true);
+
+        assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("hedged");
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void hedgeWithTransientErrorResponse_waitsForTheOtherAttempt() throws Exception {
+        RetryPolicy policy = policy(20, true);
+        policy.executeAsync(() -> CompletableFuture.completedFuture("warm"), r -> false, true).get();
+
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        CompletableFuture<String> result = policy.executeAsync(() -> calls.incrementAndGet() == 1
+                ? slow
+                : CompletableFuture.completedFuture("{\"error\":\"server_error\"}"),
+                body -> body.contains("server_error"), true);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (calls.get() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        // 先に返った server_error は採用せず、遅い方の応答を待つ
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(result).isNotDone();
+
+        slow.complete("{\"access_token\":\"a\"}");
+        assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("{\"access_token\":\"a\"}");
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void budgetRefillsByRatio() {
+        RetryBudget budget = new RetryBudget(0.5, 2);
+        assertThat(budget.tryWithdraw()).isTrue();
+        assertThat(budget.tryWithdraw()).isTrue();
+        assertThat(budget.tryWithdraw()).isFalse();
+
+        budget.deposit();
+        budget.deposit();
+        assertThat(budget.tryWithdraw()).isTrue();
+        assertThat(budget.available()).isZero();
+    }
+}
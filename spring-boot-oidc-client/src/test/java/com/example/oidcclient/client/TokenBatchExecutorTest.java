@@ -0,0 +1,142 @@
+package com.example.oidcclient.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+public class TokenBatchExecutorTest {
+
+    private static final String ENDPOINT = "http://localhost:8080/realms/myrealm/protocol/openid-connect/token";
+
+    private final TokenEndpointClient client = Mockito.mock(TokenEndpointClient.class);
+    private final ConcurrentLinkedQueue<CompletableFuture<String>> pending = new ConcurrentLinkedQueue<>();
+    private TokenBatchExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        if (executor != null) executor.shutdown();
+    }
+
+    private static List<TokenBatchExecutor.Item> items(int n) {
+        List<TokenBatchExecutor.Item> items = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            items.add(new TokenBatchExecutor.Item(i, "item-" + i, ENDPOINT,
+                    Map.of("grant_type", "refresh_token", "refresh_token", "rt-" + i)));
+        }
+        return items;
+    }
+
+    @Test
+    void itemsRunConcurrentlyUpToTheCap_andEveryResultIsDelivered() throws Exception {
+        executor = new TokenBatchExecutor(client, 3, 2, 100);
+        when(client.requestTokenAsync(any(), anyString(), anyMap())).thenAnswer(invocation -> {
+            CompletableFuture<String> f = new CompletableFuture<>();
+            pending.add(f);
+            return f;
+        });
+        List<Integer> delivered = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<Void> done = executor.execute(items(10), (item, body, error) -> delivered.add(item.index()));
+
+        // 上限の 3 件だけが開始されている
+        assertThat(pending).hasSize(3);
+        int completed = 0;
+        while (completed < 10) {
+            CompletableFuture<String> f = pending.poll();
+            if (f == null) {
+                Thread.sleep(5);
+                continue;
+            }
+            assertThat(pending.size()).isLessThan(3);
+            f.complete("{\"access_token\":\"at\"}");
+            completed++;
+        }
+        done.get(5, TimeUnit.SECONDS);
+
+        assertThat(delivered).containsExactlyInAnyOrder(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+    }
+
+    @Test
+    void failures_areDeliveredPerItemWithoutStoppingTheBatch() throws Exception {
+        executor = new TokenBatchExecutor(client, 4, 1, 100);
+        when(client.requestTokenAsync(any(), anyString(), anyMap())).thenAnswer(invocation -> {
+            Map<?, ?> form = invocation.getArgument(2);
+            if ("rt-1".equals(form.get("refresh_token"))) {
+                return CompletableFuture.failedFuture(
+                        new TokenEndpointUnavailableException(ENDPOINT, "circuit_open", 1000L));
+            }
+            return CompletableFuture.completedFuture("{\"access_token\":\"at\"}");
+        });
+        List<String> results = new CopyOnWriteArrayList<>();
+
+        executor.execute(items(3), (item, body, error) ->
+                results.add(item.index() + ":" + (error != null ? error.getClass().getSimpleName() : body)))
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(results).containsExactlyInAnyOrder(
+                "0:{\"access_token\":\"at\"}",
+                "1:TokenEndpointUnavailableException",
+                "2:{\"access_token\":\"at\"}");
+    }
+
+    @Test
+    void listenerFailure_stopsStartingNewItems() throws Exception {
+        executor = new TokenBatchExecutor(client, 1, 1, 100);
+        AtomicInteger calls = new AtomicInteger();
+        when(client.requestTokenAsync(any(), anyString(), anyMap())).thenAnswer(invocation -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("{}");
+        });
+
+        CompletableFuture<Void> done = executor.execute(items(5), (item, body, error) -> {
+            throw new IOException("client disconnected");
+        });
+
+        Thread.sleep(200);
+        assertThat(done.isCancelled()).isTrue();
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void fullCallbackQueue_deliversOnTheCompletingThreadInsteadOfDropping() throws Exception {
+        // コールバック用スレッド 1 本・キュー 1 件で、1 件目の書き込みが詰まっている間に残りが完了する
+        executor = new TokenBatchExecutor(client, 8, 1, 1);
+        when(client.requestTokenAsync(any(), anyString(), anyMap()))
+                .thenReturn(CompletableFuture.completedFuture("{\"access_token\":\"at\"}"));
+        CountDownLatch blocked = new CountDownLatch(1);
+        AtomicBoolean firstOnPool = new AtomicBoolean(true);
+        List<Integer> delivered = new CopyOnWriteArrayList<>();
+        List<String> threads = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<Void> done = executor.execute(items(8), (item, body, error) -> {
+            if (Thread.currentThread().getName().equals("token-batch-callback") && firstOnPool.compareAndSet(true, false)) {
+                blocked.await(5, TimeUnit.SECONDS);
+            }
+            delivered.add(item.index());
+            threads.add(Thread.currentThread().getName());
+        });
+
+        blocked.countDown();
+        done.get(5, TimeUnit.SECONDS);
+        assertThat(delivered).containsExactlyInAnyOrder(0, 1, 2, 3, 4, 5, 6, 7);
+        assertThat(threads).anyMatch(name -> !name.equals("token-batch-callback"));
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.oidcclient.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TokenEndpointGuardTest {
+
+    private static final String ENDPOINT = "http://localhost:8080/realms/myrealm/protocol/openid-connect/token";
+
+    private final List<String> shed = new ArrayList<>();
+
+    private TokenEndpointGuard guard(int limit) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(limit, 1, limit, 2.0, 0.9);
+        CircuitBreaker breaker = new CircuitBreaker(4, 2, 0.5, 0.5, 60_000_000_000L, 1, null);
+        return new TokenEndpointGuard(ENDPOINT, limiter, breaker, (g, reason) -> shed.add(reason));
+    }
+
+    @Test
+    void classifiesResponseBodies() {
+        assertThat(TokenEndpointGuard.classify("{\"access_token\":\"a\"}")).isEqualTo(CircuitBreaker.Outcome.SUCCESS);
+        assertThat(TokenEndpointGuard.classify("{\"error\":\"invalid_grant\"}")).isEqualTo(CircuitBreaker.Outcome.SUCCESS);
+        assertThat(TokenEndpointGuard.classify("{\"error\":\"server_error\"}")).isEqualTo(CircuitBreaker.Outcome.FAILURE);
+        assertThat(TokenEndpointGuard.classify(" {\"error\":\"temporarily_unavailable\"}"))
+                .isEqualTo(CircuitBreaker.Outcome.FAILURE);
+        assertThat(TokenEndpointGuard.classify("<html>Bad Gateway</html>")).isEqualTo(CircuitBreaker.Outcome.FAILURE);
+        assertThat(TokenEndpointGuard.classify("")).isEqualTo(CircuitBreaker.Outcome.FAILURE);
+    }
+
+    @Test
+    void classifiesExceptions() {
+        assertThat(TokenEndpointGuard.classify(new CompletionException(new HttpTimeoutException("slow"))))
+                .isEqualTo(CircuitBreaker.Outcome.TIMEOUT);
+        assertThat(TokenEndpointGuard.classify(new IOException("reset"))).isEqualTo(CircuitBreaker.Outcome.FAILURE);
+        assertThat(TokenEndpointGuard.classify(new IllegalArgumentException("bad uri"))).isNull();
+        // max-connections の空き待ちで拒否した場合は upstream のタイムアウトとして数えない
+        assertThat(TokenEndpointGuard.classify(new CompletionException(
+                new TokenEndpointUnavailableException(ENDPOINT, TokenEndpointClient.CONNECTION_LIMIT, 1_000L)))).isNull();
+    }
+
+    @Test
+    void shedsWhenTheConcurrencyLimitIsReached() {
+        TokenEndpointGuard guard = guard(1);
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        guard.callAsync(() -> pending);
+
+        assertThatThrownBy(() -> guard.call(() -> "{}"))
+                .isInstanceOfSatisfying(TokenEndpointUnavailableException.class, e -> {
+                    assertThat(e.reason()).isEqualTo(TokenEndpointGuard.CONCURRENCY_LIMIT);
+                    assertThat(e.retryAfterMillis()).isPositive();
+                });
+        assertThat(shed).containsExactly(TokenEndpointGuard.CONCURRENCY_LIMIT);
+
+        pending.complete("{\"access_token\":\"a\"}");
+        assertThat(guard.limiter().inFlight()).isZero();
+    }
+
+    @Test
+    void shedsWhileTheCircuitIsOpen() throws Exception {
+        TokenEndpointGuard guard = guard(4);
+        for (int i = 0; i < 2; i++) {
+            assertThat(guard.call(() -> "{\"error\":\"server_error\"}")).contains("server_error");
+        }
+        assertThat(guard.breaker().state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        CompletableFuture<String> future = guard.callAsync(() -> CompletableFuture.completedFuture("{}"));
+        assertThat(future).isCompletedExceptionally();
+        assertThat(shed).containsExactly(TokenEndpointGuard.CIRCUIT_OPEN);
+        assertThat(guard.limiter().inFlight()).isZero();
+    }
+}
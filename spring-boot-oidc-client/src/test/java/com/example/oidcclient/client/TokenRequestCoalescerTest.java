@@ -0,0 +1,158 @@
+package com.example.oidcclient.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenRequestCoalescerTest {
+
+    private static final Map<String, String> FORM = Map.of(
+            "grant_type", "authorization_code",
+            "code", "code-123",
+            "client_id", "semi_client",
+            "redirect_uri", "http://localhost:8081/callback");
+
+    @Test
+    void concurrentDuplicates_shareOneUpstreamCall() throws Exception {
+        TokenRequestCoalescer coalescer = new TokenRequestCoalescer(true, Duration.ofSeconds(5), 100, Duration.ofSeconds(5));
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(pool.submit(() -> coalescer.execute(TokenRequestCoalescer.Key.of(FORM), () -> {
+                    upstreamCalls.incrementAndGet();
+                    release.await(5, TimeUnit.SECONDS);
+                    return "{\"access_token\":\"shared\"}";
+                })));
+            }
+            // 全スレッドが合流するまで待ってから upstream を完了させる
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<String> f : results) {
+                assertThat(f.get(5, TimeUnit.SECONDS)).isEqualTo("{\"access_token\":\"shared\"}");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertThat(upstreamCalls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void reloadWithinTtl_isServedFromMemo() throws Exception {
+        TokenRequestCoalescer coalescer = new TokenRequestCoalescer(true, Duration.ofSeconds(5), 100, Duration.ofSeconds(5));
+        AtomicInteger upstreamCalls = new AtomicInteger();
+
+        String first = coalescer.execute(TokenRequestCoalescer.Key.of(FORM), () -> token(upstreamCalls.incrementAndGet()));
+        String second = coalescer.execute(TokenRequestCoalescer.Key.of(FORM), () -> token(upstreamCalls.incrementAndGet()));
+
+        assertThat(first).isEqualTo(token(1));
+        assertThat(second).isEqualTo(token(1));
+        assertThat(upstreamCalls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void duplicateSubmitWithoutVerifier_isServedTheFirstResult() throws Exception {
+        // session モードでは 2 回目の送信時にフローが消費済みのため code_verifier が付かない
+        TokenRequestCoalescer coalescer = new TokenRequestCoalescer(true, Duration.ofSeconds(5), 100, Duration.ofSeconds(5));
+        AtomicInteger upstreamCalls = new AtomicInteger();
+
+        String first = coalescer.execute(TokenRequestCoalescer.Key.of(with(FORM, "code_verifier", "verifier-legit")),
+                () -> token(upstreamCalls.incrementAndGet()));
+        String second = coalescer.execute(TokenRequestCoalescer.Key.of(FORM), () -> token(upstreamCalls.incrementAndGet()));
+
+        assertThat(second).isEqualTo(first);
+        assertThat(upstreamCalls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void differentCodeVerifierOrSecret_isNotCoalesced() throws Exception {
+        TokenRequestCoalescer coalescer = new TokenRequestCoalescer(true, Duration.ofSeconds(5), 100, Duration.ofSeconds(5));
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        Map<String, String> legit = with(FORM, "code_verifier", "verifier-legit");
+        Map<String, String> attacker = with(FORM, "code_verifier", "verifier-other");
+        Map<String, String> otherSecret = with(legit, "client_secret", "guessed");
+
+        String first = coalescer.execute(TokenRequestCoalescer.Key.of(legit), () -> token(upstreamCalls.incrementAndGet()));
+        // 同じ code でも verifier・secret が違えば memo の結果は返さず upstream に送る
+        String second = coalescer.execute(TokenRequestCoalescer.Key.of(attacker), () -> token(upstreamCalls.incrementAndGet()));
+        String third = coalescer.execute(TokenRequestCoalescer.Key.of(otherSecret), () -> token(upstreamCalls.incrementAndGet()));
+
+        assertThat(first).isEqualTo(token(1));
+        assertThat(second).isEqualTo(token(2));
+        assertThat(third).isEqualTo(token(3));
+        assertThat(TokenRequestCoalescer.Key.of(legit)).isEqualTo(TokenRequestCoalescer.Key.of(new TreeMap<>(legit)));
+    }
+
+    @Test
+    void errorResponses_areNotMemoized() throws Exception {
+        TokenRequestCoalescer coalescer = new TokenRequestCoalescer(true, Duration.ofSeconds(5), 100, Duration.ofSeconds(5));
+        AtomicInteger upstreamCalls = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            coalescer.execute(TokenRequestCoalescer.Key.of(FORM), () -> {
+                upstreamCalls.incrementAndGet();
+                return "{\"error\":\"invalid_grant\"}";
+            });
+        }
+
+        assertThat(upstreamCalls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void concurrentRequestWithDifferentVerifier_doesNotJoinTheLeader() throws Exception {
+        TokenRequestCoalescer coalescer = new TokenRequestCoalescer(true, Duration.ofSeconds(5), 100, Duration.ofSeconds(5));
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> leader = pool.submit(() -> coalescer.execute(
+                    TokenRequestCoalescer.Key.of(with(FORM, "code_verifier", "verifier-legit")), () -> {
+                        leaderStarted.countDown();
+                        release.await(5, TimeUnit.SECONDS);
+                        return "{\"access_token\":\"legit\"}";
+                    }));
+            assertThat(leaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+            String other = coalescer.execute(TokenRequestCoalescer.Key.of(with(FORM, "code_verifier", "verifier-other")),
+                    () -> "{\"error\":\"invalid_grant\"}");
+            release.countDown();
+
+            assertThat(other).isEqualTo("{\"error\":\"invalid_grant\"}");
+            assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("{\"access_token\":\"legit\"}");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void nonAuthorizationCodeGrant_isNotCoalesced() {
+        assertThat(TokenRequestCoalescer.Key.of(Map.of("grant_type", "client_credentials", "client_id", "svc"))).isNull();
+    }
+
+    private static String token(int n) {
+        return "{\"access_token\":\"at-" + n + "\",\"token_type\":\"Bearer\"}";
+    }
+
+    private static Map<String, String> with(Map<String, String> form, String name, String value) {
+        Map<String, String> copy = new HashMap<>(form);
+        copy.put(name, value);
+        return copy;
+    }
+}
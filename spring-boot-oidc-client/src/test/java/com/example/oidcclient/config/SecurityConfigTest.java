@@ -0,0 +1,46 @@
+package com.example.oidcclient.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = "spring.security.user.password=scrape-secret")
+@AutoConfigureMockMvc
+public class SecurityConfigTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void prometheus_isScrapedWithBasicAuth() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus").with(httpBasic("ops", "scrape-secret")))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("# TYPE")));
+    }
+
+    @Test
+    void prometheus_withoutCredentials_isChallenged() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isUnauthorized())
+                .andExpect(header().exists("WWW-Authenticate"));
+    }
+
+    @Test
+    void prometheus_withWrongPassword_isRejected() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus").with(httpBasic("ops", "wrong")))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void health_staysPublic() throws Exception {
+        mockMvc.perform(get("/actuator/health"))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.oidcclient.controller;
+
+import com.example.oidcclient.logout.LogoutTokenValidator;
+import com.example.oidcclient.logout.RevocationList;
+import com.nimbusds.jwt.JWTClaimsSet;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+public class BackChannelLogoutControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void malformedLogoutToken_isRejectedWith400() throws Exception {
+        // 認証なしで到達でき（permitAll）、検証できないトークンは invalid_request になる
+        mockMvc.perform(post("/backchannel_logout").param("logout_token", "not-a-jwt"))
+                .andExpect(status().isBadRequest())
+                .andExpect(header().string("Cache-Control", "no-store"))
+                .andExpect(jsonPath("$.error").value("invalid_request"));
+    }
+
+    @Test
+    void missingLogoutToken_isRejectedWith400() throws Exception {
+        mockMvc.perform(post("/backchannel_logout"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void logoutWithSid_revokesOnlyThatSession() {
+        LogoutTokenValidator validator = Mockito.mock(LogoutTokenValidator.class);
+        RevocationList revocationList = new RevocationList(Duration.ofHours(1), 4, 100, 0.01);
+        when(validator.validate("with-sid"))
+                .thenReturn(new JWTClaimsSet.Builder().subject("user-1").claim("sid", "sid-1").build());
+        when(validator.validate("sub-only")).thenReturn(new JWTClaimsSet.Builder().subject("user-2").build());
+        BackChannelLogoutController controller = new BackChannelLogoutController(validator, revocationList);
+
+        controller.logout("with-sid");
+        // 同じユーザーの別セッション（sid-2）は残る
+        assertThat(revocationList.isSessionRevoked("sid-1", "user-1", 0L)).isTrue();
+        assertThat(revocationList.isSessionRevoked("sid-2", "user-1", 0L)).isFalse();
+
+        controller.logout("sub-only");
+        assertThat(revocationList.isSessionRevoked("sid-3", "user-2", 0L)).isTrue();
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.oidcclient.controller;
+
+import com.example.oidcclient.OidcClientApplication;
+import com.nimbusds.jose.util.JSONObjectUtils;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.security.user.password=batch-secret")
+@AutoConfigureMockMvc
+public class TokenBatchControllerTest {
+
+    private static final String FOREIGN_ENDPOINT = "http://attacker.example/token";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    @WithMockUser
+    void batch_streamsOneLinePerItem() throws Exception {
+        // 項目ごとの token_endpoint は無視し、discovery の token エンドポイントへ送る
+        String body = "["
+                + "{\"id\":\"a\",\"grant_type\":\"refresh_token\",\"refresh_token\":\"rt-a\",\"client_id\":\"semi_client\",\"token_endpoint\":\"" + FOREIGN_ENDPOINT + "\"},"
+                + "{\"id\":\"b\",\"grant_type\":\"refresh_token\",\"refresh_token\":\"rt-b\",\"client_id\":\"semi_client\"},"
+                + "{\"id\":\"c\",\"grant_type\":\"authorization_code\",\"code\":\"x\"}"
+                + "]";
+        List<String> endpoints = new CopyOnWriteArrayList<>();
+
+        String content;
+        try (MockedStatic<OidcClientApplication> mocked =
+                     Mockito.mockStatic(OidcClientApplication.class, Mockito.CALLS_REAL_METHODS)) {
+            mocked.when(() -> OidcClientApplication.requestTokenAsync(Mockito.anyString(), Mockito.anyMap()))
+                    .thenAnswer(invocation -> {
+                        endpoints.add(invocation.getArgument(0));
+                        Map<?, ?> form = invocation.getArgument(1);
+                        assertThat(form).doesNotContainKey("token_endpoint");
+                        return CompletableFuture.completedFuture(
+                                "{\"access_token\":\"at-" + form.get("refresh_token") + "\",\"token_type\":\"Bearer\"}");
+                    });
+
+            MvcResult result = mockMvc.perform(post("/token_batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(body))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            content = mockMvc.perform(asyncDispatch(result))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+        }
+
+        List<Map<String, Object>> lines = new ArrayList<>();
+        for (String line : content.split("\n")) {
+            if (!line.isBlank()) lines.add(JSONObjectUtils.parse(line));
+        }
+        assertThat(lines).hasSize(3);
+        // 受け付けなかった項目は先頭に返る
+        assertThat(lines.get(0)).containsEntry("id", "c").containsEntry("error", "unsupported_grant_type");
+        assertThat(lines.subList(1, 3))
+                .extracting(l -> ((Map<?, ?>) l.get("response")).get("access_token"))
+                .containsExactlyInAnyOrder("at-rt-a", "at-rt-b");
+        assertThat(endpoints).hasSize(2).doesNotContain(FOREIGN_ENDPOINT);
+    }
+
+    @Test
+    void batch_requiresAnAuthenticatedCaller() throws Exception {
+        mockMvc.perform(post("/token_batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void batch_acceptsHttpBasicCaller() throws Exception {
+        String body = "[{\"id\":\"a\",\"grant_type\":\"refresh_token\",\"refresh_token\":\"rt-a\",\"client_id\":\"semi_client\"}]";
+
+        String content;
+        try (MockedStatic<OidcClientApplication> mocked =
+                     Mockito.mockStatic(OidcClientApplication.class, Mockito.CALLS_REAL_METHODS)) {
+            mocked.when(() -> OidcClientApplication.requestTokenAsync(Mockito.anyString(), Mockito.anyMap()))
+                    .thenReturn(CompletableFuture.completedFuture("{\"access_token\":\"at-a\",\"token_type\":\"Bearer\"}"));
+
+            MvcResult result = mockMvc.perform(post("/token_batch")
+                            .with(httpBasic("ops", "batch-secret"))
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(body))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            content = mockMvc.perform(asyncDispatch(result))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+        }
+
+        Map<String, Object> line = JSONObjectUtils.parse(content.trim());
+        assertThat(line).containsEntry("id", "a");
+        assertThat(((Map<?, ?>) line.get("response")).get("access_token")).isEqualTo("at-a");
+    }
+
+    @Test
+    void batch_rejectsWrongBasicPassword() throws Exception {
+        mockMvc.perform(post("/token_batch")
+                        .with(httpBasic("ops", "wrong"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @WithMockUser
+    void batch_rejectsNonArrayBody() throws Exception {
+        mockMvc.perform(post("/token_batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"grant_type\":\"refresh_token\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("invalid_request"));
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.oidcclient.controller;
+
+import com.example.oidcclient.OidcClientApplication;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+public class TokenRequestControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void tokenRequestAsync_completesWithUpstreamResponse() throws Exception {
+        String expectedResponse = "{\"access_token\":\"async-token\",\"token_type\":\"bearer\"}";
+        AtomicReference<Map<String, String>> capturedForm = new AtomicReference<>();
+
+        try (MockedStatic<OidcClientApplication> mocked =
+                     Mockito.mockStatic(OidcClientApplication.class, Mockito.CALLS_REAL_METHODS)) {
+            // requestTokenAsync のみをスタブして form をキャプチャ
+            mocked.when(() -> OidcClientApplication.requestTokenAsync(Mockito.anyString(), Mockito.anyMap()))
+                    .thenAnswer(invocation -> {
+                        @SuppressWarnings("unchecked")
+                        Map<String, String> form = (Map<String, String>) invocation.getArgument(1);
+                        capturedForm.set(form);
+                        return CompletableFuture.completedFuture(expectedResponse);
+                    });
+
+            MvcResult result = mockMvc.perform(post("/token_request_async")
+                            .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                            .param("code", "async-code")
+                            .param("client_id", "semi_client")
+                            .param("redirect_uri", "http://localhost:8081/callback"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            mockMvc.perform(asyncDispatch(result))
+                    .andExpect(status().isOk())
+                    .andExpect(content().string(expectedResponse));
+        }
+
+        Map<String, String> form = capturedForm.get();
+        assertThat(form).isNotNull();
+        assertThat(form.get("grant_type")).isEqualTo("authorization_code");
+        assertThat(form.get("code")).isEqualTo("async-code");
+    }
+
+    @Test
+    void idTokenWithoutPendingFlow_isRejected() throws Exception {
+        // state が不明（発行済みフローが無い）ため nonce を確認できない
+        String upstream = "{\"access_token\":\"at\",\"token_type\":\"bearer\","
+                + "\"id_token\":\"eyJhbGciOiJSUzI1NiJ9.eyJzdWIiOiJ1c2VyIn0.c2ln\"}";
+
+        try (MockedStatic<OidcClientApplication> mocked =
+                     Mockito.mockStatic(OidcClientApplication.class, Mockito.CALLS_REAL_METHODS)) {
+            mocked.when(() -> OidcClientApplication.requestToken(Mockito.anyString(), Mockito.anyMap()))
+                    .thenReturn(upstream);
+
+            mockMvc.perform(post("/token_request")
+                            .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                            .param("code", "code-1")
+                            .param("state", "unknown-state")
+                            .param("client_id", "semi_client")
+                            .param("redirect_uri", "http://localhost:8081/callback"))
+                    .andExpect(status().isBadGateway())
+                    .andExpect(jsonPath("$.error").value("invalid_id_token"))
+                    .andExpect(jsonPath("$.error_description").value(containsString("nonce")));
+        }
+    }
+
+    @Test
+    void foreignTokenEndpoint_isRejected() throws Exception {
+        try (MockedStatic<OidcClientApplication> mocked =
+                     Mockito.mockStatic(OidcClientApplication.class, Mockito.CALLS_REAL_METHODS)) {
+            mockMvc.perform(post("/token_request")
+                            .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                            .param("token_endpoint", "http://attacker.example/token")
+                            .param("code", "code-1")
+                            .param("client_id", "semi_client"))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.error").value("invalid_request"));
+
+            mocked.verify(() -> OidcClientApplication.requestToken(Mockito.anyString(), Mockito.anyMap()), Mockito.never());
+        }
+    }
+}
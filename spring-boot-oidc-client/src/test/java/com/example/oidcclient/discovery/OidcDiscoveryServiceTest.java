@@ -0,0 +1,139 @@
+package com.example.oidcclient.discovery;
+
+import com.example.oidcclient.client.RetryPolicy;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OidcDiscoveryServiceTest {
+
+    private HttpServer server;
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final AtomicInteger failuresBeforeSuccess = new AtomicInteger();
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+    private final RetryPolicy retryPolicy = new RetryPolicy(true, 3, Duration.ofMillis(1), Duration.ofMillis(10),
+            0.2, 20, false, 50, Duration.ofMillis(20));
+    private String host;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/realms/myrealm/.well-known/openid-configuration", exchange -> {
+            fetches.incrementAndGet();
+            try {
+                gate.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failuresBeforeSuccess.getAndDecrement() > 0) {
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            String issuer = host + "/realms/myrealm";
+            String body = "{\"issuer\":\"" + issuer + "\","
+                    + "\"authorization_endpoint\":\"" + issuer + "/protocol/openid-connect/auth\","
+                    + "\"token_endpoint\":\"" + issuer + "/protocol/openid-connect/token\","
+                    + "\"jwks_uri\":\"" + issuer + "/protocol/openid-connect/certs\"}";
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        server.start();
+        host = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        retryPolicy.shutdown();
+    }
+
+    private OidcDiscoveryService newService(String keycloakHost, Duration ttl) {
+        return new OidcDiscoveryService(HttpClient.newHttpClient(), retryPolicy, keycloakHost,
+                "/realms/myrealm/protocol/openid-connect", "", ttl, Duration.ofSeconds(30), Duration.ofSeconds(5));
+    }
+
+    @Test
+    void current_fetchesOnceAndServesFromCache() throws Exception {
+        OidcDiscoveryService service = newService(host, Duration.ofMinutes(5));
+        service.refreshAsync().get(5, TimeUnit.SECONDS);
+
+        OidcProviderMetadata first = service.current();
+        OidcProviderMetadata second = service.current();
+
+        assertThat(first.tokenEndpoint()).isEqualTo(host + "/realms/myrealm/protocol/openid-connect/token");
+        assertThat(second).isSameAs(first);
+        assertThat(fetches.get()).isEqualTo(1);
+    }
+
+    @Test
+    void current_returnsStaleValueWhileRefreshing() throws Exception {
+        OidcDiscoveryService service = newService(host, Duration.ZERO);
+        service.refreshAsync().get(5, TimeUnit.SECONDS);
+
+        OidcProviderMetadata first = service.current();
+        // TTL 切れでも古い値を即座に返し、再取得はバックグラウンドで 1 回だけ行う
+        OidcProviderMetadata stale = service.current();
+        assertThat(stale).isSameAs(first);
+        service.refreshAsync().get(5, TimeUnit.SECONDS);
+        assertThat(fetches.get()).isBetween(2, 3);
+    }
+
+    @Test
+    void current_doesNotWaitForTheFirstFetch() throws Exception {
+        gate = new CountDownLatch(1);
+        OidcDiscoveryService service = newService(host, Duration.ofMinutes(5));
+
+        // 取得が終わるまではフォールバックを即座に返す（取得は 1 回だけ開始する）
+        long start = System.nanoTime();
+        OidcProviderMetadata first = service.current();
+        OidcProviderMetadata second = service.current();
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+        assertThat(first.tokenEndpoint()).isEqualTo(host + "/realms/myrealm/protocol/openid-connect/token");
+        assertThat(second).isSameAs(first);
+
+        gate.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (service.current() == first && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(service.current()).isNotSameAs(first);
+        assertThat(fetches.get()).isEqualTo(1);
+    }
+
+    @Test
+    void current_fallsBackToConfiguredEndpointsWhenUnavailable() {
+        server.stop(0);
+        OidcDiscoveryService service = newService(host, Duration.ofMinutes(5));
+
+        OidcProviderMetadata metadata = service.current();
+
+        assertThat(metadata.authorizationEndpoint()).isEqualTo(host + "/realms/myrealm/protocol/openid-connect/auth");
+        assertThat(metadata.tokenEndpoint()).isEqualTo(host + "/realms/myrealm/protocol/openid-connect/token");
+    }
+
+    @Test
+    void current_retriesTransientServerErrors() throws Exception {
+        failuresBeforeSuccess.set(1);
+        OidcDiscoveryService service = newService(host, Duration.ofMinutes(5));
+
+        OidcProviderMetadata metadata = service.refreshAsync().get(5, TimeUnit.SECONDS);
+
+        assertThat(metadata.issuer()).isEqualTo(host + "/realms/myrealm");
+        assertThat(fetches.get()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.oidcclient.flow;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FlowBindingCookieTest {
+
+    private final FlowBindingCookie cookie = new FlowBindingCookie("oidc_flow_binding", false);
+
+    private static MockHttpServletRequest requestWith(String value) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie("oidc_flow_binding", value));
+        return request;
+    }
+
+    @Test
+    void bind_issuesCookieOnce_andTheSameBrowserGetsTheSameBinding() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        String binding = cookie.bind(new MockHttpServletRequest(), response);
+
+        String header = response.getHeader("Set-Cookie");
+        assertThat(header).startsWith("oidc_flow_binding=").contains("HttpOnly").contains("SameSite=Lax");
+        String value = header.substring("oidc_flow_binding=".length(), header.indexOf(';'));
+
+        // ストアに入るのは Cookie の値そのものではなくハッシュ
+        assertThat(binding).isNotEqualTo(value);
+        assertThat(cookie.binding(requestWith(value))).isEqualTo(binding);
+
+        MockHttpServletResponse again = new MockHttpServletResponse();
+        assertThat(cookie.bind(requestWith(value), again)).isEqualTo(binding);
+        assertThat(again.getHeader("Set-Cookie")).isNull();
+    }
+
+    @Test
+    void missingOrMalformedCookie_hasNoBinding() {
+        assertThat(cookie.binding(new MockHttpServletRequest())).isNull();
+        assertThat(cookie.binding(requestWith("short"))).isNull();
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        cookie.bind(requestWith("not a valid value"), response);
+        assertThat(response.getHeader("Set-Cookie")).startsWith("oidc_flow_binding=");
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.oidcclient.flow;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JdbcFlowStateStoreTest {
+
+    private JdbcDataSource dataSource;
+    private JdbcFlowStateStore nodeA;
+    private JdbcFlowStateStore nodeB;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:flow-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        // 同じ DB を共有する 2 ノードを想定（flush は明示的に呼ぶ）
+        nodeA = new JdbcFlowStateStore(dataSource, Duration.ofMinutes(10), 16, Duration.ofHours(1), Duration.ofHours(1), 100, 1000, true);
+        nodeB = new JdbcFlowStateStore(dataSource, Duration.ofMinutes(10), 16, Duration.ofHours(1), Duration.ofHours(1), 100, 1000, true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.shutdown();
+        nodeB.shutdown();
+    }
+
+    private static final String BINDING = "binding-a";
+
+    private static PendingAuthorization pending(String state, long issuedAt) {
+        return new PendingAuthorization(state, "verifier-" + state, "nonce-" + state, "S256", issuedAt, BINDING);
+    }
+
+    @Test
+    void flowStartedOnOneNode_canBeFinishedOnAnotherExactlyOnce() throws Exception {
+        nodeA.put(pending("st-1", System.currentTimeMillis()), "127.0.0.1");
+        nodeA.flush();
+
+        PendingAuthorization onB = nodeB.consume("st-1", BINDING);
+
+        assertThat(onB).isNotNull();
+        assertThat(onB.codeVerifier()).isEqualTo("verifier-st-1");
+        assertThat(onB.codeChallengeMethod()).isEqualTo("S256");
+        // 別ノード（near-cache を持つ登録元ノードを含む）からは再利用できない
+        assertThat(nodeA.consume("st-1", BINDING)).isNull();
+        assertThat(nodeB.consume("st-1", BINDING)).isNull();
+    }
+
+    @Test
+    void unflushedFlow_isConsumedLocallyWithoutReachingTheDatabase() throws Exception {
+        nodeA.put(pending("st-2", System.currentTimeMillis()), "127.0.0.1");
+
+        assertThat(nodeA.consume("st-2", BINDING)).isNotNull();
+        nodeA.flush();
+        nodeB.sweep();
+        assertThat(nodeB.occupancy()).isZero();
+    }
+
+    @Test
+    void expiredRows_areSweptAndNotReturned() throws Exception {
+        long issuedLongAgo = System.currentTimeMillis() - Duration.ofMinutes(11).toMillis();
+        for (int i = 0; i < 40; i++) {
+            nodeA.put(pending("old-" + i, issuedLongAgo), "127.0.0.1");
+        }
+        nodeA.put(pending("fresh", System.currentTimeMillis()), "127.0.0.1");
+        nodeA.flush();
+
+        assertThat(nodeB.consume("old-0", BINDING)).isNull();
+        nodeB.sweep();
+        assertThat(nodeB.occupancy()).isEqualTo(1);
+        assertThat(nodeB.consume("fresh", BINDING)).isNotNull();
+    }
+
+    @Test
+    void otherBrowser_cannotConsumeOrBurnTheFlow() throws Exception {
+        nodeA.put(pending("st-3", System.currentTimeMillis()), "127.0.0.1");
+        nodeA.put(pending("st-4", System.currentTimeMillis()), "127.0.0.1");
+        nodeA.flush();
+        nodeA.put(pending("st-5", System.currentTimeMillis()), "127.0.0.1");
+
+        // DB・near-cache・書き込み待ちのいずれにあっても binding が違えば取り出せず、フローも残る
+        assertThat(nodeB.consume("st-3", "binding-b")).isNull();
+        assertThat(nodeA.consume("st-4", "binding-b")).isNull();
+        assertThat(nodeA.consume("st-5", null)).isNull();
+        assertThat(nodeB.consume("st-3", BINDING)).isNotNull();
+        assertThat(nodeA.consume("st-4", BINDING)).isNotNull();
+        assertThat(nodeA.consume("st-5", BINDING)).isNotNull();
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.oidcclient.flow;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PendingAuthorizationStoreTest {
+
+    private static final String BINDING = "binding-a";
+
+    private static PendingAuthorization pending(String state, long issuedAt) {
+        return new PendingAuthorization(state, "verifier-" + state, "nonce-" + state, "S256", issuedAt, BINDING);
+    }
+
+    @Test
+    void consume_succeedsOnlyOnceUnderConcurrency() throws Exception {
+        PendingAuthorizationStore store = new PendingAuthorizationStore(100, 0, Duration.ofMinutes(10), Duration.ofSeconds(1), 64);
+        store.put(pending("st-1", System.currentTimeMillis()), BINDING);
+
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger winners = new AtomicInteger();
+        for (int i = 0; i < threads; i++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (store.consume("st-1", BINDING) != null) winners.incrementAndGet();
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(winners.get()).isEqualTo(1);
+        assertThat(store.occupancy()).isZero();
+        store.shutdown();
+    }
+
+    @Test
+    void put_isRejectedAtCapacity() {
+        PendingAuthorizationStore store = new PendingAuthorizationStore(2, 0, Duration.ofMinutes(10), Duration.ofSeconds(1), 64);
+        long now = System.currentTimeMillis();
+
+        assertThat(store.put(pending("a", now), BINDING)).isTrue();
+        assertThat(store.put(pending("b", now), BINDING)).isTrue();
+        assertThat(store.put(pending("c", now), BINDING)).isFalse();
+        assertThat(store.rejectedCount()).isEqualTo(1);
+
+        // 取り出せば再び登録できる
+        store.consume("a", BINDING);
+        assertThat(store.put(pending("c", now), BINDING)).isTrue();
+        store.shutdown();
+    }
+
+    @Test
+    void expiredEntries_areEvictedByTheWheel() throws Exception {
+        PendingAuthorizationStore store = new PendingAuthorizationStore(100, 0, Duration.ofMillis(100), Duration.ofMillis(20), 16);
+        store.put(pending("old", System.currentTimeMillis()), BINDING);
+
+        long deadline = System.currentTimeMillis() + 3000;
+        while (store.occupancy() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertThat(store.occupancy()).isZero();
+        assertThat(store.evictedCount()).isEqualTo(1);
+        assertThat(store.consume("old", BINDING)).isNull();
+        store.shutdown();
+    }
+
+    @Test
+    void consumeFromAnotherBrowser_returnsNullAndKeepsTheFlow() {
+        PendingAuthorizationStore store = new PendingAuthorizationStore(100, 0, Duration.ofMinutes(10), Duration.ofSeconds(1), 64);
+        store.put(pending("st-1", System.currentTimeMillis()), BINDING);
+
+        assertThat(store.consume("st-1", "binding-b")).isNull();
+        assertThat(store.consume("st-1", null)).isNull();
+        assertThat(store.occupancy()).isEqualTo(1);
+        // 開始したブラウザからは取り出せる
+        assertThat(store.consume("st-1", BINDING)).isNotNull();
+        store.shutdown();
+    }
+
+    @Test
+    void put_isRejectedAtThePerBrowserLimit() {
+        PendingAuthorizationStore store = new PendingAuthorizationStore(100, 2, Duration.ofMinutes(10), Duration.ofSeconds(1), 64);
+        long now = System.currentTimeMillis();
+
+        assertThat(store.put(pending("a", now), BINDING)).isTrue();
+        assertThat(store.put(pending("b", now), BINDING)).isTrue();
+        assertThat(store.put(pending("c", now), BINDING)).isFalse();
+        // 他のブラウザ（同じリモートアドレスでも）は影響を受けない
+        assertThat(store.put(new PendingAuthorization("d", "v", "n", "S256", now, "binding-b"), "binding-b")).isTrue();
+        assertThat(store.occupancy()).isEqualTo(3);
+
+        // 取り出せば同じブラウザから再び登録できる
+        store.consume("a", BINDING);
+        assertThat(store.put(pending("c", now), BINDING)).isTrue();
+        store.shutdown();
+    }
+
+    @Test
+    void replace_keepsTheFlowsQuotaSlot() {
+        PendingAuthorizationStore store = new PendingAuthorizationStore(100, 2, Duration.ofMinutes(10), Duration.ofSeconds(1), 64);
+        long now = System.currentTimeMillis();
+        store.put(pending("a", now), BINDING);
+        store.put(pending("b", now), BINDING);
+
+        // 上限に達していても置き換えはできる（件数は増えない）
+        PendingAuthorization replaced = store.replace("a", BINDING, p -> new PendingAuthorization(p.state(),
+                p.codeVerifier(), p.nonce(), null, p.issuedAt(), p.binding()));
+        assertThat(replaced).isNotNull();
+        assertThat(store.occupancy()).isEqualTo(2);
+        assertThat(store.replace("a", "binding-b", p -> p)).isNull();
+
+        assertThat(store.consume("a", BINDING).codeChallengeMethod()).isNull();
+        assertThat(store.put(pending("c", now), BINDING)).isTrue();
+        store.shutdown();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.oidcclient.flow;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SealedFlowCookieTest {
+
+    private static SealedFlowCookie cookie(String secret) {
+        return new SealedFlowCookie("cookie", "oidc_flow", Duration.ofMinutes(10), 1024, false, secret, 1000);
+    }
+
+    private static PendingAuthorization pending(String state) {
+        return new PendingAuthorization(state, "verifier-" + state, "nonce-" + state, "S256", System.currentTimeMillis());
+    }
+
+    private static MockHttpServletRequest requestWith(String value) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie("oidc_flow", value));
+        return request;
+    }
+
+    @Test
+    void sealedValue_roundTripsAndIsConsumedOnce() {
+        SealedFlowCookie codec = cookie("shared-secret");
+        String sealed = codec.seal(pending("st-1"));
+
+        PendingAuthorization first = codec.consume(requestWith(sealed), new MockHttpServletResponse(), "st-1");
+        PendingAuthorization replay = codec.consume(requestWith(sealed), new MockHttpServletResponse(), "st-1");
+
+        assertThat(first).isNotNull();
+        assertThat(first.codeVerifier()).isEqualTo("verifier-st-1");
+        assertThat(first.nonce()).isEqualTo("nonce-st-1");
+        assertThat(replay).isNull();
+    }
+
+    @Test
+    void anotherNodeWithSameSecret_canFinishTheFlow() {
+        String sealed = cookie("shared-secret").seal(pending("st-2"));
+
+        PendingAuthorization result = cookie("shared-secret").consume(requestWith(sealed), new MockHttpServletResponse(), "st-2");
+
+        assertThat(result).isNotNull();
+        assertThat(result.state()).isEqualTo("st-2");
+    }
+
+    @Test
+    void tamperedOrForeignOrMismatchedCookie_isRejected() {
+        SealedFlowCookie codec = cookie("shared-secret");
+        String sealed = codec.seal(pending("st-3"));
+        char last = sealed.charAt(sealed.length() - 1);
+        String tampered = sealed.substring(0, sealed.length() - 1) + (last == 'A' ? 'B' : 'A');
+
+        assertThat(codec.unseal(tampered)).isNull();
+        assertThat(cookie("other-secret").unseal(sealed)).isNull();
+        assertThat(codec.consume(requestWith(sealed), new MockHttpServletResponse(), "other-state")).isNull();
+    }
+
+    @Test
+    void write_setsHttpOnlyCookieWithinSizeLimit() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        cookie("shared-secret").write(response, pending("st-4"));
+
+        String header = response.getHeader("Set-Cookie");
+        assertThat(header).startsWith("oidc_flow=").contains("HttpOnly").contains("SameSite=Lax");
+        assertThat(header.length()).isLessThan(1024);
+    }
+
+    @Test
+    void replayCache_isBoundedByMaxEntries() throws Exception {
+        long ttl = 5_000;
+        SealedFlowCookie codec = new SealedFlowCookie("cookie", "oidc_flow", Duration.ofMillis(ttl), 1024, false,
+                "shared-secret", 2);
+        // 1 件目・2 件目は間もなく期限が来る
+        long soon = System.currentTimeMillis() - ttl + 1_500;
+        for (String state : new String[] {"a", "b"}) {
+            String sealed = codec.seal(new PendingAuthorization(state, "v", "n", "S256", soon));
+            assertThat(codec.consume(requestWith(sealed), new MockHttpServletResponse(), state)).isNotNull();
+        }
+
+        // 上限に達している間は、リプレイを見逃さないよう新しいフローも受け付けない
+        String full = codec.seal(pending("c"));
+        assertThat(codec.consume(requestWith(full), new MockHttpServletResponse(), "c")).isNull();
+
+        // 期限切れの分が取り除かれれば再び受け付ける
+        Thread.sleep(2_000);
+        String fresh = codec.seal(pending("d"));
+        assertThat(codec.consume(requestWith(fresh), new MockHttpServletResponse(), "d")).isNotNull();
+        assertThat(codec.consume(requestWith(fresh), new MockHttpServletResponse(), "d")).isNull();
+    }
+}
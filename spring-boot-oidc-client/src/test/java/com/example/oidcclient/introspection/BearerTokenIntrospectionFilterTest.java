@@ -0,0 +1,93 @@
+package com.example.oidcclient.introspection;
+
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+public class BearerTokenIntrospectionFilterTest {
+
+    private final TokenIntrospector introspector = Mockito.mock(TokenIntrospector.class);
+    private final BearerTokenIntrospectionFilter filter = new BearerTokenIntrospectionFilter(introspector);
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private static MockHttpServletRequest request(String authorization) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/resource");
+        if (authorization != null) {
+            request.addHeader("Authorization", authorization);
+        }
+        return request;
+    }
+
+    @Test
+    void activeToken_authenticatesRequestWithScopes() throws Exception {
+        when(introspector.introspect("at-1")).thenReturn(
+                new IntrospectionResult(true, "user-1", "sid-1", "alice", "semi_client", "openid profile", 0L));
+        AtomicReference<Authentication> seen = new AtomicReference<>();
+        MockFilterChain chain = new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest req, ServletResponse res) {
+                seen.set(SecurityContextHolder.getContext().getAuthentication());
+            }
+        };
+
+        filter.doFilter(request("Bearer at-1"), new MockHttpServletResponse(), chain);
+
+        assertThat(seen.get()).isNotNull();
+        assertThat(seen.get().isAuthenticated()).isTrue();
+        assertThat(seen.get().getName()).isEqualTo("alice");
+        assertThat(seen.get().getAuthorities()).extracting(GrantedAuthority::getAuthority)
+                .containsExactly("SCOPE_openid", "SCOPE_profile");
+    }
+
+    @Test
+    void inactiveToken_isRejectedWith401() throws Exception {
+        when(introspector.introspect("revoked")).thenReturn(IntrospectionResult.inactive());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request("Bearer revoked"), response, chain);
+
+        assertThat(response.getStatus()).isEqualTo(401);
+        assertThat(response.getHeader("WWW-Authenticate")).contains("invalid_token");
+        assertThat(chain.getRequest()).isNull();
+    }
+
+    @Test
+    void introspectionFailure_returns503() throws Exception {
+        when(introspector.introspect("at-1")).thenThrow(new IOException("connection refused"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("Bearer at-1"), response, new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(503);
+        assertThat(response.getContentAsString()).contains("temporarily_unavailable");
+    }
+
+    @Test
+    void requestWithoutBearerToken_passesThroughUntouched() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request(null), new MockHttpServletResponse(), chain);
+
+        assertThat(chain.getRequest()).isNotNull();
+        Mockito.verifyNoInteractions(introspector);
+    }
+}
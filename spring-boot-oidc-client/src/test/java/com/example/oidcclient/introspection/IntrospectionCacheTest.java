@@ -0,0 +1,149 @@
+package com.example.oidcclient.introspection;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class IntrospectionCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+    private IntrospectionCache cache(int maxEntries) {
+        return new IntrospectionCache(maxEntries, Duration.ofMinutes(5), Duration.ofSeconds(10), Duration.ofSeconds(5),
+                now::get);
+    }
+
+    private IntrospectionResult active(long expiresInSeconds) {
+        upstreamCalls.incrementAndGet();
+        return new IntrospectionResult(true, "user-1", "sid-1", "alice", "semi_client", "openid profile",
+                now.get() / 1000L + expiresInSeconds);
+    }
+
+    private IntrospectionResult inactive() {
+        upstreamCalls.incrementAndGet();
+        return IntrospectionResult.inactive();
+    }
+
+    @Test
+    void activeResult_isCachedUntilTokenExpiry() throws Exception {
+        IntrospectionCache cache = cache(100);
+
+        assertThat(cache.get("token", () -> active(60)).username()).isEqualTo("alice");
+        now.addAndGet(59_000);
+        assertThat(cache.get("token", () -> active(60)).active()).isTrue();
+        assertThat(upstreamCalls.get()).isEqualTo(1);
+
+        // exp を過ぎたら再度問い合わせる
+        now.addAndGet(1_000);
+        cache.get("token", () -> active(60));
+        assertThat(upstreamCalls.get()).isEqualTo(2);
+        assertThat(cache.hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void activeResult_isCappedByMaxTtl() throws Exception {
+        IntrospectionCache cache = cache(100);
+
+        cache.get("token", () -> active(3600));
+        now.addAndGet(Duration.ofMinutes(5).toMillis());
+        cache.get("token", () -> active(3600));
+
+        assertThat(upstreamCalls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void inactiveResult_isCachedOnlyForNegativeTtl() throws Exception {
+        IntrospectionCache cache = cache(100);
+
+        assertThat(cache.get("revoked", this::inactive).active()).isFalse();
+        now.addAndGet(9_000);
+        cache.get("revoked", this::inactive);
+        assertThat(upstreamCalls.get()).isEqualTo(1);
+
+        now.addAndGet(1_000);
+        cache.get("revoked", this::inactive);
+        assertThat(upstreamCalls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void loaderFailures_areNotCached() throws Exception {
+        IntrospectionCache cache = cache(100);
+
+        assertThatThrownBy(() -> cache.get("token", () -> {
+            upstreamCalls.incrementAndGet();
+            throw new IOException("connection refused");
+        })).isInstanceOf(IOException.class);
+        cache.get("token", () -> active(60));
+
+        assertThat(upstreamCalls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void invalidate_dropsCachedResult() throws Exception {
+        IntrospectionCache cache = cache(100);
+
+        cache.get("token", () -> active(60));
+        cache.invalidate("token");
+        cache.get("token", () -> active(60));
+
+        assertThat(upstreamCalls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void concurrentLookups_forSameToken_callUpstreamOnce() throws Exception {
+        IntrospectionCache cache = cache(100);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            Future<?>[] futures = new Future<?>[8];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = pool.submit(() -> cache.get("token", () -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return active(60);
+                }));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<?> f : futures) {
+                assertThat(((IntrospectionResult) f.get(5, TimeUnit.SECONDS)).active()).isTrue();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertThat(upstreamCalls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void sizeIsBounded_andFrequentTokensSurviveAScan() throws Exception {
+        IntrospectionCache cache = cache(100);
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 50; i++) {
+                cache.get("hot-" + i, () -> active(600));
+            }
+        }
+        for (int i = 0; i < 5_000; i++) {
+            cache.get("scan-" + i, () -> active(600));
+        }
+        assertThat(cache.size()).isLessThanOrEqualTo(100);
+        assertThat(cache.evictionCount()).isPositive();
+
+        upstreamCalls.set(0);
+        for (int i = 0; i < 50; i++) {
+            cache.get("hot-" + i, () -> active(600));
+        }
+        // 一度しか使われないトークンが大量に来ても、頻繁に使われるトークンはほとんど追い出されない
+        assertThat(upstreamCalls.get()).isLessThanOrEqualTo(5);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.oidcclient.introspection;
+
+import com.example.oidcclient.client.ClientCredentialsTokenCache;
+import com.example.oidcclient.client.RetryPolicy;
+import com.example.oidcclient.client.TokenEndpointClient;
+import com.example.oidcclient.client.TokenEndpointGuards;
+import com.example.oidcclient.client.TokenRequestCoalescer;
+import com.example.oidcclient.discovery.OidcDiscoveryService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TokenIntrospectorTest {
+
+    private HttpServer server;
+    private String endpoint;
+    private final AtomicReference<String> response = new AtomicReference<>("{\"active\":true,\"exp\":4102444800}");
+    private final AtomicReference<String> authorization = new AtomicReference<>();
+    private final AtomicReference<String> requestBody = new AtomicReference<>();
+    private final List<String> outcomes = new ArrayList<>();
+    private RetryPolicy retryPolicy;
+    private ClientCredentialsTokenCache clientCredentialsCache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/realms/myrealm/protocol/openid-connect/token/introspect", exchange -> {
+            authorization.set(exchange.getRequestHeaders().getFirst("Authorization"));
+            requestBody.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            respond(exchange, response.get());
+        });
+        server.start();
+        endpoint = "http://127.0.0.1:" + server.getAddress().getPort()
+                + "/realms/myrealm/protocol/openid-connect/token/introspect";
+        retryPolicy = new RetryPolicy(true, 3, Duration.ofMillis(1), Duration.ofMillis(10), 0.2, 20,
+                false, 50, Duration.ofMillis(20));
+        clientCredentialsCache = new ClientCredentialsTokenCache(true, 0.8, 0.05, 100, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        retryPolicy.shutdown();
+        clientCredentialsCache.shutdown();
+    }
+
+    private TokenIntrospector introspector(String clientId, String clientSecret) {
+        HttpClient http = HttpClient.newHttpClient();
+        TokenEndpointGuards guards = new TokenEndpointGuards(true, 8, 4, 1, 8, 2.0, 0.9, 4, 2, 0.5, 0.5,
+                Duration.ofMinutes(1), 1);
+        TokenEndpointClient client = new TokenEndpointClient(http,
+                new TokenRequestCoalescer(true, Duration.ofSeconds(5), 100, Duration.ofSeconds(5)),
+                clientCredentialsCache, guards, retryPolicy, Duration.ofSeconds(5), 4);
+        TokenIntrospector introspector = new TokenIntrospector(Mockito.mock(OidcDiscoveryService.class),
+                new IntrospectionCache(100, Duration.ofMinutes(5), Duration.ofSeconds(10), Duration.ofSeconds(5)),
+                client, endpoint, clientId, clientSecret, Duration.ofSeconds(5));
+        introspector.useListener((outcome, elapsedNanos) -> outcomes.add(outcome));
+        return introspector;
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    @Test
+    void clientCredentials_areSentWithHttpBasic_notInTheForm() throws Exception {
+        IntrospectionResult result = introspector("resource server", "s3cret:&").introspect("access-token-1");
+
+        assertThat(result).isNotNull();
+        assertThat(outcomes).containsExactly("active");
+        // RFC 6749 2.3.1: client_id / client_secret は form エンコードしてから連結する
+        assertThat(authorization.get()).isEqualTo("Basic " + Base64.getEncoder()
+                .encodeToString("resource+server:s3cret%3A%26".getBytes(StandardCharsets.UTF_8)));
+        assertThat(requestBody.get())
+                .isEqualTo("token=access-token-1&token_type_hint=access_token")
+                .doesNotContain("client_secret");
+    }
+
+    @Test
+    void publicClient_sendsOnlyClientIdInTheForm() throws Exception {
+        response.set("{\"active\":false}");
+
+        introspector("public_client", "").introspect("access-token-1");
+
+        assertThat(authorization.get()).isNull();
+        assertThat(requestBody.get()).contains("client_id=public_client").doesNotContain("client_secret");
+        assertThat(outcomes).containsExactly("inactive");
+    }
+
+    @Test
+    void errorResponse_isNotCachedAndReportedAsError() {
+        response.set("{\"error\":\"invalid_client\"}");
+        TokenIntrospector introspector = introspector("resource_server", "wrong");
+
+        assertThatThrownBy(() -> introspector.introspect("access-token-1")).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> introspector.introspect("access-token-1")).isInstanceOf(IOException.class);
+        assertThat(outcomes).containsExactly("error", "error");
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.oidcclient.jwt;
+
+import com.example.oidcclient.client.RetryPolicy;
+import com.example.oidcclient.discovery.OidcDiscoveryService;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class IdTokenValidatorTest {
+
+    private HttpServer server;
+    private String issuer;
+    private RSAKey signingKey;
+    private final AtomicInteger jwksFetches = new AtomicInteger();
+    private RetryPolicy retryPolicy;
+    private IdTokenValidator validator;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        signingKey = new RSAKeyGenerator(2048).keyID("kid-1").generate();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/realms/myrealm/.well-known/openid-configuration", exchange -> {
+            respond(exchange, "{\"issuer\":\"" + issuer + "\","
+                    + "\"token_endpoint\":\"" + issuer + "/protocol/openid-connect/token\","
+                    + "\"jwks_uri\":\"" + issuer + "/protocol/openid-connect/certs\"}");
+        });
+        server.createContext("/realms/myrealm/protocol/openid-connect/certs", exchange -> {
+            jwksFetches.incrementAndGet();
+            respond(exchange, new JWKSet(signingKey.toPublicJWK()).toString());
+        });
+        server.start();
+        String host = "http://127.0.0.1:" + server.getAddress().getPort();
+        issuer = host + "/realms/myrealm";
+
+        HttpClient client = HttpClient.newHttpClient();
+        retryPolicy = new RetryPolicy(true, 3, Duration.ofMillis(1), Duration.ofMillis(10), 0.2, 20,
+                false, 50, Duration.ofMillis(20));
+        OidcDiscoveryService discovery = new OidcDiscoveryService(client, retryPolicy, host,
+                "/realms/myrealm/protocol/openid-connect", "", Duration.ofMinutes(5), Duration.ofSeconds(30), Duration.ofSeconds(5));
+        JwksCache jwksCache = new JwksCache(client, discovery, retryPolicy, Duration.ofMinutes(1), Duration.ofSeconds(5));
+        validator = new IdTokenValidator(jwksCache, discovery, Duration.ofSeconds(30));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        retryPolicy.shutdown();
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    private String sign(RSAKey key, JWTClaimsSet claims) throws Exception {
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    private JWTClaimsSet.Builder claims() {
+        return new JWTClaimsSet.Builder()
+                .issuer(issuer)
+                .audience("semi_client")
+                .subject("user-1")
+                .expirationTime(new Date(System.currentTimeMillis() + 60_000))
+                .claim("nonce", "nonce-1");
+    }
+
+    @Test
+    void validToken_passesAndKeysAreCached() throws Exception {
+        JWTClaimsSet result = validator.validate(sign(signingKey, claims().build()), "semi_client", "nonce-1");
+        validator.validate(sign(signingKey, claims().build()), "semi_client", "nonce-1");
+
+        assertThat(result.getSubject()).isEqualTo("user-1");
+        assertThat(jwksFetches.get()).isEqualTo(1);
+    }
+
+    @Test
+    void nonceMismatch_isRejected() throws Exception {
+        String token = sign(signingKey, claims().build());
+        assertThatThrownBy(() -> validator.validate(token, "semi_client", "other-nonce"))
+                .isInstanceOf(IdTokenValidationException.class);
+    }
+
+    @Test
+    void expiredOrWrongAudience_isRejected() throws Exception {
+        String expired = sign(signingKey, claims().expirationTime(new Date(System.currentTimeMillis() - 120_000)).build());
+        String otherAudience = sign(signingKey, claims().audience("other_client").build());
+
+        assertThatThrownBy(() -> validator.validate(expired, "semi_client", "nonce-1"))
+                .isInstanceOf(IdTokenValidationException.class);
+        assertThatThrownBy(() -> validator.validate(otherAudience, "semi_client", "nonce-1"))
+                .isInstanceOf(IdTokenValidationException.class);
+    }
+
+    @Test
+    void unknownKid_refreshIsRateLimited() throws Exception {
+        validator.validate(sign(signingKey, claims().build()), "semi_client", "nonce-1");
+        RSAKey unknown = new RSAKeyGenerator(2048).keyID("kid-unknown").generate();
+        String token = sign(unknown, claims().build());
+
+        // refresh-min-interval 内なので未知の kid でも再取得しない
+        assertThatThrownBy(() -> validator.validate(token, "semi_client", "nonce-1"))
+                .isInstanceOf(IdTokenValidationException.class);
+        assertThatThrownBy(() -> validator.validate(token, "semi_client", "nonce-1"))
+                .isInstanceOf(IdTokenValidationException.class);
+        assertThat(jwksFetches.get()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.oidcclient.jwt;
+
+import com.example.oidcclient.client.RetryPolicy;
+import com.example.oidcclient.discovery.OidcDiscoveryService;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JwksCacheTest {
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private RetryPolicy retryPolicy;
+    private JwksCache jwksCache;
+    private final AtomicInteger jwksFetches = new AtomicInteger();
+    private final AtomicReference<JWKSet> served = new AtomicReference<>();
+    private volatile CountDownLatch entered;
+    private volatile CountDownLatch release;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        RSAKey key1 = new RSAKeyGenerator(2048).keyID("kid-1").generate();
+        served.set(new JWKSet(key1.toPublicJWK()));
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // 応答を止めている間も discovery 等に応答できるようにする
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        String host = "http://127.0.0.1:" + server.getAddress().getPort();
+        String issuer = host + "/realms/myrealm";
+        server.createContext("/realms/myrealm/.well-known/openid-configuration", exchange ->
+                respond(exchange, "{\"issuer\":\"" + issuer + "\","
+                        + "\"token_endpoint\":\"" + issuer + "/protocol/openid-connect/token\","
+                        + "\"jwks_uri\":\"" + issuer + "/protocol/openid-connect/certs\"}"));
+        server.createContext("/realms/myrealm/protocol/openid-connect/certs", exchange -> {
+            jwksFetches.incrementAndGet();
+            CountDownLatch gate = release;
+            if (gate != null) {
+                entered.countDown();
+                try {
+                    gate.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            respond(exchange, served.get().toString());
+        });
+        server.start();
+
+        HttpClient client = HttpClient.newHttpClient();
+        retryPolicy = new RetryPolicy(true, 3, Duration.ofMillis(1), Duration.ofMillis(10), 0.2, 20,
+                false, 50, Duration.ofMillis(20));
+        OidcDiscoveryService discovery = new OidcDiscoveryService(client, retryPolicy, host,
+                "/realms/myrealm/protocol/openid-connect", "", Duration.ofMinutes(5), Duration.ofSeconds(30), Duration.ofSeconds(5));
+        jwksCache = new JwksCache(client, discovery, retryPolicy, Duration.ZERO, Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        retryPolicy.shutdown();
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    @Test
+    void slowRefresh_doesNotBlockKnownKids_andConcurrentUnknownKidsShareOneFetch() throws Exception {
+        assertThat(jwksCache.verifier("kid-1")).isNotNull();
+        assertThat(jwksFetches.get()).isEqualTo(1);
+
+        // 鍵のローテーション。次の取得は release まで応答しない
+        RSAKey key2 = new RSAKeyGenerator(2048).keyID("kid-2").generate();
+        served.set(new JWKSet(List.of(served.get().getKeyByKeyId("kid-1"), key2.toPublicJWK())));
+        entered = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> jwksCache.verifier("kid-2") != null);
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> jwksCache.verifier("kid-2") != null);
+
+        // 取得中も既知の kid は現在の鍵ですぐに返る
+        CompletableFuture<Boolean> known = CompletableFuture.supplyAsync(() -> jwksCache.verifier("kid-1") != null);
+        assertThat(known.get(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(first.isDone()).isFalse();
+
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(second.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(jwksFetches.get()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.oidcclient.logout;
+
+import com.example.oidcclient.client.RetryPolicy;
+import com.example.oidcclient.discovery.OidcDiscoveryService;
+import com.example.oidcclient.jwt.IdTokenValidationException;
+import com.example.oidcclient.jwt.JwksCache;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LogoutTokenValidatorTest {
+
+    private HttpServer server;
+    private String issuer;
+    private RSAKey signingKey;
+    private RetryPolicy retryPolicy;
+    private LogoutTokenValidator validator;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        signingKey = new RSAKeyGenerator(2048).keyID("kid-1").generate();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/realms/myrealm/.well-known/openid-configuration", exchange -> {
+            respond(exchange, "{\"issuer\":\"" + issuer + "\","
+                    + "\"token_endpoint\":\"" + issuer + "/protocol/openid-connect/token\","
+                    + "\"jwks_uri\":\"" + issuer + "/protocol/openid-connect/certs\"}");
+        });
+        server.createContext("/realms/myrealm/protocol/openid-connect/certs", exchange -> {
+            respond(exchange, new JWKSet(signingKey.toPublicJWK()).toString());
+        });
+        server.start();
+        String host = "http://127.0.0.1:" + server.getAddress().getPort();
+        issuer = host + "/realms/myrealm";
+
+        HttpClient client = HttpClient.newHttpClient();
+        retryPolicy = new RetryPolicy(true, 3, Duration.ofMillis(1), Duration.ofMillis(10), 0.2, 20,
+                false, 50, Duration.ofMillis(20));
+        OidcDiscoveryService discovery = new OidcDiscoveryService(client, retryPolicy, host,
+                "/realms/myrealm/protocol/openid-connect", "", Duration.ofMinutes(5), Duration.ofSeconds(30), Duration.ofSeconds(5));
+        JwksCache jwksCache = new JwksCache(client, discovery, retryPolicy, Duration.ofMinutes(1), Duration.ofSeconds(5));
+        validator = new LogoutTokenValidator(jwksCache, discovery, true, "semi_client", Duration.ofSeconds(30),
+                Duration.ofMinutes(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        retryPolicy.shutdown();
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    private String sign(JWTClaimsSet claims) throws Exception {
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID("kid-1").build(), claims);
+        jwt.sign(new RSASSASigner(signingKey));
+        return jwt.serialize();
+    }
+
+    private JWTClaimsSet.Builder claims() {
+        long now = System.currentTimeMillis();
+        return new JWTClaimsSet.Builder()
+                .issuer(issuer)
+                .audience("semi_client")
+                .subject("user-1")
+                .issueTime(new Date(now))
+                .expirationTime(new Date(now + 60_000))
+                .jwtID("jti-1")
+                .claim("sid", "sid-1")
+                .claim("events", Map.of(LogoutTokenValidator.BACKCHANNEL_LOGOUT_EVENT, Map.of()));
+    }
+
+    @Test
+    void validLogoutToken_returnsSidAndSub() throws Exception {
+        JWTClaimsSet result = validator.validate(sign(claims().build()));
+
+        assertThat(result.getClaim("sid")).isEqualTo("sid-1");
+        assertThat(result.getSubject()).isEqualTo("user-1");
+    }
+
+    @Test
+    void tokenWithoutLogoutEvent_isRejected() throws Exception {
+        String token = sign(claims().claim("events", null).build());
+        assertThatThrownBy(() -> validator.validate(token)).isInstanceOf(IdTokenValidationException.class);
+    }
+
+    @Test
+    void idTokenWithNonce_isRejected() throws Exception {
+        String token = sign(claims().claim("nonce", "nonce-1").build());
+        assertThatThrownBy(() -> validator.validate(token)).isInstanceOf(IdTokenValidationException.class);
+    }
+
+    @Test
+    void staleOrForeignToken_isRejected() throws Exception {
+        String stale = sign(claims().issueTime(new Date(System.currentTimeMillis() - 600_000)).build());
+        String foreign = sign(claims().audience("other_client").build());
+        String noSubject = sign(claims().subject(null).claim("sid", null).build());
+
+        assertThatThrownBy(() -> validator.validate(stale)).isInstanceOf(IdTokenValidationException.class);
+        assertThatThrownBy(() -> validator.validate(foreign)).isInstanceOf(IdTokenValidationException.class);
+        assertThatThrownBy(() -> validator.validate(noSubject)).isInstanceOf(IdTokenValidationException.class);
+        assertThatThrownBy(() -> validator.validate("not-a-jwt")).isInstanceOf(IdTokenValidationException.class);
+    }
+
+    @Test
+    void blankClientId_failsStartupOnlyWhileEnabled() {
+        // aud を確認できない設定では起動させない
+        assertThatThrownBy(() -> new LogoutTokenValidator(null, null, true, " ", Duration.ofSeconds(30),
+                Duration.ofMinutes(5))).isInstanceOf(IllegalStateException.class);
+        new LogoutTokenValidator(null, null, false, "", Duration.ofSeconds(30), Duration.ofMinutes(5));
+    }
+}
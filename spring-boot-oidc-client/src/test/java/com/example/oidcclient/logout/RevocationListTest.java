@@ -0,0 +1,68 @@
+package com.example.oidcclient.logout;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RevocationListTest {
+
+    private final AtomicLong now = new AtomicLong(10_000_000_000L);
+
+    private RevocationList list() {
+        return new RevocationList(Duration.ofHours(12), 12, 1000, 0.01, now::get);
+    }
+
+    @Test
+    void revokedSid_isReportedOnlyForThatSession() {
+        RevocationList list = list();
+        long loginAt = now.get() - 60_000;
+
+        list.revoke("sid-1", null);
+
+        assertThat(list.isSessionRevoked("sid-1", "user-1", loginAt)).isTrue();
+        assertThat(list.isSessionRevoked("sid-2", "user-1", loginAt)).isFalse();
+        assertThat(list.isSidRevoked("sid-1")).isTrue();
+        assertThat(list.isSidRevoked(null)).isFalse();
+    }
+
+    @Test
+    void revokedSub_affectsOnlySessionsStartedBeforeLogout() {
+        RevocationList list = list();
+        long loginAt = now.get() - 60_000;
+
+        list.revoke(null, "user-1");
+        now.addAndGet(1_000);
+
+        assertThat(list.isSessionRevoked("sid-old", "user-1", loginAt)).isTrue();
+        // ログアウト後に再ログインしたセッションは有効
+        assertThat(list.isSessionRevoked("sid-new", "user-1", now.get())).isFalse();
+        assertThat(list.isSessionRevoked("sid-other", "user-2", loginAt)).isFalse();
+    }
+
+    @Test
+    void bloomFilterFalsePositives_areResolvedByExactSet() {
+        RevocationList list = list();
+        for (int i = 0; i < 20_000; i++) {
+            list.revoke("sid-" + i, null);
+        }
+        for (int i = 0; i < 20_000; i++) {
+            assertThat(list.isSidRevoked("live-" + i)).isFalse();
+        }
+    }
+
+    @Test
+    void revocations_expireAfterRetention() {
+        RevocationList list = list();
+        list.revoke("sid-1", "user-1");
+
+        now.addAndGet(Duration.ofHours(12).toMillis() + 1);
+
+        assertThat(list.isSidRevoked("sid-1")).isFalse();
+        list.revoke("sid-2", null);
+        // 期限切れの記録は次の記録時に掃除される
+        assertThat(list.size()).isEqualTo(1);
+    }
+}
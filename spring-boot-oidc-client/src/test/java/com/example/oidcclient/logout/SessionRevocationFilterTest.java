@@ -0,0 +1,68 @@
+package com.example.oidcclient.logout;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+
+import java.time.Duration;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SessionRevocationFilterTest {
+
+    private final RevocationList revocationList = new RevocationList(Duration.ofHours(12), 12, 1000, 0.01);
+    private final SessionRevocationFilter filter = new SessionRevocationFilter(revocationList, false);
+
+    private static MockHttpSession loggedInSession(String sid, String sub) {
+        MockHttpSession session = new MockHttpSession();
+        SessionRevocationFilter.bindSession(session, new JWTClaimsSet.Builder()
+                .subject(sub)
+                .claim("sid", sid)
+                .issueTime(new Date(System.currentTimeMillis() - 60_000))
+                .build());
+        return session;
+    }
+
+    @Test
+    void revokedSession_isInvalidatedAndRequestContinues() throws Exception {
+        MockHttpSession session = loggedInSession("sid-1", "user-1");
+        revocationList.revoke("sid-1", null);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/hello");
+        request.setSession(session);
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertThat(session.isInvalid()).isTrue();
+        assertThat(chain.getRequest()).isNotNull();
+    }
+
+    @Test
+    void activeSession_isKept() throws Exception {
+        MockHttpSession session = loggedInSession("sid-1", "user-1");
+        revocationList.revoke("sid-2", "user-2");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/hello");
+        request.setSession(session);
+
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        assertThat(session.isInvalid()).isFalse();
+        assertThat(session.getAttribute(SessionRevocationFilter.SID_ATTRIBUTE)).isEqualTo("sid-1");
+    }
+
+    @Test
+    void userWideLogout_invalidatesSessionsStartedBeforeIt() throws Exception {
+        MockHttpSession session = loggedInSession("sid-1", "user-1");
+        revocationList.revoke(null, "user-1");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/hello");
+        request.setSession(session);
+
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        assertThat(session.isInvalid()).isTrue();
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.oidcclient.metrics;
+
+import com.example.oidcclient.OidcClientApplication;
+import com.example.oidcclient.client.RetryPolicy;
+import com.example.oidcclient.client.TokenEndpointGuard;
+import com.example.oidcclient.client.TokenEndpointGuards;
+import com.example.oidcclient.client.TokenEndpointUnavailableException;
+import com.example.oidcclient.flow.PendingAuthorization;
+import com.example.oidcclient.flow.PendingAuthorizationStore;
+import com.example.oidcclient.introspection.TokenIntrospector;
+import com.example.oidcclient.session.SessionTokenRefreshManager;
+import com.example.oidcclient.tenant.TenantRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class OidcMetricsTest {
+
+    private static final String ENDPOINT = "http://localhost:8080/realms/myrealm/protocol/openid-connect/token";
+
+    private SimpleMeterRegistry registry;
+    private PendingAuthorizationStore store;
+    private TokenEndpointGuards guards;
+    private RetryPolicy retryPolicy;
+    private OidcMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        store = new PendingAuthorizationStore(100, 0, Duration.ofMinutes(10), Duration.ofSeconds(1), 64);
+        // window=4, min-calls=2, open-duration=1m
+        guards = new TokenEndpointGuards(true, 8, 4, 1, 8, 2.0, 0.9, 4, 2, 0.5, 0.5, Duration.ofMinutes(1), 1);
+        retryPolicy = new RetryPolicy(true, 3, Duration.ofMillis(1), Duration.ofMillis(10), 0.2, 1,
+                false, 50, Duration.ofMillis(20));
+        metrics = new OidcMetrics(registry, store, Mockito.mock(SessionTokenRefreshManager.class), guards, retryPolicy,
+                Mockito.mock(TenantRegistry.class), Mockito.mock(TokenIntrospector.class), 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        OidcClientApplication.useTokenCallObserver(null);
+        store.shutdown();
+        retryPolicy.shutdown();
+    }
+
+    @Test
+    void tokenResponses_areTimedAndErrorsCountedByOAuthCode() {
+        Map<String, String> form = Map.of("grant_type", "authorization_code");
+        metrics.onResponse(ENDPOINT, form, 200, "{\"access_token\":\"at\"}", 5_000_000L);
+        metrics.onResponse(ENDPOINT, form, 400, "{\"error\":\"invalid_grant\"}", 3_000_000L);
+
+        assertThat(registry.get("oidc.token.request")
+                .tags("grant_type", "authorization_code", "endpoint", "localhost:8080/realms/myrealm", "status", "200")
+                .timer().count()).isEqualTo(1);
+        assertThat(registry.get("oidc.token.errors").tags("error", "invalid_grant").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void failures_andUnknownValues_useBoundedTags() {
+        metrics.onFailure(ENDPOINT, Map.of("grant_type", "urn:example:custom"), new HttpTimeoutException("t"), 1L);
+        metrics.onResponse(ENDPOINT, Map.of("grant_type", "refresh_token"), 400, "{\"error\":\"something_new\"}", 1L);
+
+        assertThat(registry.get("oidc.token.errors").tags("grant_type", "other", "error", "timeout").counter().count()).isEqualTo(1);
+        assertThat(registry.get("oidc.token.errors").tags("error", "other").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void endpointTags_areCapped() {
+        assertThat(metrics.endpointTag("http://a:8080/realms/one/protocol/openid-connect/token")).isEqualTo("a:8080/realms/one");
+        assertThat(metrics.endpointTag("http://b:8080/realms/two/protocol/openid-connect/token")).isEqualTo("b:8080/realms/two");
+        assertThat(metrics.endpointTag("http://c:8080/realms/three/protocol/openid-connect/token")).isEqualTo("other");
+    }
+
+    @Test
+    void circuitTransitionsAndShedRequests_areExposed() throws Exception {
+        TokenEndpointGuard guard = guards.guard(ENDPOINT);
+        for (int i = 0; i < 2; i++) {
+            try {
+                guard.call(() -> {
+                    throw new HttpTimeoutException("slow");
+                });
+            } catch (HttpTimeoutException expected) {
+                // 想定どおり
+            }
+        }
+        try {
+            guard.call(() -> "{\"access_token\":\"at\"}");
+        } catch (TokenEndpointUnavailableException expected) {
+            // OPEN のため upstream を呼ばずに拒否される
+        }
+
+        String endpoint = "localhost:8080/realms/myrealm";
+        assertThat(registry.get("oidc.token.circuit.state").tags("endpoint", endpoint).gauge().value()).isEqualTo(2.0);
+        assertThat(registry.get("oidc.token.circuit.transitions").tags("from", "closed", "to", "open").counter().count())
+                .isEqualTo(1);
+        assertThat(registry.get("oidc.token.shed").tags("reason", "circuit_open").counter().count()).isEqualTo(1);
+        assertThat(registry.get("oidc.token.guard.limit").tags("endpoint", endpoint).gauge().value()).isPositive();
+    }
+
+    @Test
+    void pendingFlowGauge_tracksTheStore() {
+        store.put(new PendingAuthorization("st", "v", "n", "S256", System.currentTimeMillis()), "127.0.0.1");
+
+        assertThat(registry.get("oidc.flow.pending").gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    void retriesAndExhaustedBudget_areCounted() {
+        // 予算は 1 トークン: 1 回目の失敗は再送し、2 回目は予算切れで諦める
+        Callable<String> failing = () -> {
+            throw new IOException("connection reset");
+        };
+        assertThatThrownBy(() -> retryPolicy.execute(failing, body -> false)).isInstanceOf(IOException.class);
+
+        assertThat(registry.get("oidc.retry.attempts").counter().count()).isEqualTo(1);
+        assertThat(registry.get("oidc.retry.budget.exhausted").counter().count()).isEqualTo(1);
+        assertThat(registry.get("oidc.retry.hedges").counter().count()).isZero();
+    }
+
+    @Test
+    void introspectionCalls_areTimedSeparatelyFromTokenRequests() {
+        metrics.onIntrospection("active", 2_000_000L);
+        metrics.onIntrospection("active", 1_000_000L);
+        metrics.onIntrospection("timeout", 5_000_000L);
+
+        assertThat(registry.get("oidc.introspection.request").tags("outcome", "active").timer().count()).isEqualTo(2);
+        assertThat(registry.get("oidc.introspection.request").tags("outcome", "timeout").timer().count()).isEqualTo(1);
+        assertThat(registry.find("oidc.token.request").timers()).isEmpty();
+    }
+}
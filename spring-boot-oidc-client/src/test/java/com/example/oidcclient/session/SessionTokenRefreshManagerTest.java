@@ -0,0 +1,143 @@
+package com.example.oidcclient.session;
+
+import com.example.oidcclient.client.TokenEndpointClient;
+import com.example.oidcclient.token.TokenEndpointResponse;
+import com.example.oidcclient.token.TokenResponse;
+import jakarta.servlet.http.HttpSessionEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpSession;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SessionTokenRefreshManagerTest {
+
+    private static final String ENDPOINT = "http://localhost:8080/realms/myrealm/protocol/openid-connect/token";
+    private static final Map<String, String> FORM = Map.of(
+            "grant_type", "authorization_code",
+            "code", "code-1",
+            "client_id", "oidc_client",
+            "client_secret", "secret");
+
+    private final TokenEndpointClient client = Mockito.mock(TokenEndpointClient.class);
+    private SessionTokenRefreshManager manager;
+
+    @AfterEach
+    void tearDown() {
+        if (manager != null) manager.shutdown();
+    }
+
+    // lead-time を有効期間より長くして、登録直後の tick で更新対象にする
+    private SessionTokenRefreshManager manager(Duration leadTime) {
+        manager = new SessionTokenRefreshManager(client, true, leadTime, Duration.ZERO,
+                Duration.ofMillis(10), 64, 2);
+        return manager;
+    }
+
+    private static TokenResponse tokens(String accessToken, String refreshToken, int expiresIn) throws Exception {
+        return (TokenResponse) TokenEndpointResponse.parse("{\"access_token\":\"" + accessToken
+                + "\",\"refresh_token\":\"" + refreshToken + "\",\"expires_in\":" + expiresIn + "}");
+    }
+
+    @Test
+    void scheduledRefresh_usesRefreshTokenAndReplacesAccessToken() throws Exception {
+        manager(Duration.ofSeconds(30));
+        when(client.requestToken(anyString(), anyMap()))
+                .thenReturn("{\"access_token\":\"at-2\",\"refresh_token\":\"rt-2\",\"expires_in\":300}");
+
+        manager.register("s1", ENDPOINT, FORM, tokens("at-1", "rt-1", 1));
+        assertThat(manager.accessToken("s1")).isEqualTo("at-1");
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, String>> form = ArgumentCaptor.forClass(Map.class);
+        verify(client, timeout(2_000)).requestToken(eq(ENDPOINT), form.capture());
+        assertThat(form.getValue())
+                .containsEntry("grant_type", "refresh_token")
+                .containsEntry("refresh_token", "rt-1")
+                .containsEntry("client_id", "oidc_client")
+                .containsEntry("client_secret", "secret");
+
+        // 更新後は期限が十分先なので、次の更新は予約されるだけで実行されない
+        verify(client, after(200).times(1)).requestToken(anyString(), anyMap());
+        assertThat(manager.accessToken("s1")).isEqualTo("at-2");
+    }
+
+    @Test
+    void responseWithoutRefreshToken_isNotRegistered() throws Exception {
+        manager(Duration.ofSeconds(30));
+
+        manager.register("s1", ENDPOINT, FORM,
+                (TokenResponse) TokenEndpointResponse.parse("{\"access_token\":\"at-1\",\"expires_in\":1}"));
+
+        assertThat(manager.sessionCount()).isZero();
+        verify(client, after(200).never()).requestToken(anyString(), anyMap());
+    }
+
+    @Test
+    void destroyedSession_isNotRefreshed() throws Exception {
+        manager(Duration.ofSeconds(30));
+        MockHttpSession session = new MockHttpSession();
+
+        manager.register(session.getId(), ENDPOINT, FORM, tokens("at-1", "rt-1", 1));
+        manager.sessionDestroyed(new HttpSessionEvent(session));
+
+        assertThat(manager.accessToken(session.getId())).isNull();
+        verify(client, after(200).never()).requestToken(anyString(), anyMap());
+    }
+
+    @Test
+    void failedRefresh_keepsTokensAndRetriesLater() throws Exception {
+        // 失敗時は lead-time の半分（500ms）後に再試行する
+        manager(Duration.ofSeconds(1));
+        when(client.requestToken(anyString(), anyMap()))
+                .thenThrow(new IOException("connection reset"))
+                .thenReturn("{\"access_token\":\"at-2\",\"refresh_token\":\"rt-2\",\"expires_in\":300}");
+
+        manager.register("s1", ENDPOINT, FORM, tokens("at-1", "rt-1", 1));
+
+        verify(client, timeout(2_000)).requestToken(anyString(), anyMap());
+        assertThat(manager.accessToken("s1")).isEqualTo("at-1");
+        verify(client, timeout(3_000).times(2)).requestToken(anyString(), anyMap());
+        verify(client, after(100).times(2)).requestToken(anyString(), anyMap());
+        assertThat(manager.accessToken("s1")).isEqualTo("at-2");
+    }
+
+    @Test
+    void rejectedRefreshToken_dropsTheSession() throws Exception {
+        manager(Duration.ofSeconds(30));
+        when(client.requestToken(anyString(), anyMap()))
+                .thenReturn("{\"error\":\"invalid_grant\",\"error_description\":\"Session not active\"}");
+
+        manager.register("s1", ENDPOINT, FORM, tokens("at-1", "rt-1", 1));
+
+        verify(client, timeout(2_000)).requestToken(anyString(), anyMap());
+        verify(client, after(200).times(1)).requestToken(anyString(), anyMap());
+        assertThat(manager.sessionCount()).isZero();
+    }
+
+    @Test
+    void disabled_doesNothing() throws Exception {
+        manager = new SessionTokenRefreshManager(client, false, Duration.ofSeconds(30), Duration.ZERO,
+                Duration.ofMillis(10), 64, 2);
+
+        manager.register("s1", ENDPOINT, FORM, tokens("at-1", "rt-1", 1));
+
+        assertThat(manager.sessionCount()).isZero();
+        verify(client, never()).requestToken(anyString(), anyMap());
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.oidcclient.tenant;
+
+import com.example.oidcclient.client.RetryPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TenantRegistryTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final RetryPolicy retryPolicy = new RetryPolicy(true, 3, Duration.ofMillis(1), Duration.ofMillis(10),
+            0.2, 20, false, 50, Duration.ofMillis(20));
+    private TenantRegistry registry;
+
+    private TenantRegistry registry(boolean enabled, String hosts, String realms, int maxActive) {
+        registry = new TenantRegistry(retryPolicy, enabled, "http://kc.example:8080/", "/t", hosts, realms,
+                "[A-Za-z0-9_-]{1,64}", maxActive, Duration.ofMinutes(15), Duration.ofSeconds(1),
+                HttpClient.Version.HTTP_1_1, 1, Duration.ofMinutes(5), Duration.ofSeconds(30), Duration.ofMillis(100),
+                Duration.ofSeconds(30), Duration.ofMillis(100), Duration.ofSeconds(30), clock::get);
+        return registry;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (registry != null) {
+            registry.shutdown();
+        }
+        retryPolicy.shutdown();
+    }
+
+    @Test
+    void tenantsAreCreatedLazilyWithPrecomputedEndpoints() {
+        TenantRegistry registry = registry(true, "", "acme,other", 8);
+        assertThat(registry.activeCount()).isZero();
+
+        Tenant tenant = registry.tenant("acme");
+
+        assertThat(tenant.issuer()).isEqualTo("http://kc.example:8080/realms/acme");
+        assertThat(tenant.endpoints().authorizationEndpoint())
+                .isEqualTo("http://kc.example:8080/realms/acme/protocol/openid-connect/auth");
+        assertThat(tenant.endpoints().tokenEndpoint())
+                .isEqualTo("http://kc.example:8080/realms/acme/protocol/openid-connect/token");
+        assertThat(registry.tenant("acme")).isSameAs(tenant);
+        assertThat(registry.tenant("other").idTokenValidator()).isNotSameAs(tenant.idTokenValidator());
+        assertThat(registry.activeCount()).isEqualTo(2);
+        assertThat(tenant.httpClient()).isNotSameAs(registry.tenant("other").httpClient());
+    }
+
+    @Test
+    void hostsAreMappedToRealms() {
+        TenantRegistry registry = registry(true, "acme.example.com=acme, globex.example.com = globex", "", 8);
+
+        assertThat(registry.realmForHost("ACME.example.com")).isEqualTo("acme");
+        assertThat(registry.realmForHost("globex.example.com")).isEqualTo("globex");
+        assertThat(registry.realmForHost("unknown.example.com")).isNull();
+    }
+
+    @Test
+    void invalidOrUnlistedRealmsAreRejected() {
+        TenantRegistry registry = registry(true, "", "acme,globex", 8);
+
+        assertThat(registry.tenant("acme")).isNotNull();
+        assertThat(registry.tenant("initech")).isNull();
+        assertThat(registry.tenant("../master")).isNull();
+        assertThat(registry.tenant("")).isNull();
+        assertThat(registry.activeCount()).isEqualTo(1);
+    }
+
+    @Test
+    void onlyExplicitlyListedRealmsAreAcceptedByDefault() {
+        TenantRegistry registry = registry(true, "acme.example.com=acme", "", 8);
+
+        assertThat(registry.tenant("acme")).isNotNull();
+        assertThat(registry.tenant("globex")).isNull();
+        assertThat(registry.activeCount()).isEqualTo(1);
+    }
+
+    @Test
+    void wildcardAcceptsAnyRealmMatchingThePattern() {
+        TenantRegistry registry = registry(true, "", "*", 8);
+
+        assertThat(registry.tenant("acme")).isNotNull();
+        assertThat(registry.tenant("globex")).isNotNull();
+        assertThat(registry.tenant("../master")).isNull();
+    }
+
+    @Test
+    void leastRecentlyUsedTenantIsEvictedOverMaxActive() {
+        TenantRegistry registry = registry(true, "", "a,b,c", 2);
+
+        Tenant a = registry.tenant("a");
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+        registry.tenant("b");
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+        // a を使い直したので、次に溢れたときは b が破棄される
+        assertThat(registry.tenant("a")).isSameAs(a);
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+        registry.tenant("c");
+
+        assertThat(registry.activeCount()).isEqualTo(2);
+        assertThat(registry.evictedCount()).isEqualTo(1);
+        assertThat(registry.tenant("a")).isSameAs(a);
+    }
+
+    @Test
+    void idleTenantsAreEvicted() {
+        TenantRegistry registry = registry(true, "", "idle,busy", 8);
+
+        Tenant idle = registry.tenant("idle");
+        registry.tenant("busy");
+        clock.addAndGet(Duration.ofMinutes(10).toNanos());
+        registry.tenant("busy");
+        clock.addAndGet(Duration.ofMinutes(10).toNanos());
+        registry.tenant("busy");
+
+        assertThat(registry.activeCount()).isEqualTo(1);
+        assertThat(registry.evictedCount()).isEqualTo(1);
+        assertThat(registry.tenant("idle")).isNotSameAs(idle);
+    }
+
+    @Test
+    void disabledRegistryResolvesNothing() {
+        TenantRegistry registry = registry(false, "acme.example.com=acme", "", 8);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(TenantRegistry.REQUEST_ATTRIBUTE, registry(true, "", "acme", 8).tenant("acme"));
+
+        assertThat(registry.realmForHost("acme.example.com")).isNull();
+        assertThat(registry.tenant("acme")).isNull();
+        assertThat(registry.resolve(request)).isNull();
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.oidcclient.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FrequencySketchTest {
+
+    @Test
+    void frequencyCountsIncrementsUpToFifteen() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        int hash = "token-a".hashCode();
+
+        assertThat(sketch.frequency(hash)).isZero();
+        for (int i = 0; i < 5; i++) {
+            sketch.increment(hash);
+        }
+        assertThat(sketch.frequency(hash)).isEqualTo(5);
+        for (int i = 0; i < 20; i++) {
+            sketch.increment(hash);
+        }
+        assertThat(sketch.frequency(hash)).isEqualTo(15);
+    }
+
+    @Test
+    void countersAreHalvedAfterSampleSize() {
+        FrequencySketch sketch = new FrequencySketch(16);
+        int hot = "hot".hashCode();
+        for (int i = 0; i < 8; i++) {
+            sketch.increment(hot);
+        }
+        // 16 x 10 回の増分で全カウンタが半分になる
+        for (int i = 0; i < 160; i++) {
+            sketch.increment(("other-" + i).hashCode());
+        }
+        assertThat(sketch.frequency(hot)).isLessThan(8);
+    }
+}
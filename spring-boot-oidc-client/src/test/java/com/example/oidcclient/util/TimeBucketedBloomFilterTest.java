@@ -0,0 +1,45 @@
+package com.example.oidcclient.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimeBucketedBloomFilterTest {
+
+    @Test
+    void insertedKeysAreAlwaysFound_andFalsePositivesStayNearTarget() {
+        TimeBucketedBloomFilter filter = new TimeBucketedBloomFilter(4, Duration.ofMinutes(1), 10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("key-" + i, 0L);
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(filter.mightContain("key-" + i, 0L)).isTrue();
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other-" + i, 0L)) falsePositives++;
+        }
+        assertThat(falsePositives).isLessThan(2_000);
+    }
+
+    @Test
+    void keysExpireWhenTheirBucketFallsOutOfTheWindow() {
+        long minute = Duration.ofMinutes(1).toMillis();
+        TimeBucketedBloomFilter filter = new TimeBucketedBloomFilter(4, Duration.ofMinutes(1), 100, 0.01);
+        filter.put("early", 0L);
+        filter.put("later", 2 * minute);
+
+        assertThat(filter.mightContain("early", 3 * minute)).isTrue();
+        assertThat(filter.mightContain("early", 4 * minute)).isFalse();
+        assertThat(filter.mightContain("later", 4 * minute)).isTrue();
+
+        // 再利用されたバケットには古い要素が残らない
+        filter.put("reused", 4 * minute);
+        assertThat(filter.mightContain("early", 4 * minute)).isFalse();
+        assertThat(filter.mightContain("reused", 4 * minute)).isTrue();
+        assertThat(filter.retentionMillis()).isEqualTo(4 * minute);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.oidcclient.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimingWheelTest {
+
+    @Test
+    void itemsAreReturnedInTheTickTheyFallDue() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 0);
+        wheel.schedule("a", 250);
+        wheel.schedule("b", 260);
+        wheel.schedule("c", 900);
+
+        assertThat(wheel.advance(100)).isEmpty();
+        // 同じ tick に入った要素はまとめて返る
+        assertThat(wheel.advance(250)).containsExactlyInAnyOrder("a", "b");
+        assertThat(wheel.advance(800)).isEmpty();
+        assertThat(wheel.advance(900)).containsExactly("c");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void deadlinesBeyondOneRotationWaitForTheirRound() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 0);
+        // 8 バケット x 100ms = 800ms を超える期限
+        wheel.schedule("far", 2_050);
+
+        for (long now = 100; now < 2_000; now += 100) {
+            assertThat(wheel.advance(now)).isEmpty();
+        }
+        assertThat(wheel.advance(2_050)).containsExactly("far");
+    }
+
+    @Test
+    void pastDeadlinesFireOnANearTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 1_000);
+        wheel.schedule("late", 0);
+
+        List<String> due = wheel.advance(1_100);
+        due.addAll(wheel.advance(1_200));
+        assertThat(due).containsExactly("late");
+    }
+}
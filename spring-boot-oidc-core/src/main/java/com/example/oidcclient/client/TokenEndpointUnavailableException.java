@@ -0,0 +1,26 @@
+package com.example.oidcclient.client;
+
+/**
+ * token エンドポイントの呼び出しを保護機構（同時実行数の上限・サーキットブレーカー・接続数の上限）が拒否したことを表す例外。
+ * 呼び出し元には OAuth の temporarily_unavailable として返す。
+ */
+public class TokenEndpointUnavailableException extends RuntimeException {
+
+    private final String reason;
+    private final long retryAfterMillis;
+
+    public TokenEndpointUnavailableException(String tokenEndpoint, String reason, long retryAfterMillis) {
+        super("token endpoint is not accepting requests (" + reason + "): " + tokenEndpoint);
+        this.reason = reason;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /** concurrency_limit、circuit_open または connection_limit。 */
+    public String reason() {
+        return reason;
+    }
+
+    public long retryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.oidcclient.discovery;
+
+import java.util.Map;
+
+/**
+ * .well-known/openid-configuration から取り出したエンドポイント群。
+ * 利用しない項目は保持しない（Keycloak が返さない項目は null）。
+ */
+public record OidcProviderMetadata(
+        String issuer,
+        String authorizationEndpoint,
+        String tokenEndpoint,
+        String userinfoEndpoint,
+        String jwksUri,
+        String endSessionEndpoint,
+        String introspectionEndpoint,
+        String revocationEndpoint) {
+
+    /**
+     * discovery ドキュメント（JSON をパースした Map）から生成する。issuer と token_endpoint は必須。
+     */
+    public static OidcProviderMetadata fromDocument(Map<String, Object> doc) {
+        String issuer = string(doc, "issuer");
+        String tokenEndpoint = string(doc, "token_endpoint");
+        if (issuer == null || tokenEndpoint == null) {
+            throw new IllegalArgumentException("discovery document must contain issuer and token_endpoint");
+        }
+        return new OidcProviderMetadata(
+                issuer,
+                string(doc, "authorization_endpoint"),
+                tokenEndpoint,
+                string(doc, "userinfo_endpoint"),
+                string(doc, "jwks_uri"),
+                string(doc, "end_session_endpoint"),
+                string(doc, "introspection_endpoint"),
+                string(doc, "revocation_endpoint"));
+    }
+
+    /**
+     * Keycloak の既定パス構成（{issuer}/protocol/openid-connect/...）から組み立てる。
+     * discovery が取得できない間のフォールバックに使う。
+     */
+    public static OidcProviderMetadata keycloakDefaults(String issuer, String openidConnectBase) {
+        return new OidcProviderMetadata(
+                issuer,
+                openidConnectBase + "/auth",
+                openidConnectBase + "/token",
+                openidConnectBase + "/userinfo",
+                openidConnectBase + "/certs",
+                openidConnectBase + "/logout",
+                openidConnectBase + "/token/introspect",
+                openidConnectBase + "/revoke");
+    }
+
+    /**
+     * keycloak.host と keycloak.context-path（/realms/{realm}/protocol/openid-connect）から既定のエンドポイントを組み立てる。
+     * issuer は context-path から /protocol/openid-connect を外したもの。
+     */
+    public static OidcProviderMetadata forKeycloak(String keycloakHost, String keycloakContextPath) {
+        String host = keycloakHost == null ? "" : keycloakHost.trim();
+        String ctx = keycloakContextPath == null ? "" : keycloakContextPath.trim();
+        if (host.endsWith("/")) host = host.substring(0, host.length() - 1);
+        if (!ctx.startsWith("/")) ctx = "/" + ctx;
+        if (ctx.endsWith("/")) ctx = ctx.substring(0, ctx.length() - 1);
+
+        String realmPath = ctx.endsWith("/protocol/openid-connect")
+                ? ctx.substring(0, ctx.length() - "/protocol/openid-connect".length())
+                : ctx;
+        return keycloakDefaults(host + realmPath, host + ctx);
+    }
+
+    private static String string(Map<String, Object> doc, String key) {
+        Object v = doc.get(key);
+        return v == null ? null : v.toString();
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.oidcclient.flow;
+
+import java.util.Objects;
+
+/**
+ * /authorization_flow で発行し、token request で 1 度だけ使う認可フローの情報。
+ * issuedAt はエポックミリ秒。binding はフローを開始したブラウザの識別子（Cookie の値のハッシュ、紐付けない場合は null）。
+ */
+public record PendingAuthorization(String state, String codeVerifier, String nonce, String codeChallengeMethod, long issuedAt,
+                                   String binding) {
+
+    public PendingAuthorization(String state, String codeVerifier, String nonce, String codeChallengeMethod, long issuedAt) {
+        this(state, codeVerifier, nonce, codeChallengeMethod, issuedAt, null);
+    }
+
+    /**
+     * 登録時と同じブラウザからの取り出しか。
+     */
+    public boolean isBoundTo(String binding) {
+        return Objects.equals(this.binding, binding);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.oidcclient.jwt;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * ID トークンの署名・クレームの確認（鍵の取得方法に依存しない部分）。
+ * 失敗した場合は IdTokenValidationException を投げる。
+ */
+public final class IdTokenChecks {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdTokenChecks.class);
+
+    private IdTokenChecks() {
+    }
+
+    /**
+     * 署名を確認する。verifier は header の kid に対応するもの（見つからなければ null）。
+     */
+    public static void verifySignature(SignedJWT jwt, JWSVerifier verifier) {
+        JWSHeader header = jwt.getHeader();
+        if (verifier == null) {
+            throw new IdTokenValidationException("no signing key for kid " + header.getKeyID());
+        }
+        if (!verifier.supportedJWSAlgorithms().contains(header.getAlgorithm())) {
+            throw new IdTokenValidationException("unexpected signing algorithm " + header.getAlgorithm());
+        }
+        try {
+            if (!jwt.verify(verifier)) {
+                throw new IdTokenValidationException("id_token signature is invalid");
+            }
+        } catch (JOSEException e) {
+            throw new IdTokenValidationException("failed to verify id_token signature", e);
+        }
+    }
+
+    /**
+     * iss / aud / exp / nonce を確認する。clientId / expectedNonce が null の場合、それぞれ aud / nonce は確認しない。
+     */
+    public static void verifyClaims(JWTClaimsSet claims, String issuer, String clientId, String expectedNonce,
+                                    long clockSkewMillis) {
+        if (!issuer.equals(claims.getIssuer())) {
+            throw new IdTokenValidationException("unexpected issuer " + claims.getIssuer());
+        }
+        List<String> audience = claims.getAudience();
+        if (clientId != null && (audience == null || !audience.contains(clientId))) {
+            throw new IdTokenValidationException("id_token audience does not contain " + clientId);
+        }
+        Date exp = claims.getExpirationTime();
+        if (exp == null || exp.getTime() + clockSkewMillis < System.currentTimeMillis()) {
+            throw new IdTokenValidationException("id_token is expired");
+        }
+        if (expectedNonce != null) {
+            Object nonce = claims.getClaim("nonce");
+            if (!expectedNonce.equals(nonce)) {
+                throw new IdTokenValidationException("id_token nonce does not match");
+            }
+        }
+    }
+
+    /**
+     * JWKS の署名用の鍵を kid -> verifier に変換する（暗号化用の鍵と未対応の鍵は除外）。kid が無い鍵は "" で引く。
+     */
+    public static Map<String, JWSVerifier> toVerifiers(JWKSet set) {
+        Map<String, JWSVerifier> result = new HashMap<>();
+        for (JWK jwk : set.getKeys()) {
+            if (KeyUse.ENCRYPTION.equals(jwk.getKeyUse())) continue;
+            String kid = jwk.getKeyID() == null ? "" : jwk.getKeyID();
+            try {
+                if (jwk instanceof RSAKey rsa) {
+                    result.put(kid, new RSASSAVerifier(rsa));
+                } else if (jwk instanceof ECKey ec) {
+                    result.put(kid, new ECDSAVerifier(ec));
+                }
+            } catch (JOSEException e) {
+                logger.warn("skipping unusable JWK kid={}: {}", kid, e.toString());
+            }
+        }
+        return Map.copyOf(result);
+    }
+}
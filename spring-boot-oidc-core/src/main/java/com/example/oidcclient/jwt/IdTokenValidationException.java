@@ -0,0 +1,15 @@
+package com.example.oidcclient.jwt;
+
+/**
+ * ID トークンの署名・クレーム検証に失敗したことを表す例外。
+ */
+public class IdTokenValidationException extends RuntimeException {
+
+    public IdTokenValidationException(String message) {
+        super(message);
+    }
+
+    public IdTokenValidationException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.oidcclient.jwt;
+
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.util.Base64URL;
+import com.nimbusds.jose.util.JSONObjectUtils;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Base64;
+
+/**
+ * 元の文字列（token レスポンスのボディなど）の中の JWT を指す参照。
+ * header / payload / signature の位置だけを持ち、文字列の切り出し・Base64 デコード・クレームのパースは
+ * 読み出されたときに 1 度だけ行う（ロールの多い Keycloak のトークンを使わないまま何度もコピーしない）。
+ */
+public final class LazyJwt {
+
+    private final String source;
+    private final int start;
+    private final int dot1;
+    private final int dot2;
+    private final int end;
+
+    private volatile String compact;
+    private volatile JWTClaimsSet claims;
+
+    private LazyJwt(String source, int start, int dot1, int dot2, int end) {
+        this.source = source;
+        this.start = start;
+        this.dot1 = dot1;
+        this.dot2 = dot2;
+        this.end = end;
+    }
+
+    /**
+     * compact 形式（header.payload.signature）の JWT を参照する。JWT の形でなければ null。
+     */
+    public static LazyJwt parse(String compact) {
+        return compact == null ? null : of(compact, 0, compact.length());
+    }
+
+    /**
+     * source の [start, end) にある JWT を参照する。JWT の形でなければ null。
+     */
+    public static LazyJwt of(String source, int start, int end) {
+        int dot1 = -1;
+        int dot2 = -1;
+        for (int i = start; i < end; i++) {
+            if (source.charAt(i) == '.') {
+                if (dot1 < 0) {
+                    dot1 = i;
+                } else if (dot2 < 0) {
+                    dot2 = i;
+                } else {
+                    // JWE（5 パート）などは対象外
+                    return null;
+                }
+            }
+        }
+        if (dot2 < 0 || dot1 == start || dot2 == dot1 + 1) {
+            return null;
+        }
+        return new LazyJwt(source, start, dot1, dot2, end);
+    }
+
+    /**
+     * compact 形式の文字列（初回のみ切り出す）。
+     */
+    public String compact() {
+        String s = compact;
+        if (s == null) {
+            s = (start == 0 && end == source.length()) ? source : source.substring(start, end);
+            compact = s;
+        }
+        return s;
+    }
+
+    public int length() {
+        return end - start;
+    }
+
+    public JWSHeader header() throws ParseException {
+        return JWSHeader.parse(new Base64URL(source.substring(start, dot1)));
+    }
+
+    /**
+     * payload のクレーム（初回のみデコード・パースする）。
+     */
+    public JWTClaimsSet claims() throws ParseException {
+        JWTClaimsSet c = claims;
+        if (c == null) {
+            c = JWTClaimsSet.parse(JSONObjectUtils.parse(new String(decode(dot1 + 1, dot2), StandardCharsets.UTF_8)));
+            claims = c;
+        }
+        return c;
+    }
+
+    /**
+     * 署名検証用の SignedJWT。
+     */
+    public SignedJWT toSignedJWT() throws ParseException {
+        return new SignedJWT(
+                new Base64URL(source.substring(start, dot1)),
+                new Base64URL(source.substring(dot1 + 1, dot2)),
+                new Base64URL(source.substring(dot2 + 1, end)));
+    }
+
+    // 文字列を経由せずに base64url の範囲を直接デコードする
+    private byte[] decode(int from, int to) throws ParseException {
+        byte[] ascii = new byte[to - from];
+        for (int i = from; i < to; i++) {
+            char c = source.charAt(i);
+            if (c > 0x7F) {
+                throw new ParseException("invalid base64url character in JWT", i);
+            }
+            ascii[i - from] = (byte) c;
+        }
+        try {
+            return Base64.getUrlDecoder().decode(ascii);
+        } catch (IllegalArgumentException e) {
+            throw new ParseException("invalid base64url in JWT: " + e.getMessage(), from);
+        }
+    }
+
+    @Override
+    public String toString() {
+        // トークン本体はログに出さない
+        return "LazyJwt[" + length() + " chars]";
+    }
+}
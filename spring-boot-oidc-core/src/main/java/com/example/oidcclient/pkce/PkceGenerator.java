@@ -0,0 +1,184 @@
+package com.example.oidcclient.pkce;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * PKCE の code_verifier / code_challenge と state / nonce を生成する。
+ * <ul>
+ *   <li>SecureRandom はストライプ化して共有し、呼び出しごとに生成しない（1 回の nextBytes でまとめて乱数を取る）</li>
+ *   <li>SHA-256 の MessageDigest はスレッドごとにプロトタイプの clone を再利用する</li>
+ *   <li>pkce.pool.size &gt; 0 の場合、バックグラウンドスレッドが生成済みの組をリングバッファに補充し、
+ *       /authorization_flow では取り出すだけにする（空の場合はその場で生成）</li>
+ * </ul>
+ * Spring に依存しないため、Bean としての登録（pkce.* の設定）は利用するアプリ側で行う。
+ */
+public class PkceGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(PkceGenerator.class);
+
+    public static final int MIN_VERIFIER_LENGTH = 43;
+    public static final int MAX_VERIFIER_LENGTH = 128;
+    public static final int DEFAULT_VERIFIER_LENGTH = 64;
+
+    // base64url のアルファベット（RFC 7636 の unreserved 文字に含まれる 64 文字）。64 文字なので & 63 で偏りなく選べる
+    private static final char[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+    // state / nonce に使う乱数のバイト数（128 bit）
+    private static final int TOKEN_BYTES = 16;
+
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+    private static final SecureRandom[] RANDOMS = new SecureRandom[Integer.highestOneBit(
+            Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1) << 1];
+    private static final MessageDigest SHA256_PROTOTYPE;
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(PkceGenerator::newDigest);
+
+    static {
+        for (int i = 0; i < RANDOMS.length; i++) {
+            RANDOMS[i] = new SecureRandom();
+        }
+        try {
+            SHA256_PROTOTYPE = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int verifierLength;
+    private final BlockingQueue<PkceMaterial> pool;
+    private final Thread filler;
+
+    public PkceGenerator(int verifierLength, int poolSize) {
+        this.verifierLength = clampVerifierLength(verifierLength);
+        if (poolSize > 0) {
+            this.pool = new ArrayBlockingQueue<>(poolSize);
+            this.filler = new Thread(this::fill, "pkce-pool-filler");
+            this.filler.setDaemon(true);
+            this.filler.start();
+        } else {
+            this.pool = null;
+            this.filler = null;
+        }
+    }
+
+    /**
+     * 認可リクエスト 1 回分の組を返す。プールが有効で在庫があればそれを、無ければその場で生成したものを返す。
+     */
+    public PkceMaterial next() {
+        if (pool != null) {
+            PkceMaterial m = pool.poll();
+            if (m != null) {
+                return m;
+            }
+        }
+        return generate(verifierLength);
+    }
+
+    /**
+     * 指定長の code_verifier と、それに対応する S256 code_challenge / state / nonce を生成する。
+     * 乱数は 1 回の nextBytes でまとめて取得する。
+     */
+    public static PkceMaterial generate(int verifierLength) {
+        byte[] random = new byte[verifierLength + TOKEN_BYTES * 2];
+        random().nextBytes(random);
+
+        char[] verifier = new char[verifierLength];
+        for (int i = 0; i < verifierLength; i++) {
+            verifier[i] = ALPHABET[random[i] & 63];
+        }
+        String codeVerifier = new String(verifier);
+        String state = BASE64URL.encodeToString(Arrays.copyOfRange(random, verifierLength, verifierLength + TOKEN_BYTES));
+        String nonce = BASE64URL.encodeToString(Arrays.copyOfRange(random, verifierLength + TOKEN_BYTES, random.length));
+        return new PkceMaterial(codeVerifier, s256Challenge(codeVerifier), state, nonce);
+    }
+
+    /**
+     * 指定長の code_verifier を生成する。
+     */
+    public static String codeVerifier(int length) {
+        byte[] random = new byte[length];
+        random().nextBytes(random);
+        char[] verifier = new char[length];
+        for (int i = 0; i < length; i++) {
+            verifier[i] = ALPHABET[random[i] & 63];
+        }
+        return new String(verifier);
+    }
+
+    /**
+     * code_verifier から S256 の code_challenge（BASE64URL(SHA256(ASCII(verifier)))）を求める。
+     */
+    public static String s256Challenge(String codeVerifier) {
+        MessageDigest md = SHA256.get();
+        byte[] digest = md.digest(codeVerifier.getBytes(StandardCharsets.US_ASCII));
+        return BASE64URL.encodeToString(digest);
+    }
+
+    // 43 未満は既定値、128 超は上限に丸める
+    public static int clampVerifierLength(int size) {
+        if (size < MIN_VERIFIER_LENGTH) {
+            logger.warn("Requested code_verifier size {} is below minimum {}; using {} instead", size, MIN_VERIFIER_LENGTH, DEFAULT_VERIFIER_LENGTH);
+            return DEFAULT_VERIFIER_LENGTH;
+        }
+        if (size > MAX_VERIFIER_LENGTH) {
+            logger.warn("Requested code_verifier size {} is above maximum {}; using {} instead", size, MAX_VERIFIER_LENGTH, MAX_VERIFIER_LENGTH);
+            return MAX_VERIFIER_LENGTH;
+        }
+        return size;
+    }
+
+    public int verifierLength() {
+        return verifierLength;
+    }
+
+    // プールの在庫数（監視用）。プール無効時は 0
+    public int pooled() {
+        return pool == null ? 0 : pool.size();
+    }
+
+    private void fill() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                pool.put(generate(verifierLength));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.debug("pkce pool filler stopped");
+    }
+
+    /**
+     * プールの補充スレッドを止める（Bean の destroy メソッドとして呼ぶ）。
+     */
+    public void shutdown() {
+        if (filler != null) {
+            filler.interrupt();
+        }
+    }
+
+    // スレッド ID でストライプを選ぶ（仮想スレッドでもスレッドごとに SecureRandom を作らない）
+    private static SecureRandom random() {
+        return RANDOMS[(int) (Thread.currentThread().threadId() & (RANDOMS.length - 1))];
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return (MessageDigest) SHA256_PROTOTYPE.clone();
+        } catch (CloneNotSupportedException e) {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+}
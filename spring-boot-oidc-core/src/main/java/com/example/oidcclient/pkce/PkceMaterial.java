@@ -0,0 +1,7 @@
+package com.example.oidcclient.pkce;
+
+/**
+ * 1 回の認可リクエストで使う PKCE / state / nonce の組。
+ */
+public record PkceMaterial(String codeVerifier, String codeChallenge, String state, String nonce) {
+}
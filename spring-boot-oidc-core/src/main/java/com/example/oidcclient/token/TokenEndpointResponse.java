@@ -0,0 +1,22 @@
+package com.example.oidcclient.token;
+
+import java.text.ParseException;
+
+/**
+ * token エンドポイントのレスポンス。成功（TokenResponse）と OAuth のエラー（TokenErrorResponse）のどちらか。
+ */
+public sealed interface TokenEndpointResponse permits TokenResponse, TokenErrorResponse {
+
+    /**
+     * 受信したレスポンスボディ（そのまま）。
+     */
+    String body();
+
+    /**
+     * ボディをパースする。"error" を含むものは TokenErrorResponse、それ以外は TokenResponse。
+     * JSON オブジェクトでなければ ParseException。
+     */
+    static TokenEndpointResponse parse(String body) throws ParseException {
+        return TokenResponseParser.parse(body);
+    }
+}
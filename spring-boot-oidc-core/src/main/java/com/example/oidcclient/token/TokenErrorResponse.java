@@ -0,0 +1,8 @@
+package com.example.oidcclient.token;
+
+/**
+ * OAuth のエラーレスポンス（RFC 6749 5.2）。
+ */
+public record TokenErrorResponse(String error, String errorDescription, String errorUri, String body)
+        implements TokenEndpointResponse {
+}
@@ -0,0 +1,121 @@
+package com.example.oidcclient.token;
+
+import com.example.oidcclient.jwt.LazyJwt;
+
+/**
+ * token エンドポイントの成功レスポンス。
+ * 値はボディ中の位置として持ち、文字列の切り出しや JWT のデコードは読み出されたときに行う。
+ * 存在しない項目は null（数値は -1）。
+ */
+public final class TokenResponse implements TokenEndpointResponse {
+
+    private final String body;
+    private final TokenResponseParser.Slice accessToken;
+    private final TokenResponseParser.Slice tokenType;
+    private final TokenResponseParser.Slice refreshToken;
+    private final TokenResponseParser.Slice idToken;
+    private final TokenResponseParser.Slice scope;
+    private final long expiresIn;
+    private final long refreshExpiresIn;
+
+    private volatile String accessTokenValue;
+    private volatile LazyJwt idTokenJwt;
+
+    TokenResponse(String body, TokenResponseParser.Slice accessToken, TokenResponseParser.Slice tokenType,
+                  TokenResponseParser.Slice refreshToken, TokenResponseParser.Slice idToken,
+                  TokenResponseParser.Slice scope, long expiresIn, long refreshExpiresIn) {
+        this.body = body;
+        this.accessToken = accessToken;
+        this.tokenType = tokenType;
+        this.refreshToken = refreshToken;
+        this.idToken = idToken;
+        this.scope = scope;
+        this.expiresIn = expiresIn;
+        this.refreshExpiresIn = refreshExpiresIn;
+    }
+
+    @Override
+    public String body() {
+        return body;
+    }
+
+    public boolean hasAccessToken() {
+        return accessToken != null;
+    }
+
+    /**
+     * access_token（初回のみ切り出す）。
+     */
+    public String accessToken() {
+        String v = accessTokenValue;
+        if (v == null && accessToken != null) {
+            v = accessToken.text(body);
+            accessTokenValue = v;
+        }
+        return v;
+    }
+
+    /**
+     * access_token を JWT として参照する（文字列は切り出さない）。JWT でなければ null。
+     */
+    public LazyJwt accessTokenJwt() {
+        return jwt(accessToken);
+    }
+
+    public String tokenType() {
+        return tokenType == null ? null : tokenType.text(body);
+    }
+
+    public String refreshToken() {
+        return refreshToken == null ? null : refreshToken.text(body);
+    }
+
+    public boolean hasRefreshToken() {
+        return refreshToken != null;
+    }
+
+    public boolean hasIdToken() {
+        return idToken != null;
+    }
+
+    /**
+     * id_token（JWT の形でなければ null）。
+     */
+    public LazyJwt idToken() {
+        LazyJwt v = idTokenJwt;
+        if (v == null && idToken != null) {
+            v = jwt(idToken);
+            idTokenJwt = v;
+        }
+        return v;
+    }
+
+    public String scope() {
+        return scope == null ? null : scope.text(body);
+    }
+
+    public long expiresIn() {
+        return expiresIn;
+    }
+
+    public long refreshExpiresIn() {
+        return refreshExpiresIn;
+    }
+
+    private LazyJwt jwt(TokenResponseParser.Slice slice) {
+        if (slice == null) {
+            return null;
+        }
+        if (slice.escaped()) {
+            return LazyJwt.parse(slice.text(body));
+        }
+        return LazyJwt.of(body, slice.start(), slice.end());
+    }
+
+    @Override
+    public String toString() {
+        // トークン本体はログに出さない
+        return "TokenResponse[token_type=" + tokenType() + ", expires_in=" + expiresIn
+                + ", refresh_token=" + hasRefreshToken() + ", id_token=" + hasIdToken() + "]";
+    }
+}
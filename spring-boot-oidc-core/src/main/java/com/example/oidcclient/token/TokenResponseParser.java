@@ -0,0 +1,258 @@
+package com.example.oidcclient.token;
+
+import java.text.ParseException;
+
+/**
+ * token レスポンスの JSON を 1 回の走査でパースする。
+ * Map や中間の文字列は作らず、必要な項目の位置（Slice）だけを記録する。
+ * 入れ子のオブジェクト・配列や未知の項目は読み飛ばす（body() にはそのまま残る）。
+ */
+final class TokenResponseParser {
+
+    /**
+     * ボディ中の文字列値の位置（引用符の内側）。escaped はエスケープを含むかどうか。
+     */
+    record Slice(int start, int end, boolean escaped) {
+
+        String text(String source) {
+            return escaped ? unescape(source, start, end) : source.substring(start, end);
+        }
+
+        boolean is(String source, String value) {
+            return !escaped && end - start == value.length() && source.startsWith(value, start);
+        }
+    }
+
+    private final String s;
+    private int pos;
+
+    private Slice accessToken;
+    private Slice tokenType;
+    private Slice refreshToken;
+    private Slice idToken;
+    private Slice scope;
+    private Slice error;
+    private Slice errorDescription;
+    private Slice errorUri;
+    private long expiresIn = -1;
+    private long refreshExpiresIn = -1;
+
+    private TokenResponseParser(String s) {
+        this.s = s;
+    }
+
+    static TokenEndpointResponse parse(String body) throws ParseException {
+        if (body == null) {
+            throw new ParseException("token response is empty", 0);
+        }
+        return new TokenResponseParser(body).parse();
+    }
+
+    private TokenEndpointResponse parse() throws ParseException {
+        skipWhitespace();
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+        } else {
+            while (true) {
+                skipWhitespace();
+                Slice key = readString();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                readValue(key);
+                skipWhitespace();
+                char c = next();
+                if (c == '}') {
+                    break;
+                }
+                if (c != ',') {
+                    throw new ParseException("expected ',' or '}' in token response", pos - 1);
+                }
+            }
+        }
+        skipWhitespace();
+        if (pos != s.length()) {
+            throw new ParseException("unexpected content after token response", pos);
+        }
+        if (error != null) {
+            return new TokenErrorResponse(error.text(s), text(errorDescription), text(errorUri), s);
+        }
+        return new TokenResponse(s, accessToken, tokenType, refreshToken, idToken, scope, expiresIn, refreshExpiresIn);
+    }
+
+    private void readValue(Slice key) throws ParseException {
+        char c = peek();
+        if (c == '"') {
+            Slice value = readString();
+            String name = key.escaped() ? key.text(s) : null;
+            if (matches(key, name, "access_token")) accessToken = value;
+            else if (matches(key, name, "token_type")) tokenType = value;
+            else if (matches(key, name, "refresh_token")) refreshToken = value;
+            else if (matches(key, name, "id_token")) idToken = value;
+            else if (matches(key, name, "scope")) scope = value;
+            else if (matches(key, name, "error")) error = value;
+            else if (matches(key, name, "error_description")) errorDescription = value;
+            else if (matches(key, name, "error_uri")) errorUri = value;
+        } else if (c == '-' || (c >= '0' && c <= '9')) {
+            int start = pos;
+            while (pos < s.length() && isNumberChar(s.charAt(pos))) {
+                pos++;
+            }
+            String name = key.escaped() ? key.text(s) : null;
+            if (matches(key, name, "expires_in")) expiresIn = toLong(start, pos);
+            else if (matches(key, name, "refresh_expires_in")) refreshExpiresIn = toLong(start, pos);
+        } else if (c == '{' || c == '[') {
+            skipComposite();
+        } else if (s.startsWith("true", pos)) {
+            pos += 4;
+        } else if (s.startsWith("false", pos)) {
+            pos += 5;
+        } else if (s.startsWith("null", pos)) {
+            pos += 4;
+        } else {
+            throw new ParseException("unexpected value in token response", pos);
+        }
+    }
+
+    private boolean matches(Slice key, String unescaped, String name) {
+        return unescaped != null ? unescaped.equals(name) : key.is(s, name);
+    }
+
+    private Slice readString() throws ParseException {
+        expect('"');
+        int start = pos;
+        boolean escaped = false;
+        while (pos < s.length()) {
+            char c = s.charAt(pos);
+            if (c == '"') {
+                Slice slice = new Slice(start, pos, escaped);
+                pos++;
+                return slice;
+            }
+            if (c == '\\') {
+                escaped = true;
+                pos += 2;
+                continue;
+            }
+            pos++;
+        }
+        throw new ParseException("unterminated string in token response", start);
+    }
+
+    // 入れ子のオブジェクト・配列を読み飛ばす（文字列中の括弧は数えない）
+    private void skipComposite() throws ParseException {
+        int depth = 0;
+        while (pos < s.length()) {
+            char c = s.charAt(pos);
+            if (c == '"') {
+                readString();
+                continue;
+            }
+            if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+                if (depth == 0) {
+                    pos++;
+                    return;
+                }
+            }
+            pos++;
+        }
+        throw new ParseException("unterminated object in token response", pos);
+    }
+
+    private long toLong(int start, int end) throws ParseException {
+        String number = s.substring(start, end);
+        try {
+            return Long.parseLong(number);
+        } catch (NumberFormatException e) {
+            try {
+                return (long) Double.parseDouble(number);
+            } catch (NumberFormatException e2) {
+                throw new ParseException("invalid number in token response", start);
+            }
+        }
+    }
+
+    private static boolean isNumberChar(char c) {
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E';
+    }
+
+    private String text(Slice slice) {
+        return slice == null ? null : slice.text(s);
+    }
+
+    private void skipWhitespace() {
+        while (pos < s.length()) {
+            char c = s.charAt(pos);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private char peek() throws ParseException {
+        if (pos >= s.length()) {
+            throw new ParseException("unexpected end of token response", pos);
+        }
+        return s.charAt(pos);
+    }
+
+    private char next() throws ParseException {
+        char c = peek();
+        pos++;
+        return c;
+    }
+
+    private void expect(char c) throws ParseException {
+        if (next() != c) {
+            throw new ParseException("expected '" + c + "' in token response", pos - 1);
+        }
+    }
+
+    static String unescape(String s, int start, int end) {
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c != '\\' || i + 1 >= end) {
+                sb.append(c);
+                continue;
+            }
+            char e = s.charAt(++i);
+            switch (e) {
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'u' -> {
+                    int code = i + 4 < end ? hex(s, i + 1) : -1;
+                    if (code >= 0) {
+                        sb.append((char) code);
+                        i += 4;
+                    } else {
+                        sb.append(e);
+                    }
+                }
+                default -> sb.append(e);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int hex(String s, int from) {
+        int code = 0;
+        for (int i = from; i < from + 4; i++) {
+            int d = Character.digit(s.charAt(i), 16);
+            if (d < 0) {
+                return -1;
+            }
+            code = code * 16 + d;
+        }
+        return code;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.oidcclient.util;
+
+import java.util.Map;
+
+/**
+ * 認可リクエストに追加するパラメータ（フォームの additional_params、1 行に key=value）の解析。
+ */
+public final class AdditionalParams {
+
+    private AdditionalParams() {
+    }
+
+    /**
+     * additionalParams の各行を params に追加する。= の無い行、キーが空の行は無視する。
+     */
+    public static void parseInto(String additionalParams, Map<String, String> params) {
+        if (additionalParams != null && !additionalParams.isBlank()) {
+            String[] lines = additionalParams.split("\\r?\\n");
+            for (String line : lines) {
+                String l = line.trim();
+                if (l.isEmpty()) continue;
+                int idx = l.indexOf('=');
+                if (idx > 0) {
+                    String k = l.substring(0, idx).trim();
+                    String v = l.substring(idx + 1).trim();
+                    if (!k.isEmpty()) params.put(k, v);
+                }
+            }
+        }
+    }
+}
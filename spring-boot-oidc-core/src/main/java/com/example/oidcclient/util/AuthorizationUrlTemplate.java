@@ -0,0 +1,165 @@
+package com.example.oidcclient.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authorization Request URI のうちクライアント設定で決まる部分（endpoint と先頭の response_type / client_id /
+ * redirect_uri / scope）をエンコード済みの文字列として事前に組み立てておくテンプレート。
+ * リクエストごとには残りのパラメータ（state, nonce, code_challenge など）だけをエンコードして追記する。
+ * 結果は全パラメータを順にエンコードした場合と同じ。
+ * <p>
+ * キャッシュは件数を上限とした LRU で、上限に達したら最も長く使われていないものを捨てる
+ * （client_id 等がリクエストで指定されても際限なく増えず、よく使われるテンプレートは残る）。
+ * endpoint 自体がリクエストで指定された場合は of ではなく uncached を使い、キャッシュに入れない。
+ */
+public final class AuthorizationUrlTemplate {
+
+    // この順で Map の先頭に並んでいるものだけをテンプレートに含める
+    private static final String[] STATIC_KEYS = {"response_type", "client_id", "redirect_uri", "scope"};
+    // キャッシュするテンプレートの上限（client_id 等はリクエストで指定できるため）
+    static final int MAX_CACHED = 256;
+    private static final ConcurrentHashMap<Key, AuthorizationUrlTemplate> CACHE = new ConcurrentHashMap<>();
+    // 最終使用時刻の更新間隔（LRU の判定は粗くてよいので、よく使われるテンプレートへの書き込みを減らす）
+    private static final long TOUCH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private record Key(String endpoint, String responseType, String clientId, String redirectUri, String scope) {
+    }
+
+    private final String prefix;
+    private final int staticCount;
+    // 最終使用時刻（System.nanoTime）
+    private volatile long lastUsed = System.nanoTime();
+
+    private AuthorizationUrlTemplate(String prefix, int staticCount) {
+        this.prefix = prefix;
+        this.staticCount = staticCount;
+    }
+
+    /**
+     * endpoint と params の先頭の固定パラメータに対応するテンプレートを返す（キャッシュ済みならそれを使う）。
+     */
+    public static AuthorizationUrlTemplate of(String endpoint, Map<String, String> params) {
+        String[] values = new String[STATIC_KEYS.length];
+        int count = staticValues(params, values);
+        Key key = new Key(endpoint, values[0], values[1], values[2], values[3]);
+        AuthorizationUrlTemplate template = CACHE.get(key);
+        if (template == null) {
+            template = compile(endpoint, values, count);
+            if (CACHE.size() >= MAX_CACHED) {
+                evictLeastRecentlyUsed();
+            }
+            AuthorizationUrlTemplate raced = CACHE.putIfAbsent(key, template);
+            if (raced != null) {
+                template = raced;
+            }
+        }
+        long now = System.nanoTime();
+        if (now - template.lastUsed > TOUCH_INTERVAL_NANOS) {
+            template.lastUsed = now;
+        }
+        return template;
+    }
+
+    /**
+     * キャッシュを使わずにテンプレートを組み立てる。endpoint がリクエストで指定された場合など、
+     * 設定や discovery に由来しない値で組み立てるときに使う。
+     */
+    public static AuthorizationUrlTemplate uncached(String endpoint, Map<String, String> params) {
+        String[] values = new String[STATIC_KEYS.length];
+        int count = staticValues(params, values);
+        return compile(endpoint, values, count);
+    }
+
+    static int cachedCount() {
+        return CACHE.size();
+    }
+
+    /**
+     * テンプレートの後ろに params の残り（先頭の固定パラメータ以外）を追記した URI を返す。
+     * params は of に渡したものと同じ固定パラメータで始まっていること。
+     */
+    public String expand(Map<String, String> params) {
+        StringBuilder sb = QueryEncoder.buffer().append(prefix);
+        int prefixLength = sb.length();
+        boolean first = staticCount == 0;
+        Iterator<Map.Entry<String, String>> it = params.entrySet().iterator();
+        for (int i = 0; i < staticCount && it.hasNext(); i++) {
+            it.next();
+        }
+        while (it.hasNext()) {
+            Map.Entry<String, String> e = it.next();
+            if (!first) {
+                sb.append('&');
+            }
+            first = false;
+            QueryEncoder.appendEncoded(sb, e.getKey()).append('=');
+            QueryEncoder.appendEncoded(sb, e.getValue() == null ? "" : e.getValue());
+        }
+        return sb.length() == prefixLength ? prefix : sb.toString();
+    }
+
+    // params の先頭に STATIC_KEYS の順で並んでいる値を values に取り出し、その個数を返す
+    private static int staticValues(Map<String, String> params, String[] values) {
+        int count = 0;
+        int next = 0;
+        for (Map.Entry<String, String> e : params.entrySet()) {
+            int idx = indexOf(e.getKey(), next);
+            if (idx < 0) {
+                break;
+            }
+            values[idx] = Objects.requireNonNullElse(e.getValue(), "");
+            next = idx + 1;
+            count++;
+        }
+        return count;
+    }
+
+    // 上限に達したときだけ呼ばれる（件数は小さいので全件を見て最も古いものを捨てる）
+    private static void evictLeastRecentlyUsed() {
+        long now = System.nanoTime();
+        Key oldest = null;
+        long oldestAge = Long.MIN_VALUE;
+        for (Map.Entry<Key, AuthorizationUrlTemplate> e : CACHE.entrySet()) {
+            long age = now - e.getValue().lastUsed;
+            if (age > oldestAge) {
+                oldestAge = age;
+                oldest = e.getKey();
+            }
+        }
+        if (oldest != null) {
+            CACHE.remove(oldest);
+        }
+    }
+
+    private static AuthorizationUrlTemplate compile(String endpoint, String[] values, int count) {
+        StringBuilder sb = new StringBuilder(endpoint.length() + 128)
+                .append(endpoint)
+                .append(endpoint.contains("?") ? '&' : '?');
+        boolean first = true;
+        for (int i = 0; i < STATIC_KEYS.length; i++) {
+            if (values[i] == null) {
+                continue;
+            }
+            if (!first) {
+                sb.append('&');
+            }
+            first = false;
+            sb.append(STATIC_KEYS[i]).append('=');
+            QueryEncoder.appendEncoded(sb, values[i]);
+        }
+        return new AuthorizationUrlTemplate(sb.toString(), count);
+    }
+
+    private static int indexOf(String key, int from) {
+        for (int i = from; i < STATIC_KEYS.length; i++) {
+            if (STATIC_KEYS[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.oidcclient.util;
+
+import java.util.Map;
+
+/**
+ * application/x-www-form-urlencoded のエンコーダ（URLEncoder.encode(s, UTF_8) と同じ結果）。
+ * <ul>
+ *   <li>エンコード不要な文字（英数字と . - * _）だけの値は入力の String をそのまま返す・追記する</li>
+ *   <li>UTF-8 への変換は 1 文字ずつ直接 %XX で書き込み、中間の byte[] や String を作らない</li>
+ *   <li>組み立て用の StringBuilder はスレッドごとに使い回す（仮想スレッドでは都度作る）</li>
+ * </ul>
+ */
+public final class QueryEncoder {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    // 使い回す StringBuilder の上限（大きな値を一度組み立てた後もスレッドに抱え続けない）
+    private static final int MAX_POOLED_CAPACITY = 8 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(512));
+
+    private QueryEncoder() {
+    }
+
+    /**
+     * 空にした作業用の StringBuilder を返す。toString() するまでの間だけ使い、入れ子で呼び出さないこと。
+     */
+    public static StringBuilder buffer() {
+        if (Thread.currentThread().isVirtual()) {
+            return new StringBuilder(512);
+        }
+        StringBuilder sb = BUFFER.get();
+        if (sb.capacity() > MAX_POOLED_CAPACITY) {
+            sb = new StringBuilder(512);
+            BUFFER.set(sb);
+        }
+        sb.setLength(0);
+        return sb;
+    }
+
+    /**
+     * 値をエンコードする。エンコード不要なら s をそのまま返す（null は空文字）。
+     */
+    public static String encode(String s) {
+        if (s == null) {
+            return "";
+        }
+        int first = firstToEncode(s);
+        if (first < 0) {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(s.length() + 16);
+        sb.append(s, 0, first);
+        appendEncoded(sb, s, first);
+        return sb.toString();
+    }
+
+    /**
+     * 値をエンコードして sb に追記する（null は空文字として扱う）。
+     */
+    public static StringBuilder appendEncoded(StringBuilder sb, String s) {
+        if (s == null) {
+            return sb;
+        }
+        int first = firstToEncode(s);
+        if (first < 0) {
+            return sb.append(s);
+        }
+        sb.append(s, 0, first);
+        appendEncoded(sb, s, first);
+        return sb;
+    }
+
+    /**
+     * key=value を sb に追記する。sb が空でなければ先頭に & を付ける。
+     */
+    public static StringBuilder appendParam(StringBuilder sb, String key, String value) {
+        if (!sb.isEmpty()) {
+            sb.append('&');
+        }
+        appendEncoded(sb, key);
+        sb.append('=');
+        return appendEncoded(sb, value);
+    }
+
+    /**
+     * Map の順に key=value を & でつないだ本文を返す。
+     */
+    public static String encodeForm(Map<String, String> params) {
+        StringBuilder sb = buffer();
+        for (Map.Entry<String, String> e : params.entrySet()) {
+            appendParam(sb, e.getKey(), e.getValue());
+        }
+        return sb.toString();
+    }
+
+    // URLEncoder がそのまま出力する文字
+    static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '_' || c == '.' || c == '*';
+    }
+
+    private static int firstToEncode(String s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            if (!isUnreserved(s.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void appendEncoded(StringBuilder sb, String s, int from) {
+        for (int i = from, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (isUnreserved(c)) {
+                sb.append(c);
+            } else if (c == ' ') {
+                sb.append('+');
+            } else if (c < 0x80) {
+                appendByte(sb, c);
+            } else if (c < 0x800) {
+                appendByte(sb, 0xC0 | (c >> 6));
+                appendByte(sb, 0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                appendByte(sb, 0xF0 | (cp >> 18));
+                appendByte(sb, 0x80 | ((cp >> 12) & 0x3F));
+                appendByte(sb, 0x80 | ((cp >> 6) & 0x3F));
+                appendByte(sb, 0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // 対になっていないサロゲートは URLEncoder と同じく '?' に置き換える
+                appendByte(sb, '?');
+            } else {
+                appendByte(sb, 0xE0 | (c >> 12));
+                appendByte(sb, 0x80 | ((c >> 6) & 0x3F));
+                appendByte(sb, 0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private static void appendByte(StringBuilder sb, int b) {
+        sb.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.oidcclient.jwt;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LazyJwtTest {
+
+    @Test
+    void segmentsInsideALargerString_areDecodedOnDemand() throws Exception {
+        RSAKey key = new RSAKeyGenerator(2048).keyID("kid-1").generate();
+        SignedJWT signed = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID("kid-1").build(),
+                new JWTClaimsSet.Builder().subject("user-1").claim("roles", List.of("a", "b")).build());
+        signed.sign(new RSASSASigner(key));
+        String compact = signed.serialize();
+        String body = "{\"id_token\":\"" + compact + "\"}";
+        int start = body.indexOf(compact);
+
+        LazyJwt jwt = LazyJwt.of(body, start, start + compact.length());
+
+        assertThat(jwt.length()).isEqualTo(compact.length());
+        assertThat(jwt.header().getKeyID()).isEqualTo("kid-1");
+        assertThat(jwt.claims().getSubject()).isEqualTo("user-1");
+        assertThat(jwt.claims().getStringListClaim("roles")).containsExactly("a", "b");
+        assertThat(jwt.toSignedJWT().verify(new RSASSAVerifier(key))).isTrue();
+        assertThat(jwt.compact()).isEqualTo(compact);
+    }
+
+    @Test
+    void nonJwtValues_areNotReferenced() {
+        assertThat(LazyJwt.parse("opaque-token")).isNull();
+        assertThat(LazyJwt.parse("a.b")).isNull();
+        assertThat(LazyJwt.parse("a.b.c.d.e")).isNull();
+        assertThat(LazyJwt.parse(".b.c")).isNull();
+        assertThat(LazyJwt.parse("a.b.")).isNotNull();
+    }
+}
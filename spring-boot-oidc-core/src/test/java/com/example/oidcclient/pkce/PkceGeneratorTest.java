@@ -0,0 +1,48 @@
+package com.example.oidcclient.pkce;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PkceGeneratorTest {
+
+    @Test
+    void s256Challenge_matchesRfc7636Example() {
+        // RFC 7636 Appendix B
+        assertThat(PkceGenerator.s256Challenge("dBjftJeZ4CVP-mB92K27uhbUJU1p1r_wW1gFWFOEjXk"))
+                .isEqualTo("E9Melhoa2OwvFrEMTJguCHaoeK1t8URWbuGJSstw-cM");
+    }
+
+    @Test
+    void generate_returnsConsistentMaterial() {
+        PkceMaterial m = PkceGenerator.generate(64);
+
+        assertThat(m.codeVerifier()).hasSize(64).matches("[A-Za-z0-9\\-_]+");
+        assertThat(m.codeChallenge()).isEqualTo(PkceGenerator.s256Challenge(m.codeVerifier()));
+        assertThat(m.state()).hasSize(22).isNotEqualTo(m.nonce());
+    }
+
+    @Test
+    void clampVerifierLength_appliesBounds() {
+        assertThat(PkceGenerator.clampVerifierLength(10)).isEqualTo(PkceGenerator.DEFAULT_VERIFIER_LENGTH);
+        assertThat(PkceGenerator.clampVerifierLength(200)).isEqualTo(PkceGenerator.MAX_VERIFIER_LENGTH);
+        assertThat(PkceGenerator.clampVerifierLength(43)).isEqualTo(43);
+    }
+
+    @Test
+    void pooledGenerator_returnsDistinctMaterial() {
+        PkceGenerator generator = new PkceGenerator(64, 16);
+        try {
+            Set<String> verifiers = new HashSet<>();
+            for (int i = 0; i < 100; i++) {
+                verifiers.add(generator.next().codeVerifier());
+            }
+            assertThat(verifiers).hasSize(100);
+        } finally {
+            generator.shutdown();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.oidcclient.token;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.ParseException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TokenEndpointResponseTest {
+
+    @Test
+    void successResponse_exposesFieldsAndSkipsUnknownValues() throws Exception {
+        String body = "{\"access_token\":\"a.b.c\",\"expires_in\":300,\"refresh_expires_in\":1800,"
+                + "\"refresh_token\":\"rt\",\"token_type\":\"Bearer\",\"not-before-policy\":0,"
+                + "\"authorization_details\":[{\"type\":\"x\",\"note\":\"} ]\"}],\"active\":true,\"scope\":\"openid email\"}";
+
+        TokenResponse tokens = (TokenResponse) TokenEndpointResponse.parse(body);
+
+        assertThat(tokens.accessToken()).isEqualTo("a.b.c");
+        assertThat(tokens.refreshToken()).isEqualTo("rt");
+        assertThat(tokens.tokenType()).isEqualTo("Bearer");
+        assertThat(tokens.scope()).isEqualTo("openid email");
+        assertThat(tokens.expiresIn()).isEqualTo(300);
+        assertThat(tokens.refreshExpiresIn()).isEqualTo(1800);
+        assertThat(tokens.hasIdToken()).isFalse();
+        assertThat(tokens.idToken()).isNull();
+        assertThat(tokens.body()).isSameAs(body);
+    }
+
+    @Test
+    void escapedValues_areDecodedOnRead() throws Exception {
+        TokenResponse tokens = (TokenResponse) TokenEndpointResponse.parse(
+                "{\"access_\\u0074oken\":\"x\\/y\\\"z\\u00e9\"}");
+
+        assertThat(tokens.accessToken()).isEqualTo("x/y\"zé");
+        assertThat(tokens.expiresIn()).isEqualTo(-1);
+    }
+
+    @Test
+    void errorResponse_isASeparateType() throws Exception {
+        TokenEndpointResponse response = TokenEndpointResponse.parse(
+                "{\"error\":\"invalid_grant\",\"error_description\":\"Code not valid\"}");
+
+        assertThat(response).isInstanceOfSatisfying(TokenErrorResponse.class, error -> {
+            assertThat(error.error()).isEqualTo("invalid_grant");
+            assertThat(error.errorDescription()).isEqualTo("Code not valid");
+            assertThat(error.errorUri()).isNull();
+        });
+    }
+
+    @Test
+    void nonJsonBodies_areRejected() {
+        assertThatThrownBy(() -> TokenEndpointResponse.parse("<html>502 Bad Gateway</html>"))
+                .isInstanceOf(ParseException.class);
+        assertThatThrownBy(() -> TokenEndpointResponse.parse("{\"access_token\":\"a\""))
+                .isInstanceOf(ParseException.class);
+        assertThatThrownBy(() -> TokenEndpointResponse.parse(null)).isInstanceOf(ParseException.class);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.oidcclient.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AuthorizationUrlTemplateTest {
+
+    private static final String ENDPOINT = "http://localhost:8080/realms/myrealm/protocol/openid-connect/auth";
+
+    @Test
+    void expandsToTheSameUriAsEncodingEveryParameter() {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("response_type", "code");
+        params.put("client_id", "my-client");
+        params.put("redirect_uri", "http://localhost:8081/callback");
+        params.put("scope", "openid profile");
+        params.put("state", "abc");
+        params.put("nonce", "n 1");
+        params.put("code_challenge", "E9Melhoa2OwvFrEMTJguCHaoeK1t8URWbuGJSstw-cM");
+        params.put("code_challenge_method", "S256");
+
+        assertThat(AuthorizationUrlTemplate.of(ENDPOINT, params).expand(params)).isEqualTo(naive(ENDPOINT, params));
+    }
+
+    @Test
+    void onlyTheLeadingFixedParametersAreTemplated() {
+        // client_id が先頭でない・一部が欠けている・固定パラメータが後ろに来る場合も結果は同じ
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("client_id", "c");
+        params.put("state", "s");
+        params.put("response_type", "code");
+        params.put("scope", null);
+        assertThat(AuthorizationUrlTemplate.of(ENDPOINT, params).expand(params)).isEqualTo(naive(ENDPOINT, params));
+
+        Map<String, String> gap = new LinkedHashMap<>();
+        gap.put("response_type", "code");
+        gap.put("redirect_uri", "http://localhost/cb");
+        gap.put("prompt", "login");
+        assertThat(AuthorizationUrlTemplate.of(ENDPOINT, gap).expand(gap)).isEqualTo(naive(ENDPOINT, gap));
+    }
+
+    @Test
+    void handlesEmptyParamsAndEndpointsWithAQuery() {
+        assertThat(AuthorizationUrlTemplate.of(ENDPOINT, Map.of()).expand(Map.of())).isEqualTo(ENDPOINT + "?");
+
+        String withQuery = ENDPOINT + "?kc_idp_hint=google";
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("response_type", "code");
+        params.put("state", "s");
+        assertThat(AuthorizationUrlTemplate.of(withQuery, params).expand(params)).isEqualTo(naive(withQuery, params));
+    }
+
+    @Test
+    void sameClientConfigurationReusesTheTemplate() {
+        Map<String, String> a = new LinkedHashMap<>();
+        a.put("response_type", "code");
+        a.put("client_id", "reuse-client");
+        a.put("state", "1");
+        Map<String, String> b = new LinkedHashMap<>(a);
+        b.put("state", "2");
+
+        assertThat(AuthorizationUrlTemplate.of(ENDPOINT, a)).isSameAs(AuthorizationUrlTemplate.of(ENDPOINT, b));
+    }
+
+    @Test
+    void uncachedTemplate_matchesButIsNotShared() {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("response_type", "code");
+        params.put("client_id", "request-supplied");
+        params.put("state", "1");
+
+        AuthorizationUrlTemplate uncached = AuthorizationUrlTemplate.uncached("https://attacker.example/auth", params);
+        assertThat(uncached.expand(params)).isEqualTo(naive("https://attacker.example/auth", params));
+        assertThat(uncached).isNotSameAs(AuthorizationUrlTemplate.uncached("https://attacker.example/auth", params));
+    }
+
+    @Test
+    void cacheStaysBounded_andKeepsATemplateInUse() throws Exception {
+        Map<String, String> hot = new LinkedHashMap<>();
+        hot.put("response_type", "code");
+        hot.put("client_id", "hot-client");
+        AuthorizationUrlTemplate template = AuthorizationUrlTemplate.of(ENDPOINT, hot);
+
+        for (int i = 0; i < AuthorizationUrlTemplate.MAX_CACHED * 2; i++) {
+            Map<String, String> junk = new LinkedHashMap<>();
+            junk.put("response_type", "code");
+            junk.put("client_id", "junk-" + i);
+            AuthorizationUrlTemplate.of(ENDPOINT, junk);
+            if (i % 64 == 0) {
+                // 使用時刻の更新間隔（1ms）を空けて使い続ける
+                Thread.sleep(2);
+                assertThat(AuthorizationUrlTemplate.of(ENDPOINT, hot)).isSameAs(template);
+            }
+        }
+
+        assertThat(AuthorizationUrlTemplate.cachedCount()).isLessThanOrEqualTo(AuthorizationUrlTemplate.MAX_CACHED);
+        assertThat(AuthorizationUrlTemplate.of(ENDPOINT, hot)).isSameAs(template);
+    }
+
+    // 以前の実装（全パラメータを都度エンコード）
+    private static String naive(String endpoint, Map<String, String> params) {
+        String query = params.entrySet().stream()
+                .map(e -> enc(e.getKey()) + "=" + enc(e.getValue()))
+                .collect(Collectors.joining("&"));
+        return endpoint + (endpoint.contains("?") ? "&" : "?") + query;
+    }
+
+    private static String enc(String s) {
+        return URLEncoder.encode(s == null ? "" : s, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.oidcclient.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class QueryEncoderTest {
+
+    @Test
+    void unreservedValuesAreReturnedAsIs() {
+        String value = "f3kq9Jd0x8Qm2LrV7tYwZ1nB5cH4sE6a-_.*";
+        assertThat(QueryEncoder.encode(value)).isSameAs(value);
+        assertThat(QueryEncoder.encode(null)).isEmpty();
+    }
+
+    @Test
+    void matchesUrlEncoderForMixedInput() {
+        String[] samples = {
+                "openid profile email",
+                "http://localhost:8081/callback?x=1&y=a b",
+                "s3cr3t/+=value~!'()",
+                "ログイン 認可",
+                "emoji 😀 end",
+                "unpaired \uD800 high and \uDC00 low",
+                "",
+        };
+        for (String s : samples) {
+            assertThat(QueryEncoder.encode(s)).as(s).isEqualTo(URLEncoder.encode(s, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void matchesUrlEncoderForRandomStrings() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2_000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(24);
+            for (int j = 0; j < length; j++) {
+                // ASCII を多めに、BMP 全体とサロゲートも混ぜる
+                sb.append((char) (random.nextInt(4) == 0 ? random.nextInt(0x10000) : random.nextInt(0x80)));
+            }
+            String s = sb.toString();
+            assertThat(QueryEncoder.encode(s)).isEqualTo(URLEncoder.encode(s, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void encodeFormJoinsPairsInMapOrder() {
+        Map<String, String> form = new LinkedHashMap<>();
+        form.put("grant_type", "authorization_code");
+        form.put("redirect_uri", "http://localhost:8081/callback");
+        form.put("client_secret", null);
+
+        assertThat(QueryEncoder.encodeForm(form))
+                .isEqualTo("grant_type=authorization_code&redirect_uri=http%3A%2F%2Flocalhost%3A8081%2Fcallback&client_secret=");
+        assertThat(QueryEncoder.encodeForm(Map.of())).isEmpty();
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.oidcclient.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * ブラウザ役として 1 回分の認可コードフローを実行する。
+ * /authorization_flow → /authorize → スタブの auth（302 で code を受け取る）→ /token_request の順に呼び、
+ * 各ステップの応答時間を FlowStats に記録する。Cookie はフローごとに保持する（他のフローとは共有しない）。
+ */
+final class FlowDriver {
+
+    private static final Pattern DATA_ATTR = Pattern.compile("data-([a-z_]+)=\"([^\"]*)\"");
+    private static final String REDIRECT_URI = "http://localhost/callback";
+
+    private final HttpClient client;
+    private final String appBase;
+    private final String tokenPath;
+    private final Duration timeout;
+
+    FlowDriver(String appBase, boolean async, Duration timeout) {
+        this.appBase = appBase;
+        this.tokenPath = async ? "/token_request_async" : "/token_request";
+        this.timeout = timeout;
+        // リダイレクトは自分で辿る（302 の Location から code を取り出すため）
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    void run(FlowStats stats) {
+        stats.started();
+        Map<String, String> cookies = new LinkedHashMap<>();
+        long flowStart = System.nanoTime();
+        String step = FlowStats.AUTHORIZATION_FLOW;
+        try {
+            // 1. PKCE 値・state・nonce を発行してもらう
+            HttpResponse<String> form = send(stats, step, cookies, HttpRequest.newBuilder(URI.create(appBase
+                    + "/authorization_flow?client_id=" + StubAuthorizationServer.CLIENT_ID
+                    + "&redirect_uri=" + encode(REDIRECT_URI))).GET());
+            if (form.statusCode() != 200) {
+                stats.failed(step, "HTTP " + form.statusCode());
+                return;
+            }
+            Map<String, String> initial = dataAttributes(form.body());
+
+            // 2. Authorization Request（authorization_endpoint は省略して discovery の値を使わせる）
+            step = FlowStats.AUTHORIZE;
+            Map<String, String> authorize = new LinkedHashMap<>();
+            authorize.put("response_type", "code");
+            authorize.put("client_id", StubAuthorizationServer.CLIENT_ID);
+            authorize.put("redirect_uri", REDIRECT_URI);
+            authorize.put("scope", "openid");
+            authorize.put("state", initial.get("state"));
+            authorize.put("nonce", initial.get("nonce"));
+            authorize.put("code_challenge", initial.get("code_challenge"));
+            authorize.put("code_challenge_method", initial.getOrDefault("code_challenge_method", "S256"));
+            HttpResponse<String> redirect = send(stats, step, cookies, post("/authorize", authorize));
+            String authUrl = redirect.headers().firstValue("location").orElse(null);
+            if (redirect.statusCode() != 302 || authUrl == null) {
+                stats.failed(step, "HTTP " + redirect.statusCode());
+                return;
+            }
+
+            // 3. 認可サーバ（スタブ）でのログイン。redirect_uri へ戻る Location から code と state を取り出す
+            step = FlowStats.IDP_LOGIN;
+            HttpResponse<String> callback = send(stats, step, null, HttpRequest.newBuilder(URI.create(authUrl)).GET());
+            String location = callback.headers().firstValue("location").orElse(null);
+            if (callback.statusCode() != 302 || location == null) {
+                stats.failed(step, "HTTP " + callback.statusCode());
+                return;
+            }
+            Map<String, String> callbackParams = StubAuthorizationServer.parseForm(URI.create(location).getRawQuery());
+
+            // 4. token request（code_verifier は送らず、アプリが保持しているものを使わせる）
+            step = FlowStats.TOKEN_REQUEST;
+            Map<String, String> token = new LinkedHashMap<>();
+            token.put("grant_type", "authorization_code");
+            token.put("code", callbackParams.get("code"));
+            token.put("state", callbackParams.get("state"));
+            token.put("redirect_uri", REDIRECT_URI);
+            token.put("client_id", StubAuthorizationServer.CLIENT_ID);
+            token.put("client_secret", StubAuthorizationServer.CLIENT_SECRET);
+            HttpResponse<String> tokenResponse = send(stats, step, cookies, post(tokenPath, token));
+            if (tokenResponse.statusCode() != 200) {
+                stats.failed(step, "HTTP " + tokenResponse.statusCode());
+                return;
+            }
+            if (!tokenResponse.body().contains("\"access_token\"")) {
+                // upstream のエラー応答を 200 のまま返している場合
+                stats.failed(step, "no access_token");
+                return;
+            }
+            stats.completed(System.nanoTime() - flowStart);
+        } catch (IOException e) {
+            stats.failed(step, e.getClass().getSimpleName());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stats.failed(step, "interrupted");
+        }
+    }
+
+    private HttpResponse<String> send(FlowStats stats, String step, Map<String, String> cookies,
+                                      HttpRequest.Builder builder) throws IOException, InterruptedException {
+        builder.timeout(timeout);
+        if (cookies != null && !cookies.isEmpty()) {
+            builder.header("Cookie", cookies.entrySet().stream()
+                    .map(e -> e.getKey() + "=" + e.getValue())
+                    .collect(Collectors.joining("; ")));
+        }
+        long start = System.nanoTime();
+        HttpResponse<String> response = client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+        stats.step(step).recordNanos(System.nanoTime() - start);
+        if (cookies != null) {
+            for (String setCookie : response.headers().allValues("set-cookie")) {
+                storeCookie(cookies, setCookie);
+            }
+        }
+        return response;
+    }
+
+    private HttpRequest.Builder post(String path, Map<String, String> form) {
+        String body = form.entrySet().stream()
+                .filter(e -> e.getValue() != null)
+                .map(e -> encode(e.getKey()) + "=" + encode(e.getValue()))
+                .collect(Collectors.joining("&"));
+        return HttpRequest.newBuilder(URI.create(appBase + path))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+    }
+
+    // name=value; Path=/; ... の name=value だけを使う（値が空なら削除扱い）
+    private static void storeCookie(Map<String, String> cookies, String setCookie) {
+        int end = setCookie.indexOf(';');
+        String pair = end >= 0 ? setCookie.substring(0, end) : setCookie;
+        int idx = pair.indexOf('=');
+        if (idx <= 0) {
+            return;
+        }
+        String name = pair.substring(0, idx).trim();
+        String value = pair.substring(idx + 1).trim();
+        if (value.isEmpty()) {
+            cookies.remove(name);
+        } else {
+            cookies.put(name, value);
+        }
+    }
+
+    // authorization_flow.html の <div id="initial" data-...> から初期値を取り出す
+    static Map<String, String> dataAttributes(String html) {
+        Map<String, String> values = new LinkedHashMap<>();
+        Matcher m = DATA_ATTR.matcher(html);
+        while (m.find()) {
+            values.putIfAbsent(m.group(1), m.group(2));
+        }
+        return values;
+    }
+
+    private static String encode(String s) {
+        return URLEncoder.encode(s, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.oidcclient.loadtest;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 1 つの計測区間（ウォームアップ / 本計測）の結果。ステップごとの応答時間と失敗の内訳を持つ。
+ */
+final class FlowStats {
+
+    static final String FLOW = "flow (total)";
+    static final String AUTHORIZATION_FLOW = "GET  /authorization_flow";
+    static final String AUTHORIZE = "POST /authorize";
+    static final String IDP_LOGIN = "GET  {idp}/auth";
+    static final String TOKEN_REQUEST = "POST /token_request";
+
+    private final ConcurrentHashMap<String, LatencyHistogram> steps = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> failures = new ConcurrentHashMap<>();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final long startedAtNanos = System.nanoTime();
+
+    LatencyHistogram step(String name) {
+        return steps.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    void started() {
+        started.increment();
+    }
+
+    void completed(long flowNanos) {
+        completed.increment();
+        step(FLOW).recordNanos(flowNanos);
+    }
+
+    // 失敗はステップとステータス（または例外名）で分類する
+    void failed(String step, String reason) {
+        failures.computeIfAbsent(step + " -> " + reason, k -> new LongAdder()).increment();
+    }
+
+    void dropped() {
+        dropped.increment();
+    }
+
+    long startedCount() {
+        return started.sum();
+    }
+
+    long completedCount() {
+        return completed.sum();
+    }
+
+    long droppedCount() {
+        return dropped.sum();
+    }
+
+    long failedCount() {
+        long n = 0;
+        for (LongAdder a : failures.values()) {
+            n += a.sum();
+        }
+        return n;
+    }
+
+    double elapsedSeconds() {
+        return (System.nanoTime() - startedAtNanos) / 1e9;
+    }
+
+    Map<String, LatencyHistogram> steps() {
+        return steps;
+    }
+
+    Map<String, Long> failures() {
+        Map<String, Long> sorted = new TreeMap<>();
+        failures.forEach((k, v) -> sorted.put(k, v.sum()));
+        return sorted;
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.oidcclient.loadtest;
+
+import com.example.oidcclient.OidcClientApplication;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 負荷試験のエントリポイント。
+ * スタブの認可サーバとアプリを同じ JVM 内で起動し、一定の到着レート（--rps）で認可コードフロー全体を実行して
+ * スループット・ステップごとの応答時間・ヒープ（セッション等）の増加量・upstream の接続数を出力する。
+ * 外部への通信は行わない（すべて 127.0.0.1 上で完結する）。
+ * 最初の引数が startup の場合は起動時間の計測（StartupBenchmark）を行う。
+ */
+public final class LoadTestMain {
+
+    private LoadTestMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("startup")) {
+            StartupBenchmark.run(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        try (StubAuthorizationServer stub = StubAuthorizationServer.start(options);
+             ConfigurableApplicationContext app = startApp(options, stub)) {
+            String appBase = "http://127.0.0.1:" + app.getEnvironment().getProperty("local.server.port");
+            Duration timeout = Duration.ofSeconds(30);
+            FlowDriver driver = new FlowDriver(appBase, options.async(), timeout);
+            MeterRegistry registry = app.getBean(MeterRegistry.class);
+
+            System.out.printf("app=%s stub=%s rps=%d duration=%ss warmup=%ss mode=%s token path=%s%n",
+                    appBase, stub.baseUrl(), options.rps(), options.duration().toSeconds(), options.warmup().toSeconds(),
+                    options.flowStateMode(), options.async() ? "/token_request_async" : "/token_request");
+
+            if (!options.warmup().isZero()) {
+                System.out.println("warming up ...");
+                drive(options, driver, new FlowStats(), options.warmup(), stub);
+            }
+            stub.resetStats();
+            long heapBefore = usedHeapAfterGc();
+            Map<String, Double> gaugesBefore = gauges(registry);
+
+            System.out.println("measuring ...");
+            FlowStats stats = new FlowStats();
+            drive(options, driver, stats, options.duration(), stub);
+
+            long heapAfter = usedHeapAfterGc();
+            report(options, stats, stub, heapBefore, heapAfter, gaugesBefore, gauges(registry));
+        }
+    }
+
+    private static ConfigurableApplicationContext startApp(LoadTestOptions options, StubAuthorizationServer stub) {
+        // application.properties より優先させるためコマンドライン引数として渡す
+        Map<String, String> props = new LinkedHashMap<>();
+        props.put("server.port", "0");
+        props.put("keycloak.host", stub.baseUrl());
+        props.put("keycloak.context-path", stub.contextPath());
+        // スタブは HTTP/1.1 のみ
+        props.put("keycloak.http.version", "HTTP_1_1");
+        props.put("app.flow-state.mode", options.flowStateMode());
+        props.put("logging.level.com.example.oidcclient", "INFO");
+        props.putAll(options.appProperties());
+        List<String> args = new ArrayList<>();
+        props.forEach((k, v) -> args.add("--" + k + "=" + v));
+        return new SpringApplicationBuilder(OidcClientApplication.class).run(args.toArray(String[]::new));
+    }
+
+    // 到着間隔を一定にしてフローを開始する（応答を待たないオープンループ）。max-in-flight を超える分は開始しない
+    private static void drive(LoadTestOptions options, FlowDriver driver, FlowStats stats, Duration duration,
+                              StubAuthorizationServer stub) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(options.maxInFlight());
+        ScheduledExecutorService pacer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "loadtest-pacer");
+            t.setDaemon(true);
+            return t;
+        });
+        try (ExecutorService flows = Executors.newVirtualThreadPerTaskExecutor()) {
+            long periodNanos = Math.max(1L, 1_000_000_000L / options.rps());
+            pacer.scheduleAtFixedRate(() -> {
+                if (!inFlight.tryAcquire()) {
+                    stats.dropped();
+                    return;
+                }
+                flows.execute(() -> {
+                    try {
+                        driver.run(stats);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }, 0, periodNanos, TimeUnit.NANOSECONDS);
+            long reportMillis = Math.max(1L, options.reportInterval().toMillis());
+            long end = System.nanoTime() + duration.toNanos();
+            while (System.nanoTime() < end) {
+                Thread.sleep(Math.min(reportMillis, Math.max(1L, (end - System.nanoTime()) / 1_000_000L)));
+                System.out.printf("  t=%5.1fs started=%d completed=%d failed=%d dropped=%d in-flight=%d upstream-conn=%d%n",
+                        stats.elapsedSeconds(), stats.startedCount(), stats.completedCount(), stats.failedCount(),
+                        stats.droppedCount(), options.maxInFlight() - inFlight.availablePermits(),
+                        stub.connectionsActive(reportMillis));
+            }
+            pacer.shutdownNow();
+            // 開始済みのフローの完了を待つ（close で待機）
+        }
+    }
+
+    private static void report(LoadTestOptions options, FlowStats stats, StubAuthorizationServer stub,
+                               long heapBefore, long heapAfter, Map<String, Double> gaugesBefore,
+                               Map<String, Double> gaugesAfter) {
+        double seconds = options.duration().toMillis() / 1000.0;
+        System.out.println();
+        System.out.println("== throughput ==");
+        System.out.printf("  target            %8d flows/s%n", options.rps());
+        System.out.printf("  completed         %8.1f flows/s (%d flows)%n", stats.completedCount() / seconds, stats.completedCount());
+        System.out.printf("  failed            %8d%n", stats.failedCount());
+        System.out.printf("  dropped           %8d (max-in-flight=%d reached)%n", stats.droppedCount(), options.maxInFlight());
+
+        System.out.println();
+        System.out.println("== latency (ms) ==");
+        System.out.printf("  %-28s %8s %8s %8s %8s %8s %8s %8s%n", "step", "count", "mean", "p50", "p90", "p99", "p99.9", "max");
+        for (String step : List.of(FlowStats.AUTHORIZATION_FLOW, FlowStats.AUTHORIZE, FlowStats.IDP_LOGIN,
+                FlowStats.TOKEN_REQUEST, FlowStats.FLOW)) {
+            LatencyHistogram h = stats.steps().get(step);
+            if (h == null) continue;
+            System.out.printf("  %-28s %8d %8.2f %8.2f %8.2f %8.2f %8.2f %8.2f%n", step, h.count(), h.meanMillis(),
+                    h.percentileMillis(0.50), h.percentileMillis(0.90), h.percentileMillis(0.99),
+                    h.percentileMillis(0.999), h.maxMillis());
+        }
+
+        if (!stats.failures().isEmpty()) {
+            System.out.println();
+            System.out.println("== failures ==");
+            stats.failures().forEach((k, v) -> System.out.printf("  %-50s %8d%n", k, v));
+        }
+
+        System.out.println();
+        System.out.println("== heap / sessions ==");
+        long growth = heapAfter - heapBefore;
+        System.out.printf("  heap used after GC %8.1f MiB -> %8.1f MiB (%+.1f MiB)%n", mib(heapBefore), mib(heapAfter), mib(growth));
+        if (stats.completedCount() > 0) {
+            System.out.printf("  growth per flow    %8.0f bytes%n", (double) growth / stats.completedCount());
+        }
+        gaugesAfter.forEach((name, after) -> System.out.printf("  %-26s %10.0f -> %10.0f%n",
+                name, gaugesBefore.getOrDefault(name, Double.NaN), after));
+
+        System.out.println();
+        System.out.println("== upstream (stub authorization server) ==");
+        System.out.printf("  connections used   %8d%n", stub.connectionsUsed());
+        System.out.printf("  peak concurrent    %8d requests%n", stub.peakInFlight());
+        System.out.printf("  token requests     %8d (injected errors=%d, invalid_grant=%d)%n",
+                stub.requestCount("token"), stub.injectedErrors(), stub.invalidGrants());
+        System.out.printf("  discovery / jwks   %8d / %d%n", stub.requestCount("discovery"), stub.requestCount("jwks"));
+    }
+
+    // セッション・フロー保持数などアプリ側のメモリ使用に関わるゲージ
+    private static Map<String, Double> gauges(MeterRegistry registry) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (String name : List.of("tomcat.sessions.active.current", "oidc.flow.pending", "oidc.session.tokens")) {
+            Gauge gauge = registry.find(name).gauge();
+            if (gauge != null) {
+                values.put(name, gauge.value());
+            }
+        }
+        return values;
+    }
+
+    // 同じ JVM のヒープを測るため、GC を何度か促して落ち着いた値を使う
+    private static long usedHeapAfterGc() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static double mib(long bytes) {
+        return bytes / 1024.0 / 1024.0;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.oidcclient.loadtest;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 負荷試験の設定（--name=value 形式の引数）。
+ * 負荷試験用以外の --key=value はアプリ（Spring Boot）のプロパティとしてそのまま渡す。
+ */
+record LoadTestOptions(
+        int rps,
+        Duration duration,
+        Duration warmup,
+        int maxInFlight,
+        boolean async,
+        String flowStateMode,
+        Duration stubLatency,
+        Duration stubLatencyJitter,
+        double stubErrorRate,
+        int tokenPayloadBytes,
+        int tokenExpiresIn,
+        Duration reportInterval,
+        Map<String, String> appProperties) {
+
+    private static final Set<String> KNOWN = Set.of(
+            "rps", "duration", "warmup", "max-in-flight", "async", "flow-state-mode", "stub-latency",
+            "stub-latency-jitter", "stub-error-rate", "token-payload-bytes", "token-expires-in", "report-interval");
+
+    static final String USAGE = """
+            usage: java -jar spring-boot-oidc-loadtest.jar [options] [--app.property=value ...]
+              --rps=50                  1 秒あたりに開始するフロー数（到着間隔は一定、応答を待たない）
+              --duration=60s            計測時間
+              --warmup=10s              計測前のウォームアップ時間（結果には含めない）
+              --max-in-flight=1000      同時に実行するフロー数の上限（超えた分は開始せず dropped に数える）
+              --async=false             /token_request_async を使う
+              --flow-state-mode=session app.flow-state.mode（session / cookie）
+              --stub-latency=20ms       スタブ token エンドポイントの応答遅延
+              --stub-latency-jitter=10ms 応答遅延に加える 0〜jitter の揺らぎ
+              --stub-error-rate=0.0     スタブが 503 temporarily_unavailable を返す割合
+              --token-payload-bytes=2048 token レスポンスのおおよそのサイズ（access_token の長さで調整）
+              --token-expires-in=300    token レスポンスの expires_in（秒）
+              --report-interval=5s      途中経過の出力間隔
+            """;
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new LinkedHashMap<>();
+        Map<String, String> appProperties = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (arg.equals("--help") || arg.equals("-h")) {
+                System.out.println(USAGE);
+                System.exit(0);
+            }
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("unexpected argument: " + arg + "\n" + USAGE);
+            }
+            int idx = arg.indexOf('=');
+            String key = arg.substring(2, idx);
+            String value = arg.substring(idx + 1);
+            if (key.contains(".")) {
+                appProperties.put(key, value);
+            } else {
+                values.put(key, value);
+            }
+        }
+        LoadTestOptions options = new LoadTestOptions(
+                Integer.parseInt(values.getOrDefault("rps", "50")),
+                duration(values.getOrDefault("duration", "60s")),
+                duration(values.getOrDefault("warmup", "10s")),
+                Integer.parseInt(values.getOrDefault("max-in-flight", "1000")),
+                Boolean.parseBoolean(values.getOrDefault("async", "false")),
+                values.getOrDefault("flow-state-mode", "session"),
+                duration(values.getOrDefault("stub-latency", "20ms")),
+                duration(values.getOrDefault("stub-latency-jitter", "10ms")),
+                Double.parseDouble(values.getOrDefault("stub-error-rate", "0.0")),
+                Integer.parseInt(values.getOrDefault("token-payload-bytes", "2048")),
+                Integer.parseInt(values.getOrDefault("token-expires-in", "300")),
+                duration(values.getOrDefault("report-interval", "5s")),
+                appProperties);
+        values.keySet().removeAll(KNOWN);
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("unknown options: " + values.keySet() + "\n" + USAGE);
+        }
+        if (options.rps() <= 0) {
+            throw new IllegalArgumentException("--rps must be positive");
+        }
+        return options;
+    }
+
+    // 500ms / 10s / 2m（単位なしは秒）
+    static Duration duration(String s) {
+        String v = s.trim();
+        if (v.endsWith("ms")) return Duration.ofMillis(Long.parseLong(v.substring(0, v.length() - 2)));
+        if (v.endsWith("s")) return Duration.ofSeconds(Long.parseLong(v.substring(0, v.length() - 1)));
+        if (v.endsWith("m")) return Duration.ofMinutes(Long.parseLong(v.substring(0, v.length() - 1)));
+        return Duration.ofSeconds(Long.parseLong(v));
+    }
+}
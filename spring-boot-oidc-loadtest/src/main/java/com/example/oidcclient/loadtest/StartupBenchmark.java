@@ -0,0 +1,214 @@
+package com.example.oidcclient.loadtest;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 起動時間の計測（java -jar spring-boot-oidc-loadtest.jar startup --app-jar=... [options]）。
+ * アプリの実行用 jar を別プロセスで起動し、起動開始から認可コードフロー全体（/authorization_flow → /authorize →
+ * スタブの認可サーバ → /token_request）が最初に成功するまでの時間と、その時点のプロセスの RSS を --runs 回測る。
+ * 認可サーバはこのプロセス内のスタブを使うため、Keycloak なしで実行できる。
+ * CDS・AOT の効果はプロセスごとに変わるため、同じ JVM 内では起動しない。
+ */
+final class StartupBenchmark {
+
+    private static final Pattern STARTED = Pattern.compile("Started \\S+ in ([0-9.]+) seconds");
+
+    private StartupBenchmark() {
+    }
+
+    record Options(Path appJar, List<String> jvmArgs, Path workDir, int runs, Duration timeout,
+                   Map<String, String> appProperties) {
+
+        private static final Set<String> KNOWN = Set.of("app-jar", "jvm-args", "work-dir", "runs", "timeout");
+
+        static final String USAGE = """
+                usage: java -jar spring-boot-oidc-loadtest.jar startup --app-jar=PATH [options] [--app.property=value ...]
+                  --app-jar=PATH            起動するアプリの実行用 jar（spring-boot-oidc-client-*-exec.jar）
+                  --jvm-args="..."          アプリの JVM に渡す引数（空白区切り）
+                  --work-dir=DIR            アプリの作業ディレクトリ（省略時は jar のあるディレクトリ）
+                  --runs=5                  起動の回数
+                  --timeout=60s             1 回の起動で最初の成功を待つ上限
+                """;
+
+        static Options parse(String[] args) {
+            Map<String, String> values = new LinkedHashMap<>();
+            Map<String, String> appProperties = new LinkedHashMap<>();
+            for (String arg : args) {
+                if (arg.equals("--help") || arg.equals("-h")) {
+                    System.out.println(USAGE);
+                    System.exit(0);
+                }
+                if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                    throw new IllegalArgumentException("unexpected argument: " + arg + "\n" + USAGE);
+                }
+                int idx = arg.indexOf('=');
+                String key = arg.substring(2, idx);
+                String value = arg.substring(idx + 1);
+                if (key.contains(".")) {
+                    appProperties.put(key, value);
+                } else {
+                    values.put(key, value);
+                }
+            }
+            String jar = values.get("app-jar");
+            if (jar == null || jar.isBlank()) {
+                throw new IllegalArgumentException("--app-jar is required\n" + USAGE);
+            }
+            Path appJar = Path.of(jar).toAbsolutePath();
+            String jvmArgs = values.getOrDefault("jvm-args", "").trim();
+            Options options = new Options(
+                    appJar,
+                    jvmArgs.isEmpty() ? List.of() : Arrays.asList(jvmArgs.split("\\s+")),
+                    values.containsKey("work-dir") ? Path.of(values.get("work-dir")).toAbsolutePath() : appJar.getParent(),
+                    Integer.parseInt(values.getOrDefault("runs", "5")),
+                    LoadTestOptions.duration(values.getOrDefault("timeout", "60s")),
+                    appProperties);
+            values.keySet().removeAll(KNOWN);
+            if (!values.isEmpty()) {
+                throw new IllegalArgumentException("unknown options: " + values.keySet() + "\n" + USAGE);
+            }
+            if (!Files.isRegularFile(appJar)) {
+                throw new IllegalArgumentException("app jar not found: " + appJar);
+            }
+            if (options.runs() <= 0) {
+                throw new IllegalArgumentException("--runs must be positive");
+            }
+            return options;
+        }
+    }
+
+    /** 1 回の起動の結果。startedSeconds は Spring Boot が出力した起動時間（出力が無ければ NaN）。 */
+    record Run(long firstSuccessMillis, long rssKib, double startedSeconds, int attempts) {
+    }
+
+    static void run(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        // スタブは応答遅延なし（起動時間だけを測る）
+        LoadTestOptions stubOptions = LoadTestOptions.parse(new String[]{"--stub-latency=0ms", "--stub-latency-jitter=0ms"});
+        List<Run> runs = new ArrayList<>();
+        try (StubAuthorizationServer stub = StubAuthorizationServer.start(stubOptions)) {
+            System.out.printf("app-jar=%s%njvm-args=%s%nwork-dir=%s runs=%d%n",
+                    options.appJar(), String.join(" ", options.jvmArgs()), options.workDir(), options.runs());
+            for (int i = 1; i <= options.runs(); i++) {
+                Run run = runOnce(options, stub);
+                runs.add(run);
+                System.out.printf("  run %2d: first successful flow %6d ms, rss %8.1f MiB, spring started in %5.2f s (%d attempts)%n",
+                        i, run.firstSuccessMillis(), run.rssKib() / 1024.0, run.startedSeconds(), run.attempts());
+            }
+        }
+        report(runs);
+    }
+
+    private static Run runOnce(Options options, StubAuthorizationServer stub) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(options.jvmArgs());
+        command.add("-jar");
+        command.add(options.appJar().toString());
+        // application.properties より優先させるためコマンドライン引数として渡す（LoadTestMain と同じ設定）
+        Map<String, String> props = new LinkedHashMap<>();
+        props.put("server.port", String.valueOf(port));
+        props.put("keycloak.host", stub.baseUrl());
+        props.put("keycloak.context-path", stub.contextPath());
+        props.put("keycloak.http.version", "HTTP_1_1");
+        props.put("logging.level.com.example.oidcclient", "INFO");
+        props.putAll(options.appProperties());
+        props.forEach((k, v) -> command.add("--" + k + "=" + v));
+
+        Path log = Files.createTempFile("startup-benchmark-", ".log");
+        FlowDriver driver = new FlowDriver("http://127.0.0.1:" + port, false, Duration.ofSeconds(10));
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .directory(options.workDir().toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        try {
+            long deadline = start + options.timeout().toNanos();
+            int attempts = 0;
+            while (true) {
+                attempts++;
+                FlowStats stats = new FlowStats();
+                driver.run(stats);
+                if (stats.completedCount() > 0) {
+                    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    Run run = new Run(elapsed, rssKib(process.pid()), startedSeconds(log), attempts);
+                    // 失敗時のログは調査用に残す
+                    Files.deleteIfExists(log);
+                    return run;
+                }
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("app exited with " + process.exitValue() + " (log: " + log + ")");
+                }
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("no successful flow within " + options.timeout().toSeconds()
+                            + "s: " + stats.failures() + " (log: " + log + ")");
+                }
+                Thread.sleep(10);
+            }
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static void report(List<Run> runs) {
+        long[] first = runs.stream().mapToLong(Run::firstSuccessMillis).sorted().toArray();
+        long[] rss = runs.stream().mapToLong(Run::rssKib).sorted().toArray();
+        System.out.println();
+        System.out.println("== startup ==");
+        System.out.printf("  %-28s %10s %10s %10s%n", "", "min", "median", "max");
+        System.out.printf("  %-28s %10d %10d %10d%n", "first successful flow (ms)",
+                first[0], first[first.length / 2], first[first.length - 1]);
+        System.out.printf("  %-28s %10.1f %10.1f %10.1f%n", "rss (MiB)",
+                rss[0] / 1024.0, rss[rss.length / 2] / 1024.0, rss[rss.length - 1] / 1024.0);
+    }
+
+    // Linux は /proc/<pid>/status の VmRSS、それ以外は ps で取る（取れない場合は -1）
+    private static long rssKib(long pid) {
+        try {
+            Path status = Path.of("/proc", String.valueOf(pid), "status");
+            if (Files.isReadable(status)) {
+                for (String line : Files.readAllLines(status)) {
+                    if (line.startsWith("VmRSS:")) {
+                        return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                    }
+                }
+            }
+            Process ps = new ProcessBuilder("ps", "-o", "rss=", "-p", String.valueOf(pid)).start();
+            String out = new String(ps.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            ps.waitFor();
+            return out.isEmpty() ? -1L : Long.parseLong(out);
+        } catch (IOException | InterruptedException | NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    private static double startedSeconds(Path log) throws IOException {
+        Matcher m = STARTED.matcher(Files.readString(log, StandardCharsets.UTF_8));
+        return m.find() ? Double.parseDouble(m.group(1)) : Double.NaN;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.example.oidcclient.loadtest;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.util.JSONObjectUtils;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 負荷試験用の Keycloak 代わりの認可サーバ（JDK の HttpServer、HTTP/1.1 のみ）。
+ * <ul>
+ *   <li>discovery / JWKS / auth / token の各エンドポイントを Keycloak と同じパス構成（/realms/{realm}/...）で提供する</li>
+ *   <li>auth は認可コードを発行して redirect_uri へ 302 で戻す（ログイン画面なし）</li>
+ *   <li>token は PKCE（S256）を検証し、nonce 入りの RS256 署名 id_token を返す。遅延・エラー率・レスポンスサイズは設定で変える</li>
+ *   <li>アプリからの接続（送信元アドレス）ごとの最終利用時刻を記録し、upstream の接続数を数える</li>
+ * </ul>
+ */
+final class StubAuthorizationServer implements AutoCloseable {
+
+    static final String REALM = "loadtest";
+    static final String CLIENT_ID = "loadtest-client";
+    static final String CLIENT_SECRET = "loadtest-secret";
+
+    private record IssuedCode(String clientId, String redirectUri, String nonce, String codeChallenge) {
+    }
+
+    private final LoadTestOptions options;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String issuer;
+    private final RSAKey signingKey;
+    private final RSASSASigner signer;
+    private final String jwks;
+    private final String padding;
+
+    private final ConcurrentHashMap<String, IssuedCode> codes = new ConcurrentHashMap<>();
+    // 送信元アドレス（= アプリからの TCP 接続）ごとの最終利用時刻
+    private final ConcurrentHashMap<InetSocketAddress, Long> connections = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAccumulator peakInFlight = new LongAccumulator(Math::max, 0L);
+    private final ConcurrentHashMap<String, LongAdder> requests = new ConcurrentHashMap<>();
+    private final LongAdder injectedErrors = new LongAdder();
+    private final LongAdder invalidGrants = new LongAdder();
+
+    private StubAuthorizationServer(LoadTestOptions options) throws IOException, JOSEException {
+        this.options = options;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        this.issuer = "http://127.0.0.1:" + server.getAddress().getPort() + "/realms/" + REALM;
+        this.signingKey = new RSAKeyGenerator(2048).keyID("loadtest").generate();
+        this.signer = new RSASSASigner(signingKey);
+        this.jwks = JSONObjectUtils.toJSONString(new JWKSet(signingKey.toPublicJWK()).toJSONObject());
+        this.padding = randomBase64Url(Math.max(16, options.tokenPayloadBytes()));
+        // 遅延は sleep で表現するため、リクエストごとに仮想スレッドで処理する
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+
+        String oidc = "/realms/" + REALM + "/protocol/openid-connect";
+        server.createContext("/realms/" + REALM + "/.well-known/openid-configuration", ex -> handle("discovery", ex, this::discovery));
+        server.createContext(oidc + "/certs", ex -> handle("jwks", ex, e -> respond(e, 200, "application/json", jwks)));
+        server.createContext(oidc + "/auth", ex -> handle("auth", ex, this::authorize));
+        server.createContext(oidc + "/token", ex -> handle("token", ex, this::token));
+    }
+
+    static StubAuthorizationServer start(LoadTestOptions options) throws IOException, JOSEException {
+        StubAuthorizationServer stub = new StubAuthorizationServer(options);
+        stub.server.start();
+        return stub;
+    }
+
+    /** keycloak.host に設定する値。 */
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /** keycloak.context-path に設定する値。 */
+    String contextPath() {
+        return "/realms/" + REALM + "/protocol/openid-connect";
+    }
+
+    /** resetStats 以降にアプリから使われた接続の数（keep-alive で再利用された接続は 1 つと数える）。 */
+    int connectionsUsed() {
+        return connections.size();
+    }
+
+    /** 直近 windowMillis の間に使われた接続の数。 */
+    int connectionsActive(long windowMillis) {
+        long since = System.currentTimeMillis() - windowMillis;
+        int n = 0;
+        for (long lastUsed : connections.values()) {
+            if (lastUsed >= since) n++;
+        }
+        return n;
+    }
+
+    long peakInFlight() {
+        return peakInFlight.get();
+    }
+
+    long requestCount(String endpoint) {
+        LongAdder adder = requests.get(endpoint);
+        return adder == null ? 0L : adder.sum();
+    }
+
+    long injectedErrors() {
+        return injectedErrors.sum();
+    }
+
+    long invalidGrants() {
+        return invalidGrants.sum();
+    }
+
+    /** 計測開始時に接続数・リクエスト数の集計を初期化する。 */
+    void resetStats() {
+        connections.clear();
+        requests.clear();
+        injectedErrors.reset();
+        invalidGrants.reset();
+        peakInFlight.reset();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    private void handle(String endpoint, HttpExchange exchange, Handler handler) {
+        // auth はブラウザ役（負荷生成側）からのアクセスなので接続数に含めない
+        if (!"auth".equals(endpoint)) {
+            connections.put(exchange.getRemoteAddress(), System.currentTimeMillis());
+        }
+        requests.computeIfAbsent(endpoint, k -> new LongAdder()).increment();
+        peakInFlight.accumulate(inFlight.incrementAndGet());
+        try (exchange) {
+            handler.handle(exchange);
+        } catch (IOException | RuntimeException e) {
+            // 接続断など（負荷試験の結果はクライアント側で数える）
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void discovery(HttpExchange exchange) throws IOException {
+        String oidc = issuer + "/protocol/openid-connect";
+        Map<String, Object> doc = new LinkedHashMap<>();
+        doc.put("issuer", issuer);
+        doc.put("authorization_endpoint", oidc + "/auth");
+        doc.put("token_endpoint", oidc + "/token");
+        doc.put("userinfo_endpoint", oidc + "/userinfo");
+        doc.put("jwks_uri", oidc + "/certs");
+        doc.put("end_session_endpoint", oidc + "/logout");
+        doc.put("introspection_endpoint", oidc + "/token/introspect");
+        doc.put("revocation_endpoint", oidc + "/revoke");
+        respond(exchange, 200, "application/json", JSONObjectUtils.toJSONString(doc));
+    }
+
+    // ログイン済みとして即座に認可コードを発行する
+    private void authorize(HttpExchange exchange) throws IOException {
+        Map<String, String> q = parseForm(exchange.getRequestURI().getRawQuery());
+        String redirectUri = q.get("redirect_uri");
+        if (redirectUri == null || !"code".equals(q.get("response_type"))) {
+            respond(exchange, 400, "text/plain", "invalid authorization request");
+            return;
+        }
+        String code = UUID.randomUUID().toString();
+        codes.put(code, new IssuedCode(q.get("client_id"), redirectUri, q.get("nonce"), q.get("code_challenge")));
+        String location = redirectUri + (redirectUri.contains("?") ? "&" : "?")
+                + "code=" + code + "&state=" + URLEncoder.encode(q.getOrDefault("state", ""), StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Location", location);
+        exchange.sendResponseHeaders(302, -1);
+    }
+
+    private void token(HttpExchange exchange) throws IOException {
+        Map<String, String> form;
+        try (InputStream in = exchange.getRequestBody()) {
+            form = parseForm(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        sleepLatency();
+        if (options.stubErrorRate() > 0 && ThreadLocalRandom.current().nextDouble() < options.stubErrorRate()) {
+            injectedErrors.increment();
+            respond(exchange, 503, "application/json",
+                    "{\"error\":\"temporarily_unavailable\",\"error_description\":\"injected by load test\"}");
+            return;
+        }
+        IssuedCode issued = codes.remove(form.getOrDefault("code", ""));
+        String error = verify(issued, form);
+        if (error != null) {
+            invalidGrants.increment();
+            respond(exchange, 400, "application/json",
+                    JSONObjectUtils.toJSONString(Map.of("error", "invalid_grant", "error_description", error)));
+            return;
+        }
+        respond(exchange, 200, "application/json", tokenResponse(issued));
+    }
+
+    private static String verify(IssuedCode issued, Map<String, String> form) {
+        if (issued == null) return "code not found or already used";
+        if (!issued.redirectUri().equals(form.get("redirect_uri"))) return "redirect_uri mismatch";
+        if (issued.clientId() != null && !issued.clientId().equals(form.get("client_id"))) return "client_id mismatch";
+        if (issued.codeChallenge() != null) {
+            String verifier = form.get("code_verifier");
+            if (verifier == null || !issued.codeChallenge().equals(s256(verifier))) return "PKCE verification failed";
+        }
+        return null;
+    }
+
+    // access_token の長さでレスポンス全体が token-payload-bytes 程度になるようにする
+    private String tokenResponse(IssuedCode issued) {
+        long now = System.currentTimeMillis();
+        JWTClaimsSet.Builder claims = new JWTClaimsSet.Builder()
+                .issuer(issuer)
+                .subject("user-" + ThreadLocalRandom.current().nextInt(1_000_000))
+                .audience(issued.clientId() != null ? issued.clientId() : CLIENT_ID)
+                .issueTime(new Date(now))
+                .expirationTime(new Date(now + options.tokenExpiresIn() * 1000L));
+        if (issued.nonce() != null) {
+            claims.claim("nonce", issued.nonce());
+        }
+        SignedJWT idToken = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(signingKey.getKeyID()).build(),
+                claims.build());
+        try {
+            idToken.sign(signer);
+        } catch (JOSEException e) {
+            throw new IllegalStateException(e);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("access_token", "");
+        body.put("expires_in", options.tokenExpiresIn());
+        body.put("refresh_expires_in", options.tokenExpiresIn() * 6);
+        body.put("refresh_token", UUID.randomUUID().toString());
+        body.put("token_type", "Bearer");
+        body.put("id_token", idToken.serialize());
+        body.put("scope", "openid");
+        int base = JSONObjectUtils.toJSONString(body).length();
+        body.put("access_token", padding.substring(0, Math.min(padding.length(), Math.max(16, options.tokenPayloadBytes() - base))));
+        return JSONObjectUtils.toJSONString(body);
+    }
+
+    private void sleepLatency() {
+        long millis = options.stubLatency().toMillis();
+        long jitter = options.stubLatencyJitter().toMillis();
+        if (jitter > 0) {
+            millis += ThreadLocalRandom.current().nextLong(jitter + 1);
+        }
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    static Map<String, String> parseForm(String raw) {
+        Map<String, String> map = new HashMap<>();
+        if (raw == null || raw.isEmpty()) {
+            return map;
+        }
+        for (String pair : raw.split("&")) {
+            int idx = pair.indexOf('=');
+            if (idx <= 0) continue;
+            map.put(URLDecoder.decode(pair.substring(0, idx), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(idx + 1), StandardCharsets.UTF_8));
+        }
+        return map;
+    }
+
+    private static String s256(String verifier) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(verifier.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String randomBase64Url(int length) {
+        byte[] bytes = new byte[(length * 3) / 4 + 3];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        String s = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        return s.length() > length ? s.substring(0, length) : s;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.oidcclient.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+/**
+ * OIDC クライアントの WebFlux 版。servlet 版（spring-boot-oidc-client）と同じパスで認可コードフロー + PKCE を提供する。
+ * Keycloak への呼び出しはすべてノンブロッキングで、少数のイベントループスレッドで多数のフローを並行して扱う。
+ */
+@SpringBootApplication
+public class ReactiveOidcClientApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(ReactiveOidcClientApplication.class, args);
+    }
+}
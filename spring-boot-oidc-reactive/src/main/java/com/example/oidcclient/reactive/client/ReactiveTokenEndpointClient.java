@@ -0,0 +1,73 @@
+package com.example.oidcclient.reactive.client;
+
+import com.example.oidcclient.client.TokenEndpointUnavailableException;
+import com.example.oidcclient.util.QueryEncoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * token エンドポイントへのノンブロッキングな POST。
+ * 実行中の呼び出しが max-in-flight に達している場合は upstream を呼ばずに TokenEndpointUnavailableException
+ * （concurrency_limit）で失敗させる。待ち行列を作らないため、Keycloak が遅くなってもメモリや応答待ちが積み上がらない。
+ */
+@Component
+public class ReactiveTokenEndpointClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveTokenEndpointClient.class);
+
+    private final WebClient webClient;
+    private final int maxInFlight;
+    private final long retryAfterMillis;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public ReactiveTokenEndpointClient(
+            WebClient keycloakWebClient,
+            @Value("${keycloak.token.max-in-flight:1024}") int maxInFlight,
+            @Value("${keycloak.token.retry-after:1s}") Duration retryAfter) {
+        this.webClient = keycloakWebClient;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.retryAfterMillis = retryAfter.toMillis();
+    }
+
+    /**
+     * form を application/x-www-form-urlencoded で POST し、レスポンス本文を返す（ステータスに関わらず本文をそのまま返す）。
+     * 購読されるまでは何もしない。
+     */
+    public Mono<String> requestToken(String tokenEndpoint, Map<String, String> form) {
+        return Mono.defer(() -> {
+            URI uri = URI.create(tokenEndpoint);
+            if (inFlight.incrementAndGet() > maxInFlight) {
+                inFlight.decrementAndGet();
+                return Mono.error(new TokenEndpointUnavailableException(tokenEndpoint, "concurrency_limit", retryAfterMillis));
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Requesting token from: " + tokenEndpoint);
+            }
+            return webClient.post()
+                    .uri(uri)
+                    .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .bodyValue(QueryEncoder.encodeForm(form))
+                    .exchangeToMono(response -> response.bodyToMono(String.class).defaultIfEmpty(""))
+                    .doFinally(signal -> inFlight.decrementAndGet());
+        });
+    }
+
+    /**
+     * 実行中の呼び出し数（監視用）。
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.oidcclient.reactive.config;
+
+import com.example.oidcclient.pkce.PkceGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.server.session.DefaultWebSessionManager;
+import org.springframework.web.server.session.InMemoryWebSessionStore;
+import org.springframework.web.server.session.WebSessionManager;
+
+/**
+ * 認可フローで使う PKCE の生成と WebSession の設定。
+ * InMemoryWebSessionStore の既定の上限（10000 セッション）では同時ログイン数が足りないため、
+ * app.flow-state.store.capacity まで保持できるようにする（超えた場合は新しいセッションの作成が失敗する）。
+ */
+@Configuration
+public class ReactiveFlowConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public PkceGenerator pkceGenerator(
+            @Value("${pkce.code-verifier.size:64}") int verifierLength,
+            @Value("${pkce.pool.size:0}") int poolSize) {
+        return new PkceGenerator(verifierLength, poolSize);
+    }
+
+    // WebFluxAutoConfiguration の既定の webSessionManager を置き換える
+    @Bean(name = "webSessionManager")
+    public WebSessionManager webSessionManager(@Value("${app.flow-state.store.capacity:100000}") int capacity) {
+        InMemoryWebSessionStore store = new InMemoryWebSessionStore();
+        store.setMaxSessions(capacity);
+        DefaultWebSessionManager manager = new DefaultWebSessionManager();
+        manager.setSessionStore(store);
+        return manager;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.oidcclient.reactive.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * Keycloak へ接続する WebClient（Reactor Netty）を 1 つだけ生成して共有する設定。
+ * コネクションは名前付きのプールで再利用し、プールが埋まっている間の待ち行列にも上限を設ける
+ * （溢れた分は待たせずに失敗させ、upstream が遅いときに待ちが際限なく積み上がらないようにする）。
+ */
+@Configuration
+public class ReactiveHttpClientConfig {
+
+    // 接続タイムアウト（TCP 確立まで）
+    @Value("${keycloak.http.connect-timeout:5s}")
+    private Duration connectTimeout;
+
+    // 応答タイムアウト（リクエスト送信後、レスポンスを受け取るまで）
+    @Value("${keycloak.http.read-timeout:10s}")
+    private Duration readTimeout;
+
+    // プールに保持するコネクション数の上限
+    @Value("${keycloak.http.max-connections:64}")
+    private int maxConnections;
+
+    // アイドルコネクションを保持する時間
+    @Value("${keycloak.http.keep-alive:30s}")
+    private Duration keepAlive;
+
+    // コネクションの空き待ちの上限数と待ち時間
+    @Value("${keycloak.http.pending-acquire-max:1024}")
+    private int pendingAcquireMax;
+
+    @Value("${keycloak.http.pending-acquire-timeout:5s}")
+    private Duration pendingAcquireTimeout;
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider keycloakConnectionProvider() {
+        return ConnectionProvider.builder("keycloak")
+                .maxConnections(Math.max(1, maxConnections))
+                .pendingAcquireMaxCount(pendingAcquireMax)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(keepAlive)
+                .evictInBackground(keepAlive)
+                .build();
+    }
+
+    @Bean
+    public WebClient keycloakWebClient(ConnectionProvider keycloakConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(keycloakConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(readTimeout)
+                .followRedirect(false);
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+}
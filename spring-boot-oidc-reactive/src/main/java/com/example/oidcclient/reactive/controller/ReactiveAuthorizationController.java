@@ -0,0 +1,131 @@
+package com.example.oidcclient.reactive.controller;
+
+import com.example.oidcclient.flow.PendingAuthorization;
+import com.example.oidcclient.pkce.PkceGenerator;
+import com.example.oidcclient.pkce.PkceMaterial;
+import com.example.oidcclient.reactive.discovery.ReactiveDiscoveryService;
+import com.example.oidcclient.reactive.flow.WebSessionFlowStateStore;
+import com.example.oidcclient.util.AdditionalParams;
+import com.example.oidcclient.util.AuthorizationUrlTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebSession;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * /authorization_flow と /authorize の WebFlux 版（servlet 版 AuthorizationController と同じ入出力）。
+ * フロー（state -> code_verifier, nonce）は WebSession に保持する。
+ */
+@Controller
+public class ReactiveAuthorizationController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveAuthorizationController.class);
+
+    private final ReactiveDiscoveryService discoveryService;
+    private final PkceGenerator pkceGenerator;
+    private final WebSessionFlowStateStore flowStateStore;
+
+    public ReactiveAuthorizationController(ReactiveDiscoveryService discoveryService, PkceGenerator pkceGenerator,
+                                           WebSessionFlowStateStore flowStateStore) {
+        this.discoveryService = discoveryService;
+        this.pkceGenerator = pkceGenerator;
+        this.flowStateStore = flowStateStore;
+    }
+
+    // showForm: PKCE 値（code_verifier, state, nonce）を生成して WebSession に保存し、Thymeleaf に渡す
+    @GetMapping("${app.path.authorization-flow:/authorization_flow}")
+    public String showForm(
+            @RequestParam(name = "redirect_uri", required = false) String redirectUri,
+            @RequestParam(name = "client_id", required = false) String clientId,
+            WebSession session,
+            Model model) {
+        // プール有効時は事前生成済みの組を取り出すだけ（イベントループ上で乱数生成を待たない）
+        PkceMaterial pkce = pkceGenerator.next();
+        String codeChallengeMethod = "S256";
+
+        flowStateStore.put(session, new PendingAuthorization(pkce.state(), pkce.codeVerifier(), pkce.nonce(),
+                codeChallengeMethod, System.currentTimeMillis()));
+
+        model.addAttribute("code_verifier", pkce.codeVerifier());
+        model.addAttribute("state", pkce.state());
+        model.addAttribute("nonce", pkce.nonce());
+        model.addAttribute("code_challenge", pkce.codeChallenge());
+        model.addAttribute("code_challenge_method", codeChallengeMethod);
+        model.addAttribute("redirect_uri", redirectUri != null ? redirectUri : "");
+        model.addAttribute("client_id", clientId != null ? clientId : "");
+        return "authorization_flow";
+    }
+
+    // フォームの値から Authorization Request URI を組み立ててリダイレクトする
+    @PostMapping("${app.path.authorize:/authorize}")
+    public Mono<ResponseEntity<Void>> authorize(ServerWebExchange exchange) {
+        return Mono.zip(exchange.getFormData(), exchange.getSession())
+                .flatMap(t -> {
+                    MultiValueMap<String, String> form = t.getT1();
+                    WebSession session = t.getT2();
+                    String authorizationEndpoint = form.getFirst("authorization_endpoint");
+                    if (authorizationEndpoint == null || authorizationEndpoint.isBlank()) {
+                        return discoveryService.current()
+                                .map(metadata -> redirect(metadata.authorizationEndpoint(), false, form, session));
+                    }
+                    return Mono.just(redirect(authorizationEndpoint, true, form, session));
+                });
+    }
+
+    // requestedEndpoint: endpoint がリクエストで指定された（テンプレートのキャッシュに入れない）
+    private ResponseEntity<Void> redirect(String endpoint, boolean requestedEndpoint, MultiValueMap<String, String> form,
+                                          WebSession session) {
+        Map<String, String> params = new LinkedHashMap<>();
+        putIfPresent(params, "response_type", form.getFirst("response_type"));
+        putIfPresent(params, "client_id", form.getFirst("client_id"));
+        putIfPresent(params, "redirect_uri", form.getFirst("redirect_uri"));
+        putIfPresent(params, "scope", form.getFirst("scope"));
+        String state = form.getFirst("state");
+        putIfPresent(params, "state", state);
+        putIfPresent(params, "nonce", form.getFirst("nonce"));
+
+        // code_challenge_method が指定されていない場合は PKCE を利用しない
+        String method = form.getFirst("code_challenge_method");
+        String codeChallenge = form.getFirst("code_challenge");
+        if (method == null || method.isBlank()) {
+            codeChallenge = null;
+            // 発行済みフローも PKCE なしに置き換える（token request で code_verifier を送らない）
+            PendingAuthorization issued = flowStateStore.consume(session, state);
+            if (issued != null) {
+                flowStateStore.put(session, new PendingAuthorization(issued.state(), issued.codeVerifier(),
+                        issued.nonce(), null, issued.issuedAt()));
+            }
+        }
+        if (codeChallenge != null && !codeChallenge.isBlank()) {
+            params.put("code_challenge", codeChallenge);
+            params.put("code_challenge_method", method);
+            session.getAttributes().put("code_challenge_method", method);
+        }
+
+        AdditionalParams.parseInto(form.getFirst("additional_params"), params);
+
+        String authUrl = (requestedEndpoint
+                ? AuthorizationUrlTemplate.uncached(endpoint, params)
+                : AuthorizationUrlTemplate.of(endpoint, params)).expand(params);
+        logger.debug("Redirecting to Authorization Endpoint: " + authUrl);
+        return ResponseEntity.status(HttpStatus.FOUND).header(HttpHeaders.LOCATION, authUrl).build();
+    }
+
+    private static void putIfPresent(Map<String, String> params, String key, String value) {
+        if (value != null && !value.isBlank()) params.put(key, value);
+    }
+}
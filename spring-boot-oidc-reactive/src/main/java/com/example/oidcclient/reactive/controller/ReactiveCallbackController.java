@@ -0,0 +1,14 @@
+package com.example.oidcclient.reactive.controller;
+
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+
+@Controller
+public class ReactiveCallbackController {
+
+    @GetMapping("${app.path.callback:/callback}")
+    public String callback() {
+        // core の templates/callback.html を返す
+        return "callback";
+    }
+}
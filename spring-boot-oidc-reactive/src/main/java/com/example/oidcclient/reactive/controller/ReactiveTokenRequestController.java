@@ -0,0 +1,177 @@
+package com.example.oidcclient.reactive.controller;
+
+import com.example.oidcclient.client.TokenEndpointUnavailableException;
+import com.example.oidcclient.discovery.OidcProviderMetadata;
+import com.example.oidcclient.flow.PendingAuthorization;
+import com.example.oidcclient.jwt.IdTokenValidationException;
+import com.example.oidcclient.jwt.LazyJwt;
+import com.example.oidcclient.reactive.client.ReactiveTokenEndpointClient;
+import com.example.oidcclient.reactive.discovery.ReactiveDiscoveryService;
+import com.example.oidcclient.reactive.flow.WebSessionFlowStateStore;
+import com.example.oidcclient.reactive.jwt.ReactiveIdTokenValidator;
+import com.example.oidcclient.token.TokenEndpointResponse;
+import com.example.oidcclient.token.TokenResponse;
+import com.nimbusds.jose.util.JSONObjectUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebSession;
+import reactor.core.publisher.Mono;
+
+import java.text.ParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * /token_request の WebFlux 版（servlet 版 TokenRequestController と同じ入出力）。
+ * WebSession から state に対応するフローを 1 度だけ取り出し、code_verifier を付けて token エンドポイントに POST する。
+ * レスポンスに id_token があればローカルで検証し、token エンドポイントの本文をそのまま返す。
+ */
+@RestController
+public class ReactiveTokenRequestController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveTokenRequestController.class);
+
+    // token レスポンスに id_token が含まれる場合にローカル検証するか
+    @Value("${oidc.id-token.validation.enabled:true}")
+    private boolean idTokenValidationEnabled;
+
+    private final ReactiveTokenEndpointClient tokenEndpointClient;
+    private final ReactiveDiscoveryService discoveryService;
+    private final ReactiveIdTokenValidator idTokenValidator;
+    private final WebSessionFlowStateStore flowStateStore;
+
+    public ReactiveTokenRequestController(ReactiveTokenEndpointClient tokenEndpointClient,
+                                          ReactiveDiscoveryService discoveryService,
+                                          ReactiveIdTokenValidator idTokenValidator,
+                                          WebSessionFlowStateStore flowStateStore) {
+        this.tokenEndpointClient = tokenEndpointClient;
+        this.discoveryService = discoveryService;
+        this.idTokenValidator = idTokenValidator;
+        this.flowStateStore = flowStateStore;
+    }
+
+    @PostMapping("${app.path.token-request:/token_request}")
+    public Mono<String> requestToken(ServerWebExchange exchange) {
+        return Mono.zip(exchange.getFormData(), exchange.getSession())
+                .flatMap(t -> prepareTokenCall(t.getT1(), t.getT2()))
+                .flatMap(call -> tokenEndpointClient.requestToken(call.endpoint(), call.form())
+                        .flatMap(body -> validateIdToken(body, call).thenReturn(body)));
+    }
+
+    // ID トークンの検証失敗は upstream の応答不正として 502 を OAuth のエラー形式で返す
+    @ExceptionHandler(IdTokenValidationException.class)
+    public ResponseEntity<String> handleInvalidIdToken(IdTokenValidationException e) {
+        logger.warn("id_token validation failed: {}", e.getMessage());
+        String body = JSONObjectUtils.toJSONString(Map.of(
+                "error", "invalid_id_token",
+                "error_description", e.getMessage()));
+        return ResponseEntity.status(HttpStatus.BAD_GATEWAY).contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    // 受け付けない token_endpoint は 400 invalid_request にする
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleInvalidRequest(IllegalArgumentException e) {
+        String body = JSONObjectUtils.toJSONString(Map.of(
+                "error", "invalid_request",
+                "error_description", e.getMessage()));
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    // 実行中の呼び出しが上限に達している場合は OAuth の temporarily_unavailable を 503 と Retry-After で返す
+    @ExceptionHandler(TokenEndpointUnavailableException.class)
+    public ResponseEntity<String> handleTokenEndpointUnavailable(TokenEndpointUnavailableException e) {
+        String body = JSONObjectUtils.toJSONString(Map.of(
+                "error", "temporarily_unavailable",
+                "error_description", "token endpoint is overloaded or unavailable (" + e.reason() + ")"));
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1L, (e.retryAfterMillis() + 999L) / 1000L)))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    // レスポンスに id_token があれば、署名と iss/aud/exp/nonce をローカルで検証する（エラー・不正な JSON はそのまま返す）。
+    // authorization_code の場合は発行済みフローの nonce が必須
+    private Mono<Void> validateIdToken(String body, TokenCall call) {
+        if (!idTokenValidationEnabled) {
+            return Mono.empty();
+        }
+        TokenResponse tokens;
+        try {
+            tokens = TokenEndpointResponse.parse(body) instanceof TokenResponse r ? r : null;
+        } catch (ParseException e) {
+            return Mono.empty();
+        }
+        if (tokens == null || !tokens.hasIdToken()) {
+            return Mono.empty();
+        }
+        LazyJwt idToken = tokens.idToken();
+        if (idToken == null) {
+            return Mono.error(new IdTokenValidationException("id_token is not a signed JWT"));
+        }
+        if (call.expectedNonce() == null && "authorization_code".equals(call.form().get("grant_type"))) {
+            // 発行したフローが見つからない（不明・使用済みの state）場合は nonce を確認できないため受け付けない
+            return Mono.error(new IdTokenValidationException("no pending authorization for this state; cannot verify id_token nonce"));
+        }
+        return idTokenValidator.validate(idToken, call.form().get("client_id"), call.expectedNonce()).then();
+    }
+
+    // token エンドポイントと送信する form を組み立てる
+    private Mono<TokenCall> prepareTokenCall(MultiValueMap<String, String> params, WebSession session) {
+        // state に対応するフローを 1 回限りで取り出す
+        PendingAuthorization pending = flowStateStore.consume(session, params.getFirst("state"));
+
+        // PKCE: セッションの code_challenge_method か、発行済みフローに method があれば code_verifier を送る
+        String codeVerifier = null;
+        boolean pkce = session.getAttribute("code_challenge_method") != null
+                || (pending != null && pending.codeChallengeMethod() != null);
+        if (pkce) {
+            // リクエストパラメータの code_verifier を優先、なければ state に紐付けて保存したものを使う
+            String codeVerifierParam = params.getFirst("code_verifier");
+            codeVerifier = (codeVerifierParam != null && !codeVerifierParam.isBlank()) ? codeVerifierParam : null;
+            if (codeVerifier == null && pending != null) {
+                codeVerifier = pending.codeVerifier();
+            }
+        }
+        String grantType = params.getFirst("grant_type");
+        Map<String, String> form = buildForm(
+                grantType == null || grantType.isBlank() ? "authorization_code" : grantType,
+                params.getFirst("code"), params.getFirst("redirect_uri"), params.getFirst("client_id"),
+                params.getFirst("client_secret"), codeVerifier);
+        String expectedNonce = pending != null ? pending.nonce() : null;
+
+        // discovery で得た token_endpoint を使う。別の token_endpoint は id_token の issuer と署名鍵を確認できないため受け付けない
+        String tokenEndpoint = params.getFirst("token_endpoint");
+        return discoveryService.current().map(OidcProviderMetadata::tokenEndpoint).map(e -> {
+            if (tokenEndpoint != null && !tokenEndpoint.isBlank() && !tokenEndpoint.equals(e)) {
+                throw new IllegalArgumentException("token_endpoint must be the provider's token endpoint (" + e + ")");
+            }
+            return new TokenCall(e, form, expectedNonce);
+        });
+    }
+
+    private static Map<String, String> buildForm(String grantType, String code, String redirectUri, String clientId,
+                                                 String clientSecret, String codeVerifier) {
+        Map<String, String> form = new LinkedHashMap<>();
+        if (grantType != null && !grantType.isBlank()) form.put("grant_type", grantType);
+        if (code != null && !code.isBlank()) form.put("code", code);
+        if (redirectUri != null && !redirectUri.isBlank()) form.put("redirect_uri", redirectUri);
+        if (clientId != null && !clientId.isBlank()) form.put("client_id", clientId);
+        if (clientSecret != null && !clientSecret.isBlank()) form.put("client_secret", clientSecret);
+        if (codeVerifier != null && !codeVerifier.isBlank()) form.put("code_verifier", codeVerifier);
+        return form;
+    }
+
+    private record TokenCall(String endpoint, Map<String, String> form, String expectedNonce) {
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.oidcclient.reactive.discovery;
+
+import com.example.oidcclient.discovery.OidcProviderMetadata;
+import com.nimbusds.jose.util.JSONObjectUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.net.URI;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * OIDC discovery ドキュメントをメモリにキャッシュする（servlet 版 OidcDiscoveryService の WebFlux 版）。
+ * <ul>
+ *   <li>取得済みであれば常にその値を返し、TTL を過ぎていればバックグラウンドで再取得する</li>
+ *   <li>取得処理は常に 1 本だけ走らせ、同時に来たリクエストは同じ結果を待つ。失敗後は failure-backoff の間は再取得しない</li>
+ *   <li>接続エラーと 5xx は keycloak.retry.max-attempts まで再送する</li>
+ *   <li>一度も取得できていない間は keycloak.host + keycloak.context-path から組み立てたエンドポイントを返す</li>
+ * </ul>
+ */
+@Component
+public class ReactiveDiscoveryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveDiscoveryService.class);
+
+    private final WebClient webClient;
+    private final URI discoveryUri;
+    private final long ttlNanos;
+    private final long failureBackoffNanos;
+    private final Duration fetchTimeout;
+    private final int maxAttempts;
+    private final Duration retryDelay;
+    private final OidcProviderMetadata fallback;
+
+    private final AtomicReference<Mono<OidcProviderMetadata>> inFlight = new AtomicReference<>();
+    private volatile Snapshot snapshot;
+    private volatile long lastFailureAt;
+    private volatile boolean failedOnce;
+
+    private record Snapshot(OidcProviderMetadata metadata, long fetchedAt) {
+    }
+
+    public ReactiveDiscoveryService(
+            WebClient keycloakWebClient,
+            @Value("${keycloak.host:http://localhost:8080}") String keycloakHost,
+            @Value("${keycloak.context-path:/realms/myrealm/protocol/openid-connect}") String keycloakContextPath,
+            @Value("${keycloak.discovery.url:}") String discoveryUrl,
+            @Value("${keycloak.discovery.ttl:5m}") Duration ttl,
+            @Value("${keycloak.discovery.failure-backoff:30s}") Duration failureBackoff,
+            @Value("${keycloak.discovery.fetch-timeout:5s}") Duration fetchTimeout,
+            @Value("${keycloak.retry.max-attempts:3}") int maxAttempts,
+            @Value("${keycloak.retry.base-delay:50ms}") Duration retryDelay) {
+        this.webClient = keycloakWebClient;
+        this.ttlNanos = ttl.toNanos();
+        this.failureBackoffNanos = failureBackoff.toNanos();
+        this.fetchTimeout = fetchTimeout;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryDelay = retryDelay;
+        this.fallback = OidcProviderMetadata.forKeycloak(keycloakHost, keycloakContextPath);
+        this.discoveryUri = URI.create((discoveryUrl == null || discoveryUrl.isBlank())
+                ? fallback.issuer() + "/.well-known/openid-configuration"
+                : discoveryUrl.trim());
+    }
+
+    /**
+     * 現在のメタデータ。取得済みであれば待たずに返す。未取得の場合のみ取得完了を fetch-timeout まで待ち、
+     * 間に合わなければフォールバックを返す。
+     */
+    public Mono<OidcProviderMetadata> current() {
+        Snapshot s = snapshot;
+        if (s != null) {
+            if (System.nanoTime() - s.fetchedAt() >= ttlNanos) {
+                refresh().subscribe();
+            }
+            return Mono.just(s.metadata());
+        }
+        if (inBackoff()) {
+            return Mono.just(fallback);
+        }
+        return refresh().timeout(fetchTimeout, Mono.fromSupplier(this::lastKnownOrFallback));
+    }
+
+    /**
+     * discovery ドキュメントを再取得する。取得中であれば同じ結果を返す。失敗時は直前の値（無ければフォールバック）。
+     */
+    public Mono<OidcProviderMetadata> refresh() {
+        Mono<OidcProviderMetadata> running = inFlight.get();
+        if (running != null) {
+            return running;
+        }
+        if (inBackoff()) {
+            return Mono.fromSupplier(this::lastKnownOrFallback);
+        }
+        Mono<OidcProviderMetadata> mine = fetch()
+                .doOnNext(metadata -> {
+                    snapshot = new Snapshot(metadata, System.nanoTime());
+                    failedOnce = false;
+                    logger.debug("discovery document refreshed: issuer={}", metadata.issuer());
+                })
+                .onErrorResume(e -> {
+                    lastFailureAt = System.nanoTime();
+                    failedOnce = true;
+                    logger.warn("failed to fetch discovery document from {}: {}", discoveryUri, e.toString());
+                    return Mono.fromSupplier(this::lastKnownOrFallback);
+                })
+                .doFinally(signal -> inFlight.set(null))
+                .cache();
+        if (!inFlight.compareAndSet(null, mine)) {
+            Mono<OidcProviderMetadata> other = inFlight.get();
+            return other != null ? other : Mono.fromSupplier(this::lastKnownOrFallback);
+        }
+        return mine;
+    }
+
+    // 起動完了時にウォームアップ
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        refresh().subscribe();
+    }
+
+    private Mono<OidcProviderMetadata> fetch() {
+        return webClient.get()
+                .uri(discoveryUri)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(String.class)
+                .retryWhen(Retry.backoff(maxAttempts - 1, retryDelay).filter(ReactiveDiscoveryService::isRetryable))
+                .map(body -> {
+                    try {
+                        return OidcProviderMetadata.fromDocument(JSONObjectUtils.parse(body));
+                    } catch (ParseException e) {
+                        throw new IllegalStateException("invalid discovery document", e);
+                    }
+                });
+    }
+
+    // 接続エラーと 5xx のみ再送する
+    static boolean isRetryable(Throwable e) {
+        if (e instanceof WebClientResponseException r) {
+            return r.getStatusCode().is5xxServerError();
+        }
+        return e instanceof IOException || e.getCause() instanceof IOException;
+    }
+
+    private boolean inBackoff() {
+        return failedOnce && System.nanoTime() - lastFailureAt < failureBackoffNanos;
+    }
+
+    private OidcProviderMetadata lastKnownOrFallback() {
+        Snapshot s = snapshot;
+        return s != null ? s.metadata() : fallback;
+    }
+}
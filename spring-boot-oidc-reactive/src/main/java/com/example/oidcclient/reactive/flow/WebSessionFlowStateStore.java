@@ -0,0 +1,83 @@
+package com.example.oidcclient.reactive.flow;
+
+import com.example.oidcclient.flow.PendingAuthorization;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.WebSession;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * 認可フロー途中の state / code_verifier / nonce を WebSession に保持する。
+ * <ul>
+ *   <li>state ごとに 1 属性で保存し、token request で 1 度だけ取り出す（取り出した時点で削除）</li>
+ *   <li>ttl を過ぎたフローは取り出せない。セッション自体も最後の発行から ttl で期限切れにする</li>
+ *   <li>1 セッションあたりの未使用フローは max-per-session までとし、超えた場合は最も古いものを捨てる</li>
+ * </ul>
+ */
+@Component
+public class WebSessionFlowStateStore {
+
+    static final String ATTRIBUTE_PREFIX = "oidc.flow.";
+
+    private final Duration ttl;
+    private final int maxPerSession;
+
+    public WebSessionFlowStateStore(
+            @Value("${app.flow-state.ttl:10m}") Duration ttl,
+            @Value("${app.flow-state.max-per-session:16}") int maxPerSession) {
+        this.ttl = ttl;
+        this.maxPerSession = Math.max(1, maxPerSession);
+    }
+
+    /**
+     * フローを保存する（同じ state があれば置き換える）。
+     */
+    public void put(WebSession session, PendingAuthorization pending) {
+        Map<String, Object> attributes = session.getAttributes();
+        if (!attributes.containsKey(ATTRIBUTE_PREFIX + pending.state())) {
+            evictOldest(attributes);
+        }
+        attributes.put(ATTRIBUTE_PREFIX + pending.state(), pending);
+        if (session.getMaxIdleTime().compareTo(ttl) < 0) {
+            session.setMaxIdleTime(ttl);
+        }
+    }
+
+    /**
+     * state に対応するフローを取り出して削除する。無い・期限切れの場合は null。
+     */
+    public PendingAuthorization consume(WebSession session, String state) {
+        if (state == null || state.isBlank()) {
+            return null;
+        }
+        Object value = session.getAttributes().remove(ATTRIBUTE_PREFIX + state);
+        if (!(value instanceof PendingAuthorization pending)) {
+            return null;
+        }
+        if (System.currentTimeMillis() - pending.issuedAt() > ttl.toMillis()) {
+            return null;
+        }
+        return pending;
+    }
+
+    // 上限に達していれば最も古いフローを削除する（属性の数は max-per-session 程度なので全件見る）
+    private void evictOldest(Map<String, Object> attributes) {
+        String oldestKey = null;
+        long oldestAt = Long.MAX_VALUE;
+        int count = 0;
+        for (Map.Entry<String, Object> e : attributes.entrySet()) {
+            if (e.getValue() instanceof PendingAuthorization p) {
+                count++;
+                if (p.issuedAt() < oldestAt) {
+                    oldestAt = p.issuedAt();
+                    oldestKey = e.getKey();
+                }
+            }
+        }
+        if (count >= maxPerSession && oldestKey != null) {
+            attributes.remove(oldestKey);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.oidcclient.reactive.jwt;
+
+import com.example.oidcclient.jwt.IdTokenChecks;
+import com.example.oidcclient.jwt.IdTokenValidationException;
+import com.example.oidcclient.jwt.LazyJwt;
+import com.example.oidcclient.reactive.discovery.ReactiveDiscoveryService;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * ID トークンをローカルで検証する（署名、iss、aud、exp、nonce）。servlet 版 IdTokenValidator / JwksCache の WebFlux 版。
+ * JWKS は kid ごとの verifier として保持し、未知の kid の場合のみ refresh-min-interval に 1 回まで再取得する
+ * （取得中に来た検証は同じ取得結果を待つ）。確認の内容は core の IdTokenChecks と同じ。
+ */
+@Component
+public class ReactiveIdTokenValidator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveIdTokenValidator.class);
+
+    private final WebClient webClient;
+    private final ReactiveDiscoveryService discoveryService;
+    private final long minRefreshIntervalNanos;
+    private final Duration fetchTimeout;
+    private final long clockSkewMillis;
+
+    // kid -> verifier。差し替えは丸ごと行う
+    private volatile Map<String, JWSVerifier> verifiers = Map.of();
+    private final AtomicReference<Mono<Map<String, JWSVerifier>>> refreshing = new AtomicReference<>();
+    private volatile boolean attempted;
+    private volatile long lastRefreshAt;
+
+    public ReactiveIdTokenValidator(
+            WebClient keycloakWebClient,
+            ReactiveDiscoveryService discoveryService,
+            @Value("${keycloak.jwks.refresh-min-interval:30s}") Duration minRefreshInterval,
+            @Value("${keycloak.jwks.fetch-timeout:5s}") Duration fetchTimeout,
+            @Value("${oidc.id-token.clock-skew:30s}") Duration clockSkew) {
+        this.webClient = keycloakWebClient;
+        this.discoveryService = discoveryService;
+        this.minRefreshIntervalNanos = minRefreshInterval.toNanos();
+        this.fetchTimeout = fetchTimeout;
+        this.clockSkewMillis = clockSkew.toMillis();
+    }
+
+    /**
+     * ID トークンを検証してクレームを返す。失敗した場合は IdTokenValidationException で終わる。
+     * clientId / expectedNonce が null の場合、それぞれ aud / nonce の確認は行わない。
+     */
+    public Mono<JWTClaimsSet> validate(LazyJwt idToken, String clientId, String expectedNonce) {
+        SignedJWT jwt;
+        JWTClaimsSet claims;
+        try {
+            jwt = idToken.toSignedJWT();
+            claims = idToken.claims();
+        } catch (ParseException e) {
+            return Mono.error(new IdTokenValidationException("id_token is not a signed JWT", e));
+        }
+        String kid = jwt.getHeader().getKeyID();
+        return verifier(kid)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .zipWith(discoveryService.current())
+                .map(t -> {
+                    IdTokenChecks.verifySignature(jwt, t.getT1().orElse(null));
+                    IdTokenChecks.verifyClaims(claims, t.getT2().issuer(), clientId, expectedNonce, clockSkewMillis);
+                    return claims;
+                });
+    }
+
+    // kid に対応する verifier。見つからなければ（レート制限の範囲で）JWKS を再取得する。それでも無ければ空
+    private Mono<JWSVerifier> verifier(String kid) {
+        String key = kid == null ? "" : kid;
+        JWSVerifier v = verifiers.get(key);
+        if (v != null) {
+            return Mono.just(v);
+        }
+        return refresh().mapNotNull(map -> map.get(key));
+    }
+
+    private Mono<Map<String, JWSVerifier>> refresh() {
+        Mono<Map<String, JWSVerifier>> running = refreshing.get();
+        if (running != null) {
+            return running;
+        }
+        long now = System.nanoTime();
+        // 取得に失敗した場合も含めて、直近に取得を試みていれば再取得しない
+        if (attempted && now - lastRefreshAt < minRefreshIntervalNanos) {
+            return Mono.fromSupplier(() -> verifiers);
+        }
+        Mono<Map<String, JWSVerifier>> mine = discoveryService.current()
+                .flatMap(metadata -> webClient.get()
+                        .uri(metadata.jwksUri())
+                        .accept(MediaType.APPLICATION_JSON)
+                        .retrieve()
+                        .bodyToMono(String.class)
+                        .timeout(fetchTimeout))
+                .map(body -> {
+                    try {
+                        return IdTokenChecks.toVerifiers(JWKSet.parse(body));
+                    } catch (ParseException e) {
+                        throw new IllegalStateException("invalid JWKS", e);
+                    }
+                })
+                .doOnNext(map -> {
+                    verifiers = map;
+                    logger.debug("JWKS refreshed: kids={}", map.keySet());
+                })
+                .onErrorResume(e -> {
+                    logger.warn("failed to fetch JWKS: {}", e.toString());
+                    return Mono.fromSupplier(() -> verifiers);
+                })
+                .doFinally(signal -> refreshing.set(null))
+                .cache();
+        if (!refreshing.compareAndSet(null, mine)) {
+            Mono<Map<String, JWSVerifier>> other = refreshing.get();
+            return other != null ? other : Mono.fromSupplier(() -> verifiers);
+        }
+        attempted = true;
+        lastRefreshAt = now;
+        return mine;
+    }
+}
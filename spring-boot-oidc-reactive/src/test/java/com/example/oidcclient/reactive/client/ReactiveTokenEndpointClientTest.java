@@ -0,0 +1,103 @@
+package com.example.oidcclient.reactive.client;
+
+import com.example.oidcclient.client.TokenEndpointUnavailableException;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReactiveTokenEndpointClientTest {
+
+    private HttpServer server;
+    private String endpoint;
+    private final AtomicReference<String> receivedBody = new AtomicReference<>();
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/token", exchange -> {
+            receivedBody.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            byte[] bytes = "{\"error\":\"invalid_grant\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(400, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        server.createContext("/slow", exchange -> {
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] bytes = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        server.start();
+        endpoint = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    void requestToken_postsEncodedFormAndReturnsBodyRegardlessOfStatus() {
+        ReactiveTokenEndpointClient client = new ReactiveTokenEndpointClient(WebClient.create(), 4, Duration.ofSeconds(1));
+        Map<String, String> form = new LinkedHashMap<>();
+        form.put("grant_type", "authorization_code");
+        form.put("redirect_uri", "http://localhost:8082/callback?x=1");
+
+        StepVerifier.create(client.requestToken(endpoint + "/token", form))
+                .expectNext("{\"error\":\"invalid_grant\"}")
+                .verifyComplete();
+
+        assertThat(receivedBody.get())
+                .isEqualTo("grant_type=authorization_code&redirect_uri=http%3A%2F%2Flocalhost%3A8082%2Fcallback%3Fx%3D1");
+        assertThat(client.inFlight()).isZero();
+    }
+
+    @Test
+    void requestToken_failsFastWhenInFlightLimitIsReached() throws InterruptedException {
+        ReactiveTokenEndpointClient client = new ReactiveTokenEndpointClient(WebClient.create(), 1, Duration.ofSeconds(2));
+        Disposable pending = client.requestToken(endpoint + "/slow", Map.of()).subscribe();
+        try {
+            assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+            StepVerifier.create(client.requestToken(endpoint + "/token", Map.of()))
+                    .expectErrorSatisfies(e -> {
+                        assertThat(e).isInstanceOf(TokenEndpointUnavailableException.class);
+                        assertThat(((TokenEndpointUnavailableException) e).reason()).isEqualTo("concurrency_limit");
+                        assertThat(((TokenEndpointUnavailableException) e).retryAfterMillis()).isEqualTo(2000L);
+                    })
+                    .verify();
+            assertThat(receivedBody.get()).isNull();
+        } finally {
+            release.countDown();
+            pending.dispose();
+        }
+    }
+}
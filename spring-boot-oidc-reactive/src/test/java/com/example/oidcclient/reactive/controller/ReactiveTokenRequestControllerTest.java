@@ -0,0 +1,149 @@
+package com.example.oidcclient.reactive.controller;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseCookie;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+public class ReactiveTokenRequestControllerTest {
+
+    private static final Pattern DATA_STATE = Pattern.compile("data-state=\"([^\"]+)\"");
+    private static final Pattern DATA_CODE_VERIFIER = Pattern.compile("data-code_verifier=\"([^\"]+)\"");
+
+    private static final String CONTEXT_PATH = "/realms/myrealm/protocol/openid-connect";
+    private static final AtomicReference<String> receivedForm = new AtomicReference<>();
+    private static HttpServer server;
+
+    @Autowired
+    private ApplicationContext context;
+
+    private WebTestClient client;
+
+    // token_endpoint は discovery（未取得の間は keycloak.host から組み立てた値）のものしか使えないため、
+    // keycloak.host をスタブの token エンドポイントへ向ける
+    @DynamicPropertySource
+    static void keycloak(DynamicPropertyRegistry registry) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(CONTEXT_PATH + "/token", exchange -> {
+            receivedForm.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            byte[] bytes = "{\"access_token\":\"at\",\"token_type\":\"Bearer\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        server.start();
+        registry.add("keycloak.host", () -> "http://127.0.0.1:" + server.getAddress().getPort());
+        registry.add("keycloak.context-path", () -> CONTEXT_PATH);
+    }
+
+    @BeforeEach
+    void setUp() {
+        client = WebTestClient.bindToApplicationContext(context).build();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        server.stop(0);
+    }
+
+    private static String extract(Pattern pattern, String html) {
+        Matcher m = pattern.matcher(html);
+        assertThat(m.find()).isTrue();
+        return m.group(1);
+    }
+
+    @Test
+    void postAuthorize_redirectsToAuthorizationEndpoint() {
+        String endpoint = "http://localhost:8080/realms/myrealm/protocol/openid-connect/auth";
+        EntityExchangeResult<byte[]> result = client.post().uri("/authorize")
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .body(BodyInserters.fromFormData("authorization_endpoint", endpoint)
+                        .with("response_type", "code")
+                        .with("client_id", "semi_client")
+                        .with("redirect_uri", "http://localhost:8082/callback")
+                        .with("state", "xyz"))
+                .exchange()
+                .expectStatus().isFound()
+                .expectBody().returnResult();
+
+        String location = result.getResponseHeaders().getFirst("Location");
+        assertThat(location).startsWith(endpoint + "?");
+        assertThat(location).contains("client_id=semi_client");
+        assertThat(location).contains("redirect_uri=http%3A%2F%2Flocalhost%3A8082%2Fcallback");
+        assertThat(location).contains("state=xyz");
+    }
+
+    @Test
+    void tokenRequest_sendsCodeVerifierStoredInSessionOnlyOnce() {
+        EntityExchangeResult<String> form = client.get().uri("/authorization_flow")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult();
+        String html = form.getResponseBody();
+        String state = extract(DATA_STATE, html);
+        String codeVerifier = extract(DATA_CODE_VERIFIER, html);
+        ResponseCookie session = form.getResponseCookies().getFirst("SESSION");
+        assertThat(session).isNotNull();
+
+        client.post().uri("/token_request")
+                .cookie(session.getName(), session.getValue())
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .body(BodyInserters.fromFormData("code", "code-1")
+                        .with("client_id", "semi_client")
+                        .with("state", state))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("{\"access_token\":\"at\",\"token_type\":\"Bearer\"}");
+
+        assertThat(receivedForm.get()).startsWith("grant_type=authorization_code&code=code-1");
+        assertThat(receivedForm.get()).contains("code_verifier=" + codeVerifier);
+
+        // 同じ state は 2 回目には使えない（code_verifier が送られない）
+        client.post().uri("/token_request")
+                .cookie(session.getName(), session.getValue())
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .body(BodyInserters.fromFormData("code", "code-1")
+                        .with("client_id", "semi_client")
+                        .with("state", state))
+                .exchange()
+                .expectStatus().isOk();
+
+        assertThat(receivedForm.get()).doesNotContain("code_verifier");
+    }
+
+    @Test
+    void tokenRequest_rejectsForeignTokenEndpoint() {
+        receivedForm.set(null);
+        client.post().uri("/token_request")
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .body(BodyInserters.fromFormData("token_endpoint", "http://attacker.example/token")
+                        .with("code", "code-1")
+                        .with("client_id", "semi_client"))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.error").isEqualTo("invalid_request");
+
+        assertThat(receivedForm.get()).isNull();
+    }
+}
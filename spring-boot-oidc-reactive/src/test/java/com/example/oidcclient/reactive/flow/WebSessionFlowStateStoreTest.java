@@ -0,0 +1,68 @@
+package com.example.oidcclient.reactive.flow;
+
+import com.example.oidcclient.flow.PendingAuthorization;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.WebSession;
+import org.springframework.web.server.session.InMemoryWebSessionStore;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WebSessionFlowStateStoreTest {
+
+    private static WebSession newSession() {
+        return new InMemoryWebSessionStore().createWebSession().block();
+    }
+
+    private static PendingAuthorization pending(String state, long issuedAt) {
+        return new PendingAuthorization(state, "verifier-" + state, "nonce-" + state, "S256", issuedAt);
+    }
+
+    @Test
+    void consume_returnsFlowOnlyOnce() {
+        WebSessionFlowStateStore store = new WebSessionFlowStateStore(Duration.ofMinutes(10), 16);
+        WebSession session = newSession();
+        store.put(session, pending("s1", System.currentTimeMillis()));
+
+        PendingAuthorization first = store.consume(session, "s1");
+        assertThat(first).isNotNull();
+        assertThat(first.codeVerifier()).isEqualTo("verifier-s1");
+        assertThat(store.consume(session, "s1")).isNull();
+        assertThat(store.consume(session, "unknown")).isNull();
+        assertThat(store.consume(session, null)).isNull();
+    }
+
+    @Test
+    void expiredFlow_isNotReturned() {
+        WebSessionFlowStateStore store = new WebSessionFlowStateStore(Duration.ofMinutes(10), 16);
+        WebSession session = newSession();
+        store.put(session, pending("old", System.currentTimeMillis() - Duration.ofMinutes(11).toMillis()));
+
+        assertThat(store.consume(session, "old")).isNull();
+    }
+
+    @Test
+    void put_evictsOldestWhenSessionIsFull() {
+        WebSessionFlowStateStore store = new WebSessionFlowStateStore(Duration.ofMinutes(10), 2);
+        WebSession session = newSession();
+        long now = System.currentTimeMillis();
+        store.put(session, pending("s1", now - 2));
+        store.put(session, pending("s2", now - 1));
+        store.put(session, pending("s3", now));
+
+        assertThat(store.consume(session, "s1")).isNull();
+        assertThat(store.consume(session, "s2")).isNotNull();
+        assertThat(store.consume(session, "s3")).isNotNull();
+    }
+
+    @Test
+    void put_extendsSessionIdleTimeToTtl() {
+        WebSessionFlowStateStore store = new WebSessionFlowStateStore(Duration.ofHours(1), 16);
+        WebSession session = newSession();
+        session.setMaxIdleTime(Duration.ofMinutes(30));
+        store.put(session, pending("s1", System.currentTimeMillis()));
+
+        assertThat(session.getMaxIdleTime()).isEqualTo(Duration.ofHours(1));
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.oidcclient.reactive.jwt;
+
+import com.example.oidcclient.jwt.IdTokenValidationException;
+import com.example.oidcclient.jwt.LazyJwt;
+import com.example.oidcclient.reactive.discovery.ReactiveDiscoveryService;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReactiveIdTokenValidatorTest {
+
+    private HttpServer server;
+    private String issuer;
+    private RSAKey signingKey;
+    private final AtomicInteger jwksFetches = new AtomicInteger();
+    private ReactiveIdTokenValidator validator;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        signingKey = new RSAKeyGenerator(2048).keyID("kid-1").generate();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/realms/myrealm/.well-known/openid-configuration", exchange -> {
+            respond(exchange, "{\"issuer\":\"" + issuer + "\","
+                    + "\"token_endpoint\":\"" + issuer + "/protocol/openid-connect/token\","
+                    + "\"jwks_uri\":\"" + issuer + "/protocol/openid-connect/certs\"}");
+        });
+        server.createContext("/realms/myrealm/protocol/openid-connect/certs", exchange -> {
+            jwksFetches.incrementAndGet();
+            respond(exchange, new JWKSet(signingKey.toPublicJWK()).toString());
+        });
+        server.start();
+        String host = "http://127.0.0.1:" + server.getAddress().getPort();
+        issuer = host + "/realms/myrealm";
+
+        WebClient client = WebClient.create();
+        ReactiveDiscoveryService discovery = new ReactiveDiscoveryService(client, host,
+                "/realms/myrealm/protocol/openid-connect", "", Duration.ofMinutes(5), Duration.ofSeconds(30),
+                Duration.ofSeconds(5), 3, Duration.ofMillis(1));
+        validator = new ReactiveIdTokenValidator(client, discovery, Duration.ofMinutes(1), Duration.ofSeconds(5),
+                Duration.ofSeconds(30));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    private LazyJwt sign(RSAKey key, JWTClaimsSet claims) throws Exception {
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        return LazyJwt.parse(jwt.serialize());
+    }
+
+    private JWTClaimsSet.Builder claims() {
+        return new JWTClaimsSet.Builder()
+                .issuer(issuer)
+                .audience("semi_client")
+                .subject("user-1")
+                .expirationTime(new Date(System.currentTimeMillis() + 60_000))
+                .claim("nonce", "nonce-1");
+    }
+
+    @Test
+    void validToken_passesAndKeysAreCached() throws Exception {
+        StepVerifier.create(validator.validate(sign(signingKey, claims().build()), "semi_client", "nonce-1"))
+                .assertNext(c -> assertThat(c.getSubject()).isEqualTo("user-1"))
+                .verifyComplete();
+        StepVerifier.create(validator.validate(sign(signingKey, claims().build()), "semi_client", "nonce-1"))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(jwksFetches.get()).isEqualTo(1);
+    }
+
+    @Test
+    void nonceMismatchOrWrongAudience_isRejected() throws Exception {
+        StepVerifier.create(validator.validate(sign(signingKey, claims().build()), "semi_client", "other-nonce"))
+                .expectError(IdTokenValidationException.class)
+                .verify();
+        StepVerifier.create(validator.validate(sign(signingKey, claims().audience("other").build()), "semi_client", "nonce-1"))
+                .expectError(IdTokenValidationException.class)
+                .verify();
+    }
+
+    @Test
+    void unknownKid_refreshesAtMostOncePerInterval() throws Exception {
+        RSAKey otherKey = new RSAKeyGenerator(2048).keyID("kid-unknown").generate();
+
+        StepVerifier.create(validator.validate(sign(otherKey, claims().build()), "semi_client", "nonce-1"))
+                .expectError(IdTokenValidationException.class)
+                .verify();
+        StepVerifier.create(validator.validate(sign(otherKey, claims().build()), "semi_client", "nonce-1"))
+                .expectError(IdTokenValidationException.class)
+                .verify();
+
+        assertThat(jwksFetches.get()).isEqualTo(1);
+    }
+}